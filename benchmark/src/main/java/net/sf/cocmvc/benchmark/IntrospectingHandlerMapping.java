@@ -0,0 +1,41 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc.benchmark;
+
+import net.sf.cocmvc.ConventionalHandlerMapping;
+
+import java.lang.reflect.Method;
+
+/**
+ * Exposes the introspection of {@link ConventionalHandlerMapping}, to be measured without the registration
+ *
+ * @author ywu
+ */
+public class IntrospectingHandlerMapping extends ConventionalHandlerMapping {
+
+    /**
+     * Number of the actions of the handler type, 0 if it's not a handler
+     */
+    public int introspect(Class<?> handlerType) {
+        if (!isHandler(handlerType)) return 0;
+
+        int actions = 0;
+        for (Method method : handlerType.getMethods())
+            if (getMappingForMethod(method, handlerType) != null) actions++;
+        return actions;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc.benchmark;
+
+import net.sf.cocmvc.ConventionalHandlerMapping;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steady-state {@code getHandler} latency of direct hits, path variable routes and misses,
+ * run with {@code -prof gc} to see the allocation rate
+ *
+ * @author ywu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.apache.commons.logging.Log=org.apache.commons.logging.impl.NoOpLog")
+public class LookupBenchmark {
+
+    /**
+     * Max number of distinct request paths of each kind
+     */
+    private static final int MAX_PATHS = 4096;
+
+    @Param({"10", "1000", "10000"})
+    private int controllers;
+
+    @Param({"", "useSnakeCase=true", "useRouteTree=true", "useRouteTree=true,lookupCacheSize=10000", "useRouteTree=true,useLiteralPathLookup=true",
+            "useRouteTree=true,inferRequestMethods=true"})
+    private String options;
+
+    private ConventionalHandlerMapping mapping;
+
+    private StaticApplicationContext context;
+
+    private final List<String> hitPaths = new ArrayList<String>();
+
+    private final List<String> pathVariablePaths = new ArrayList<String>();
+
+    private final List<String> missPaths = new ArrayList<String>();
+
+    @Setup
+    public void setUp() throws Exception {
+        context = SyntheticControllers.createContext(SyntheticControllers.load(controllers));
+        mapping = SyntheticControllers.configure(new ConventionalHandlerMapping(), options);
+        mapping.setApplicationContext(context);
+        mapping.afterPropertiesSet();
+
+        for (RequestMappingInfo info : mapping.getHandlerMethods().keySet()) {
+            // requests without the required params would be rejected
+            if (!info.getParamsCondition().getExpressions().isEmpty()) continue;
+            // the benchmark requests are all GET
+            Set<RequestMethod> methods = info.getMethodsCondition().getMethods();
+            if (!methods.isEmpty() && !methods.contains(RequestMethod.GET)) continue;
+
+            for (String pattern : info.getPatternsCondition().getPatterns()) {
+                if (pattern.indexOf('{') != -1) {
+                    pathVariablePaths.add(pattern.replaceAll("\\{[^}]*\\}", "42"));
+                } else {
+                    hitPaths.add(pattern);
+                    missPaths.add(pattern + "/missing");
+                }
+            }
+        }
+        shuffle(hitPaths);
+        shuffle(pathVariablePaths);
+        shuffle(missPaths);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public HandlerExecutionChain hit(Requests requests) throws Exception {
+        return mapping.getHandler(requests.next(requests.hits));
+    }
+
+    @Benchmark
+    public HandlerExecutionChain pathVariable(Requests requests) throws Exception {
+        return mapping.getHandler(requests.next(requests.pathVariables));
+    }
+
+    @Benchmark
+    public HandlerExecutionChain miss(Requests requests) throws Exception {
+        return mapping.getHandler(requests.next(requests.misses));
+    }
+
+    /*
+     * a stable, shuffled subset of the paths
+     */
+    private static void shuffle(List<String> paths) {
+        Collections.shuffle(paths, new Random(42));
+        if (paths.size() > MAX_PATHS) paths.subList(MAX_PATHS, paths.size()).clear();
+    }
+
+    /**
+     * Requests of a benchmark thread, a request is mutated by the lookups, so it can't be shared
+     */
+    @State(Scope.Thread)
+    public static class Requests {
+
+        private MockHttpServletRequest[] hits;
+
+        private MockHttpServletRequest[] pathVariables;
+
+        private MockHttpServletRequest[] misses;
+
+        private int next;
+
+        @Setup
+        public void setUp(LookupBenchmark benchmark) {
+            hits = createRequests(benchmark.hitPaths);
+            pathVariables = createRequests(benchmark.pathVariablePaths);
+            misses = createRequests(benchmark.missPaths);
+        }
+
+        MockHttpServletRequest next(MockHttpServletRequest[] requests) {
+            if (++next >= requests.length) next = 0;
+            return requests[next];
+        }
+
+        private static MockHttpServletRequest[] createRequests(List<String> paths) {
+            MockHttpServletRequest[] requests = new MockHttpServletRequest[paths.size()];
+            for (int i = 0; i < requests.length; i++) requests[i] = new MockHttpServletRequest("GET", paths.get(i));
+            return requests;
+        }
+    }
+}
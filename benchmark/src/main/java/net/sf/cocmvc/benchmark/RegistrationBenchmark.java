@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc.benchmark;
+
+import net.sf.cocmvc.ConventionalHandlerMapping;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.support.StaticApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of the mapping: introspection ({@code isHandler}/{@code getMappingForMethod}) alone,
+ * and the whole registration of the handler methods
+ *
+ * @author ywu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.apache.commons.logging.Log=org.apache.commons.logging.impl.NoOpLog")
+public class RegistrationBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int controllers;
+
+    @Param({"useSnakeCase=false", "useSnakeCase=true"})
+    private String options;
+
+    private List<Class<?>> controllerTypes;
+
+    private StaticApplicationContext context;
+
+    @Setup
+    public void setUp() throws Exception {
+        controllerTypes = SyntheticControllers.load(controllers);
+        context = SyntheticControllers.createContext(controllerTypes);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int introspect() {
+        IntrospectingHandlerMapping mapping = SyntheticControllers.configure(new IntrospectingHandlerMapping(), options);
+        int actions = 0;
+        for (Class<?> controllerType : controllerTypes) actions += mapping.introspect(controllerType);
+        return actions;
+    }
+
+    @Benchmark
+    public ConventionalHandlerMapping register() {
+        ConventionalHandlerMapping mapping = SyntheticControllers.configure(new ConventionalHandlerMapping(), options);
+        mapping.setApplicationContext(context);
+        mapping.afterPropertiesSet();
+        return mapping;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc.benchmark;
+
+import net.sf.cocmvc.ConventionalHandlerMapping;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Access to the synthetic controllers generated by the build
+ *
+ * @author ywu
+ */
+public class SyntheticControllers {
+
+    public static final String BASE_PACKAGE = "net.sf.cocmvc.benchmark.controllers";
+
+    private static final String INDEX = "controllers.txt";
+
+    /**
+     * The first {@code count} generated controllers, spread over all the modules
+     */
+    public static List<Class<?>> load(int count) throws IOException, ClassNotFoundException {
+        List<Class<?>> controllers = new ArrayList<Class<?>>(count);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                SyntheticControllers.class.getResourceAsStream(INDEX), "UTF-8"));
+        try {
+            String className;
+            while (controllers.size() < count && (className = reader.readLine()) != null)
+                controllers.add(Class.forName(className));
+        } finally {
+            reader.close();
+        }
+
+        if (controllers.size() < count)
+            throw new IllegalStateException("Only " + controllers.size() + " controllers generated, rebuild with -PcontrollerCount=" + count);
+        return controllers;
+    }
+
+    /**
+     * An application context with the given controllers as singletons
+     */
+    public static StaticApplicationContext createContext(List<Class<?>> controllers) {
+        StaticApplicationContext context = new StaticApplicationContext();
+        for (Class<?> controller : controllers) context.registerSingleton(controller.getName(), controller);
+        context.refresh();
+        return context;
+    }
+
+    /**
+     * Apply the options to the mapping, in the form of {@code property=value,property=value},
+     * set by name so that the benchmarks also run against the releases lacking some of the properties
+     */
+    public static <T extends ConventionalHandlerMapping> T configure(T mapping, String options) {
+        BeanWrapper wrapper = new BeanWrapperImpl(mapping);
+        wrapper.setPropertyValue("basePackage", BASE_PACKAGE);
+        for (String option : StringUtils.commaDelimitedListToStringArray(options)) {
+            String[] pair = StringUtils.split(option, "=");
+            if (pair == null) throw new IllegalArgumentException("Invalid option: " + option);
+            wrapper.setPropertyValue(pair[0].trim(), pair[1].trim());
+        }
+        return mapping;
+    }
+}
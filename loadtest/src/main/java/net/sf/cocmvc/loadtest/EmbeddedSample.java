@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.loadtest;
+
+import org.apache.tomcat.InstanceManager;
+import org.apache.tomcat.SimpleInstanceManager;
+import org.eclipse.jetty.annotations.ServletContainerInitializersStarter;
+import org.eclipse.jetty.apache.jsp.JettyJasperInitializer;
+import org.eclipse.jetty.plus.annotation.ContainerInitializer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.webapp.WebAppContext;
+
+import java.io.File;
+import java.util.Collections;
+
+/**
+ * The sample webapp in an embedded Jetty on localhost, with its own web.xml and dispatcher-servlet.xml,
+ * JSP views, and a filter
+ *
+ * @author ywu
+ */
+public class EmbeddedSample {
+
+    private final Server server;
+
+    private final ServerConnector connector;
+
+    /**
+     * @param webapp the webapp directory of the sample
+     * @param annotationDriven whether the dispatcher servlet loads the plain annotation-driven setup, instead of
+     *                         the {@code ConventionalHandlerMapping} of the sample
+     * @param maxThreads max number of the request threads
+     */
+    public EmbeddedSample(File webapp, boolean annotationDriven, int maxThreads) {
+        server = new Server(new QueuedThreadPool(maxThreads));
+        connector = new ServerConnector(server);
+        connector.setHost("127.0.0.1");
+        connector.setPort(0);
+        server.addConnector(connector);
+
+        WebAppContext context = new WebAppContext();
+        context.setContextPath("/");
+        context.setResourceBase(webapp.getAbsolutePath());
+        context.setDescriptor(new File(webapp, "WEB-INF/web.xml").getAbsolutePath());
+        context.addOverrideDescriptor(getResource("override-web.xml"));
+        if (annotationDriven) context.addOverrideDescriptor(getResource("annotation-driven-web.xml"));
+
+        // all the classes are on the classpath, the webapp has neither WEB-INF/classes nor WEB-INF/lib
+        context.setParentLoaderPriority(true);
+
+        // JSP support, see the embedded-jetty-jsp example of Jetty 9.2
+        File tempDir = new File(System.getProperty("java.io.tmpdir"), "cocmvc-loadtest");
+        tempDir.mkdirs();
+        context.setTempDirectory(tempDir);
+        context.setAttribute("javax.servlet.context.tempdir", tempDir);
+        context.setAttribute("org.eclipse.jetty.containerInitializers",
+                Collections.singletonList(new ContainerInitializer(new JettyJasperInitializer(), null)));
+        context.setAttribute(InstanceManager.class.getName(), new SimpleInstanceManager());
+        context.addBean(new ServletContainerInitializersStarter(context), true);
+
+        server.setHandler(context);
+    }
+
+    /**
+     * @return the local port
+     */
+    public int start() throws Exception {
+        server.start();
+        return connector.getLocalPort();
+    }
+
+    public void stop() throws Exception {
+        server.stop();
+    }
+
+    private static String getResource(String name) {
+        return EmbeddedSample.class.getResource("/loadtest/" + name).toExternalForm();
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.loadtest;
+
+import net.sf.cocmvc.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load: each thread sends a request to a random URL as soon as the previous one is responded,
+ * so the load adapts to the server, and the latencies are never queued by the generator
+ *
+ * @author ywu
+ */
+public class LoadGenerator {
+
+    private final List<URL> urls;
+
+    private final int threads;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private final CountDownLatch done;
+
+    private volatile boolean measuring;
+
+    private volatile boolean stopped;
+
+    public LoadGenerator(List<URL> urls, int threads) {
+        this.urls = urls;
+        this.threads = threads;
+        this.done = new CountDownLatch(threads);
+        // keep a connection alive for each thread, the default is 5
+        System.setProperty("http.maxConnections", String.valueOf(threads));
+    }
+
+    /**
+     * Start the threads generating the load, nothing is measured until {@link #measure(long)}
+     */
+    public void start() {
+        for (int i = 0; i < threads; i++) {
+            final Random random = new Random(i);
+            Thread worker = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        byte[] buffer = new byte[8192];
+                        while (!stopped) send(urls.get(random.nextInt(urls.size())), buffer);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "loadtest-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Measure the latencies for the given duration
+     *
+     * @return the measured duration in nanoseconds
+     */
+    public long measure(long durationMillis) throws InterruptedException {
+        histogram.reset();
+        errorCount.set(0);
+        measuring = true;
+        long start = System.nanoTime();
+
+        Thread.sleep(durationMillis);
+        measuring = false;
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Stop the threads, and wait for the requests in flight
+     */
+    public void stop() throws InterruptedException {
+        stopped = true;
+        done.await(10, TimeUnit.SECONDS);
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    private void send(URL url, byte[] buffer) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setUseCaches(false);
+            int status = connection.getResponseCode();
+
+            // the body is read to the end, so the connection is kept alive
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (in != null) {
+                try {
+                    while (in.read(buffer) >= 0) {
+                        // discarded
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+            ok = status == HttpURLConnection.HTTP_OK;
+        } catch (IOException e) {
+            ok = false;
+        }
+
+        if (!measuring) return;
+        histogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        if (!ok) errorCount.incrementAndGet();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.loadtest;
+
+import net.sf.cocmvc.metrics.LatencyHistogram;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts the sample webapp in an embedded Jetty, drives the synthetic controllers with a closed-loop load,
+ * and reports the throughput, the latency percentiles and the GC activity<br/>
+ *
+ * Options are system properties: {@code loadtest.mode} ({@code conventional} or {@code annotation}),
+ * {@code loadtest.threads}, {@code loadtest.warmup} and {@code loadtest.duration} (in seconds), and
+ * {@code loadtest.webapp}, the webapp directory of the sample. The server and the load generator share the JVM,
+ * so does the reported GC activity.
+ *
+ * @author ywu
+ */
+public class LoadTest {
+
+    private static final String URLS = "/loadtest/urls.txt";
+
+    public static void main(String[] args) throws Exception {
+        String mode = System.getProperty("loadtest.mode", "conventional");
+        if (!"conventional".equals(mode) && !"annotation".equals(mode))
+            throw new IllegalArgumentException("Unknown mode: " + mode + ", either conventional or annotation");
+        int threads = Integer.getInteger("loadtest.threads", 32);
+        int warmup = Integer.getInteger("loadtest.warmup", 10);
+        int duration = Integer.getInteger("loadtest.duration", 30);
+        File webapp = new File(System.getProperty("loadtest.webapp", "../sample/src/main/webapp"));
+
+        EmbeddedSample sample = new EmbeddedSample(webapp, "annotation".equals(mode), Math.max(threads * 2, 16));
+        int port = sample.start();
+        try {
+            List<URL> urls = loadUrls("http://127.0.0.1:" + port);
+            check(urls);
+
+            LoadGenerator generator = new LoadGenerator(urls, threads);
+            generator.start();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(warmup));
+
+            long gcCount = getGcCount(), gcTime = getGcTime();
+            long nanos = generator.measure(TimeUnit.SECONDS.toMillis(duration));
+            gcCount = getGcCount() - gcCount;
+            gcTime = getGcTime() - gcTime;
+            generator.stop();
+
+            report(mode, urls.size(), threads, nanos, generator.getHistogram(), generator.getErrorCount(), gcCount, gcTime);
+        } finally {
+            sample.stop();
+        }
+    }
+
+    private static List<URL> loadUrls(String base) throws IOException {
+        List<URL> urls = new ArrayList<URL>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(LoadTest.class.getResourceAsStream(URLS), "UTF-8"));
+        try {
+            for (String path = reader.readLine(); path != null; path = reader.readLine())
+                if (path.length() > 0) urls.add(new URL(base + path));
+        } finally {
+            reader.close();
+        }
+        return urls;
+    }
+
+    /*
+     * an action of each kind must be responded, otherwise the numbers mean nothing
+     */
+    private static void check(List<URL> urls) throws IOException {
+        for (URL url : urls.subList(0, Math.min(3, urls.size()))) {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            int status = connection.getResponseCode();
+            connection.disconnect();
+            if (status != HttpURLConnection.HTTP_OK) throw new IllegalStateException(url + " responded " + status);
+        }
+    }
+
+    private static void report(String mode, int urlCount, int threads, long nanos, LatencyHistogram histogram,
+                               long errorCount, long gcCount, long gcTime) {
+        double seconds = nanos / 1e9;
+        System.out.println();
+        System.out.printf("mode: %s, urls: %d, threads: %d, measured: %.1f s%n", mode, urlCount, threads, seconds);
+        System.out.printf("requests: %d, errors: %d, throughput: %.1f req/s%n",
+                histogram.getCount(), errorCount, histogram.getCount() / seconds);
+        System.out.printf("latency (us): mean %.0f, p50 %d, p99 %d, p999 %d, max %d%n", histogram.getMean(),
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+                histogram.getValueAtPercentile(99.9), histogram.getMax());
+        System.out.printf("gc: %d collections, %d ms (%.2f%% of the time)%n", gcCount, gcTime, gcTime / 10.0 / seconds);
+    }
+
+    private static long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) count += Math.max(0, gc.getCollectionCount());
+        return count;
+    }
+
+    private static long getGcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) time += Math.max(0, gc.getCollectionTime());
+        return time;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Generates the route manifest of the compiled classes, which is loaded by {@code ConventionalHandlerMapping}
+ * instead of introspecting the controllers reflectively at startup<br/>
+ *
+ * The manifest is a properties file located at {@value #MANIFEST_LOCATION}, each compiled class is listed by its
+ * binary name, with a value like {@code C;index();show(int)@;init()!}:
+ * <ul>
+ *     <li>the first token tells whether the class is a handler, {@code C} for a conventional controller,
+ *     {@code A} for a controller with type-level {@code @RequestMapping}, {@code !} for not a handler</li>
+ *     <li>followed by the public methods, a method without mark is a conventional action,
+ *     {@code @} marks an annotationed action, and {@code !} marks a method which is not an action</li>
+ * </ul>
+ *
+ * <p>The controller naming convention can be changed with the {@value #CONTROLLER_NAME_SUFFIX_OPTION} option.<p/>
+ *
+ * @author ywu
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions(RouteManifestProcessor.CONTROLLER_NAME_SUFFIX_OPTION)
+public class RouteManifestProcessor extends AbstractProcessor {
+
+    public static final String MANIFEST_LOCATION = "META-INF/cocmvc/routes.properties";
+
+    public static final String CONTROLLER_NAME_SUFFIX_OPTION = "cocmvc.controllerNameSuffix";
+
+    static final String CONTROLLER_NAME_SUFFIX_KEY = "@controllerNameSuffix";
+
+    private static final String NO_MAPPING = "net.sf.cocmvc.annotation.NoMapping";
+
+    private static final String REQUEST_MAPPING = "org.springframework.web.bind.annotation.RequestMapping";
+
+    private static final String CONTROLLER = "org.springframework.stereotype.Controller";
+
+    /**
+     * Same as the methods excluded by {@code ConventionalHandlerMapping}
+     */
+    private static final Pattern NON_ACTION_NAMES = Pattern.compile(
+            "(equals|hashCode|toString|clone|notify.*|wait|getClass)"           // methods declared in Object
+                    + "|(init|destroy)"                                         // common lifecycle methods
+                    + "|([sg]et(MetaClass|Property)|.*\\$.*|invokeMethod)");    // methods of groovy object
+
+    /**
+     * Manifest entries of all the processing rounds, sorted to produce a stable output
+     */
+    private final Map<String, String> routes = new TreeMap<String, String>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeManifest();
+        } else {
+            scan(ElementFilter.typesIn(roundEnv.getRootElements()));
+        }
+        return false;
+    }
+
+    private void scan(Collection<TypeElement> types) {
+        for (TypeElement type : types) {
+            if (type.getKind() == ElementKind.CLASS) routes.put(getBinaryName(type), describe(type));
+            scan(ElementFilter.typesIn(type.getEnclosedElements()));
+        }
+    }
+
+    /*
+     * same rules as ConventionalHandlerMapping#isHandler and ConventionalHandlerMapping#getMappingForMethod
+     */
+    private String describe(TypeElement type) {
+        boolean handler = !hasAnnotation(type, NO_MAPPING) && (type.getSimpleName().toString().endsWith(getControllerNameSuffix())
+                || hasAnnotation(type, CONTROLLER) || hasAnnotation(type, REQUEST_MAPPING));
+        if (!handler) return "!";
+
+        StringBuilder description = new StringBuilder(hasAnnotation(type, REQUEST_MAPPING) ? "A" : "C");
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            // methods declared in Object are never introspected for mappings
+            if (!method.getModifiers().contains(Modifier.PUBLIC) || isObject((TypeElement) method.getEnclosingElement())) continue;
+
+            description.append(';').append(getSignature(method));
+            if (NON_ACTION_NAMES.matcher(method.getSimpleName()).matches() || hasAnnotation(method, NO_MAPPING))
+                description.append('!');
+            else if (hasAnnotation(method, REQUEST_MAPPING))
+                description.append('@');
+        }
+        return description.toString();
+    }
+
+    private String getSignature(ExecutableElement method) {
+        StringBuilder signature = new StringBuilder(method.getSimpleName()).append('(');
+        for (Iterator<? extends VariableElement> it = method.getParameters().iterator(); it.hasNext(); ) {
+            signature.append(processingEnv.getTypeUtils().erasure(it.next().asType()));
+            if (it.hasNext()) signature.append(',');
+        }
+        return signature.append(')').toString();
+    }
+
+    /*
+     * same search as AnnotationUtils#findAnnotation(Class, Class): the type itself, its interfaces,
+     * annotations of its annotations, and its super classes
+     */
+    private boolean hasAnnotation(TypeElement type, String annotation) {
+        if (isAnnotationPresent(type, annotation)) return true;
+
+        for (TypeMirror iface : type.getInterfaces())
+            if (hasAnnotation(asTypeElement(iface), annotation)) return true;
+
+        if (type.getKind() != ElementKind.ANNOTATION_TYPE) {
+            for (AnnotationMirror mirror : processingEnv.getElementUtils().getAllAnnotationMirrors(type))
+                if (isAnnotationPresent(asTypeElement(mirror.getAnnotationType()), annotation)) return true;
+        }
+
+        TypeElement superclass = getSuperclass(type);
+        return superclass != null && hasAnnotation(superclass, annotation);
+    }
+
+    /*
+     * same search as AnnotationUtils#findAnnotation(Method, Class): the method itself (and annotations of its annotations),
+     * and the methods it overrides
+     */
+    private boolean hasAnnotation(ExecutableElement method, String annotation) {
+        if (isAnnotationPresent(method, annotation)) return true;
+
+        TypeElement declaringType = (TypeElement) method.getEnclosingElement();
+        for (TypeElement superType : getSuperTypes(declaringType)) {
+            for (ExecutableElement candidate : ElementFilter.methodsIn(superType.getEnclosedElements())) {
+                if (candidate.getSimpleName().equals(method.getSimpleName())
+                        && processingEnv.getElementUtils().overrides(method, candidate, declaringType)
+                        && isAnnotationPresent(candidate, annotation)) return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isAnnotationPresent(Element element, String annotation) {
+        for (AnnotationMirror mirror : processingEnv.getElementUtils().getAllAnnotationMirrors(element)) {
+            TypeElement annotationType = asTypeElement(mirror.getAnnotationType());
+            if (annotationType.getQualifiedName().contentEquals(annotation)) return true;
+
+            // annotations of an annotation on methods, see AnnotationUtils#getAnnotation(Method, Class)
+            if (element.getKind() == ElementKind.METHOD) {
+                for (AnnotationMirror meta : annotationType.getAnnotationMirrors())
+                    if (asTypeElement(meta.getAnnotationType()).getQualifiedName().contentEquals(annotation)) return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * super classes, and the interfaces directly implemented by the type or any of its super classes
+     */
+    private List<TypeElement> getSuperTypes(TypeElement type) {
+        List<TypeElement> superTypes = new ArrayList<TypeElement>();
+        for (TypeElement t = type; t != null; t = getSuperclass(t)) {
+            if (t != type) superTypes.add(t);
+            for (TypeMirror iface : t.getInterfaces()) superTypes.add(asTypeElement(iface));
+        }
+        return superTypes;
+    }
+
+    /*
+     * super class other than Object, or null
+     */
+    private TypeElement getSuperclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) return null;
+
+        TypeElement element = asTypeElement(superclass);
+        return isObject(element) ? null : element;
+    }
+
+    private boolean isObject(TypeElement type) {
+        return type.getQualifiedName().contentEquals(Object.class.getName());
+    }
+
+    private TypeElement asTypeElement(TypeMirror type) {
+        return (TypeElement) ((DeclaredType) type).asElement();
+    }
+
+    private String getBinaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private String getControllerNameSuffix() {
+        String suffix = processingEnv.getOptions().get(CONTROLLER_NAME_SUFFIX_OPTION);
+        return suffix != null ? suffix : "Controller";
+    }
+
+    private void writeManifest() {
+        if (routes.isEmpty()) return;
+
+        try {
+            FileObject manifest = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", MANIFEST_LOCATION);
+            Writer writer = new OutputStreamWriter(manifest.openOutputStream(), "UTF-8");
+            try {
+                writer.write("# Generated by " + getClass().getName() + ", do not edit\n");
+                writer.write(CONTROLLER_NAME_SUFFIX_KEY + '=' + getControllerNameSuffix() + '\n');
+                for (Map.Entry<String, String> route : routes.entrySet())
+                    writer.write(route.getKey() + '=' + route.getValue() + '\n');
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Failed to write the route manifest: " + e);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc.processor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.*;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class RouteManifestProcessorTest {
+
+    private File output;
+
+    @Before
+    public void setUp() throws Exception {
+        output = File.createTempFile("cocmvc", "");
+        output.delete();
+        output.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        delete(output);
+    }
+
+    @Test
+    public void testConventionalController() throws Exception {
+        Properties routes = compile(
+                source("test.PlainController",
+                        "package test; public class PlainController {" +
+                        "  public String index() { return null; }" +
+                        "  public void show(int id, String[] tags) {}" +
+                        "  public void init() {}" +
+                        "  @net.sf.cocmvc.annotation.NoMapping public void notAnAction() {}" +
+                        "  void notPublic() {}" +
+                        "}"));
+
+        String route = routes.getProperty("test.PlainController");
+        assertTrue(route, route.startsWith("C;"));
+        assertTrue(route, route.contains(";index();"));
+        assertTrue(route, route.contains(";show(int,java.lang.String[])"));
+        assertTrue(route, route.contains(";init()!"));
+        assertTrue(route, route.contains(";notAnAction()!"));
+        assertFalse(route, route.contains("hashCode"));
+        assertFalse(route, route.contains("notPublic"));
+        assertEquals("Controller", routes.getProperty("@controllerNameSuffix"));
+    }
+
+    @Test
+    public void testAnnotatedController() throws Exception {
+        Properties routes = compile(
+                source("test.Annotated",
+                        "package test; @org.springframework.web.bind.annotation.RequestMapping public class Annotated {" +
+                        "  @org.springframework.web.bind.annotation.RequestMapping public void action() {}" +
+                        "  public void conventional() {}" +
+                        "}"),
+                source("test.Stereotyped",
+                        "package test; @org.springframework.stereotype.Controller public class Stereotyped {" +
+                        "  public static class Nested {}" +
+                        "}"),
+                source("test.InheritedController",
+                        "package test; public class InheritedController extends Stereotyped {" +
+                        "  @Override public String toString() { return null; }" +
+                        "}"));
+
+        String route = routes.getProperty("test.Annotated");
+        assertTrue(route, route.startsWith("A;"));
+        assertTrue(route, route.contains(";action()@"));
+        assertTrue(route, route.contains(";conventional()"));
+        assertEquals("C", routes.getProperty("test.Stereotyped"));
+        assertEquals("C;toString()!", routes.getProperty("test.InheritedController"));
+        assertEquals("!", routes.getProperty("test.Stereotyped$Nested"));
+    }
+
+    @Test
+    public void testNoMappingController() throws Exception {
+        Properties routes = compile(
+                source("test.NotAController",
+                        "package test; @net.sf.cocmvc.annotation.NoMapping public class NotAController {" +
+                        "  public void index() {}" +
+                        "}"),
+                source("test.Service", "package test; public class Service { public void index() {} }"));
+
+        assertEquals("!", routes.getProperty("test.NotAController"));
+        assertEquals("!", routes.getProperty("test.Service"));
+    }
+
+    @Test
+    public void testControllerNameSuffix() throws Exception {
+        Properties routes = compile(Arrays.asList("-A" + RouteManifestProcessor.CONTROLLER_NAME_SUFFIX_OPTION + "=Action"),
+                source("test.IndexAction", "package test; public class IndexAction { public void index() {} }"));
+
+        assertTrue(routes.getProperty("test.IndexAction").startsWith("C;"));
+        assertEquals("Action", routes.getProperty("@controllerNameSuffix"));
+    }
+
+    private Properties compile(JavaFileObject... sources) throws Exception {
+        return compile(new ArrayList<String>(), sources);
+    }
+
+    /*
+     * compile the sources along with stubs of the annotations, and load the generated manifest
+     */
+    private Properties compile(List<String> options, JavaFileObject... sources) throws Exception {
+        List<JavaFileObject> units = new ArrayList<JavaFileObject>(Arrays.asList(sources));
+        units.add(source("net.sf.cocmvc.annotation.NoMapping",
+                "package net.sf.cocmvc.annotation; @java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME) public @interface NoMapping {}"));
+        units.add(source("org.springframework.stereotype.Controller",
+                "package org.springframework.stereotype; @java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME) public @interface Controller {}"));
+        units.add(source("org.springframework.web.bind.annotation.RequestMapping",
+                "package org.springframework.web.bind.annotation; @java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME) public @interface RequestMapping {}"));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Arrays.asList(output));
+
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null, units);
+        task.setProcessors(Arrays.asList(new RouteManifestProcessor()));
+        assertTrue(task.call());
+        fileManager.close();
+
+        Properties routes = new Properties();
+        InputStream in = new FileInputStream(new File(output, RouteManifestProcessor.MANIFEST_LOCATION));
+        try {
+            routes.load(in);
+        } finally {
+            in.close();
+        }
+        return routes;
+    }
+
+    private static JavaFileObject source(String className, final String code) {
+        URI uri = URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension);
+        return new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) for (File child : children) delete(child);
+        file.delete();
+    }
+}
@@ -16,15 +16,58 @@
 
 package net.sf.cocmvc;
 
+import org.springframework.beans.factory.BeanFactoryUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.method.HandlerMethodSelector;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.HandlerMethodArgumentResolverComposite;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandlerComposite;
 import org.springframework.web.servlet.mvc.condition.*;
 import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.util.UrlPathHelper;
+import org.springframework.web.util.WebUtils;
 import net.sf.cocmvc.annotation.NoMapping;
+import net.sf.cocmvc.async.AsyncActionReturnValueHandler;
+import net.sf.cocmvc.async.AsyncRejectionPolicy;
+import net.sf.cocmvc.async.AsyncResult;
+import net.sf.cocmvc.stream.StreamFormat;
+import net.sf.cocmvc.stream.StreamingReturnValueHandler;
+import net.sf.cocmvc.bulkhead.BulkheadInterceptor;
+import net.sf.cocmvc.bulkhead.ModuleBulkheads;
+import net.sf.cocmvc.cache.ResponseCache;
+import net.sf.cocmvc.cache.ResponseCacheInterceptor;
+import net.sf.cocmvc.invoke.ActionInvokers;
+import net.sf.cocmvc.metrics.ActionMetrics;
+import net.sf.cocmvc.metrics.ActionMetricsInterceptor;
+import net.sf.cocmvc.timing.StageTimer;
+import net.sf.cocmvc.timing.StageTiming;
+import net.sf.cocmvc.timing.StageTimingInterceptor;
+import net.sf.cocmvc.timing.TimedArgumentResolver;
+import net.sf.cocmvc.timing.TimedReturnValueHandler;
+import net.sf.cocmvc.upload.UploadInterceptor;
+import net.sf.cocmvc.upload.UploadedBodyArgumentResolver;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.*;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
 
 import static org.springframework.core.annotation.AnnotationUtils.findAnnotation;
 
@@ -38,7 +81,20 @@ import static org.springframework.core.annotation.AnnotationUtils.findAnnotation
  *
  * @author ywu
  */
-public class ConventionalHandlerMapping extends RequestMappingHandlerMapping {
+public class ConventionalHandlerMapping extends RequestMappingHandlerMapping
+        implements ApplicationListener<ContextRefreshedEvent>, DisposableBean {
+
+    /**
+     * Name of the request attribute holding the precomputed view name of the matched action, if available
+     */
+    public static final String VIEW_NAME_ATTRIBUTE = ConventionalHandlerMapping.class.getName() + ".viewName";
+
+    private static final Map<String, String> DEFAULT_REQUEST_METHOD_RULES = new LinkedHashMap<String, String>();
+
+    static {
+        DEFAULT_REQUEST_METHOD_RULES.put("index|list|show|search|view", "GET,HEAD");
+        DEFAULT_REQUEST_METHOD_RULES.put("save|create|update|delete|remove", "POST");
+    }
 
     /**
      * Controller naming convention, default is 'XxxController'
@@ -46,61 +102,1472 @@ public class ConventionalHandlerMapping extends RequestMappingHandlerMapping {
     private String controllerNameSuffix = "Controller";
 
     /**
-     * Use snake-case URL, default is false (use camel-case)
+     * Use snake-case URL, default is false (use camel-case)
+     */
+    private boolean useSnakeCase = false;
+
+    /**
+     * Whether to create mapping for annotationed methods, default is true, set to false if producing duplicated mappings
+     */
+    private boolean mapAnnotationedMethod = true;
+
+    /**
+     * Base package to compute the module name
+     */
+    private String basePackage;
+
+    /**
+     * Whether to restrict the HTTP methods of the conventional actions by their names, default is false (any method)
+     */
+    private boolean inferRequestMethods = false;
+
+    /**
+     * Rules to infer the HTTP methods of the conventional actions, the first rule matching the method name applies
+     */
+    private Map<Pattern, RequestMethod[]> requestMethodRules = createRequestMethodRules(DEFAULT_REQUEST_METHOD_RULES);
+
+    /**
+     * Whether to look up handlers through a segment based route tree, default is false (scan all mappings)
+     */
+    private boolean useRouteTree = false;
+
+    /**
+     * Whether to resolve literal paths against the raw request URI, default is false
+     */
+    private boolean useLiteralPathLookup = false;
+
+    /**
+     * Whether to reject the lookup paths which can not match any route before looking them up, default is false
+     */
+    private boolean useRouteFilter = false;
+
+    /**
+     * Max number of cached lookup results, default is 0 (no caching)
+     */
+    private int lookupCacheSize = 0;
+
+    /**
+     * Resolved handler methods keyed by HTTP method and lookup path
+     */
+    private LruCache<String, Match> lookupCache;
+
+    /**
+     * Number of threads introspecting controllers at startup, default is 1 (sequential)
+     */
+    private int introspectionParallelism = 1;
+
+    /**
+     * Shadows the private flag of the super class, to scan the same beans in parallel introspection
+     */
+    private boolean detectHandlerMethodsInAncestorContexts = false;
+
+    /**
+     * Whether to defer the introspection of conventional controllers to the first request, default is false
+     */
+    private boolean lazyIntrospection = false;
+
+    /**
+     * Conventional controllers not introspected yet, indexed by their controller paths, only available in lazy mode
+     */
+    private RouteTree<PendingController> pendingControllers;
+
+    /**
+     * Number of controllers not introspected yet
+     */
+    private volatile int pendingCount;
+
+    /**
+     * Statistics of the mapped actions, null if not enabled
+     */
+    private ActionMetrics actionMetrics;
+
+    /**
+     * Cache of the rendered responses of GET actions, null if not enabled
+     */
+    private ResponseCache responseCache;
+
+    /**
+     * Limits of the in-flight requests of each module, null if not enabled
+     */
+    private ModuleBulkheads moduleBulkheads;
+
+    /**
+     * Generated invokers of the mapped actions, null if not enabled
+     */
+    private ActionInvokers actionInvokers;
+
+    /**
+     * Timing of the dispatch stages of the sampled requests, null if not enabled
+     */
+    private StageTiming stageTiming;
+
+    /**
+     * File to save the registered mappings, and to restore them on the next start, null if not enabled
+     */
+    private File routeSnapshotFile;
+
+    /**
+     * Whether to analyze the registered routes at startup and log the report, default is false
+     */
+    private boolean analyzeRoutes = false;
+
+    /**
+     * File to write the route report in JSON at startup, null if not enabled
+     */
+    private File routeReportFile;
+
+    /**
+     * Whether to consult the compile-time route manifest before introspecting controllers, default is false
+     */
+    private boolean useRouteManifest = false;
+
+    /**
+     * The loaded route manifest, null if not enabled
+     */
+    private RouteManifest routeManifest;
+
+    /**
+     * Snapshot of the registered mappings, only available if any of the lookup optimizations is enabled
+     */
+    private volatile RouteTable routeTable;
+
+    /**
+     * Whether to precompute the view names of the conventional actions, default is false
+     */
+    private boolean precomputeViewNames = false;
+
+    /**
+     * Whether the lookup path is resolved by a default configured UrlPathHelper
+     */
+    private boolean defaultUrlPathHelper = true;
+
+    /**
+     * Precomputed view names of the conventional actions, null if not enabled
+     */
+    private Map<HandlerMethod, String> viewNames;
+
+    /**
+     * Whether to share the equal conditions and pattern strings among the registered mappings, default is false
+     */
+    private boolean canonicalizeMappings = false;
+
+    /**
+     * Registry of the shared conditions, null if not enabled
+     */
+    private MappingCanonicalizer mappingCanonicalizer;
+
+    /**
+     * Whether to run the actions returning a Callable asynchronously, default is false
+     */
+    private boolean useAsyncActions = false;
+
+    /**
+     * Executor running the asynchronous actions, default is null (a bounded pool of {@code asyncPoolSize} threads)
+     */
+    private ExecutorService asyncExecutor;
+
+    /**
+     * Number of threads running the asynchronous actions, default is 16
+     */
+    private int asyncPoolSize = 16;
+
+    /**
+     * Max number of asynchronous actions waiting for a thread, default is 1000
+     */
+    private int asyncQueueCapacity = 1000;
+
+    /**
+     * Timeout of the asynchronous actions in milliseconds, default is 30000
+     */
+    private long asyncTimeout = 30000;
+
+    /**
+     * What to do with the asynchronous actions rejected by the executor, default is ABORT (503 Service Unavailable)
+     */
+    private AsyncRejectionPolicy asyncRejectionPolicy = AsyncRejectionPolicy.ABORT;
+
+    /**
+     * The default executor of the asynchronous actions, shut down with the mapping
+     */
+    private ExecutorService defaultAsyncExecutor;
+
+    private AsyncActionReturnValueHandler asyncReturnValueHandler;
+
+    /**
+     * Whether to stream the items returned by the actions as an Iterator or an ItemProducer, default is false
+     */
+    private boolean useStreamingActions = false;
+
+    /**
+     * Size of the buffer of a streamed response in chars, default is 8192
+     */
+    private int streamBufferSize = 8192;
+
+    /**
+     * Format of the streamed items, if not told by the action or the request path, default is JSON_LINES
+     */
+    private StreamFormat streamFormat = StreamFormat.JSON_LINES;
+
+    private StreamingReturnValueHandler streamingReturnValueHandler;
+
+    /**
+     * Whether to read the request body of the actions taking an UploadedBody before calling them, default is false
+     */
+    private boolean useUploadActions = false;
+
+    /**
+     * Max size of an uploaded body kept in memory in bytes, default is 65536
+     */
+    private int uploadMemoryThreshold = 65536;
+
+    /**
+     * Max size of an uploaded body in bytes, default is -1 (unlimited)
+     */
+    private long uploadMaxSize = -1;
+
+    /**
+     * Timeout of reading an uploaded body in milliseconds, default is 60000
+     */
+    private long uploadTimeout = 60000;
+
+    /**
+     * Directory of the uploaded bodies written to files, default is null (the default temporary directory)
+     */
+    private File uploadDirectory;
+
+    /**
+     * Controller naming convention, the suffix will be removed before producing mapping, default is 'Controller'
+     */
+    public void setControllerNameSuffix(String controllerNameSuffix) {
+        this.controllerNameSuffix = controllerNameSuffix;
+    }
+
+    /**
+     * Use snake-case URL, default is false (use camel-case)
+     */
+    public void setUseSnakeCase(boolean useSnakeCase) {
+        this.useSnakeCase = useSnakeCase;
+    }
+
+    /**
+     * Whether to create mapping for annotationed methods, default is true, set to false if producing duplicated mappings
+     */
+    public void setMapAnnotationedMethod(boolean mapAnnotationedMethod) {
+        this.mapAnnotationedMethod = mapAnnotationedMethod;
+    }
+
+    /**
+     * Base package to compute the module name
+     */
+    public void setBasePackage(String basePackage) {
+        this.basePackage = basePackage;
+    }
+
+    /**
+     * Whether to restrict the HTTP methods of the conventional actions by their names, default is false (any method).
+     * The route table is partitioned by HTTP method if enabled, a lookup only examines the mappings accepting the method
+     * of the request
+     */
+    public void setInferRequestMethods(boolean inferRequestMethods) {
+        this.inferRequestMethods = inferRequestMethods;
+    }
+
+    /**
+     * Rules to infer the HTTP methods of the conventional actions, keyed by the regex of the method names, with the
+     * comma separated HTTP methods as values, e.g. {@code list|show=GET,HEAD}. The first matching rule applies, the
+     * actions matching none accept any method. Defaults to GET and HEAD for {@code index|list|show|search|view},
+     * and POST for {@code save|create|update|delete|remove}
+     */
+    public void setRequestMethodRules(Map<String, String> requestMethodRules) {
+        this.requestMethodRules = createRequestMethodRules(requestMethodRules);
+    }
+
+    /**
+     * Whether to look up handlers through a segment based route tree, default is false (scan all mappings).
+     * Only takes effect with an {@link AntPathMatcher}, the matching semantics are the same as the default lookup
+     */
+    public void setUseRouteTree(boolean useRouteTree) {
+        this.useRouteTree = useRouteTree;
+    }
+
+    /**
+     * Whether to resolve the literal paths of unconditional mappings (e.g. conventional actions) against the raw
+     * request URI before the lookup path is extracted, default is false. Only exact matches are resolved this way,
+     * falling back to the default lookup for encoded URIs, path parameters, includes, suffix patterns, etc.
+     * Not available with custom UrlPathHelper settings
+     */
+    public void setUseLiteralPathLookup(boolean useLiteralPathLookup) {
+        this.useLiteralPathLookup = useLiteralPathLookup;
+    }
+
+    /**
+     * Whether to reject the lookup paths which can not match any route before looking them up, default is false.
+     * The leading literal segments of the URL patterns are kept in a Bloom filter, so the paths of no route
+     * (e.g. requested by scanners) are rejected in constant time, a few of them may still be looked up.
+     * Only takes effect with an {@link AntPathMatcher}, and if no route begins with a wildcard segment
+     */
+    public void setUseRouteFilter(boolean useRouteFilter) {
+        this.useRouteFilter = useRouteFilter;
+    }
+
+    /**
+     * Max number of cached lookup results, default is 0 (no caching).
+     * Lookups depending on request params, headers or media types are never cached
+     */
+    public void setLookupCacheSize(int lookupCacheSize) {
+        this.lookupCacheSize = lookupCacheSize;
+    }
+
+    /**
+     * The lookup results cache, to inspect the hit/miss/eviction counters, null if not enabled
+     */
+    public LruCache<String, ?> getLookupCache() {
+        return lookupCache;
+    }
+
+    /**
+     * Whether to consult the compile-time route manifest (generated by the spring-cocmvc-processor) before
+     * introspecting controllers, default is false. Classes and methods missing from the manifest are introspected as usual
+     */
+    public void setUseRouteManifest(boolean useRouteManifest) {
+        this.useRouteManifest = useRouteManifest;
+    }
+
+    /**
+     * Number of threads introspecting controllers at startup, default is 1 (sequential).
+     * Mappings are still registered in the order of the beans, so conflicts are reported the same way
+     */
+    public void setIntrospectionParallelism(int introspectionParallelism) {
+        this.introspectionParallelism = introspectionParallelism;
+    }
+
+    /**
+     * Whether to defer the introspection of conventional controllers to the first request reaching their paths,
+     * default is false. Controllers with a type-level {@code @RequestMapping} are always introspected at startup.
+     * In lazy mode, {@link #getHandlerMethods()} only returns the introspected mappings, and conflicts of a
+     * controller are reported by the first request reaching it
+     */
+    public void setLazyIntrospection(boolean lazyIntrospection) {
+        this.lazyIntrospection = lazyIntrospection;
+    }
+
+    /**
+     * Collect the request count, error count and latencies of each mapped action, keyed by the conventional
+     * action name {@code <module>/<controller>/<action>}, default is null (not collected)
+     */
+    public void setActionMetrics(ActionMetrics actionMetrics) {
+        this.actionMetrics = actionMetrics;
+    }
+
+    /**
+     * Cache the rendered responses of the GET actions annotated with {@code @CacheResponse}, or matching the
+     * conventional action pattern of the cache, default is null (not cached). Requires a {@link net.sf.cocmvc.cache.ResponseCacheFilter}
+     * mapped in front of the {@code DispatcherServlet}
+     */
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Limit the in-flight requests of each module, the requests over the limit are responded with
+     * 503 Service Unavailable, default is null (unlimited)
+     */
+    public void setModuleBulkheads(ModuleBulkheads moduleBulkheads) {
+        this.moduleBulkheads = moduleBulkheads;
+    }
+
+    /**
+     * Generate the invokers of the eligible actions while registering them, used by a
+     * {@link net.sf.cocmvc.invoke.DirectActionHandlerAdapter} sharing the same instance
+     */
+    public void setActionInvokers(ActionInvokers actionInvokers) {
+        this.actionInvokers = actionInvokers;
+    }
+
+    /**
+     * Whether to share the equal conditions and pattern strings among the registered mappings, instead of keeping
+     * the instances created for each of them, default is false. Saves memory with lots of actions, mostly empty
+     * or identical conditions, the estimated savings are logged at startup
+     */
+    public void setCanonicalizeMappings(boolean canonicalizeMappings) {
+        this.canonicalizeMappings = canonicalizeMappings;
+    }
+
+    /**
+     * Time the lookup, argument resolution, action, return value handling and rendering of a sample of the requests,
+     * reported in the {@code Server-Timing} header and the access log, default is null (not timed)
+     */
+    public void setStageTiming(StageTiming stageTiming) {
+        this.stageTiming = stageTiming;
+    }
+
+    /**
+     * File to save the registered mappings, they are restored on the next start without introspecting the controllers,
+     * as long as the mapping settings, the beans and their classes are not changed. Not available in lazy mode,
+     * or with custom request conditions, default is null (not enabled)
+     */
+    public void setRouteSnapshotFile(File routeSnapshotFile) {
+        this.routeSnapshotFile = routeSnapshotFile;
+    }
+
+    /**
+     * Whether to analyze the registered routes at startup and log the report, default is false.
+     * The lookup cost, the overlapping and shadowed routes and the naming collisions are reported, see {@link RouteReport}
+     */
+    public void setAnalyzeRoutes(boolean analyzeRoutes) {
+        this.analyzeRoutes = analyzeRoutes;
+    }
+
+    /**
+     * File to write the route report in JSON at startup, e.g. to be checked by the CI builds, null if not enabled
+     */
+    public void setRouteReportFile(File routeReportFile) {
+        this.routeReportFile = routeReportFile;
+    }
+
+    /**
+     * Analyze the currently registered routes, lazily introspected controllers are included only if already introspected
+     */
+    public RouteReport analyzeRoutes() {
+        return RouteReport.analyze(getHandlerMethods(), getPathMatcher());
+    }
+
+    /**
+     * Whether to precompute the view names of the actions mapped to their conventional URL, default is false.
+     * The view name of a matched action is exposed as the {@link #VIEW_NAME_ATTRIBUTE} request attribute,
+     * which is read back by {@link ConventionalViewNameTranslator}
+     */
+    public void setPrecomputeViewNames(boolean precomputeViewNames) {
+        this.precomputeViewNames = precomputeViewNames;
+    }
+
+    /**
+     * Whether to run the actions returning a {@link Callable} asynchronously, default is false.
+     * The container thread is released once the action returns, and the result is handled by dispatching the request
+     * again, which requires the Servlet 3 async support of the {@code DispatcherServlet} and its filters.
+     * A returned {@link Future} is not run asynchronously, waiting for it would hold an executor thread per request.
+     * The return value handler is installed to the {@code RequestMappingHandlerAdapter} beans of the context
+     */
+    public void setUseAsyncActions(boolean useAsyncActions) {
+        this.useAsyncActions = useAsyncActions;
+    }
+
+    /**
+     * Executor running the asynchronous actions, e.g. a virtual-thread executor, default is null
+     * (a bounded pool of {@code asyncPoolSize} threads). A given executor is not shut down by the mapping
+     */
+    public void setAsyncExecutor(ExecutorService asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Number of threads running the asynchronous actions, default is 16, ignored if an executor is given
+     */
+    public void setAsyncPoolSize(int asyncPoolSize) {
+        this.asyncPoolSize = asyncPoolSize;
+    }
+
+    /**
+     * Max number of asynchronous actions waiting for a thread, default is 1000, ignored if an executor is given
+     */
+    public void setAsyncQueueCapacity(int asyncQueueCapacity) {
+        this.asyncQueueCapacity = asyncQueueCapacity;
+    }
+
+    /**
+     * Timeout of the asynchronous actions in milliseconds, default is 30000, the container's default if not positive.
+     * A timed out action is cancelled, and responded with 503 Service Unavailable
+     */
+    public void setAsyncTimeout(long asyncTimeout) {
+        this.asyncTimeout = asyncTimeout;
+    }
+
+    /**
+     * What to do with the asynchronous actions rejected by the executor, default is ABORT (503 Service Unavailable)
+     */
+    public void setAsyncRejectionPolicy(AsyncRejectionPolicy asyncRejectionPolicy) {
+        this.asyncRejectionPolicy = asyncRejectionPolicy;
+    }
+
+    /**
+     * Return value handler of the actions returning a {@link Callable}, which are run asynchronously
+     * with the settings of this mapping. Only needed to be registered manually if the handler adapter is not a bean
+     * of the context, it should precede the built-in handlers to handle {@code @ResponseBody} actions
+     */
+    public synchronized AsyncActionReturnValueHandler getAsyncReturnValueHandler() {
+        if (asyncReturnValueHandler == null) {
+            ExecutorService executor = asyncExecutor;
+            if (executor == null) {
+                CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("cocmvc-async-");
+                threadFactory.setDaemon(true);
+                defaultAsyncExecutor = new ThreadPoolExecutor(asyncPoolSize, asyncPoolSize, 0, TimeUnit.MILLISECONDS,
+                        asyncQueueCapacity > 0 ? new LinkedBlockingQueue<Runnable>(asyncQueueCapacity) : new SynchronousQueue<Runnable>(),
+                        threadFactory);
+                executor = defaultAsyncExecutor;
+            }
+            asyncReturnValueHandler = new AsyncActionReturnValueHandler(executor, asyncTimeout, asyncRejectionPolicy);
+        }
+        return asyncReturnValueHandler;
+    }
+
+    /**
+     * Whether to stream the items returned by the actions as an {@link Iterator}, an {@link net.sf.cocmvc.stream.ItemProducer},
+     * or an {@link Iterable} with {@link net.sf.cocmvc.annotation.StreamResponse}, default is false.
+     * The items are written to the response one by one, through a buffer of {@code streamBufferSize}.
+     * The return value handler is installed to the {@code RequestMappingHandlerAdapter} beans of the context
+     */
+    public void setUseStreamingActions(boolean useStreamingActions) {
+        this.useStreamingActions = useStreamingActions;
+    }
+
+    /**
+     * Size of the buffer of a streamed response in chars, default is 8192
+     */
+    public void setStreamBufferSize(int streamBufferSize) {
+        this.streamBufferSize = streamBufferSize;
+    }
+
+    /**
+     * Format of the streamed items, if not told by the annotation of the action or the extension of the request path,
+     * default is JSON_LINES
+     */
+    public void setStreamFormat(StreamFormat streamFormat) {
+        this.streamFormat = streamFormat;
+    }
+
+    /**
+     * Whether to read the request body of the upload actions, the ones taking an {@link net.sf.cocmvc.upload.UploadedBody},
+     * before calling them, default is false. The body is read with the non-blocking I/O of Servlet 3.1, releasing
+     * the container thread meanwhile, then the request is dispatched again to call the action, which requires the
+     * async support of the {@code DispatcherServlet} and its filters. The argument resolver is installed to the
+     * {@code RequestMappingHandlerAdapter} beans of the context
+     */
+    public void setUseUploadActions(boolean useUploadActions) {
+        this.useUploadActions = useUploadActions;
+    }
+
+    /**
+     * Max size of an uploaded body kept in memory in bytes, larger ones are written to a temporary file, default is 65536
+     */
+    public void setUploadMemoryThreshold(int uploadMemoryThreshold) {
+        this.uploadMemoryThreshold = uploadMemoryThreshold;
+    }
+
+    /**
+     * Max size of an uploaded body in bytes, larger ones are responded with 413 Request Entity Too Large,
+     * default is -1 (unlimited)
+     */
+    public void setUploadMaxSize(long uploadMaxSize) {
+        this.uploadMaxSize = uploadMaxSize;
+    }
+
+    /**
+     * Timeout of reading an uploaded body in milliseconds, the container's default if not positive, default is 60000
+     */
+    public void setUploadTimeout(long uploadTimeout) {
+        this.uploadTimeout = uploadTimeout;
+    }
+
+    /**
+     * Directory of the uploaded bodies written to files, default is null (the default temporary directory)
+     */
+    public void setUploadDirectory(File uploadDirectory) {
+        this.uploadDirectory = uploadDirectory;
+    }
+
+    /**
+     * Return value handler of the actions streaming their items, with the settings of this mapping. Only needed
+     * to be registered manually if the handler adapter is not a bean of the context
+     */
+    public synchronized StreamingReturnValueHandler getStreamingReturnValueHandler() {
+        if (streamingReturnValueHandler == null)
+            streamingReturnValueHandler = new StreamingReturnValueHandler(streamBufferSize, streamFormat);
+        return streamingReturnValueHandler;
+    }
+
+    @Override
+    public void setAlwaysUseFullPath(boolean alwaysUseFullPath) {
+        super.setAlwaysUseFullPath(alwaysUseFullPath);
+        this.defaultUrlPathHelper = false;
+    }
+
+    @Override
+    public void setUrlDecode(boolean urlDecode) {
+        super.setUrlDecode(urlDecode);
+        this.defaultUrlPathHelper = false;
+    }
+
+    @Override
+    public void setUrlPathHelper(UrlPathHelper urlPathHelper) {
+        super.setUrlPathHelper(urlPathHelper);
+        this.defaultUrlPathHelper = false;
+    }
+
+    @Override
+    public void setDetectHandlerMethodsInAncestorContexts(boolean detectHandlerMethodsInAncestorContexts) {
+        super.setDetectHandlerMethodsInAncestorContexts(detectHandlerMethodsInAncestorContexts);
+        this.detectHandlerMethodsInAncestorContexts = detectHandlerMethodsInAncestorContexts;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (useRouteManifest) loadRouteManifest();
+        if (precomputeViewNames) {
+            if (defaultUrlPathHelper) viewNames = new ConcurrentHashMap<HandlerMethod, String>();
+            else logger.warn("Precomputed view names require the default UrlPathHelper settings, not enabled");
+        }
+        if (useLiteralPathLookup && !defaultUrlPathHelper) {
+            logger.warn("Literal path lookup requires the default UrlPathHelper settings, not enabled");
+            useLiteralPathLookup = false;
+        }
+        if (canonicalizeMappings) {
+            mappingCanonicalizer = new MappingCanonicalizer(getUrlPathHelper(), getPathMatcher(), useSuffixPatternMatch(),
+                    useTrailingSlashMatch());
+        }
+        super.afterPropertiesSet();
+    }
+
+    /**
+     * Same as the inherited one, but the mappings are restored from the route snapshot if it's still valid,
+     * conventional controllers are deferred in lazy mode, and the handler types are introspected on a pool
+     * of {@code introspectionParallelism} threads
+     */
+    @Override
+    protected void initHandlerMethods() {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Looking for request mappings in application context: " + getApplicationContext());
+        }
+
+        String[] beanNames = getCandidateBeanNames();
+        byte[] fingerprint = routeSnapshotFile != null ? fingerprintBeans(beanNames) : null;
+        if (fingerprint == null || !registerSnapshotRoutes(fingerprint)) {
+            if (lazyIntrospection) beanNames = deferControllers(beanNames);
+
+            if (introspectionParallelism > 1) {
+                detectHandlerMethodsInParallel(beanNames);
+            } else {
+                for (String beanName : beanNames) {
+                    if (isHandler(getApplicationContext().getType(beanName))) detectHandlerMethods(beanName);
+                }
+            }
+
+            if (fingerprint != null) saveSnapshot(fingerprint);
+        }
+        handlerMethodsInitialized(super.getHandlerMethods());
+    }
+
+    @Override
+    protected boolean isHandler(Class<?> beanType) {
+        RouteManifest.HandlerKind kind = routeManifest != null ? routeManifest.getHandlerKind(beanType) : null;
+        if (kind != null) return kind != RouteManifest.HandlerKind.NONE;
+
+        return findAnnotation(beanType, NoMapping.class) == null &&
+                (beanType.getSimpleName().endsWith(controllerNameSuffix) || super.isHandler(beanType));
+    }
+
+    @Override
+    protected RequestMappingInfo getMappingForMethod(Method method, Class<?> handlerType) {
+        if (!Modifier.isPublic(method.getModifiers())) return null;
+
+        RouteManifest.ActionKind kind = routeManifest != null ? routeManifest.getActionKind(method, handlerType) : null;
+        if (kind == RouteManifest.ActionKind.NONE || kind == null && !isAction(method)) return null;
+
+        // create mapping info for method and type level, and combine them
+        RequestMappingInfo actionMapping = kind == RouteManifest.ActionKind.CONVENTIONAL ?
+                createConventionalActionMapping(method) : createActionMapping(method);
+        if (actionMapping == null) return null;
+
+        return canonicalize(createControllerMapping(handlerType).combine(actionMapping));
+    }
+
+    @Override
+    protected void extendInterceptors(List<Object> interceptors) {
+        // before the configured interceptors, which only see the dispatch calling the upload action
+        if (useUploadActions)
+            interceptors.add(0, new UploadInterceptor(uploadMemoryThreshold, uploadMaxSize, uploadTimeout, uploadDirectory));
+        if (actionMetrics != null) interceptors.add(new ActionMetricsInterceptor(actionMetrics));
+        if (responseCache != null) interceptors.add(new ResponseCacheInterceptor(responseCache));
+        if (moduleBulkheads != null) interceptors.add(new BulkheadInterceptor(moduleBulkheads));
+        if (stageTiming != null) interceptors.add(new StageTimingInterceptor(stageTiming));
+    }
+
+    @Override
+    protected void registerHandlerMethod(Object handler, Method method, RequestMappingInfo mapping) {
+        super.registerHandlerMethod(handler, method, mapping);
+        if (actionMetrics == null && responseCache == null && moduleBulkheads == null && actionInvokers == null &&
+                viewNames == null) return;
+
+        registerActionFeatures(getHandlerType(handler), method, mapping, super.getHandlerMethods().get(mapping));
+    }
+
+    @Override
+    protected void handlerMethodsInitialized(Map<RequestMappingInfo, HandlerMethod> handlerMethods) {
+        super.handlerMethodsInitialized(handlerMethods);
+        if (lookupCacheSize > 0) lookupCache = new LruCache<String, Match>(lookupCacheSize);
+        if (useRouteTree || useLiteralPathLookup || lookupCache != null || pendingControllers != null || inferRequestMethods ||
+                useRouteFilter)
+            publishRoutes(handlerMethods);
+        if (analyzeRoutes || routeReportFile != null) reportRoutes();
+        if (mappingCanonicalizer != null && logger.isInfoEnabled()) logger.info(mappingCanonicalizer);
+        if (mappingCanonicalizer != null && pendingCount == 0) mappingCanonicalizer.release();
+    }
+
+    /**
+     * Same as the inherited one, but the literal paths are resolved against the raw request URI,
+     * without extracting the lookup path, the results of asynchronous actions are handled, and the lookup
+     * of a sampled request is timed
      */
-    private boolean useSnakeCase = false;
+    @Override
+    protected HandlerMethod getHandlerInternal(HttpServletRequest request) throws Exception {
+        // the request dispatched again with the result of an asynchronous action
+        AsyncResult asyncResult = AsyncResult.takeResult(request);
+        if (asyncResult != null) return asyncResult.createHandlerMethod();
+
+        StageTimer timer = stageTiming != null ? stageTiming.start(request) : null;
+        if (timer == null) return getHandlerMethod(request);
+
+        try {
+            return getHandlerMethod(request);
+        } finally {
+            timer.lookupEnded(System.nanoTime());
+        }
+    }
+
+    private HandlerMethod getHandlerMethod(HttpServletRequest request) throws Exception {
+        RouteTable routes = this.routeTable;
+        LiteralRoutes<RequestMappingInfo> literalRoutes = routes != null && pendingCount == 0 ? routes.getLiteralRoutes() : null;
+        int index = literalRoutes != null ? findLiteralRoute(literalRoutes, request) : -1;
+        if (index < 0) return super.getHandlerInternal(request);
+
+        // the default lookup reports the HTTP method not supported
+        RequestMappingInfo mapping = literalRoutes.getValue(index);
+        if (!acceptsMethod(mapping, request.getMethod())) return super.getHandlerInternal(request);
+
+        String lookupPath = literalRoutes.getPath(index);
+        HandlerMethod handlerMethod = routes.getHandlerMethod(mapping);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Returning handler method [" + handlerMethod + "] of literal path " + lookupPath);
+        }
+
+        handleMatch(mapping, lookupPath, request);
+        if (viewNames != null) request.setAttribute(VIEW_NAME_ATTRIBUTE, viewNames.get(handlerMethod));
+        return handlerMethod.createWithResolvedBean();
+    }
+
+    @Override
+    protected HandlerMethod lookupHandlerMethod(String lookupPath, HttpServletRequest request) throws Exception {
+        if (pendingCount > 0) introspectPendingControllers(lookupPath);
+
+        RouteTable routes = this.routeTable;
+        if (viewNames == null)
+            return routes != null ? lookupHandlerMethod(routes, lookupPath, request) : super.lookupHandlerMethod(lookupPath, request);
+
+        // always overwrite the attribute, which may be left by the handler of a forwarding request
+        String viewName = null;
+        try {
+            HandlerMethod handlerMethod = routes != null ?
+                    lookupHandlerMethod(routes, lookupPath, request) : super.lookupHandlerMethod(lookupPath, request);
+            if (handlerMethod != null) {
+                viewName = viewNames.get(handlerMethod);
+                if (viewName != null && !isViewPath(lookupPath, viewName)) viewName = null;
+            }
+            return handlerMethod;
+        } finally {
+            request.setAttribute(VIEW_NAME_ATTRIBUTE, viewName);
+        }
+    }
 
     /**
-     * Whether to create mapping for annotationed methods, default is true, set to false if producing duplicated mappings
+     * Same as the inherited one, but reflects the controllers registered or unregistered at runtime
      */
-    private boolean mapAnnotationedMethod = true;
+    @Override
+    public Map<RequestMappingInfo, HandlerMethod> getHandlerMethods() {
+        RouteTable routes = this.routeTable;
+        return routes != null ? routes.getHandlerMethods() : super.getHandlerMethods();
+    }
 
     /**
-     * Base package to compute the module name
+     * The published route table, null if none of the lookup optimizations is enabled
      */
-    private String basePackage;
+    RouteTable getRouteTable() {
+        return routeTable;
+    }
 
     /**
-     * Controller naming convention, the suffix will be removed before producing mapping, default is 'Controller'
+     * Map the actions of a controller at runtime, without refreshing the context. The mappings are published
+     * all at once, lookups in progress keep using the previous ones
+     *
+     * @param handler the bean name of the controller, or the controller instance
+     * @throws IllegalStateException if any of the actions is mapped ambiguously with a registered one
      */
-    public void setControllerNameSuffix(String controllerNameSuffix) {
-        this.controllerNameSuffix = controllerNameSuffix;
+    public synchronized void registerController(Object handler) {
+        registerControllers(Collections.singletonList(handler));
     }
 
     /**
-     * Use snake-case URL, default is false (use camel-case)
+     * Map the controllers of the given module and its sub-modules which are not mapped yet, e.g. the beans of a plugin
+     * added to the context at runtime. A module is the controller path prefix without the leading slash, such as
+     * {@code module1/module11}, the root module {@code ""} contains all the controllers
+     *
+     * @return number of the controllers mapped
      */
-    public void setUseSnakeCase(boolean useSnakeCase) {
-        this.useSnakeCase = useSnakeCase;
+    public synchronized int registerModule(String module) {
+        Set<Object> registered = new HashSet<Object>();
+        for (HandlerMethod handlerMethod : getHandlerMethods().values()) registered.add(handlerMethod.getBean());
+
+        List<Object> handlers = new ArrayList<Object>();
+        for (String beanName : getCandidateBeanNames()) {
+            Class<?> beanType = getApplicationContext().getType(beanName);
+            if (beanType != null && !registered.contains(beanName) && isHandler(beanType) &&
+                    isInModule(ClassUtils.getUserClass(beanType), module)) handlers.add(beanName);
+        }
+        registerControllers(handlers);
+        return handlers.size();
     }
 
     /**
-     * Whether to create mapping for annotationed methods, default is true, set to false if producing duplicated mappings
+     * Remove the mappings of a controller at runtime
+     *
+     * @param handler the bean name of the controller, or the controller instance, as it was registered
+     * @return whether the controller was mapped
      */
-    public void setMapAnnotationedMethod(boolean mapAnnotationedMethod) {
-        this.mapAnnotationedMethod = mapAnnotationedMethod;
+    public synchronized boolean unregisterController(Object handler) {
+        return unregisterControllers(Collections.singleton(handler)) > 0;
     }
 
     /**
-     * Base package to compute the module name
+     * Remove the mappings of all the controllers of the given module and its sub-modules at runtime
+     *
+     * @return number of the controllers unmapped
      */
-    public void setBasePackage(String basePackage) {
-        this.basePackage = basePackage;
+    public synchronized int unregisterModule(String module) {
+        Set<Object> handlers = new HashSet<Object>();
+        for (HandlerMethod handlerMethod : getHandlerMethods().values()) {
+            if (isInModule(ClassUtils.getUserClass(handlerMethod.getBeanType()), module)) handlers.add(handlerMethod.getBean());
+        }
+        return unregisterControllers(handlers);
     }
 
-    @Override
-    protected boolean isHandler(Class<?> beanType) {
-        return findAnnotation(beanType, NoMapping.class) == null &&
-                (beanType.getSimpleName().endsWith(controllerNameSuffix) || super.isHandler(beanType));
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (event.getApplicationContext() != getApplicationContext()) return;
+
+        List<HandlerMethodReturnValueHandler> handlers = new ArrayList<HandlerMethodReturnValueHandler>();
+        if (useAsyncActions) handlers.add(getAsyncReturnValueHandler());
+        if (useStreamingActions) handlers.add(getStreamingReturnValueHandler());
+        if (!handlers.isEmpty()) installReturnValueHandlers(handlers);
+        if (useUploadActions) installArgumentResolver(new UploadedBodyArgumentResolver());
+        if (stageTiming != null) {
+            for (RequestMappingHandlerAdapter adapter : BeanFactoryUtils.beansOfTypeIncludingAncestors(
+                    getApplicationContext(), RequestMappingHandlerAdapter.class).values()) stageTiming.instrument(adapter);
+        }
     }
 
-    @Override
-    protected RequestMappingInfo getMappingForMethod(Method method, Class<?> handlerType) {
-        if (!isAction(method)) return null;
+    public synchronized void destroy() {
+        if (defaultAsyncExecutor != null) defaultAsyncExecutor.shutdownNow();
+    }
 
-        // create mapping info for method and type level, and combine them
-        RequestMappingInfo actionMapping = createActionMapping(method);
-        return actionMapping != null ? createControllerMapping(handlerType).combine(actionMapping) : null;
+    /*
+     * put the async and streaming return value handlers before the built-in ones of each handler adapter,
+     * which would otherwise take a Callable or an Iterator as a model attribute, or as the response body
+     */
+    private void installReturnValueHandlers(List<HandlerMethodReturnValueHandler> installed) {
+        Map<String, RequestMappingHandlerAdapter> adapters = BeanFactoryUtils.beansOfTypeIncludingAncestors(
+                getApplicationContext(), RequestMappingHandlerAdapter.class);
+        if (adapters.isEmpty()) logger.warn("No RequestMappingHandlerAdapter found, asynchronous and streaming actions are not enabled");
+
+        for (RequestMappingHandlerAdapter adapter : adapters.values()) {
+            HandlerMethodReturnValueHandlerComposite composite = adapter.getReturnValueHandlers();
+            if (composite == null) continue;
+
+            // the handlers may have been wrapped to be timed
+            List<HandlerMethodReturnValueHandler> handlers = new ArrayList<HandlerMethodReturnValueHandler>(installed);
+            for (HandlerMethodReturnValueHandler handler : composite.getHandlers())
+                handlers.remove(handler instanceof TimedReturnValueHandler ? ((TimedReturnValueHandler) handler).getHandler() : handler);
+            if (handlers.isEmpty()) continue;
+
+            handlers.addAll(composite.getHandlers());
+            adapter.setReturnValueHandlers(handlers);
+        }
+    }
+
+    /*
+     * put the argument resolver before the built-in ones of each handler adapter, which would otherwise take
+     * the parameter as a model attribute
+     */
+    private void installArgumentResolver(HandlerMethodArgumentResolver installed) {
+        Map<String, RequestMappingHandlerAdapter> adapters = BeanFactoryUtils.beansOfTypeIncludingAncestors(
+                getApplicationContext(), RequestMappingHandlerAdapter.class);
+        if (adapters.isEmpty()) logger.warn("No RequestMappingHandlerAdapter found, upload actions are not enabled");
+
+        for (RequestMappingHandlerAdapter adapter : adapters.values()) {
+            HandlerMethodArgumentResolverComposite composite = adapter.getArgumentResolvers();
+            if (composite == null) continue;
+
+            // the resolvers may have been wrapped to be timed
+            boolean present = false;
+            for (HandlerMethodArgumentResolver resolver : composite.getResolvers()) {
+                if (resolver instanceof TimedArgumentResolver) resolver = ((TimedArgumentResolver) resolver).getResolver();
+                if (resolver.getClass() == installed.getClass()) present = true;
+            }
+            if (present) continue;
+
+            List<HandlerMethodArgumentResolver> resolvers = new ArrayList<HandlerMethodArgumentResolver>();
+            resolvers.add(installed);
+            resolvers.addAll(composite.getResolvers());
+            adapter.setArgumentResolvers(resolvers);
+        }
+    }
+
+    /*
+     * same bean names as the inherited detection
+     */
+    private String[] getCandidateBeanNames() {
+        return this.detectHandlerMethodsInAncestorContexts ?
+                BeanFactoryUtils.beanNamesForTypeIncludingAncestors(getApplicationContext(), Object.class) :
+                getApplicationContext().getBeanNamesForType(Object.class);
+    }
+
+    private Class<?> getHandlerType(Object handler) {
+        return ClassUtils.getUserClass(handler instanceof String ?
+                getApplicationContext().getType((String) handler) : handler.getClass());
+    }
+
+    private void registerActionFeatures(Class<?> handlerType, Method method, RequestMappingInfo mapping, HandlerMethod handlerMethod) {
+        if (actionMetrics != null) actionMetrics.registerAction(handlerType, method, buildActionName(handlerType, method));
+        if (responseCache != null) responseCache.registerAction(handlerType, method, buildActionName(handlerType, method));
+        if (moduleBulkheads != null) moduleBulkheads.registerController(handlerType, determineModule(handlerType));
+        if (actionInvokers != null) actionInvokers.registerAction(handlerType, method);
+        if (viewNames != null) registerViewName(handlerType, method, mapping, handlerMethod);
+    }
+
+    /*
+     * map the controllers on a copy of the current mappings, and publish them all at once if none of them
+     * is ambiguous. The inherited registry is left behind, the route table becomes the only source of the mappings
+     */
+    private void registerControllers(List<Object> handlers) {
+        introspectAllPendingControllers();
+
+        Map<RequestMappingInfo, HandlerMethod> handlerMethods = new LinkedHashMap<RequestMappingInfo, HandlerMethod>(getHandlerMethods());
+        Map<RequestMappingInfo, HandlerMethod> added = new LinkedHashMap<RequestMappingInfo, HandlerMethod>();
+        for (Object handler : handlers) {
+            Class<?> handlerType = getHandlerType(handler);
+            Assert.isTrue(isHandler(handlerType), "Not a controller: " + handler);
+
+            for (Map.Entry<Method, RequestMappingInfo> entry : introspectHandlerMethods(handlerType).entrySet()) {
+                RequestMappingInfo mapping = entry.getValue();
+                HandlerMethod handlerMethod = handler instanceof String ?
+                        new HandlerMethod((String) handler, getApplicationContext(), entry.getKey()) :
+                        new HandlerMethod(handler, entry.getKey());
+
+                HandlerMethod oldHandlerMethod = handlerMethods.get(mapping);
+                if (oldHandlerMethod != null && !oldHandlerMethod.equals(handlerMethod)) {
+                    throw new IllegalStateException("Ambiguous mapping found. Cannot map '" + handlerMethod.getBean()
+                            + "' bean method \n" + handlerMethod + "\nto " + mapping + ": There is already '"
+                            + oldHandlerMethod.getBean() + "' bean method\n" + oldHandlerMethod + " mapped.");
+                }
+                handlerMethods.put(mapping, handlerMethod);
+                added.put(mapping, handlerMethod);
+            }
+        }
+
+        for (Map.Entry<RequestMappingInfo, HandlerMethod> entry : added.entrySet()) {
+            HandlerMethod handlerMethod = entry.getValue();
+            if (logger.isInfoEnabled()) logger.info("Mapped \"" + entry.getKey() + "\" onto " + handlerMethod);
+            registerActionFeatures(ClassUtils.getUserClass(handlerMethod.getBeanType()), handlerMethod.getMethod(), entry.getKey(), handlerMethod);
+        }
+        publishRoutes(handlerMethods);
+        if (mappingCanonicalizer != null) mappingCanonicalizer.release();
+    }
+
+    /*
+     * remove the mappings of the controllers from a copy of the current mappings, and publish the rest all at once
+     */
+    private int unregisterControllers(Set<Object> handlers) {
+        introspectAllPendingControllers();
+
+        Map<RequestMappingInfo, HandlerMethod> handlerMethods = new LinkedHashMap<RequestMappingInfo, HandlerMethod>(getHandlerMethods());
+        List<HandlerMethod> removed = new ArrayList<HandlerMethod>();
+        for (Iterator<HandlerMethod> it = handlerMethods.values().iterator(); it.hasNext(); ) {
+            HandlerMethod handlerMethod = it.next();
+            if (handlers.contains(handlerMethod.getBean())) {
+                removed.add(handlerMethod);
+                it.remove();
+            }
+        }
+        if (removed.isEmpty()) return 0;
+
+        publishRoutes(handlerMethods);
+
+        Set<Object> unmapped = new HashSet<Object>();
+        for (HandlerMethod handlerMethod : removed) {
+            if (logger.isInfoEnabled()) logger.info("Unmapped " + handlerMethod);
+            unmapped.add(handlerMethod.getBean());
+        }
+        unregisterActionFeatures(removed, handlerMethods.values());
+        return unmapped.size();
+    }
+
+    /*
+     * forget the removed handler methods in the registries, except the ones still mapped by other beans,
+     * so the registries don't pin the classes of the unregistered controllers
+     */
+    private void unregisterActionFeatures(List<HandlerMethod> removed, Collection<HandlerMethod> remaining) {
+        Map<Class<?>, Set<Method>> mapped = new HashMap<Class<?>, Set<Method>>();
+        for (HandlerMethod handlerMethod : remaining) {
+            Class<?> handlerType = ClassUtils.getUserClass(handlerMethod.getBeanType());
+            Set<Method> methods = mapped.get(handlerType);
+            if (methods == null) mapped.put(handlerType, methods = new HashSet<Method>());
+            methods.add(handlerMethod.getMethod());
+        }
+
+        Set<Class<?>> unmappedTypes = new HashSet<Class<?>>();
+        for (HandlerMethod handlerMethod : removed) {
+            if (viewNames != null) viewNames.remove(handlerMethod);
+
+            Class<?> handlerType = ClassUtils.getUserClass(handlerMethod.getBeanType());
+            Set<Method> methods = mapped.get(handlerType);
+            if (methods == null) unmappedTypes.add(handlerType);
+            if (methods != null && methods.contains(handlerMethod.getMethod())) continue;
+
+            if (actionMetrics != null) actionMetrics.unregisterAction(handlerType, handlerMethod.getMethod());
+            if (responseCache != null) responseCache.unregisterAction(handlerType, handlerMethod.getMethod());
+        }
+        if (unmappedTypes.isEmpty()) return;
+
+        for (Class<?> handlerType : unmappedTypes) {
+            if (moduleBulkheads != null) moduleBulkheads.unregisterController(handlerType);
+            if (actionInvokers != null) actionInvokers.unregisterController(handlerType);
+        }
+    }
+
+    private boolean isInModule(Class<?> handlerType, String module) {
+        String handlerModule = determineModule(handlerType);
+        return module.length() == 0 || handlerModule.equals(module) || handlerModule.startsWith(module + '/');
+    }
+
+    /*
+     * register the handler methods introspected on a thread pool, in the order of the beans
+     */
+    private void detectHandlerMethodsInParallel(String[] beanNames) {
+        List<Callable<Map<Method, RequestMappingInfo>>> tasks = new ArrayList<Callable<Map<Method, RequestMappingInfo>>>(beanNames.length);
+        for (String beanName : beanNames) {
+            final Class<?> beanType = getApplicationContext().getType(beanName);
+            tasks.add(new Callable<Map<Method, RequestMappingInfo>>() {
+                public Map<Method, RequestMappingInfo> call() {
+                    return isHandler(beanType) ? introspectHandlerMethods(beanType) : null;
+                }
+            });
+        }
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("cocmvc-introspection-");
+        threadFactory.setDaemon(true);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(introspectionParallelism, tasks.size())), threadFactory);
+        try {
+            List<Future<Map<Method, RequestMappingInfo>>> results = executor.invokeAll(tasks);
+
+            // register in the order of the beans, as the sequential detection does
+            for (int i = 0; i < beanNames.length; i++) {
+                Map<Method, RequestMappingInfo> mappings = getIntrospectionResult(results.get(i));
+                if (mappings == null) continue;
+
+                for (Map.Entry<Method, RequestMappingInfo> entry : mappings.entrySet())
+                    registerHandlerMethod(beanNames[i], entry.getKey(), entry.getValue());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while introspecting handler methods", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /*
+     * same as the inherited detection, selecting the handler methods in the same order, without registering them
+     */
+    private Map<Method, RequestMappingInfo> introspectHandlerMethods(Class<?> handlerType) {
+        final Class<?> userType = ClassUtils.getUserClass(handlerType);
+        final Map<Method, RequestMappingInfo> mappings = new HashMap<Method, RequestMappingInfo>();
+        Set<Method> methods = HandlerMethodSelector.selectMethods(userType, new ReflectionUtils.MethodFilter() {
+            public boolean matches(Method method) {
+                RequestMappingInfo mapping = getMappingForMethod(method, userType);
+                if (mapping != null) mappings.put(method, mapping);
+                return mapping != null;
+            }
+        });
+
+        Map<Method, RequestMappingInfo> handlerMethods = new LinkedHashMap<Method, RequestMappingInfo>();
+        for (Method method : methods) handlerMethods.put(method, mappings.get(method));
+        return handlerMethods;
+    }
+
+    private Map<Method, RequestMappingInfo> getIntrospectionResult(Future<Map<Method, RequestMappingInfo>> result) throws InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            // rethrow as is, like the sequential detection
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException("Failed to introspect handler methods", cause);
+        }
+    }
+
+    /*
+     * fingerprint of everything the mappings depend on, null if not available
+     */
+    private byte[] fingerprintBeans(String[] beanNames) {
+        if (lazyIntrospection) {
+            logger.warn("Route snapshot is not available in lazy mode");
+            return null;
+        }
+
+        String settings = getClass().getName() + ";controllerNameSuffix=" + controllerNameSuffix +
+                ";useSnakeCase=" + useSnakeCase + ";mapAnnotationedMethod=" + mapAnnotationedMethod +
+                ";basePackage=" + basePackage + ";requestMethodRules=" + (inferRequestMethods ? getRequestMethodRules() : null) +
+                ";useSuffixPatternMatch=" + useSuffixPatternMatch() +
+                ";useTrailingSlashMatch=" + useTrailingSlashMatch() + ";pathMatcher=" + getPathMatcher().getClass().getName();
+        // only the controllers matter, other beans may well be proxies without class files
+        List<String> handlerNames = new ArrayList<String>();
+        List<Class<?>> handlerTypes = new ArrayList<Class<?>>();
+        for (String beanName : beanNames) {
+            Class<?> beanType = getApplicationContext().getType(beanName);
+            if (beanType != null && isHandler(beanType)) {
+                handlerNames.add(beanName);
+                handlerTypes.add(ClassUtils.getUserClass(beanType));
+            }
+        }
+
+        try {
+            byte[] fingerprint = RouteSnapshot.fingerprint(settings, handlerNames.toArray(new String[handlerNames.size()]),
+                    handlerTypes.toArray(new Class<?>[handlerTypes.size()]));
+            if (fingerprint == null) logger.info("Route snapshot is not available, class files of some controllers are not readable");
+            return fingerprint;
+        } catch (IOException e) {
+            logger.warn("Failed to fingerprint the beans, route snapshot is not available", e);
+            return null;
+        }
+    }
+
+    /*
+     * register the mappings of the route snapshot, if it's still valid
+     */
+    private boolean registerSnapshotRoutes(byte[] fingerprint) {
+        RouteSnapshot snapshot;
+        try {
+            snapshot = RouteSnapshot.read(routeSnapshotFile);
+        } catch (IOException e) {
+            logger.warn("Failed to read route snapshot " + routeSnapshotFile, e);
+            return false;
+        }
+        if (snapshot == null || !Arrays.equals(fingerprint, snapshot.getFingerprint())) return false;
+
+        // resolve all the routes before registering any of them
+        ClassLoader classLoader = getApplicationContext().getClassLoader() != null ?
+                getApplicationContext().getClassLoader() : ClassUtils.getDefaultClassLoader();
+        Map<RequestMappingInfo, RouteSnapshot.Route> routes = new LinkedHashMap<RequestMappingInfo, RouteSnapshot.Route>();
+        List<Method> methods = new ArrayList<Method>();
+        try {
+            for (RouteSnapshot.Route route : snapshot.getRoutes()) {
+                methods.add(route.resolveMethod(classLoader));
+                RequestMappingInfo mapping = new RequestMappingInfo(
+                        createPatternRequestCondition(route.patterns),
+                        new RequestMethodsRequestCondition(route.resolveRequestMethods()),
+                        new ParamsRequestCondition(route.params),
+                        new HeadersRequestCondition(route.headers),
+                        new ConsumesRequestCondition(route.consumes),
+                        new ProducesRequestCondition(route.produces),
+                        null);
+                routes.put(canonicalize(mapping), route);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to restore route snapshot " + routeSnapshotFile + ", introspecting the controllers", e);
+            return false;
+        }
+
+        int i = 0;
+        for (Map.Entry<RequestMappingInfo, RouteSnapshot.Route> entry : routes.entrySet())
+            registerHandlerMethod(entry.getValue().beanName, methods.get(i++), entry.getKey());
+
+        if (logger.isInfoEnabled()) logger.info("Restored " + routes.size() + " mappings from route snapshot " + routeSnapshotFile);
+        return true;
+    }
+
+    private void saveSnapshot(byte[] fingerprint) {
+        for (Map.Entry<RequestMappingInfo, HandlerMethod> entry : getHandlerMethods().entrySet()) {
+            if (!RouteSnapshot.isSupported(entry.getKey(), entry.getValue())) {
+                logger.info("Route snapshot is not saved, mapping " + entry.getKey() + " can't be restored");
+                return;
+            }
+        }
+
+        try {
+            RouteSnapshot.write(routeSnapshotFile, fingerprint, getHandlerMethods());
+        } catch (IOException e) {
+            logger.warn("Failed to write route snapshot " + routeSnapshotFile, e);
+        }
+    }
+
+    /*
+     * index the conventional controllers by their paths instead of introspecting them,
+     * returns the beans to be introspected at startup
+     */
+    private String[] deferControllers(String[] beanNames) {
+        pendingControllers = new RouteTree<PendingController>();
+        List<String> eagerBeanNames = new ArrayList<String>();
+        for (String beanName : beanNames) {
+            Class<?> beanType = getApplicationContext().getType(beanName);
+            if (!isHandler(beanType)) continue;
+
+            Class<?> userType = ClassUtils.getUserClass(beanType);
+            if (hasTypeLevelMapping(userType)) {
+                eagerBeanNames.add(beanName);
+            } else {
+                // every action of a conventional controller is mapped under the controller path
+                String controllerPath = buildConventionalControllerPaths(userType)[0];
+                pendingControllers.add(new PendingController(beanName), Arrays.asList(controllerPath, controllerPath + "/**"));
+            }
+        }
+
+        pendingCount = pendingControllers.getMappings().size();
+        if (logger.isInfoEnabled()) logger.info("Deferred introspection of " + pendingCount + " controllers");
+        return eagerBeanNames.toArray(new String[eagerBeanNames.size()]);
+    }
+
+    private boolean hasTypeLevelMapping(Class<?> handlerType) {
+        RouteManifest.HandlerKind kind = routeManifest != null ? routeManifest.getHandlerKind(handlerType) : null;
+        return kind != null ? kind == RouteManifest.HandlerKind.ANNOTATED : findAnnotation(handlerType, RequestMapping.class) != null;
+    }
+
+    /*
+     * introspect the pending controllers whose paths may match the lookup path, the mappings of a controller are
+     * published all at once, so concurrent lookups never see a partially introspected controller
+     */
+    private void introspectPendingControllers(String lookupPath) {
+        if (!lookupPath.startsWith("/")) return;    // never matches the absolute controller paths
+
+        for (PendingController controller : pendingControllers.getCandidates(lookupPath)) introspectPendingController(controller);
+    }
+
+    /*
+     * introspect all the pending controllers, before the mappings are changed at runtime
+     */
+    private void introspectAllPendingControllers() {
+        if (pendingCount == 0) return;
+        for (PendingController controller : pendingControllers.getMappings()) introspectPendingController(controller);
+    }
+
+    private void introspectPendingController(PendingController controller) {
+        if (controller.introspected) return;
+
+        synchronized (pendingControllers) {
+            if (controller.introspected) return;
+            try {
+                detectHandlerMethods(controller.beanName);
+            } finally {
+                publishRoutes(super.getHandlerMethods());
+                controller.introspected = true;
+                pendingCount--;
+                if (mappingCanonicalizer != null && pendingCount == 0) mappingCanonicalizer.release();
+            }
+        }
+    }
+
+    /*
+     * the canonical instances are restored from the registered mappings after a release, e.g. when registering
+     * controllers at runtime
+     */
+    private RequestMappingInfo canonicalize(RequestMappingInfo mapping) {
+        if (mappingCanonicalizer == null) return mapping;
+        if (mappingCanonicalizer.isReleased()) mappingCanonicalizer.restore(getHandlerMethods().keySet());
+        return mappingCanonicalizer.canonicalize(mapping);
+    }
+
+    private void reportRoutes() {
+        RouteReport report = analyzeRoutes();
+        if (analyzeRoutes) report.log(logger);
+        if (routeReportFile == null) return;
+
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(routeReportFile), "UTF-8");
+            try {
+                report.writeJson(writer);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write route report " + routeReportFile, e);
+        }
+    }
+
+    private void loadRouteManifest() {
+        ClassLoader classLoader = getApplicationContext().getClassLoader();
+        try {
+            routeManifest = RouteManifest.load(classLoader != null ? classLoader : getClass().getClassLoader(), controllerNameSuffix);
+            if (logger.isInfoEnabled()) logger.info("Loaded route manifest of " + routeManifest.size() + " classes");
+        } catch (IOException e) {
+            logger.warn("Failed to load the route manifest, falling back to introspection", e);
+        }
+    }
+
+    /*
+     * build a route table from the given mappings, and make it visible to the lookups
+     */
+    private void publishRoutes(Map<RequestMappingInfo, HandlerMethod> handlerMethods) {
+        boolean indexed = useRouteTree;
+        if (indexed && getPathMatcher().getClass() != AntPathMatcher.class) {
+            logger.warn("Route tree requires an AntPathMatcher, falling back to the default lookup");
+            indexed = false;
+        }
+        boolean filtered = useRouteFilter;
+        if (filtered && getPathMatcher().getClass() != AntPathMatcher.class) {
+            logger.warn("Route filter requires an AntPathMatcher, not enabled");
+            filtered = false;
+        }
+
+        this.routeTable = new RouteTable(handlerMethods, getPathMatcher(), indexed, useLiteralPathLookup, inferRequestMethods, filtered);
+        if (lookupCache != null) lookupCache.clear();
+    }
+
+    /*
+     * same as the inherited lookup, but only the candidates found in the route table are examined,
+     * and the results depending on the path and HTTP method only are cached
+     */
+    private HandlerMethod lookupHandlerMethod(RouteTable routes, String lookupPath, HttpServletRequest request) throws Exception {
+        if (!routes.mayMatch(lookupPath)) return null;    // nothing matches by URL, same as no candidates found
+
+        String cacheKey = null;
+        if (lookupCache != null) {
+            cacheKey = request.getMethod() + ' ' + lookupPath;
+            Match cached = lookupCache.get(cacheKey);
+            if (cached != null && cached.routes == routes) {
+                handleMatch(cached.mapping, lookupPath, request);
+                return cached.handlerMethod;
+            }
+        }
+
+        Collection<RequestMappingInfo> examined = routes.getDirectPathMatches(lookupPath, request.getMethod());
+        List<Match> matches = new ArrayList<Match>();
+        addMatchingMappings(routes, examined, matches, request);
+        if (matches.isEmpty()) {
+            Set<RequestMappingInfo> candidates = routes.getCandidates(lookupPath, request.getMethod());
+            addMatchingMappings(routes, candidates, matches, request);
+            if (matches.isEmpty()) {
+                // the mappings of the other HTTP methods are only examined to report the unsatisfied conditions
+                if (routes.isPartitioned()) candidates = routes.getCandidates(lookupPath);
+                if (candidates.isEmpty()) return null;   // nothing matches by URL, no need to report the unsatisfied conditions
+                return handleNoMatch(candidates, lookupPath, request);
+            }
+            examined = candidates;
+        }
+
+        final Comparator<RequestMappingInfo> comparator = getMappingComparator(request);
+        Comparator<Match> matchComparator = new Comparator<Match>() {
+            public int compare(Match match1, Match match2) {
+                return comparator.compare(match1.mapping, match2.mapping);
+            }
+        };
+        Collections.sort(matches, matchComparator);
+
+        Match bestMatch = matches.get(0);
+        if (matches.size() > 1) {
+            Match secondBestMatch = matches.get(1);
+            if (matchComparator.compare(bestMatch, secondBestMatch) == 0) {
+                throw new IllegalStateException(
+                        "Ambiguous handler methods mapped for HTTP path '" + request.getRequestURL() + "': {" +
+                        bestMatch.handlerMethod.getMethod() + ", " + secondBestMatch.handlerMethod.getMethod() + "}");
+            }
+        }
+
+        if (cacheKey != null && isCacheable(routes, examined, request)) lookupCache.put(cacheKey, bestMatch);
+
+        handleMatch(bestMatch.mapping, lookupPath, request);
+        return bestMatch.handlerMethod;
+    }
+
+    /*
+     * the literal route whose path is exactly the lookup path the default UrlPathHelper would extract, or -1 if
+     * the request is not a plain one, i.e. the lookup path would be decoded, cleaned, or not be a suffix of the URI
+     */
+    private static int findLiteralRoute(LiteralRoutes<RequestMappingInfo> literalRoutes, HttpServletRequest request) {
+        if (request.getAttribute(WebUtils.INCLUDE_REQUEST_URI_ATTRIBUTE) != null) return -1;
+
+        String uri = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        String servletPath = request.getServletPath();
+        if (uri == null || uri.indexOf('%') != -1 || uri.indexOf(';') != -1 || contextPath.indexOf('%') != -1 ||
+                servletPath.length() > 1 && servletPath.endsWith("/")) return -1;
+
+        // path within application
+        int from = "/".equals(contextPath) ? 0 : contextPath.length();
+        if (!uri.startsWith(contextPath) || from == uri.length()) return -1;
+
+        // path within servlet mapping if not empty, otherwise path within application
+        if (!uri.startsWith(servletPath, from)) return -1;
+        if (from + servletPath.length() < uri.length()) from += servletPath.length();
+
+        return literalRoutes.indexOf(uri, from);
+    }
+
+    /*
+     * whether the mapping accepts the HTTP method, without creating a matching condition
+     */
+    private static boolean acceptsMethod(RequestMappingInfo mapping, String requestMethod) {
+        Set<RequestMethod> methods = mapping.getMethodsCondition().getMethods();
+        if (methods.isEmpty()) return true;
+
+        for (RequestMethod method : methods)
+            if (method.name().equals(requestMethod)) return true;
+        return false;
+    }
+
+    private void addMatchingMappings(RouteTable routes, Collection<RequestMappingInfo> mappings, List<Match> matches, HttpServletRequest request) {
+        for (RequestMappingInfo mapping : mappings) {
+            RequestMappingInfo match = getMatchingMapping(mapping, request);
+            if (match != null) matches.add(new Match(routes, match, routes.getHandlerMethod(mapping)));
+        }
+    }
+
+    /*
+     * a lookup result can be cached, only if none of the examined mappings matching the URL has conditions
+     * other than the HTTP method, so the same path and method always resolve to the same handler
+     */
+    private boolean isCacheable(RouteTable routes, Collection<RequestMappingInfo> examined, HttpServletRequest request) {
+        if (!routes.hasConditionalMappings()) return true;
+
+        for (RequestMappingInfo mapping : examined) {
+            if (!routes.isPathAndMethodOnly(mapping) && mapping.getPatternsCondition().getMatchingCondition(request) != null)
+                return false;
+        }
+        return true;
+    }
+
+    /*
+     * precompute the view name of an action mapped to nothing but its conventional URL, which is the URL without
+     * the leading slash, as DefaultRequestToViewNameTranslator would produce
+     */
+    private void registerViewName(Class<?> handlerType, Method method, RequestMappingInfo mapping, HandlerMethod handlerMethod) {
+        Set<String> patterns = mapping.getPatternsCondition().getPatterns();
+        if (patterns.size() != 1) return;
+
+        String action = buildConventionalActions(method)[0];
+        String path = buildConventionalControllerPaths(handlerType)[0] + (action.length() > 0 ? '/' + action : "");
+        if (!path.equals(patterns.iterator().next())) return;
+
+        viewNames.put(handlerMethod, path.substring(1));
+    }
+
+    /*
+     * whether the view name is what DefaultRequestToViewNameTranslator produces for the lookup path: the lookup path
+     * is the conventional URL itself, optionally followed by a trailing slash or a file extension. Allocation free
+     */
+    private static boolean isViewPath(String lookupPath, String viewName) {
+        int end = viewName.length() + 1;
+        if (lookupPath.length() < end || lookupPath.charAt(0) != '/' || !lookupPath.startsWith(viewName, 1)) return false;
+        if (lookupPath.length() == end) return true;
+
+        char c = lookupPath.charAt(end);
+        if (c == '/') return lookupPath.length() == end + 1;
+        return c == '.' && lookupPath.indexOf('/', end) == -1 && lookupPath.indexOf('.', end + 1) == -1;
     }
 
     /*
@@ -130,7 +1597,38 @@ public class ConventionalHandlerMapping extends RequestMappingHandlerMapping {
     private RequestMappingInfo createConventionalActionMapping(Method method) {
         return new RequestMappingInfo(
                 createPatternRequestCondition(buildConventionalActions(method)),
-                null, null, null, null, null, getCustomMethodCondition(method));
+                inferRequestMethods ? new RequestMethodsRequestCondition(inferRequestMethods(method)) : null,
+                null, null, null, null, getCustomMethodCondition(method));
+    }
+
+    /*
+     * HTTP methods of the first rule matching the method name, none (any method) if not matched
+     */
+    private RequestMethod[] inferRequestMethods(Method method) {
+        for (Map.Entry<Pattern, RequestMethod[]> rule : requestMethodRules.entrySet())
+            if (rule.getKey().matcher(method.getName()).matches()) return rule.getValue();
+        return new RequestMethod[0];
+    }
+
+    private static Map<Pattern, RequestMethod[]> createRequestMethodRules(Map<String, String> rules) {
+        Map<Pattern, RequestMethod[]> requestMethodRules = new LinkedHashMap<Pattern, RequestMethod[]>();
+        for (Map.Entry<String, String> rule : rules.entrySet()) {
+            String[] names = StringUtils.commaDelimitedListToStringArray(rule.getValue());
+            RequestMethod[] methods = new RequestMethod[names.length];
+            for (int i = 0; i < names.length; i++) methods[i] = RequestMethod.valueOf(names[i].trim().toUpperCase());
+            requestMethodRules.put(Pattern.compile(rule.getKey()), methods);
+        }
+        return requestMethodRules;
+    }
+
+    /*
+     * description of the rules, as part of the fingerprint of the route snapshot
+     */
+    private String getRequestMethodRules() {
+        StringBuilder rules = new StringBuilder();
+        for (Map.Entry<Pattern, RequestMethod[]> rule : requestMethodRules.entrySet())
+            rules.append(rule.getKey().pattern()).append('=').append(Arrays.toString(rule.getValue())).append(';');
+        return rules.toString();
     }
 
     private String[] buildConventionalActions(Method method) {
@@ -147,7 +1645,8 @@ public class ConventionalHandlerMapping extends RequestMappingHandlerMapping {
      * create type-level mapping (a Controller)
      */
     private RequestMappingInfo createControllerMapping(Class<?> handlerType) {
-        RequestMapping mapping = findAnnotation(handlerType, RequestMapping.class);
+        RouteManifest.HandlerKind kind = routeManifest != null ? routeManifest.getHandlerKind(handlerType) : null;
+        RequestMapping mapping = kind == RouteManifest.HandlerKind.CONVENTIONAL ? null : findAnnotation(handlerType, RequestMapping.class);
         return mapping == null ? createConventionalControllerMapping(handlerType) : createControllerMapping(mapping, handlerType);
     }
 
@@ -164,6 +1663,14 @@ public class ConventionalHandlerMapping extends RequestMappingHandlerMapping {
         return new String[]{ prefix + '/' + (useSnakeCase ? toSnakeCase(path) : toCamelCase(path)) };
     }
 
+    /*
+     * conventional name of an action, <module>/<controller>/<action>, regardless of the URL it's mapped to
+     */
+    private String buildActionName(Class<?> handlerType, Method method) {
+        String controllerPath = buildConventionalControllerPaths(handlerType)[0];
+        return controllerPath.substring(1) + '/' + (useSnakeCase ? toSnakeCase(method.getName()) : method.getName());
+    }
+
     private RequestMappingInfo createControllerMapping(RequestMapping mapping, Class<?> handlerType) {
         return createRequestMapping(mapping, getCustomTypeCondition(handlerType));
     }
@@ -183,6 +1690,13 @@ public class ConventionalHandlerMapping extends RequestMappingHandlerMapping {
                 customCondition);
     }
 
+    /*
+     * the controller path prefix without the leading slash, "" for the root module
+     */
+    private String determineModule(Class<?> handlerType) {
+        return determineControllerPrefix(handlerType).replaceFirst("^/", "");
+    }
+
     private String determineControllerPrefix(Class<?> handlerType) {
         if (basePackage == null) return "";
 
@@ -204,4 +1718,39 @@ public class ConventionalHandlerMapping extends RequestMappingHandlerMapping {
         return Character.toLowerCase(str.charAt(0)) + (str.length() > 1 ? str.substring(1) : "");
     }
 
+    /*
+     * a controller whose introspection is deferred
+     */
+    private static class PendingController {
+
+        private final String beanName;
+
+        private volatile boolean introspected;
+
+        private PendingController(String beanName) {
+            this.beanName = beanName;
+        }
+    }
+
+    /*
+     * a mapping matched to the current request
+     */
+    private static class Match {
+
+        /**
+         * Route table the mapping is found in, a cached match is stale once another table is published
+         */
+        private final RouteTable routes;
+
+        private final RequestMappingInfo mapping;
+
+        private final HandlerMethod handlerMethod;
+
+        private Match(RouteTable routes, RequestMappingInfo mapping, HandlerMethod handlerMethod) {
+            this.routes = routes;
+            this.mapping = mapping;
+            this.handlerMethod = handlerMethod;
+        }
+    }
+
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc;
+
+import org.springframework.web.servlet.view.DefaultRequestToViewNameTranslator;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * {@link org.springframework.web.servlet.RequestToViewNameTranslator} reading back the view names precomputed by
+ * {@link ConventionalHandlerMapping}, so the view name of a conventional action is resolved without parsing the URL<br/>
+ *
+ * The precomputed view name is the same as what the default translator produces, it's only used as long as none of
+ * the translator settings is changed, otherwise (or if not available) the view name is resolved as usual.
+ *
+ * @author ywu
+ * @see ConventionalHandlerMapping#setPrecomputeViewNames(boolean)
+ */
+public class ConventionalViewNameTranslator extends DefaultRequestToViewNameTranslator {
+
+    private boolean customized = false;
+
+    @Override
+    public String getViewName(HttpServletRequest request) {
+        if (!customized) {
+            Object viewName = request.getAttribute(ConventionalHandlerMapping.VIEW_NAME_ATTRIBUTE);
+            if (viewName != null) return (String) viewName;
+        }
+        return super.getViewName(request);
+    }
+
+    @Override
+    public void setPrefix(String prefix) {
+        super.setPrefix(prefix);
+        customized = true;
+    }
+
+    @Override
+    public void setSuffix(String suffix) {
+        super.setSuffix(suffix);
+        customized = true;
+    }
+
+    @Override
+    public void setSeparator(String separator) {
+        super.setSeparator(separator);
+        customized = true;
+    }
+
+    @Override
+    public void setStripLeadingSlash(boolean stripLeadingSlash) {
+        super.setStripLeadingSlash(stripLeadingSlash);
+        customized = true;
+    }
+
+    @Override
+    public void setStripTrailingSlash(boolean stripTrailingSlash) {
+        super.setStripTrailingSlash(stripTrailingSlash);
+        customized = true;
+    }
+
+    @Override
+    public void setStripExtension(boolean stripExtension) {
+        super.setStripExtension(stripExtension);
+        customized = true;
+    }
+
+    @Override
+    public void setAlwaysUseFullPath(boolean alwaysUseFullPath) {
+        super.setAlwaysUseFullPath(alwaysUseFullPath);
+        customized = true;
+    }
+
+    @Override
+    public void setUrlDecode(boolean urlDecode) {
+        super.setUrlDecode(urlDecode);
+        customized = true;
+    }
+
+    @Override
+    public void setUrlPathHelper(UrlPathHelper urlPathHelper) {
+        super.setUrlPathHelper(urlPathHelper);
+        customized = true;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc;
+
+/**
+ * Read-only hash table of literal URL paths, looked up by a region of a string, usually the raw request URI,
+ * without creating the substring<br/>
+ *
+ * Hashes are computed the same way as {@link String#hashCode()}, collisions are resolved by linear probing.
+ *
+ * @author ywu
+ */
+class LiteralRoutes<T> {
+
+    private final String[] paths;
+
+    private final int[] hashes;
+
+    private final Object[] values;
+
+    private int size;
+
+    LiteralRoutes(int expectedSize) {
+        int capacity = 2;
+        while (capacity < expectedSize * 2) capacity *= 2;
+
+        paths = new String[capacity];
+        hashes = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    public void put(String path, T value) {
+        int hash = path.hashCode();
+        int mask = paths.length - 1;
+        int i = hash & mask;
+        while (paths[i] != null) {
+            if (hashes[i] == hash && paths[i].equals(path)) break;
+            i = (i + 1) & mask;
+        }
+
+        if (paths[i] == null) {
+            if (size + 1 > paths.length / 2) throw new IllegalStateException("Literal routes table is full");
+            size++;
+        }
+        paths[i] = path;
+        hashes[i] = hash;
+        values[i] = value;
+    }
+
+    /**
+     * Slot of the path equal to {@code source.substring(from)}, or -1 if not found
+     */
+    public int indexOf(String source, int from) {
+        if (size == 0) return -1;
+
+        int length = source.length() - from;
+        int hash = 0;
+        for (int i = from; i < source.length(); i++) hash = 31 * hash + source.charAt(i);
+
+        int mask = paths.length - 1;
+        for (int i = hash & mask; paths[i] != null; i = (i + 1) & mask) {
+            String path = paths[i];
+            if (hashes[i] == hash && path.length() == length && source.startsWith(path, from)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * The path in the given slot, same as the looked up region
+     */
+    public String getPath(int index) {
+        return paths[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public T getValue(int index) {
+        return (T) values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+}
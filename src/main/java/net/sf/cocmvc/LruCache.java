@@ -0,0 +1,207 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc;
+
+import org.springframework.util.Assert;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size bounded, concurrent LRU cache<br/>
+ *
+ * Entries are spread over a number of segments, each guarded by its own lock and evicting its least recently
+ * used entries, so the capacity is approximately honored while readers of different keys rarely contend.
+ *
+ * <p>The capacity is a number of entries, unless a {@link Weigher} is given, then it's the total weight of the
+ * values, e.g. their size in bytes. Each segment holds its share of the capacity, so a value heavier than
+ * {@code capacity / concurrencyLevel} is evicted as soon as it's put.<p/>
+ *
+ * @author ywu
+ */
+public class LruCache<K, V> {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private static final Weigher<Object> SINGLETON = new Weigher<Object>() {
+        public int weigh(Object value) {
+            return 1;
+        }
+    };
+
+    public LruCache(int capacity) {
+        this(capacity, capacity, SINGLETON);
+    }
+
+    /**
+     * @param capacity max total weight of the values
+     * @param concurrencyLevel max number of segments, the actual number is a power of 2, no more than 16
+     * @param weigher weight of a value, counted when it's put
+     */
+    @SuppressWarnings("unchecked")
+    public LruCache(long capacity, int concurrencyLevel, Weigher<? super V> weigher) {
+        Assert.isTrue(capacity > 0, "Cache capacity must be positive");
+        Assert.notNull(weigher, "Weigher is required");
+
+        int segmentCount = 1;
+        while (segmentCount < MAX_SEGMENTS && segmentCount * 2 <= Math.min(capacity, concurrencyLevel)) segmentCount *= 2;
+
+        segments = (Segment<K, V>[]) new Segment<?, ?>[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long segmentCapacity = capacity / segmentCount + (i < capacity % segmentCount ? 1 : 0);
+            segments[i] = new Segment<K, V>(segmentCapacity, weigher, evictionCount);
+        }
+    }
+
+    /**
+     * Cached value of the key, or null if absent
+     */
+    public V get(K key) {
+        V value = segmentFor(key).get(key);
+        (value != null ? hitCount : missCount).incrementAndGet();
+        return value;
+    }
+
+    public void put(K key, V value) {
+        segmentFor(key).put(key, value);
+    }
+
+    public void remove(K key) {
+        segmentFor(key).remove(key);
+    }
+
+    public void clear() {
+        for (Segment<K, V> segment : segments) segment.clear();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) size += segment.size();
+        return size;
+    }
+
+    /**
+     * Total weight of the cached values, the number of entries unless a {@link Weigher} is given
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Segment<K, V> segment : segments) weight += segment.getWeight();
+        return weight;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "LruCache{size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount() +
+                ", evictions=" + getEvictionCount() + "}";
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[hash & (segments.length - 1)];
+    }
+
+    /**
+     * Weight of the cached values
+     */
+    public interface Weigher<V> {
+
+        int weigh(V value);
+    }
+
+    private static class Segment<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long capacity;
+
+        private final Weigher<? super V> weigher;
+
+        private final AtomicLong evictionCount;
+
+        private long weight;
+
+        Segment(long capacity, Weigher<? super V> weigher, AtomicLong evictionCount) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.weigher = weigher;
+            this.evictionCount = evictionCount;
+        }
+
+        @Override
+        public synchronized V get(Object key) {
+            return super.get(key);
+        }
+
+        @Override
+        public synchronized V put(K key, V value) {
+            V previous = super.put(key, value);
+            weight += weigher.weigh(value) - (previous != null ? weigher.weigh(previous) : 0);
+
+            // least recently used first
+            for (Iterator<V> values = values().iterator(); weight > capacity && values.hasNext(); ) {
+                weight -= weigher.weigh(values.next());
+                values.remove();
+                evictionCount.incrementAndGet();
+            }
+            return previous;
+        }
+
+        @Override
+        public synchronized V remove(Object key) {
+            V removed = super.remove(key);
+            if (removed != null) weight -= weigher.weigh(removed);
+            return removed;
+        }
+
+        @Override
+        public synchronized void clear() {
+            super.clear();
+            weight = 0;
+        }
+
+        @Override
+        public synchronized int size() {
+            return super.size();
+        }
+
+        synchronized long getWeight() {
+            return weight;
+        }
+    }
+}
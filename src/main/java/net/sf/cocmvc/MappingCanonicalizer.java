@@ -0,0 +1,222 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc;
+
+import org.springframework.util.PathMatcher;
+import org.springframework.web.servlet.mvc.condition.AbstractRequestCondition;
+import org.springframework.web.servlet.mvc.condition.PatternsRequestCondition;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of the canonical conditions of the mappings, equal conditions are replaced by a single shared instance,
+ * and the URL patterns by a single string<br/>
+ *
+ * Every mapping gets its own condition instances, most of which are empty or identical to the ones of the other
+ * mappings, e.g. each conventional action has empty params, headers, consumes and produces conditions. Conditions
+ * are immutable and compared by their content, so they can be shared safely, except for the patterns conditions,
+ * which are equal regardless of the path matching settings: only the conditions created by the same mapping should
+ * be canonicalized together. Custom conditions are left untouched.
+ *
+ * <p>The canonical instances are only needed while mappings are being created, the registry is {@link #release() released}
+ * once they're registered, and {@link #restore(Collection) restored} from the registered mappings before more of them
+ * are created at runtime. The memory saved is estimated with the typical shallow sizes on a 64-bit JVM with compressed
+ * references, not counting the registry, which doesn't outlive the registration.<p/>
+ *
+ * @author ywu
+ */
+class MappingCanonicalizer {
+
+    /**
+     * Estimated size of a condition and its collection of content, and of each element of the content
+     */
+    private static final int CONDITION_BYTES = 96;
+
+    private static final int ELEMENT_BYTES = 48;
+
+    /**
+     * Estimated size of an empty string and its char array
+     */
+    private static final int STRING_BYTES = 40;
+
+    private Map<Object, Object> conditions = new HashMap<Object, Object>();
+
+    private Map<String, String> patterns = new HashMap<String, String>();
+
+    private boolean released;
+
+    private final UrlPathHelper urlPathHelper;
+
+    private final PathMatcher pathMatcher;
+
+    private final boolean useSuffixPatternMatch;
+
+    private final boolean useTrailingSlashMatch;
+
+    private int mappingCount;
+
+    private int conditionCount;
+
+    private int sharedCount;
+
+    private int internedCount;
+
+    private long savedBytes;
+
+    /**
+     * The patterns conditions are rebuilt with the same path matching settings as the mapping
+     */
+    MappingCanonicalizer(UrlPathHelper urlPathHelper, PathMatcher pathMatcher, boolean useSuffixPatternMatch,
+                         boolean useTrailingSlashMatch) {
+        this.urlPathHelper = urlPathHelper;
+        this.pathMatcher = pathMatcher;
+        this.useSuffixPatternMatch = useSuffixPatternMatch;
+        this.useTrailingSlashMatch = useTrailingSlashMatch;
+    }
+
+    /**
+     * Mapping equal to the given one, made of the canonical conditions
+     */
+    public synchronized RequestMappingInfo canonicalize(RequestMappingInfo mapping) {
+        mappingCount++;
+        return new RequestMappingInfo(
+                canonicalize(mapping.getPatternsCondition()),
+                canonicalize(mapping.getMethodsCondition(), mapping.getMethodsCondition().getMethods().size()),
+                canonicalize(mapping.getParamsCondition(), mapping.getParamsCondition().getExpressions().size()),
+                canonicalize(mapping.getHeadersCondition(), mapping.getHeadersCondition().getExpressions().size()),
+                canonicalize(mapping.getConsumesCondition(), mapping.getConsumesCondition().getExpressions().size()),
+                canonicalize(mapping.getProducesCondition(), mapping.getProducesCondition().getExpressions().size()),
+                mapping.getCustomCondition());
+    }
+
+    /**
+     * Forget the canonical instances, they stay referenced by the registered mappings only
+     */
+    public synchronized void release() {
+        conditions = new HashMap<Object, Object>();
+        patterns = new HashMap<String, String>();
+        released = true;
+    }
+
+    /**
+     * Whether the canonical instances must be restored before creating more mappings
+     */
+    public synchronized boolean isReleased() {
+        return released;
+    }
+
+    /**
+     * Take the conditions and the pattern strings of the registered mappings as the canonical instances again
+     */
+    public synchronized void restore(Collection<RequestMappingInfo> mappings) {
+        for (RequestMappingInfo mapping : mappings) {
+            for (String pattern : mapping.getPatternsCondition().getPatterns())
+                if (!patterns.containsKey(pattern)) patterns.put(pattern, pattern);
+            restore(mapping.getPatternsCondition());
+            restore(mapping.getMethodsCondition());
+            restore(mapping.getParamsCondition());
+            restore(mapping.getHeadersCondition());
+            restore(mapping.getConsumesCondition());
+            restore(mapping.getProducesCondition());
+        }
+        released = false;
+    }
+
+    public synchronized int getMappingCount() {
+        return mappingCount;
+    }
+
+    /**
+     * Number of the conditions replaced by a shared instance
+     */
+    public synchronized int getSharedCount() {
+        return sharedCount;
+    }
+
+    /**
+     * Number of the pattern strings replaced by a shared instance
+     */
+    public synchronized int getInternedCount() {
+        return internedCount;
+    }
+
+    /**
+     * Estimated memory saved in bytes
+     */
+    public synchronized long getSavedBytes() {
+        return savedBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Shared " + sharedCount + " of " + conditionCount + " conditions and " + internedCount + " pattern strings of " +
+                mappingCount + " mappings, about " + (savedBytes / 1024) + " KB saved";
+    }
+
+    private void restore(Object condition) {
+        if (!conditions.containsKey(condition)) conditions.put(condition, condition);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends AbstractRequestCondition<T>> T canonicalize(T condition, int size) {
+        conditionCount++;
+        T shared = (T) conditions.get(condition);
+        if (shared == null) {
+            conditions.put(condition, condition);
+            return condition;
+        }
+
+        sharedCount++;
+        savedBytes += CONDITION_BYTES + ELEMENT_BYTES * size;
+        return shared;
+    }
+
+    /*
+     * a patterns condition seen for the first time is rebuilt if any of its strings has been seen before
+     */
+    private PatternsRequestCondition canonicalize(PatternsRequestCondition condition) {
+        PatternsRequestCondition shared = (PatternsRequestCondition) conditions.get(condition);
+        if (shared != null) {
+            for (String pattern : condition.getPatterns())
+                if (patterns.get(pattern) != pattern) savedBytes += STRING_BYTES + 2 * pattern.length();
+            return canonicalize(condition, condition.getPatterns().size());
+        }
+
+        String[] interned = new String[condition.getPatterns().size()];
+        boolean rebuilt = false;
+        int i = 0;
+        for (String pattern : condition.getPatterns()) {
+            String existing = patterns.get(pattern);
+            if (existing == null) {
+                patterns.put(pattern, pattern);
+                existing = pattern;
+            } else if (existing != pattern) {
+                internedCount++;
+                savedBytes += STRING_BYTES + 2 * pattern.length();
+                rebuilt = true;
+            }
+            interned[i++] = existing;
+        }
+        return canonicalize(rebuilt ? new PatternsRequestCondition(interned, urlPathHelper, pathMatcher, useSuffixPatternMatch,
+                useTrailingSlashMatch) : condition, interned.length);
+    }
+}
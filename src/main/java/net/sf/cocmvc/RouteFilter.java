@@ -0,0 +1,183 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc;
+
+import org.springframework.util.StringUtils;
+
+import java.util.Collection;
+
+/**
+ * Bloom filter of the leading literal segments of URL patterns, telling in constant time the lookup paths which
+ * can not match any of them<br/>
+ *
+ * Each pattern is keyed by up to {@value #MAX_DEPTH} of its leading segments before the first one containing
+ * wildcards or URI template variables, e.g. {@code /user/show} by {@code user/show}, and {@code /user/{id}} by
+ * {@code user}. A lookup path is tested against the keys of each depth in use, it may match only if one of them
+ * is found, so a path matching a pattern is never rejected, a path not matching may pass for a false positive.
+ *
+ * <p>Segments are split the same way as the {@link org.springframework.util.AntPathMatcher}, and the last segment
+ * of a path is also tested without its extensions, for the suffix pattern matching. Patterns beginning with
+ * a wildcard segment (e.g. {@code /{module}/**}) can match any path, there's nothing to filter then.<p/>
+ *
+ * @author ywu
+ */
+class RouteFilter {
+
+    static final int MAX_DEPTH = 2;
+
+    private static final char SEPARATOR = '/';
+
+    private static final int BITS_PER_KEY = 16;
+
+    private static final int HASH_COUNT = 4;
+
+    private final long[] bits;
+
+    private final int mask;
+
+    /**
+     * Bit i tells whether any key has i segments
+     */
+    private int depths;
+
+    /**
+     * Whether any pattern matches the root path only, such as {@code /}
+     */
+    private boolean root;
+
+    /**
+     * Filter of the given patterns, or null if any of them can match any path
+     */
+    static RouteFilter create(Collection<String> patterns) {
+        RouteFilter filter = new RouteFilter(patterns.size());
+        for (String pattern : patterns)
+            if (!filter.add(pattern)) return null;
+        return filter;
+    }
+
+    private RouteFilter(int expectedKeys) {
+        int size = 64;
+        while (size < expectedKeys * BITS_PER_KEY) size *= 2;
+        bits = new long[size / 64];
+        mask = size - 1;
+    }
+
+    private boolean add(String pattern) {
+        String[] segments = StringUtils.tokenizeToStringArray(pattern, String.valueOf(SEPARATOR));
+        if (!pattern.startsWith(String.valueOf(SEPARATOR)) && pattern.length() > 0) return false;
+        if (segments.length == 0) {
+            // the empty pattern only matches the root path
+            root = true;
+            return true;
+        }
+
+        int depth = 0;
+        while (depth < segments.length && depth < MAX_DEPTH && !RouteTree.isWildcard(segments[depth])) depth++;
+        if (depth == 0) return false;
+
+        long hash = seed();
+        for (int i = 0; i < depth; i++) hash = hash(hash, segments[i], 0, segments[i].length(), i > 0);
+        setBits(hash);
+        depths |= 1 << depth;
+        return true;
+    }
+
+    /**
+     * Whether any of the patterns may match the given lookup path
+     */
+    public boolean mayMatch(String lookupPath) {
+        if (!lookupPath.startsWith(String.valueOf(SEPARATOR))) return true;
+
+        // bounds of the leading segments, trimmed and skipping the empty ones, as tokenized by the AntPathMatcher
+        int[] bounds = new int[MAX_DEPTH * 2];
+        int count = 0;
+        int length = lookupPath.length();
+        for (int i = 0; i < length && count < MAX_DEPTH; ) {
+            int end = lookupPath.indexOf(SEPARATOR, i);
+            if (end < 0) end = length;
+
+            int start = i;
+            int stop = end;
+            while (start < stop && Character.isWhitespace(lookupPath.charAt(start))) start++;
+            while (stop > start && Character.isWhitespace(lookupPath.charAt(stop - 1))) stop--;
+            if (start < stop) {
+                bounds[count * 2] = start;
+                bounds[count * 2 + 1] = stop;
+                count++;
+            }
+            i = end + 1;
+        }
+        if (count == 0) return root;
+
+        boolean last = isLastSegment(lookupPath, bounds[count * 2 - 1]);
+        long hash = seed();
+        for (int depth = 1; depth <= count; depth++) {
+            int start = bounds[depth * 2 - 2];
+            int end = bounds[depth * 2 - 1];
+            if ((depths & 1 << depth) != 0) {
+                if (testBits(hash(hash, lookupPath, start, end, depth > 1))) return true;
+
+                // suffix pattern match, "/user/show" also matches "/user/show.json"
+                if (depth == count && last) {
+                    for (int dot = lookupPath.indexOf('.', start + 1); dot > 0 && dot < end; dot = lookupPath.indexOf('.', dot + 1))
+                        if (testBits(hash(hash, lookupPath, start, dot, depth > 1))) return true;
+                }
+            }
+            hash = hash(hash, lookupPath, start, end, depth > 1);
+        }
+        return false;
+    }
+
+    private static boolean isLastSegment(String path, int end) {
+        for (int i = end; i < path.length(); i++)
+            if (path.charAt(i) != SEPARATOR && !Character.isWhitespace(path.charAt(i))) return false;
+        return true;
+    }
+
+    /*
+     * 64-bit FNV-1a of the segments joined by separators, split into two 32-bit hashes for double hashing
+     */
+    private static long seed() {
+        return 0xcbf29ce484222325L;
+    }
+
+    private static long hash(long hash, String source, int start, int end, boolean separated) {
+        if (separated) hash = (hash ^ SEPARATOR) * 0x100000001b3L;
+        for (int i = start; i < end; i++) hash = (hash ^ source.charAt(i)) * 0x100000001b3L;
+        return hash;
+    }
+
+    private void setBits(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (h1 + i * h2) & mask;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private boolean testBits(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (h1 + i * h2) & mask;
+            if ((bits[bit >>> 6] & 1L << bit) == 0) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.*;
+
+/**
+ * Route manifest generated at compile time by {@code net.sf.cocmvc.processor.RouteManifestProcessor},
+ * tells which classes are controllers and which of their methods are actions, without reflective introspection<br/>
+ *
+ * Classes and methods missing from the manifest are unknown, and should be introspected as usual.
+ *
+ * @author ywu
+ */
+class RouteManifest {
+
+    static final String MANIFEST_LOCATION = "META-INF/cocmvc/routes.properties";
+
+    static final String CONTROLLER_NAME_SUFFIX_KEY = "@controllerNameSuffix";
+
+    private static final Log logger = LogFactory.getLog(RouteManifest.class);
+
+    enum HandlerKind {
+        /** not a handler */
+        NONE,
+        /** a handler without type-level {@code @RequestMapping} */
+        CONVENTIONAL,
+        /** a handler with type-level {@code @RequestMapping} */
+        ANNOTATED
+    }
+
+    enum ActionKind {
+        /** not an action */
+        NONE,
+        /** a conventional action */
+        CONVENTIONAL,
+        /** an action with method-level {@code @RequestMapping} */
+        ANNOTATED
+    }
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    /**
+     * Load all the manifests visible to the class loader, manifests generated with another controller
+     * naming convention are ignored
+     */
+    public static RouteManifest load(ClassLoader classLoader, String controllerNameSuffix) throws IOException {
+        RouteManifest manifest = new RouteManifest();
+        Enumeration<URL> urls = classLoader.getResources(MANIFEST_LOCATION);
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            Properties routes = PropertiesLoaderUtils.loadProperties(new UrlResource(url));
+            if (!controllerNameSuffix.equals(routes.getProperty(CONTROLLER_NAME_SUFFIX_KEY))) {
+                logger.warn("Ignoring route manifest " + url + ", which is generated with controller name suffix '" +
+                        routes.getProperty(CONTROLLER_NAME_SUFFIX_KEY) + "'");
+                continue;
+            }
+
+            routes.remove(CONTROLLER_NAME_SUFFIX_KEY);
+            for (String className : routes.stringPropertyNames())
+                manifest.entries.put(className, Entry.parse(routes.getProperty(className)));
+        }
+        return manifest;
+    }
+
+    /**
+     * Handler kind of the given class, or null if unknown
+     */
+    public HandlerKind getHandlerKind(Class<?> beanType) {
+        Entry entry = entries.get(beanType.getName());
+        return entry != null ? entry.handlerKind : null;
+    }
+
+    /**
+     * Action kind of the given method of the handler type, or null if unknown
+     */
+    public ActionKind getActionKind(Method method, Class<?> handlerType) {
+        if (method.isBridge() || method.isSynthetic()) return null;
+
+        Entry entry = entries.get(handlerType.getName());
+        return entry != null ? entry.actions.get(getSignature(method)) : null;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /*
+     * same format as the processor generates: name(type,type)
+     */
+    private static String getSignature(Method method) {
+        StringBuilder signature = new StringBuilder(method.getName()).append('(');
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) signature.append(',');
+            signature.append(parameterTypes[i].getCanonicalName());
+        }
+        return signature.append(')').toString();
+    }
+
+    /*
+     * manifest entry of a class, like "C;index();show(int)@;init()!"
+     */
+    private static class Entry {
+
+        private final HandlerKind handlerKind;
+
+        private final Map<String, ActionKind> actions = new HashMap<String, ActionKind>();
+
+        private Entry(HandlerKind handlerKind) {
+            this.handlerKind = handlerKind;
+        }
+
+        static Entry parse(String value) {
+            String[] tokens = value.split(";");
+            Entry entry = new Entry("A".equals(tokens[0]) ? HandlerKind.ANNOTATED :
+                    "C".equals(tokens[0]) ? HandlerKind.CONVENTIONAL : HandlerKind.NONE);
+
+            for (int i = 1; i < tokens.length; i++) {
+                String method = tokens[i];
+                char mark = method.charAt(method.length() - 1);
+                if (mark == '!')
+                    entry.actions.put(method.substring(0, method.length() - 1), ActionKind.NONE);
+                else if (mark == '@')
+                    entry.actions.put(method.substring(0, method.length() - 1), ActionKind.ANNOTATED);
+                else
+                    entry.actions.put(method, ActionKind.CONVENTIONAL);
+            }
+            return entry;
+        }
+    }
+}
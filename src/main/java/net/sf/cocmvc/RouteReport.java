@@ -0,0 +1,331 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc;
+
+import org.apache.commons.logging.Log;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Static analysis of the registered mappings, reporting what makes the lookups slow or the routes unreachable<br/>
+ *
+ * For each mapping, the report tells
+ * <ul>
+ *     <li>the number of its patterns containing wildcards or URI template variables, which are matched by
+ *     scanning the candidates instead of a direct path lookup</li>
+ *     <li>the number of mappings examined to look up its typical path, which is the pattern itself if it's a
+ *     literal one, or the pattern with its wildcards and variables replaced by {@code 0}</li>
+ *     <li>the other mappings also matching the typical path with the same HTTP methods, and the ones which
+ *     win the path, so the mapping is shadowed there</li>
+ *     <li>a rough estimation of the memory it takes, assuming a 64-bit JVM with compressed references</li>
+ * </ul>
+ * Patterns only differing by case, dashes or underscores, such as {@code /fooBar} and {@code /foo-bar},
+ * are reported as naming collisions.
+ *
+ * @author ywu
+ */
+public class RouteReport {
+
+    private final List<Route> routes = new ArrayList<Route>();
+
+    private final List<List<String>> collisions = new ArrayList<List<String>>();
+
+    /**
+     * Analyze the given mappings, as matched by the given path matcher
+     */
+    public static RouteReport analyze(Map<RequestMappingInfo, HandlerMethod> handlerMethods, PathMatcher pathMatcher) {
+        RouteReport report = new RouteReport();
+        RouteTable routeTable = new RouteTable(handlerMethods, pathMatcher, true, false, false);
+        Map<String, Set<String>> normalizedPatterns = new TreeMap<String, Set<String>>();
+
+        for (Map.Entry<RequestMappingInfo, HandlerMethod> entry : handlerMethods.entrySet()) {
+            RequestMappingInfo mapping = entry.getKey();
+            Route route = new Route(mapping.toString(), toString(entry.getValue()), estimateSize(mapping, entry.getValue()));
+
+            for (String pattern : mapping.getPatternsCondition().getPatterns()) {
+                String normalized = pattern.toLowerCase().replace("-", "").replace("_", "");
+                if (!normalizedPatterns.containsKey(normalized)) normalizedPatterns.put(normalized, new TreeSet<String>());
+                normalizedPatterns.get(normalized).add(pattern);
+
+                // URI templates are not patterns to the AntPathMatcher of Spring 3.1, but still matched by scanning
+                boolean scan = pathMatcher.isPattern(pattern) || pattern.indexOf('{') != -1;
+                if (scan) route.patternScans++;
+                analyzePath(route, mapping, pattern, scan ? getTypicalPath(pattern) : pattern, routeTable, pathMatcher);
+            }
+            report.routes.add(route);
+        }
+
+        for (Set<String> patterns : normalizedPatterns.values())
+            if (patterns.size() > 1) report.collisions.add(new ArrayList<String>(patterns));
+        return report;
+    }
+
+    public List<Route> getRoutes() {
+        return Collections.unmodifiableList(routes);
+    }
+
+    /**
+     * Groups of the patterns only differing by case, dashes or underscores
+     */
+    public List<List<String>> getCollisions() {
+        return Collections.unmodifiableList(collisions);
+    }
+
+    /**
+     * Number of the mappings having wildcard or URI template patterns
+     */
+    public int getPatternScanCount() {
+        int count = 0;
+        for (Route route : routes) if (route.patternScans > 0) count++;
+        return count;
+    }
+
+    /**
+     * Number of the mappings competing with other mappings for their typical paths
+     */
+    public int getOverlappingCount() {
+        int count = 0;
+        for (Route route : routes) if (!route.competing.isEmpty()) count++;
+        return count;
+    }
+
+    /**
+     * Number of the mappings whose typical paths are won by other mappings
+     */
+    public int getShadowedCount() {
+        int count = 0;
+        for (Route route : routes) if (!route.shadowedBy.isEmpty()) count++;
+        return count;
+    }
+
+    public long getEstimatedBytes() {
+        long bytes = 0;
+        for (Route route : routes) bytes += route.estimatedBytes;
+        return bytes;
+    }
+
+    /**
+     * Log the summary as info, the problems as warnings, and every route as debug message
+     */
+    public void log(Log logger) {
+        if (logger.isInfoEnabled()) {
+            logger.info("Analyzed " + routes.size() + " routes: " + getPatternScanCount() + " with pattern scans, " +
+                    getOverlappingCount() + " overlapping, " + getShadowedCount() + " shadowed, " + collisions.size() +
+                    " naming collisions, about " + getEstimatedBytes() / 1024 + " KB");
+        }
+        for (Route route : routes) {
+            if (logger.isDebugEnabled()) logger.debug(route);
+            if (!route.shadowedBy.isEmpty() && logger.isWarnEnabled())
+                logger.warn("Route " + route.mapping + " onto " + route.handler + " is shadowed by " + route.shadowedBy);
+        }
+        for (List<String> patterns : collisions)
+            if (logger.isWarnEnabled()) logger.warn("Colliding route patterns " + patterns);
+    }
+
+    /**
+     * Write the report in JSON, with a summary, the routes and the naming collisions
+     */
+    public void writeJson(Writer writer) throws IOException {
+        writer.write("{\n  \"summary\": {\"routes\": " + routes.size() + ", \"patternScans\": " + getPatternScanCount() +
+                ", \"overlapping\": " + getOverlappingCount() + ", \"shadowed\": " + getShadowedCount() +
+                ", \"collisions\": " + collisions.size() + ", \"estimatedBytes\": " + getEstimatedBytes() + "},\n");
+
+        writer.write("  \"routes\": [");
+        for (int i = 0; i < routes.size(); i++) {
+            Route route = routes.get(i);
+            writer.write(i > 0 ? ",\n    " : "\n    ");
+            writer.write("{\"mapping\": " + quote(route.mapping) + ", \"handler\": " + quote(route.handler) +
+                    ", \"patternScans\": " + route.patternScans + ", \"examined\": " + route.examined +
+                    ", \"competing\": " + toJson(route.competing) + ", \"shadowedBy\": " + toJson(route.shadowedBy) +
+                    ", \"estimatedBytes\": " + route.estimatedBytes + "}");
+        }
+        writer.write("\n  ],\n  \"collisions\": [");
+        for (int i = 0; i < collisions.size(); i++) writer.write((i > 0 ? ", " : "") + toJson(collisions.get(i)));
+        writer.write("]\n}\n");
+        writer.flush();
+    }
+
+    /*
+     * examine the mappings matching the path, as the indexed lookup would
+     */
+    private static void analyzePath(Route route, RequestMappingInfo mapping, String pattern, String path,
+                                    RouteTable routeTable, PathMatcher pathMatcher) {
+        List<RequestMappingInfo> directMatches = routeTable.getDirectPathMatches(path);
+        Set<RequestMappingInfo> candidates = routeTable.getCandidates(path);
+        route.examined = Math.max(route.examined, directMatches.isEmpty() ? candidates.size() : directMatches.size());
+        if (!pathMatcher.match(pattern, path)) return;  // a pattern which can't be sampled
+
+        Comparator<String> comparator = pathMatcher.getPatternComparator(path);
+        for (RequestMappingInfo candidate : candidates) {
+            if (candidate.equals(mapping) || !acceptsSameMethods(candidate, mapping)) continue;
+
+            String bestPattern = null;
+            for (String candidatePattern : candidate.getPatternsCondition().getPatterns()) {
+                if (pathMatcher.match(candidatePattern, path) &&
+                        (bestPattern == null || comparator.compare(candidatePattern, bestPattern) < 0))
+                    bestPattern = candidatePattern;
+            }
+            if (bestPattern == null) continue;
+
+            String competitor = toString(routeTable.getHandlerMethod(candidate));
+            route.competing.add(competitor);
+            if (comparator.compare(bestPattern, pattern) < 0 && routeTable.isPathAndMethodOnly(candidate) &&
+                    coversMethods(candidate, mapping))
+                route.shadowedBy.add(competitor);
+        }
+    }
+
+    /**
+     * Typical lookup path of a pattern, with the wildcards and URI template variables replaced by a plain segment
+     */
+    public static String getTypicalPath(String pattern) {
+        return pattern.replaceAll("\\{[^/]*?\\}", "0").replace("**", "0").replace('*', '0').replace('?', '0');
+    }
+
+    private static boolean acceptsSameMethods(RequestMappingInfo mapping, RequestMappingInfo other) {
+        Set<RequestMethod> methods = mapping.getMethodsCondition().getMethods();
+        Set<RequestMethod> otherMethods = other.getMethodsCondition().getMethods();
+        return methods.isEmpty() || otherMethods.isEmpty() || !Collections.disjoint(methods, otherMethods);
+    }
+
+    /*
+     * whether the mapping accepts all the methods the other one does
+     */
+    private static boolean coversMethods(RequestMappingInfo mapping, RequestMappingInfo other) {
+        Set<RequestMethod> methods = mapping.getMethodsCondition().getMethods();
+        Set<RequestMethod> otherMethods = other.getMethodsCondition().getMethods();
+        return methods.isEmpty() || !otherMethods.isEmpty() && methods.containsAll(otherMethods);
+    }
+
+    /*
+     * object headers, fields and collections of the mapping and its conditions, the handler method and its parameters,
+     * and the registry entries
+     */
+    private static long estimateSize(RequestMappingInfo mapping, HandlerMethod handlerMethod) {
+        long bytes = 48 + 6 * 64;                                   // the mapping and its conditions
+        for (String pattern : mapping.getPatternsCondition().getPatterns())
+            bytes += 40 + 2 * pattern.length() + 32 + 48;           // the string, the set entry, the url map entry
+        bytes += 16 * mapping.getMethodsCondition().getMethods().size();
+        bytes += 56 * (mapping.getParamsCondition().getExpressions().size() + mapping.getHeadersCondition().getExpressions().size());
+        bytes += 40 + 48 * handlerMethod.getMethodParameters().length;
+        return bytes + 48;                                          // the handler method entry
+    }
+
+    private static String toString(HandlerMethod handlerMethod) {
+        return handlerMethod.getBeanType().getName() + '#' + handlerMethod.getMethod().getName();
+    }
+
+    private static String toJson(Collection<String> strings) {
+        StringBuilder json = new StringBuilder("[");
+        for (String s : strings) json.append(json.length() > 1 ? ", " : "").append(quote(s));
+        return json.append(']').toString();
+    }
+
+    private static String quote(String s) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') quoted.append('\\').append(c);
+            else if (c < 0x20) quoted.append(String.format("\\u%04x", (int) c));
+            else quoted.append(c);
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Analysis of a mapping
+     */
+    public static class Route {
+
+        private final String mapping;
+
+        private final String handler;
+
+        private final long estimatedBytes;
+
+        private int patternScans;
+
+        private int examined;
+
+        private final Set<String> competing = new TreeSet<String>();
+
+        private final Set<String> shadowedBy = new TreeSet<String>();
+
+        private Route(String mapping, String handler, long estimatedBytes) {
+            this.mapping = mapping;
+            this.handler = handler;
+            this.estimatedBytes = estimatedBytes;
+        }
+
+        public String getMapping() {
+            return mapping;
+        }
+
+        /**
+         * The handler method, as {@code <controller class>#<method>}
+         */
+        public String getHandler() {
+            return handler;
+        }
+
+        /**
+         * Number of the patterns containing wildcards or URI template variables
+         */
+        public int getPatternScans() {
+            return patternScans;
+        }
+
+        /**
+         * Max number of the mappings examined to look up one of the typical paths
+         */
+        public int getExamined() {
+            return examined;
+        }
+
+        /**
+         * Handlers of the other mappings matching the typical paths with the same HTTP methods
+         */
+        public Set<String> getCompeting() {
+            return Collections.unmodifiableSet(competing);
+        }
+
+        /**
+         * Handlers of the other mappings winning the typical paths
+         */
+        public Set<String> getShadowedBy() {
+            return Collections.unmodifiableSet(shadowedBy);
+        }
+
+        public long getEstimatedBytes() {
+            return estimatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Route{mapping=" + mapping + ", handler=" + handler + ", patternScans=" + patternScans +
+                    ", examined=" + examined + ", competing=" + competing + ", shadowedBy=" + shadowedBy +
+                    ", estimatedBytes=" + estimatedBytes + "}";
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc;
+
+import org.springframework.util.ClassUtils;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Binary snapshot of the registered mappings, to skip the introspection of the controllers on the next start<br/>
+ *
+ * A snapshot is valid as long as its fingerprint matches, which is computed from the mapping settings,
+ * the names and types of the beans, and the class files of the bean types and their super types.
+ *
+ * @author ywu
+ */
+class RouteSnapshot {
+
+    private static final int MAGIC = 0x434f434d;     // "COCM"
+
+    private static final int VERSION = 1;
+
+    private static final String CHARSET = "UTF-8";
+
+    /**
+     * Size of a route without any content: the lengths of its 3 strings and 7 string arrays
+     */
+    private static final int MIN_ROUTE_BYTES = 40;
+
+    private final byte[] fingerprint;
+
+    private final List<Route> routes;
+
+    private RouteSnapshot(byte[] fingerprint, List<Route> routes) {
+        this.fingerprint = fingerprint;
+        this.routes = routes;
+    }
+
+    public byte[] getFingerprint() {
+        return fingerprint;
+    }
+
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * Fingerprint of the settings and the controller types, null if a class file is not readable
+     */
+    public static byte[] fingerprint(String settings, String[] beanNames, Class<?>[] beanTypes) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        digest.update(settings.getBytes(CHARSET));
+        Set<Class<?>> digested = new HashSet<Class<?>>();
+        for (int i = 0; i < beanNames.length; i++) {
+            digest.update((beanNames[i] + '=' + (beanTypes[i] != null ? beanTypes[i].getName() : "") + ';').getBytes(CHARSET));
+            if (beanTypes[i] != null && !digestHierarchy(digest, beanTypes[i], digested)) return null;
+        }
+        return digest.digest();
+    }
+
+    /*
+     * digest the class files of the type and its super types, except the JDK ones
+     */
+    private static boolean digestHierarchy(MessageDigest digest, Class<?> type, Set<Class<?>> digested) throws IOException {
+        if (type.isArray() || type.isPrimitive() || type.getName().startsWith("java.") || !digested.add(type)) return true;
+
+        ClassLoader classLoader = type.getClassLoader() != null ? type.getClassLoader() : ClassLoader.getSystemClassLoader();
+        InputStream in = classLoader.getResourceAsStream(ClassUtils.convertClassNameToResourcePath(type.getName()) + ClassUtils.CLASS_FILE_SUFFIX);
+        if (in == null) return false;   // generated classes, e.g. proxies
+        try {
+            byte[] buffer = new byte[4096];
+            for (int n; (n = in.read(buffer)) != -1; ) digest.update(buffer, 0, n);
+        } finally {
+            in.close();
+        }
+
+        if (type.getSuperclass() != null && !digestHierarchy(digest, type.getSuperclass(), digested)) return false;
+        for (Class<?> iface : type.getInterfaces())
+            if (!digestHierarchy(digest, iface, digested)) return false;
+        return true;
+    }
+
+    /**
+     * Read a snapshot through a memory mapped buffer, null if the file doesn't exist or is not a valid snapshot
+     */
+    public static RouteSnapshot read(File file) throws IOException {
+        if (!file.isFile()) return null;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return null;
+
+            byte[] fingerprint = new byte[readLength(buffer, 1)];
+            buffer.get(fingerprint);
+
+            int count = readLength(buffer, MIN_ROUTE_BYTES);
+            List<Route> routes = new ArrayList<Route>(count);
+            for (int i = 0; i < count; i++) {
+                Route route = new Route();
+                route.beanName = readString(buffer);
+                route.declaringClass = readString(buffer);
+                route.methodName = readString(buffer);
+                route.parameterTypes = readStrings(buffer);
+                route.patterns = readStrings(buffer);
+                route.methods = readStrings(buffer);
+                route.params = readStrings(buffer);
+                route.headers = readStrings(buffer);
+                route.consumes = readStrings(buffer);
+                route.produces = readStrings(buffer);
+                routes.add(route);
+            }
+            return new RouteSnapshot(fingerprint, routes);
+        } catch (RuntimeException e) {
+            return null;    // truncated or corrupted
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Write a snapshot of the mappings, replacing the file atomically where supported.
+     * Handler methods must be registered by bean name
+     */
+    public static void write(File file, byte[] fingerprint, Map<RequestMappingInfo, HandlerMethod> handlerMethods) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) throw new IOException("Failed to create directory " + parent);
+
+        File tmp = File.createTempFile(file.getName(), ".tmp", parent);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(fingerprint.length);
+            out.write(fingerprint);
+
+            out.writeInt(handlerMethods.size());
+            for (Map.Entry<RequestMappingInfo, HandlerMethod> entry : handlerMethods.entrySet()) {
+                RequestMappingInfo mapping = entry.getKey();
+                Method method = entry.getValue().getMethod();
+
+                writeString(out, (String) entry.getValue().getBean());
+                writeString(out, method.getDeclaringClass().getName());
+                writeString(out, method.getName());
+                writeStrings(out, getNames(method.getParameterTypes()));
+                writeStrings(out, mapping.getPatternsCondition().getPatterns());
+                writeStrings(out, mapping.getMethodsCondition().getMethods());
+                writeStrings(out, mapping.getParamsCondition().getExpressions());
+                writeStrings(out, mapping.getHeadersCondition().getExpressions());
+                writeStrings(out, mapping.getConsumesCondition().getExpressions());
+                writeStrings(out, mapping.getProducesCondition().getExpressions());
+            }
+        } finally {
+            out.close();
+        }
+
+        if (!tmp.renameTo(file)) {
+            // can't replace an existing file on some platforms
+            if (!file.delete() || !tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Failed to write " + file);
+            }
+        }
+    }
+
+    /**
+     * Whether the mapping can be saved in a snapshot: registered by bean name, without custom conditions
+     */
+    public static boolean isSupported(RequestMappingInfo mapping, HandlerMethod handlerMethod) {
+        return handlerMethod.getBean() instanceof String && mapping.getCustomCondition() == null;
+    }
+
+    private static List<String> getNames(Class<?>[] types) {
+        List<String> names = new ArrayList<String>(types.length);
+        for (Class<?> type : types) names.add(type.getName());
+        return names;
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<?> values) throws IOException {
+        out.writeInt(values.size());
+        for (Object value : values) writeString(out, value.toString());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(CHARSET);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String[] readStrings(ByteBuffer buffer) throws IOException {
+        String[] values = new String[readLength(buffer, 4)];
+        for (int i = 0; i < values.length; i++) values[i] = readString(buffer);
+        return values;
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        byte[] bytes = new byte[readLength(buffer, 1)];
+        buffer.get(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    /*
+     * a length of elements taking at least the given number of bytes each, which must fit in the rest of the file,
+     * so a corrupted one is never used to allocate an array
+     */
+    private static int readLength(ByteBuffer buffer, int minElementBytes) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining() / minElementBytes) throw new BufferUnderflowException();
+        return length;
+    }
+
+    /**
+     * A mapped handler method, conditions are kept in their string forms
+     */
+    static class Route {
+
+        String beanName;
+
+        String declaringClass;
+
+        String methodName;
+
+        String[] parameterTypes;
+
+        String[] patterns;
+
+        String[] methods;
+
+        String[] params;
+
+        String[] headers;
+
+        String[] consumes;
+
+        String[] produces;
+
+        Method resolveMethod(ClassLoader classLoader) throws ClassNotFoundException, NoSuchMethodException {
+            Class<?>[] types = new Class<?>[parameterTypes.length];
+            for (int i = 0; i < types.length; i++) types[i] = ClassUtils.forName(parameterTypes[i], classLoader);
+            return ClassUtils.forName(declaringClass, classLoader).getDeclaredMethod(methodName, types);
+        }
+
+        RequestMethod[] resolveRequestMethods() {
+            RequestMethod[] requestMethods = new RequestMethod[methods.length];
+            for (int i = 0; i < methods.length; i++) requestMethods[i] = RequestMethod.valueOf(methods[i]);
+            return requestMethods;
+        }
+    }
+}
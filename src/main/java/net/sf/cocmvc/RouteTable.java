@@ -0,0 +1,262 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc;
+
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+
+import java.util.*;
+
+/**
+ * Immutable snapshot of the registered mappings, published as a whole by {@link ConventionalHandlerMapping}
+ *
+ * @author ywu
+ */
+class RouteTable {
+
+    private final Map<RequestMappingInfo, HandlerMethod> handlerMethods;
+
+    private final MultiValueMap<String, RequestMappingInfo> urlMap = new LinkedMultiValueMap<String, RequestMappingInfo>();
+
+    /**
+     * Route tree of all mappings, null if not indexed
+     */
+    private final RouteTree<RequestMappingInfo> routeTree;
+
+    /**
+     * Mappings whose matching depends on more than the lookup path and the HTTP method
+     */
+    private final Set<RequestMappingInfo> conditionalMappings = new HashSet<RequestMappingInfo>();
+
+    /**
+     * Literal paths mapped to nothing but a single unconditional mapping, null if not enabled
+     */
+    private final LiteralRoutes<RequestMappingInfo> literalRoutes;
+
+    /**
+     * Mappings accepting each of the HTTP methods restricted by any mapping, null if not partitioned
+     */
+    private final Map<String, Partition> partitions;
+
+    /**
+     * Mappings accepting any HTTP method, examined for the methods without a partition, null if not partitioned
+     */
+    private final Partition unrestricted;
+
+    /**
+     * Filter of the lookup paths which can not match any mapping, null if not enabled or nothing can be filtered
+     */
+    private final RouteFilter routeFilter;
+
+    RouteTable(Map<RequestMappingInfo, HandlerMethod> handlerMethods, PathMatcher pathMatcher, boolean indexed, boolean literal,
+               boolean partitioned) {
+        this(handlerMethods, pathMatcher, indexed, literal, partitioned, false);
+    }
+
+    RouteTable(Map<RequestMappingInfo, HandlerMethod> handlerMethods, PathMatcher pathMatcher, boolean indexed, boolean literal,
+               boolean partitioned, boolean filtered) {
+        this.handlerMethods = Collections.unmodifiableMap(new LinkedHashMap<RequestMappingInfo, HandlerMethod>(handlerMethods));
+        this.routeTree = indexed ? new RouteTree<RequestMappingInfo>() : null;
+
+        for (RequestMappingInfo mapping : this.handlerMethods.keySet()) {
+            Set<String> patterns = mapping.getPatternsCondition().getPatterns();
+            for (String pattern : patterns)
+                if (!pathMatcher.isPattern(pattern)) urlMap.add(pattern, mapping);
+
+            if (routeTree != null) routeTree.add(mapping, patterns);
+            if (!matchesByPathAndMethodOnly(mapping)) conditionalMappings.add(mapping);
+        }
+
+        literalRoutes = literal ? createLiteralRoutes() : null;
+        partitions = partitioned ? createPartitions(pathMatcher, indexed) : null;
+        unrestricted = partitioned ? new Partition(null, pathMatcher, indexed) : null;
+        if (unrestricted != null) {
+            for (RequestMappingInfo mapping : this.handlerMethods.keySet())
+                if (mapping.getMethodsCondition().getMethods().isEmpty()) unrestricted.add(mapping);
+        }
+        routeFilter = filtered ? createRouteFilter() : null;
+    }
+
+    public Map<RequestMappingInfo, HandlerMethod> getHandlerMethods() {
+        return handlerMethods;
+    }
+
+    public HandlerMethod getHandlerMethod(RequestMappingInfo mapping) {
+        return handlerMethods.get(mapping);
+    }
+
+    /**
+     * Mappings registered with exactly the given lookup path
+     */
+    public List<RequestMappingInfo> getDirectPathMatches(String lookupPath) {
+        List<RequestMappingInfo> directPathMatches = urlMap.get(lookupPath);
+        return directPathMatches != null ? directPathMatches : Collections.<RequestMappingInfo>emptyList();
+    }
+
+    /**
+     * Mappings which may match the given lookup path, all mappings if not indexed
+     */
+    public Set<RequestMappingInfo> getCandidates(String lookupPath) {
+        return routeTree != null ? routeTree.getCandidates(lookupPath) : handlerMethods.keySet();
+    }
+
+    /**
+     * Mappings registered with exactly the given lookup path, and accepting the given HTTP method if partitioned
+     */
+    public List<RequestMappingInfo> getDirectPathMatches(String lookupPath, String requestMethod) {
+        if (partitions == null) return getDirectPathMatches(lookupPath);
+
+        List<RequestMappingInfo> directPathMatches = getPartition(requestMethod).urlMap.get(lookupPath);
+        return directPathMatches != null ? directPathMatches : Collections.<RequestMappingInfo>emptyList();
+    }
+
+    /**
+     * Mappings which may match the given lookup path, and accept the given HTTP method if partitioned
+     */
+    public Set<RequestMappingInfo> getCandidates(String lookupPath, String requestMethod) {
+        if (partitions == null) return getCandidates(lookupPath);
+
+        Partition partition = getPartition(requestMethod);
+        return partition.routeTree != null ? partition.routeTree.getCandidates(lookupPath) : partition.mappings;
+    }
+
+    /**
+     * Whether any mapping may match the given lookup path, false means no mapping matches it for sure
+     */
+    public boolean mayMatch(String lookupPath) {
+        return routeFilter == null || routeFilter.mayMatch(lookupPath);
+    }
+
+    /**
+     * Whether the mappings are partitioned by HTTP method
+     */
+    public boolean isPartitioned() {
+        return partitions != null;
+    }
+
+    /**
+     * Whether the given mapping is matched only by the lookup path and the HTTP method
+     */
+    public boolean isPathAndMethodOnly(RequestMappingInfo mapping) {
+        return !conditionalMappings.contains(mapping);
+    }
+
+    public boolean hasConditionalMappings() {
+        return !conditionalMappings.isEmpty();
+    }
+
+    /**
+     * Literal paths which always resolve to the same mapping if its HTTP methods are accepted, null if not enabled
+     */
+    public LiteralRoutes<RequestMappingInfo> getLiteralRoutes() {
+        return literalRoutes;
+    }
+
+    /*
+     * a literal path resolves to its mapping without evaluating any condition but the HTTP method, only if it's the only
+     * mapping registered with the path, and it has a single pattern (so it's the best matching pattern) and no other
+     * conditions, such as the mappings of conventional actions
+     */
+    private LiteralRoutes<RequestMappingInfo> createLiteralRoutes() {
+        LiteralRoutes<RequestMappingInfo> routes = new LiteralRoutes<RequestMappingInfo>(urlMap.size());
+        for (Map.Entry<String, List<RequestMappingInfo>> entry : urlMap.entrySet()) {
+            if (entry.getValue().size() != 1) continue;
+
+            RequestMappingInfo mapping = entry.getValue().get(0);
+            if (mapping.getPatternsCondition().getPatterns().size() == 1 && isPathAndMethodOnly(mapping))
+                routes.put(entry.getKey(), mapping);
+        }
+        return routes;
+    }
+
+    /*
+     * a mapping without patterns matches any path, so nothing can be filtered
+     */
+    private RouteFilter createRouteFilter() {
+        List<String> patterns = new ArrayList<String>();
+        for (RequestMappingInfo mapping : handlerMethods.keySet()) {
+            Set<String> mappingPatterns = mapping.getPatternsCondition().getPatterns();
+            if (mappingPatterns.isEmpty()) return null;
+            patterns.addAll(mappingPatterns);
+        }
+        return RouteFilter.create(patterns);
+    }
+
+    /*
+     * a partition for each HTTP method restricted by any mapping, holding the mappings accepting the method,
+     * the other methods are only accepted by the unrestricted mappings
+     */
+    private Map<String, Partition> createPartitions(PathMatcher pathMatcher, boolean indexed) {
+        Set<RequestMethod> restricted = EnumSet.noneOf(RequestMethod.class);
+        for (RequestMappingInfo mapping : handlerMethods.keySet()) restricted.addAll(mapping.getMethodsCondition().getMethods());
+
+        Map<String, Partition> partitions = new HashMap<String, Partition>();
+        for (RequestMethod method : restricted) partitions.put(method.name(), new Partition(method, pathMatcher, indexed));
+        for (RequestMappingInfo mapping : handlerMethods.keySet()) {
+            Set<RequestMethod> methods = mapping.getMethodsCondition().getMethods();
+            for (Partition partition : partitions.values())
+                if (methods.isEmpty() || methods.contains(partition.method)) partition.add(mapping);
+        }
+        return partitions;
+    }
+
+    private Partition getPartition(String requestMethod) {
+        Partition partition = partitions.get(requestMethod);
+        return partition != null ? partition : unrestricted;
+    }
+
+    /*
+     * the mappings accepting an HTTP method, indexed the same way as the whole table
+     */
+    private static class Partition {
+
+        private final RequestMethod method;
+
+        private final PathMatcher pathMatcher;
+
+        private final MultiValueMap<String, RequestMappingInfo> urlMap = new LinkedMultiValueMap<String, RequestMappingInfo>();
+
+        private final Set<RequestMappingInfo> mappings = new LinkedHashSet<RequestMappingInfo>();
+
+        private final RouteTree<RequestMappingInfo> routeTree;
+
+        private Partition(RequestMethod method, PathMatcher pathMatcher, boolean indexed) {
+            this.method = method;
+            this.pathMatcher = pathMatcher;
+            this.routeTree = indexed ? new RouteTree<RequestMappingInfo>() : null;
+        }
+
+        private void add(RequestMappingInfo mapping) {
+            Set<String> patterns = mapping.getPatternsCondition().getPatterns();
+            for (String pattern : patterns)
+                if (!pathMatcher.isPattern(pattern)) urlMap.add(pattern, mapping);
+
+            mappings.add(mapping);
+            if (routeTree != null) routeTree.add(mapping, patterns);
+        }
+    }
+
+    private static boolean matchesByPathAndMethodOnly(RequestMappingInfo mapping) {
+        return mapping.getParamsCondition().getExpressions().isEmpty() && mapping.getHeadersCondition().getExpressions().isEmpty() &&
+                mapping.getConsumesCondition().isEmpty() && mapping.getProducesCondition().isEmpty() &&
+                mapping.getCustomCondition() == null;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc;
+
+import org.springframework.util.StringUtils;
+
+import java.util.*;
+
+/**
+ * Segment based radix tree of URL patterns, used to narrow down the mappings which may match a lookup path<br/>
+ *
+ * Patterns are split into segments the same way {@link org.springframework.util.AntPathMatcher} does,
+ * literal segments become static children, segments containing wildcards or URI template variables share
+ * a single wildcard child, and {@code **} segments catch any remaining path.
+ *
+ * <p>The candidates returned for a lookup path is a superset of the mappings whose patterns actually match it,
+ * so the final decision is still made by the mapping conditions, the cost of a lookup grows with path depth,
+ * not with the number of routes.<p/>
+ *
+ * @author ywu
+ */
+class RouteTree<T> {
+
+    private static final String SEPARATOR = "/";
+
+    private final Node<T> root = new Node<T>();
+
+    /**
+     * Mappings which can not be indexed (no patterns at all), always treated as candidates
+     */
+    private final Set<T> unindexed = new LinkedHashSet<T>();
+
+    private final Set<T> all = new LinkedHashSet<T>();
+
+    /**
+     * Index a mapping by its URL patterns
+     */
+    public void add(T mapping, Collection<String> patterns) {
+        all.add(mapping);
+        if (patterns.isEmpty()) {
+            // a mapping without patterns matches every path
+            unindexed.add(mapping);
+            return;
+        }
+
+        for (String pattern : patterns) add(mapping, pattern);
+    }
+
+    private void add(T mapping, String pattern) {
+        if (!pattern.startsWith(SEPARATOR)) {
+            // the empty pattern only matches the root path
+            if (pattern.length() == 0) root.addTerminal(mapping);
+            else unindexed.add(mapping);
+            return;
+        }
+
+        Node<T> node = root;
+        for (String segment : StringUtils.tokenizeToStringArray(pattern, SEPARATOR)) {
+            if ("**".equals(segment)) {
+                node.addCatchAll(mapping);
+                return;
+            }
+            node = isWildcard(segment) ? node.wildcardChild() : node.staticChild(segment);
+        }
+        node.addTerminal(mapping);
+
+        // a suffix pattern appended to a trailing slash ("/foo/.*") consumes one more segment
+        if (pattern.endsWith(SEPARATOR)) node.addSuffixTerminal(mapping);
+    }
+
+    /**
+     * Mappings which may match the given lookup path
+     */
+    public Set<T> getCandidates(String lookupPath) {
+        if (!lookupPath.startsWith(SEPARATOR)) return Collections.unmodifiableSet(all);
+
+        Set<T> candidates = new LinkedHashSet<T>(unindexed);
+        collect(root, StringUtils.tokenizeToStringArray(lookupPath, SEPARATOR), 0, candidates);
+        return candidates;
+    }
+
+    /**
+     * All the indexed mappings
+     */
+    public Set<T> getMappings() {
+        return Collections.unmodifiableSet(all);
+    }
+
+    private void collect(Node<T> node, String[] segments, int index, Set<T> candidates) {
+        node.collectCatchAll(candidates);
+        if (index == segments.length) {
+            node.collectTerminals(candidates);
+            return;
+        }
+
+        String segment = segments[index];
+        Node<T> child = node.getStaticChild(segment);
+        if (child != null) collect(child, segments, index + 1, candidates);
+
+        // suffix pattern match, "/show" also matches "/show.json"
+        if (index == segments.length - 1) {
+            int dot = segment.indexOf('.');
+            Node<T> stem = dot > 0 ? node.getStaticChild(segment.substring(0, dot)) : null;
+            if (stem != null) stem.collectTerminals(candidates);
+            if (dot == 0) node.collectSuffixTerminals(candidates);
+        }
+
+        if (node.wildcard != null) collect(node.wildcard, segments, index + 1, candidates);
+    }
+
+    static boolean isWildcard(String segment) {
+        return segment.indexOf('*') != -1 || segment.indexOf('?') != -1 || segment.indexOf('{') != -1;
+    }
+
+    private static class Node<T> {
+
+        private Map<String, Node<T>> staticChildren;
+
+        private Node<T> wildcard;
+
+        private List<T> terminals;
+
+        private List<T> catchAll;
+
+        private List<T> suffixTerminals;
+
+        Node<T> getStaticChild(String segment) {
+            return staticChildren != null ? staticChildren.get(segment) : null;
+        }
+
+        Node<T> staticChild(String segment) {
+            if (staticChildren == null) staticChildren = new HashMap<String, Node<T>>();
+
+            Node<T> child = staticChildren.get(segment);
+            if (child == null) {
+                child = new Node<T>();
+                staticChildren.put(segment, child);
+            }
+            return child;
+        }
+
+        Node<T> wildcardChild() {
+            if (wildcard == null) wildcard = new Node<T>();
+            return wildcard;
+        }
+
+        void addTerminal(T mapping) {
+            if (terminals == null) terminals = new ArrayList<T>(1);
+            terminals.add(mapping);
+        }
+
+        void addCatchAll(T mapping) {
+            if (catchAll == null) catchAll = new ArrayList<T>(1);
+            catchAll.add(mapping);
+        }
+
+        void addSuffixTerminal(T mapping) {
+            if (suffixTerminals == null) suffixTerminals = new ArrayList<T>(1);
+            suffixTerminals.add(mapping);
+        }
+
+        void collectTerminals(Set<T> candidates) {
+            if (terminals != null) candidates.addAll(terminals);
+        }
+
+        void collectCatchAll(Set<T> candidates) {
+            if (catchAll != null) candidates.addAll(catchAll);
+        }
+
+        void collectSuffixTerminals(Set<T> candidates) {
+            if (suffixTerminals != null) candidates.addAll(suffixTerminals);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * The rendered responses of GET requests to the annotated controller or action are cached by the
+ * {@link net.sf.cocmvc.cache.ResponseCache}, an annotation on the action overrides the one on the controller.
+ * @author ywu
+ */
+@Target({TYPE, METHOD})
+@Retention(RUNTIME)
+public @interface CacheResponse {
+
+    /**
+     * Time to live in seconds, the default of the cache if negative, not cached if 0
+     */
+    int ttl() default -1;
+
+    /**
+     * Request params the response varies by, the other params are ignored
+     */
+    String[] params() default {};
+}
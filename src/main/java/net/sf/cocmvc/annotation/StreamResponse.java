@@ -0,0 +1,41 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.annotation;
+
+import net.sf.cocmvc.stream.StreamFormat;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * The items returned by the annotated action are streamed to the response, required by the actions returning
+ * an {@link Iterable}, which are otherwise taken as a model attribute.
+ * @author ywu
+ */
+@Target(METHOD)
+@Retention(RUNTIME)
+public @interface StreamResponse {
+
+    /**
+     * Format of the streamed items
+     */
+    StreamFormat format() default StreamFormat.JSON_LINES;
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.async;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.ui.ModelMap;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An action result being computed, completed exactly once, by the result, the timeout, the rejection, or an error
+ *
+ * @author ywu
+ */
+class AsyncAction implements Runnable, AsyncListener {
+
+    private static final Log logger = LogFactory.getLog(AsyncAction.class);
+
+    private final AsyncContext asyncContext;
+
+    private final Callable<?> callable;
+
+    private final boolean responseBody;
+
+    private final ModelMap model;
+
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    private volatile Future<?> future;
+
+    AsyncAction(AsyncContext asyncContext, Callable<?> callable, boolean responseBody, ModelMap model) {
+        this.asyncContext = asyncContext;
+        this.callable = callable;
+        this.responseBody = responseBody;
+        this.model = model;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+        if (completed.get()) future.cancel(true);    // timed out before being submitted
+    }
+
+    public void run() {
+        Object value = null;
+        Throwable error = null;
+        try {
+            value = callable.call();
+        } catch (Throwable e) {
+            error = e;
+        }
+
+        if (!completed.compareAndSet(false, true)) return;
+        AsyncResult.setResult((HttpServletRequest) asyncContext.getRequest(), new AsyncResult(responseBody, model, value, error));
+        asyncContext.dispatch();
+    }
+
+    void reject() throws IOException {
+        if (!completed.compareAndSet(false, true)) return;
+        logger.warn("Asynchronous action rejected by the executor");
+        AsyncResult.clearStarted((HttpServletRequest) asyncContext.getRequest());
+        respondUnavailable();
+    }
+
+    public void onTimeout(AsyncEvent event) throws IOException {
+        if (!completed.compareAndSet(false, true)) return;
+        cancel();
+        respondUnavailable();
+    }
+
+    public void onError(AsyncEvent event) {
+        if (completed.compareAndSet(false, true)) cancel();
+    }
+
+    public void onComplete(AsyncEvent event) {
+    }
+
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    private void cancel() {
+        Future<?> f = future;
+        if (f != null) f.cancel(true);
+    }
+
+    private void respondUnavailable() throws IOException {
+        HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+        if (!response.isCommitted()) response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        asyncContext.complete();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.async;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.util.Assert;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Handles {@link Callable} returned by actions, the container thread is released immediately,
+ * the action result is computed on the executor, and handled by dispatching the request again<br/>
+ *
+ * A {@link java.util.concurrent.Future} is not handled: waiting for it would hold an executor thread per request,
+ * wrap the work in a {@code Callable} instead.
+ *
+ * Requires the Servlet 3 async support of the {@code DispatcherServlet} and its filters,
+ * see {@link net.sf.cocmvc.ConventionalHandlerMapping#setUseAsyncActions(boolean)}.
+ *
+ * @author ywu
+ */
+public class AsyncActionReturnValueHandler implements HandlerMethodReturnValueHandler {
+
+    private final ExecutorService executor;
+
+    private final long timeout;
+
+    private final AsyncRejectionPolicy rejectionPolicy;
+
+    /**
+     * @param executor executor running the actions
+     * @param timeout timeout of the actions in milliseconds, the container's default if not positive
+     * @param rejectionPolicy what to do with the actions rejected by the executor
+     */
+    public AsyncActionReturnValueHandler(ExecutorService executor, long timeout, AsyncRejectionPolicy rejectionPolicy) {
+        Assert.notNull(executor, "Executor is required");
+        Assert.notNull(rejectionPolicy, "Rejection policy is required");
+        this.executor = executor;
+        this.timeout = timeout;
+        this.rejectionPolicy = rejectionPolicy;
+    }
+
+    public boolean supportsReturnType(MethodParameter returnType) {
+        Class<?> type = returnType.getParameterType();
+        return Callable.class.isAssignableFrom(type);
+    }
+
+    public void handleReturnValue(Object returnValue, MethodParameter returnType, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest) throws Exception {
+        // nothing to wait for, same as a void action
+        if (returnValue == null) return;
+
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        HttpServletResponse response = webRequest.getNativeResponse(HttpServletResponse.class);
+        mavContainer.setRequestHandled(true);
+
+        AsyncContext asyncContext = request.startAsync(request, response);
+        if (timeout > 0) asyncContext.setTimeout(timeout);
+        AsyncResult.markStarted(request, asyncContext);
+
+        boolean responseBody = returnType.getMethodAnnotation(ResponseBody.class) != null;
+        // the model is kept as is, so are the attributes added by the action on the executor
+        AsyncAction action = new AsyncAction(asyncContext, (Callable<?>) returnValue, responseBody, mavContainer.getModel());
+        asyncContext.addListener(action);
+        try {
+            action.setFuture(executor.submit(action));
+        } catch (RejectedExecutionException e) {
+            if (rejectionPolicy == AsyncRejectionPolicy.CALLER_RUNS) action.run();
+            else action.reject();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.async;
+
+/**
+ * What to do with an asynchronous action rejected by the executor, e.g. its queue is full
+ *
+ * @author ywu
+ */
+public enum AsyncRejectionPolicy {
+
+    /**
+     * Respond with 503 Service Unavailable
+     */
+    ABORT,
+
+    /**
+     * Run the action in the container thread, the same as a synchronous one
+     */
+    CALLER_RUNS
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.async;
+
+import org.springframework.http.HttpEntity;
+import org.springframework.ui.ModelMap;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.View;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * Result of an asynchronous action, handled by the request dispatched again once the action is completed<br/>
+ *
+ * An instance is the handler bean of the dispatched request, its handler method is chosen by the kind of the result,
+ * so the result is handled by the same return value handlers as a synchronous action would return it. Note that
+ * {@code @ExceptionHandler} methods of the controller are not applied to the exceptions thrown by the action.
+ *
+ * @author ywu
+ */
+public class AsyncResult {
+
+    private static final String RESULT_ATTRIBUTE = AsyncResult.class.getName() + ".result";
+
+    private static final String STARTED_ATTRIBUTE = AsyncResult.class.getName() + ".started";
+
+    private final boolean responseBody;
+
+    private final ModelMap model;
+
+    private final Object value;
+
+    private final Throwable error;
+
+    AsyncResult(boolean responseBody, ModelMap model, Object value, Throwable error) {
+        this.responseBody = responseBody;
+        this.model = model;
+        this.value = value;
+        this.error = error;
+    }
+
+    /**
+     * Whether an asynchronous action is started by the request, and its result is not handled yet
+     */
+    public static boolean isStarted(HttpServletRequest request) {
+        return request.getAttribute(STARTED_ATTRIBUTE) != null;
+    }
+
+    /**
+     * Remove and return the result of the asynchronous action completed for the request, null if none
+     */
+    public static AsyncResult takeResult(HttpServletRequest request) {
+        AsyncResult result = (AsyncResult) request.getAttribute(RESULT_ATTRIBUTE);
+        if (result != null) {
+            request.removeAttribute(RESULT_ATTRIBUTE);
+            request.removeAttribute(STARTED_ATTRIBUTE);
+        }
+        return result;
+    }
+
+    /**
+     * Async context of the asynchronous action started by the request, null if none, or if its result is handled
+     * already. Listeners added to it before the request returns to the container are notified when the action is
+     * completed, by its result, the timeout or an error
+     */
+    public static AsyncContext getStartedContext(HttpServletRequest request) {
+        return (AsyncContext) request.getAttribute(STARTED_ATTRIBUTE);
+    }
+
+    static void markStarted(HttpServletRequest request, AsyncContext asyncContext) {
+        request.setAttribute(STARTED_ATTRIBUTE, asyncContext);
+    }
+
+    /*
+     * the action is completed without being dispatched again, e.g. rejected
+     */
+    static void clearStarted(HttpServletRequest request) {
+        request.removeAttribute(STARTED_ATTRIBUTE);
+    }
+
+    static void setResult(HttpServletRequest request, AsyncResult result) {
+        request.setAttribute(RESULT_ATTRIBUTE, result);
+    }
+
+    /**
+     * The handler method returning the result the same way as the action would do
+     */
+    public HandlerMethod createHandlerMethod() {
+        String name;
+        if (error != null || value == null) name = "none";
+        else if (responseBody) name = "body";
+        else if (value instanceof String) name = "viewName";
+        else if (value instanceof ModelAndView) name = "modelAndView";
+        else if (value instanceof View) name = "view";
+        else if (value instanceof HttpEntity) name = "entity";
+        else if (value instanceof Map) name = "map";
+        else name = "attribute";
+
+        Method method = ReflectionUtils.findMethod(AsyncResult.class, name, ModelMap.class);
+        return new HandlerMethod(this, method);
+    }
+
+    public void none(ModelMap model) throws Exception {
+        getValue(model);
+    }
+
+    @ResponseBody
+    public Object body(ModelMap model) throws Exception {
+        return getValue(model);
+    }
+
+    public String viewName(ModelMap model) throws Exception {
+        return (String) getValue(model);
+    }
+
+    public ModelAndView modelAndView(ModelMap model) throws Exception {
+        return (ModelAndView) getValue(model);
+    }
+
+    public View view(ModelMap model) throws Exception {
+        return (View) getValue(model);
+    }
+
+    public HttpEntity<?> entity(ModelMap model) throws Exception {
+        return (HttpEntity<?>) getValue(model);
+    }
+
+    public Map<?, ?> map(ModelMap model) throws Exception {
+        return (Map<?, ?>) getValue(model);
+    }
+
+    public Object attribute(ModelMap model) throws Exception {
+        return getValue(model);
+    }
+
+    /*
+     * restore the model of the action, and return its result or rethrow its exception
+     */
+    private Object getValue(ModelMap model) throws Exception {
+        model.addAllAttributes(this.model);
+        if (error instanceof Exception) throw (Exception) error;
+        if (error instanceof Error) throw (Error) error;
+        if (error != null) throw new IllegalStateException("Asynchronous action failed", error);
+        return value;
+    }
+}
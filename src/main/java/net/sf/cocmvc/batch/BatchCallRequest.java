@@ -0,0 +1,546 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.batch;
+
+import org.springframework.util.LinkedCaseInsensitiveMap;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.security.Principal;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * A call of a batch, seen as a request of its own path and params, sharing the headers, the cookies and the session
+ * of the batch request<br/>
+ *
+ * Everything the call reads of the batch request is copied when the call is created on the container thread:
+ * the attributes, except the ones of the handler mapping, the headers, the cookies, the locales, the session and
+ * the connection details. So the calls running in parallel never touch each other, and a cancelled call still running
+ * never reads the batch request, which the container recycles once the batch is completed. The only exception is
+ * {@link #isUserInRole}, which is asked to the batch request until the batch is completed, and fails afterwards.
+ *
+ * @author ywu
+ */
+class BatchCallRequest implements HttpServletRequest {
+
+    private static final String MAPPING_ATTRIBUTE_PREFIX = HandlerMapping.class.getName() + ".";
+
+    private static final String[] DATE_FORMATS = {
+            "EEE, dd MMM yyyy HH:mm:ss zzz", "EEEEEE, dd-MMM-yy HH:mm:ss zzz", "EEE MMMM d HH:mm:ss yyyy"
+    };
+
+    private final HttpServletRequest batchRequest;
+
+    private final String method;
+
+    private final String servletPath;
+
+    private final String pathInfo;
+
+    private final String queryString;
+
+    private final Map<String, String[]> parameters = new LinkedHashMap<String, String[]>();
+
+    private final Map<String, Object> attributes = new HashMap<String, Object>();
+
+    private final Map<String, List<String>> headers = new LinkedCaseInsensitiveMap<List<String>>();
+
+    private final Cookie[] cookies;
+
+    private final List<Locale> locales;
+
+    private final HttpSession session;
+
+    private final ServletContext servletContext;
+
+    private final String characterEncoding;
+
+    private final String protocol;
+
+    private final String scheme;
+
+    private final String serverName;
+
+    private final int serverPort;
+
+    private final boolean secure;
+
+    private final String contextPath;
+
+    private final String remoteAddr;
+
+    private final String remoteHost;
+
+    private final int remotePort;
+
+    private final String localName;
+
+    private final String localAddr;
+
+    private final int localPort;
+
+    private final String authType;
+
+    private final String remoteUser;
+
+    private final Principal userPrincipal;
+
+    private final String requestedSessionId;
+
+    private final boolean requestedSessionIdValid;
+
+    private final boolean requestedSessionIdFromCookie;
+
+    private final boolean requestedSessionIdFromURL;
+
+    private volatile boolean completed;
+
+    /**
+     * @param call the method (optional) and the path of the call, e.g. {@code POST /cart/add?item=1}
+     * @param session session of the batch, shared by the calls, null if none
+     */
+    BatchCallRequest(HttpServletRequest request, String call, HttpSession session) {
+        this.batchRequest = request;
+        this.method = parseMethod(call);
+
+        String uri = call.substring(call.indexOf(' ') + 1).trim();
+        int query = uri.indexOf('?');
+        String path = query >= 0 ? uri.substring(0, query) : uri;
+        if (!path.startsWith("/")) path = "/" + path;
+        this.queryString = query >= 0 ? uri.substring(query + 1) : null;
+
+        // the call is mapped by the servlet of the batch request, same as a request to the servlet
+        if (request.getPathInfo() != null) {
+            this.servletPath = request.getServletPath();
+            this.pathInfo = path;
+        } else {
+            this.servletPath = path;
+            this.pathInfo = null;
+        }
+
+        this.characterEncoding = request.getCharacterEncoding();
+        parseParameters(characterEncoding != null ? characterEncoding : "UTF-8");
+        for (Enumeration<?> names = request.getAttributeNames(); names.hasMoreElements(); ) {
+            String name = (String) names.nextElement();
+            if (!name.startsWith(MAPPING_ATTRIBUTE_PREFIX)) attributes.put(name, request.getAttribute(name));
+        }
+        for (Enumeration<?> names = request.getHeaderNames(); names != null && names.hasMoreElements(); ) {
+            String name = (String) names.nextElement();
+            List<String> values = new ArrayList<String>();
+            for (Enumeration<?> e = request.getHeaders(name); e != null && e.hasMoreElements(); ) values.add((String) e.nextElement());
+            headers.put(name, values);
+        }
+
+        Cookie[] requestCookies = request.getCookies();
+        if (requestCookies != null) {
+            this.cookies = new Cookie[requestCookies.length];
+            for (int i = 0; i < requestCookies.length; i++) cookies[i] = (Cookie) requestCookies[i].clone();
+        } else {
+            this.cookies = null;
+        }
+        List<Locale> requestLocales = new ArrayList<Locale>();
+        for (Enumeration<?> e = request.getLocales(); e != null && e.hasMoreElements(); ) requestLocales.add((Locale) e.nextElement());
+        if (requestLocales.isEmpty()) requestLocales.add(request.getLocale() != null ? request.getLocale() : Locale.getDefault());
+        this.locales = Collections.unmodifiableList(requestLocales);
+
+        this.session = session;
+        this.servletContext = request.getServletContext();
+        this.protocol = request.getProtocol();
+        this.scheme = request.getScheme();
+        this.serverName = request.getServerName();
+        this.serverPort = request.getServerPort();
+        this.secure = request.isSecure();
+        this.contextPath = request.getContextPath();
+        this.remoteAddr = request.getRemoteAddr();
+        this.remoteHost = request.getRemoteHost();
+        this.remotePort = request.getRemotePort();
+        this.localName = request.getLocalName();
+        this.localAddr = request.getLocalAddr();
+        this.localPort = request.getLocalPort();
+        this.authType = request.getAuthType();
+        this.remoteUser = request.getRemoteUser();
+        this.userPrincipal = request.getUserPrincipal();
+        this.requestedSessionId = request.getRequestedSessionId();
+        this.requestedSessionIdValid = request.isRequestedSessionIdValid();
+        this.requestedSessionIdFromCookie = request.isRequestedSessionIdFromCookie();
+        this.requestedSessionIdFromURL = request.isRequestedSessionIdFromURL();
+    }
+
+    /**
+     * HTTP method of a call, GET if not given
+     */
+    static String parseMethod(String call) {
+        int space = call.indexOf(' ');
+        return space > 0 ? call.substring(0, space).toUpperCase() : "GET";
+    }
+
+    /**
+     * The batch is completed, the batch request may be recycled by the container from now on
+     */
+    void complete() {
+        completed = true;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getRequestURI() {
+        return getContextPath() + servletPath + (pathInfo != null ? pathInfo : "");
+    }
+
+    public StringBuffer getRequestURL() {
+        StringBuffer url = new StringBuffer(getScheme()).append("://").append(getServerName());
+        int port = getServerPort();
+        if (port > 0 && !(port == 80 && "http".equals(getScheme())) && !(port == 443 && "https".equals(getScheme())))
+            url.append(':').append(port);
+        return url.append(getRequestURI());
+    }
+
+    public String getServletPath() {
+        return servletPath;
+    }
+
+    public String getPathInfo() {
+        return pathInfo;
+    }
+
+    public String getPathTranslated() {
+        return null;
+    }
+
+    public String getQueryString() {
+        return queryString;
+    }
+
+    public String getParameter(String name) {
+        String[] values = parameters.get(name);
+        return values != null ? values[0] : null;
+    }
+
+    public Map<String, String[]> getParameterMap() {
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(parameters.keySet());
+    }
+
+    public String[] getParameterValues(String name) {
+        return parameters.get(name);
+    }
+
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    public void setAttribute(String name, Object o) {
+        if (o != null) attributes.put(name, o);
+        else attributes.remove(name);
+    }
+
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    /**
+     * A call has no body, the body of the batch request is the list of the calls
+     */
+    public int getContentLength() {
+        return 0;
+    }
+
+    public String getContentType() {
+        return null;
+    }
+
+    public ServletInputStream getInputStream() {
+        throw new IllegalStateException("A batch call has no body");
+    }
+
+    public BufferedReader getReader() {
+        return new BufferedReader(new StringReader(""));
+    }
+
+    public boolean isAsyncSupported() {
+        return false;
+    }
+
+    public AsyncContext startAsync() {
+        throw new IllegalStateException("Asynchronous processing is not supported by batch calls");
+    }
+
+    public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse) {
+        throw new IllegalStateException("Asynchronous processing is not supported by batch calls");
+    }
+
+    public String getAuthType() {
+        return authType;
+    }
+
+    public Cookie[] getCookies() {
+        return cookies;
+    }
+
+    public long getDateHeader(String name) {
+        String value = getHeader(name);
+        if (value == null) return -1;
+
+        for (String format : DATE_FORMATS) {
+            SimpleDateFormat dateFormat = new SimpleDateFormat(format, Locale.US);
+            dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+            try {
+                return dateFormat.parse(value).getTime();
+            } catch (ParseException e) {
+                // try the next format
+            }
+        }
+        throw new IllegalArgumentException("Cannot parse date header " + name + ": " + value);
+    }
+
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values != null && !values.isEmpty() ? values.get(0) : null;
+    }
+
+    public Enumeration<String> getHeaders(String name) {
+        List<String> values = headers.get(name);
+        return Collections.enumeration(values != null ? values : Collections.<String>emptyList());
+    }
+
+    public Enumeration<String> getHeaderNames() {
+        return Collections.enumeration(headers.keySet());
+    }
+
+    public int getIntHeader(String name) {
+        String value = getHeader(name);
+        return value != null ? Integer.parseInt(value) : -1;
+    }
+
+    public String getContextPath() {
+        return contextPath;
+    }
+
+    public String getRemoteUser() {
+        return remoteUser;
+    }
+
+    /**
+     * Asked to the batch request, the roles can't be copied
+     *
+     * @throws IllegalStateException if the batch is completed, e.g. asked by a cancelled call
+     */
+    public boolean isUserInRole(String role) {
+        synchronized (batchRequest) {
+            if (completed) throw new IllegalStateException("The batch is completed");
+            return batchRequest.isUserInRole(role);
+        }
+    }
+
+    public Principal getUserPrincipal() {
+        return userPrincipal;
+    }
+
+    public String getRequestedSessionId() {
+        return requestedSessionId;
+    }
+
+    /**
+     * The session of the batch, a call can't create one
+     *
+     * @throws IllegalStateException if a session is to be created
+     */
+    public HttpSession getSession(boolean create) {
+        if (session == null && create) throw new IllegalStateException("A batch call can't create a session");
+        return session;
+    }
+
+    public HttpSession getSession() {
+        return getSession(true);
+    }
+
+    public String changeSessionId() {
+        throw new IllegalStateException("A batch call can't change the session id");
+    }
+
+    public boolean isRequestedSessionIdValid() {
+        return requestedSessionIdValid;
+    }
+
+    public boolean isRequestedSessionIdFromCookie() {
+        return requestedSessionIdFromCookie;
+    }
+
+    public boolean isRequestedSessionIdFromURL() {
+        return requestedSessionIdFromURL;
+    }
+
+    @Deprecated
+    public boolean isRequestedSessionIdFromUrl() {
+        return requestedSessionIdFromURL;
+    }
+
+    public boolean authenticate(HttpServletResponse response) throws ServletException {
+        throw new ServletException("Authentication is not supported by batch calls");
+    }
+
+    public void login(String username, String password) throws ServletException {
+        throw new ServletException("Authentication is not supported by batch calls");
+    }
+
+    public void logout() throws ServletException {
+        throw new ServletException("Authentication is not supported by batch calls");
+    }
+
+    public Collection<Part> getParts() throws ServletException {
+        throw new ServletException("A batch call has no body");
+    }
+
+    public Part getPart(String name) throws ServletException {
+        throw new ServletException("A batch call has no body");
+    }
+
+    public void upgrade(ProtocolHandler handler) {
+        throw new IllegalStateException("Upgrade is not supported by batch calls");
+    }
+
+    public String getCharacterEncoding() {
+        return characterEncoding;
+    }
+
+    /**
+     * Ignored, the params of a call are already decoded
+     */
+    public void setCharacterEncoding(String env) {
+    }
+
+    public long getContentLengthLong() {
+        return 0;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public String getScheme() {
+        return scheme;
+    }
+
+    public String getServerName() {
+        return serverName;
+    }
+
+    public int getServerPort() {
+        return serverPort;
+    }
+
+    public String getRemoteAddr() {
+        return remoteAddr;
+    }
+
+    public String getRemoteHost() {
+        return remoteHost;
+    }
+
+    public Locale getLocale() {
+        return locales.get(0);
+    }
+
+    public Enumeration<Locale> getLocales() {
+        return Collections.enumeration(locales);
+    }
+
+    public boolean isSecure() {
+        return secure;
+    }
+
+    public RequestDispatcher getRequestDispatcher(String path) {
+        return servletContext != null && path.startsWith("/") ? servletContext.getRequestDispatcher(path) : null;
+    }
+
+    @Deprecated
+    public String getRealPath(String path) {
+        return servletContext != null ? servletContext.getRealPath(path) : null;
+    }
+
+    public int getRemotePort() {
+        return remotePort;
+    }
+
+    public String getLocalName() {
+        return localName;
+    }
+
+    public String getLocalAddr() {
+        return localAddr;
+    }
+
+    public int getLocalPort() {
+        return localPort;
+    }
+
+    public ServletContext getServletContext() {
+        return servletContext;
+    }
+
+    public boolean isAsyncStarted() {
+        return false;
+    }
+
+    public AsyncContext getAsyncContext() {
+        throw new IllegalStateException("Asynchronous processing is not supported by batch calls");
+    }
+
+    public DispatcherType getDispatcherType() {
+        return DispatcherType.REQUEST;
+    }
+
+    private void parseParameters(String encoding) {
+        if (queryString == null) return;
+
+        MultiValueMap<String, String> values = new LinkedMultiValueMap<String, String>();
+        for (String pair : StringUtils.tokenizeToStringArray(queryString, "&")) {
+            int eq = pair.indexOf('=');
+            values.add(decode(eq >= 0 ? pair.substring(0, eq) : pair, encoding), eq >= 0 ? decode(pair.substring(eq + 1), encoding) : "");
+        }
+        for (Map.Entry<String, List<String>> entry : values.entrySet())
+            parameters.put(entry.getKey(), entry.getValue().toArray(new String[entry.getValue().size()]));
+    }
+
+    private static String decode(String s, String encoding) {
+        try {
+            return URLDecoder.decode(s, encoding);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
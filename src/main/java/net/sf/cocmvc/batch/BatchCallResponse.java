@@ -0,0 +1,300 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.batch;
+
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * Response of a batch call, buffered in memory up to a limit, the batch response is never touched
+ *
+ * @author ywu
+ */
+class BatchCallResponse extends HttpServletResponseWrapper {
+
+    private static final String CONTENT_TYPE = "Content-Type";
+
+    private final int limit;
+
+    private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+    private final Map<String, List<String>> headers = new LinkedCaseInsensitiveMap<List<String>>();
+
+    private int status = SC_OK;
+
+    private String errorMessage;
+
+    private String characterEncoding;
+
+    private Locale locale;
+
+    private boolean committed;
+
+    private ServletOutputStream outputStream;
+
+    private PrintWriter writer;
+
+    /**
+     * @param limit max size of the body in bytes
+     */
+    BatchCallResponse(HttpServletResponse response, int limit) {
+        super(response);
+        this.limit = limit;
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        if (!committed) this.status = sc;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void setStatus(int sc, String sm) {
+        setStatus(sc);
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        sendError(sc, null);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        if (committed) throw new IllegalStateException("Response already committed");
+        this.status = sc;
+        this.errorMessage = msg;
+        this.committed = true;
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        if (committed) throw new IllegalStateException("Response already committed");
+        this.status = SC_MOVED_TEMPORARILY;
+        setHeader("Location", location);
+        this.committed = true;
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        addHeader("Set-Cookie", cookie.getName() + "=" + cookie.getValue());
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return headers.containsKey(name);
+    }
+
+    @Override
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values != null ? values.get(0) : null;
+    }
+
+    @Override
+    public Collection<String> getHeaders(String name) {
+        List<String> values = headers.get(name);
+        return values != null ? Collections.unmodifiableList(values) : Collections.<String>emptyList();
+    }
+
+    @Override
+    public Collection<String> getHeaderNames() {
+        return Collections.unmodifiableSet(headers.keySet());
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (committed) return;
+        headers.remove(name);
+        addHeader(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (committed) return;
+        List<String> values = headers.get(name);
+        if (values == null) {
+            values = new ArrayList<String>(1);
+            headers.put(name, values);
+        }
+        values.add(value);
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        setHeader(name, String.valueOf(date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        addHeader(name, String.valueOf(date));
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        setHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        addHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public String getContentType() {
+        return getHeader(CONTENT_TYPE);
+    }
+
+    @Override
+    public void setContentType(String type) {
+        if (type != null) setHeader(CONTENT_TYPE, type);
+        int charset = type != null ? type.toLowerCase().indexOf("charset=") : -1;
+        if (charset >= 0) characterEncoding = type.substring(charset + "charset=".length()).trim();
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return characterEncoding != null ? characterEncoding : "ISO-8859-1";
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        this.characterEncoding = charset;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+    }
+
+    @Override
+    public void setLocale(Locale loc) {
+        this.locale = loc;
+    }
+
+    @Override
+    public Locale getLocale() {
+        return locale != null ? locale : super.getLocale();
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (outputStream == null) outputStream = new BufferedOutputStream();
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+        return writer;
+    }
+
+    @Override
+    public void setBufferSize(int size) {
+    }
+
+    @Override
+    public int getBufferSize() {
+        return limit;
+    }
+
+    @Override
+    public void flushBuffer() {
+        if (writer != null) writer.flush();
+        committed = true;
+    }
+
+    @Override
+    public void resetBuffer() {
+        if (committed) throw new IllegalStateException("Response already committed");
+        content.reset();
+    }
+
+    @Override
+    public void reset() {
+        resetBuffer();
+        status = SC_OK;
+        headers.clear();
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * The body written, null if nothing written
+     */
+    String getContent() throws IOException {
+        if (writer != null) writer.flush();
+        return content.size() > 0 ? content.toString(getCharacterEncoding()) : null;
+    }
+
+    private class BufferedOutputStream extends ServletOutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            reserve(1);
+            content.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            reserve(len);
+            content.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            committed = true;
+        }
+
+        public boolean canWrite() {
+            return true;
+        }
+
+        public void setWriteListener(WriteListener writeListener) {
+            throw new IllegalStateException("Non-blocking IO is not supported by batch calls");
+        }
+
+        private void reserve(int len) throws IOException {
+            if (content.size() + len > limit) throw new IOException("Response of the batch call exceeds " + limit + " bytes");
+        }
+    }
+}
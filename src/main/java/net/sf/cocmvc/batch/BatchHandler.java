@@ -0,0 +1,479 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.batch;
+
+import net.sf.cocmvc.ConventionalHandlerMapping;
+import net.sf.cocmvc.stream.StreamFormat;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactoryUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.core.OrderComparator;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.validation.BindingResult;
+import org.springframework.web.HttpRequestHandler;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.*;
+import org.springframework.web.servlet.mvc.annotation.ResponseStatusExceptionResolver;
+import org.springframework.web.servlet.mvc.support.DefaultHandlerExceptionResolver;
+import org.springframework.web.servlet.support.RequestContextUtils;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs several actions in one request, e.g. all the actions rendering a screen of a mobile client,
+ * saving the round trips of calling them one by one<br/>
+ *
+ * The calls are listed one per line in the body of a POST request, or as the {@code call} params of a GET request,
+ * each one by its path and params, optionally preceded by its HTTP method, e.g. {@code /user/profile?id=1},
+ * {@code POST module1/cart/add?item=2}. The calls are handled in parallel on a bounded pool, by the handler chain of
+ * {@link ConventionalHandlerMapping}, the handler adapters and the exception resolvers of the context, the same way
+ * the {@code DispatcherServlet} would, except that views are not rendered, the model is returned instead.<br/>
+ *
+ * A GET batch may only contain GET and HEAD calls, so a link or an image can't run the actions changing the state,
+ * other batches must be POST, the others are answered with 405 Method Not Allowed. The calls don't pass through the
+ * servlet filters, so the filters guarding the paths of individual actions don't apply to them: the calls must be
+ * authorized by the interceptors of the mapping. A call whose handler chain doesn't include the interceptor of type
+ * {@code authorizationInterceptor} is refused with 403 Forbidden, so are all the calls if it's not set, unless
+ * {@code requireAuthorization} is turned off explicitly.<br/>
+ *
+ * The results are written as JSON lines once completed, in the order of completion, each with the index, the status,
+ * the time taken in milliseconds, and the body, or the view name and the model of the call. The calls not completed
+ * in time are cancelled, with a status of 504, the calls rejected by the pool get 503.
+ *
+ * @author ywu
+ */
+public class BatchHandler implements HttpRequestHandler, ApplicationContextAware, InitializingBean, DisposableBean {
+
+    private static final Log logger = LogFactory.getLog(BatchHandler.class);
+
+    public static final String CALL_PARAM = "call";
+
+    private final ConventionalHandlerMapping mapping;
+
+    private ApplicationContext applicationContext;
+
+    private ExecutorService executor;
+
+    private int poolSize = 16;
+
+    private int queueCapacity = 100;
+
+    private int maxCalls = 20;
+
+    private long timeout = 10000;
+
+    private int maxResponseSize = 1024 * 1024;
+
+    private Class<? extends HandlerInterceptor> authorizationInterceptor;
+
+    private boolean requireAuthorization = true;
+
+    private boolean createSession;
+
+    /**
+     * The default executor, shut down with the handler
+     */
+    private ExecutorService defaultExecutor;
+
+    private volatile List<HandlerAdapter> handlerAdapters;
+
+    private volatile List<HandlerExceptionResolver> exceptionResolvers;
+
+    public BatchHandler(ConventionalHandlerMapping mapping) {
+        Assert.notNull(mapping, "Mapping is required");
+        this.mapping = mapping;
+    }
+
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.applicationContext = applicationContext;
+    }
+
+    /**
+     * Executor running the calls, default is null (a bounded pool of {@code poolSize} threads).
+     * A given executor is not shut down by the handler
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Number of threads running the calls, default is 16, ignored if an executor is given
+     */
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * Max number of calls waiting for a thread, default is 100, ignored if an executor is given
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Max number of calls of a batch, default is 20, a larger batch is responded with 400 Bad Request
+     */
+    public void setMaxCalls(int maxCalls) {
+        this.maxCalls = maxCalls;
+    }
+
+    /**
+     * Timeout of a batch in milliseconds, default is 10000
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Max size of the body of a call in bytes, default is 1M, the call fails if exceeded
+     */
+    public void setMaxResponseSize(int maxResponseSize) {
+        this.maxResponseSize = maxResponseSize;
+    }
+
+    /**
+     * Type of the interceptor of the mapping authorizing the calls, default is null.
+     * A call whose handler chain has no such interceptor is refused with 403 Forbidden
+     */
+    public void setAuthorizationInterceptor(Class<? extends HandlerInterceptor> authorizationInterceptor) {
+        this.authorizationInterceptor = authorizationInterceptor;
+    }
+
+    /**
+     * Whether the calls must be authorized by {@code authorizationInterceptor}, default is true, all the calls are
+     * refused with 403 Forbidden if it's not set. Turn it off only if no action is guarded by a servlet filter
+     */
+    public void setRequireAuthorization(boolean requireAuthorization) {
+        this.requireAuthorization = requireAuthorization;
+    }
+
+    /**
+     * Whether to create the session of a batch if there's none, default is false. The calls share the session of
+     * the batch, and can't create one themselves, since they don't run on the thread of the batch request
+     */
+    public void setCreateSession(boolean createSession) {
+        this.createSession = createSession;
+    }
+
+    public void afterPropertiesSet() {
+        if (executor == null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("cocmvc-batch-");
+            threadFactory.setDaemon(true);
+            defaultExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                    queueCapacity > 0 ? new LinkedBlockingQueue<Runnable>(queueCapacity) : new SynchronousQueue<Runnable>(),
+                    threadFactory);
+            executor = defaultExecutor;
+        }
+        if (requireAuthorization && authorizationInterceptor == null)
+            logger.warn("No authorizationInterceptor is set, all the batch calls are refused");
+    }
+
+    public void destroy() {
+        if (defaultExecutor != null) defaultExecutor.shutdownNow();
+    }
+
+    public void handleRequest(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        boolean safe = "GET".equals(request.getMethod());
+        if (!safe && !"POST".equals(request.getMethod())) {
+            response.setHeader("Allow", "GET, POST");
+            response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED, "A batch is either GET or POST");
+            return;
+        }
+
+        List<String> calls = readCalls(request);
+        if (calls.isEmpty() || calls.size() > maxCalls) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "A batch has 1 to " + maxCalls + " calls");
+            return;
+        }
+        if (safe) {
+            for (String call : calls) {
+                String method = BatchCallRequest.parseMethod(call);
+                if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                    response.setHeader("Allow", "POST");
+                    response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED, "A GET batch has only GET and HEAD calls");
+                    return;
+                }
+            }
+        }
+
+        HttpSession session = request.getSession(createSession);
+        List<BatchCallRequest> callRequests = new ArrayList<BatchCallRequest>(calls.size());
+        try {
+            handleCalls(calls, callRequests, request, session, response);
+        } finally {
+            for (BatchCallRequest callRequest : callRequests) callRequest.complete();
+        }
+    }
+
+    private void handleCalls(List<String> calls, List<BatchCallRequest> callRequests, HttpServletRequest request,
+                             HttpSession session, HttpServletResponse response) throws IOException {
+        CompletionService<Map<String, Object>> completionService = new ExecutorCompletionService<Map<String, Object>>(executor);
+        Map<Future<Map<String, Object>>, Integer> pending = new HashMap<Future<Map<String, Object>>, Integer>();
+        List<Map<String, Object>> rejected = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < calls.size(); i++) {
+            // created on the container thread, the calls never read the batch request themselves
+            BatchCallRequest callRequest = new BatchCallRequest(request, calls.get(i), session);
+            callRequests.add(callRequest);
+            BatchCall call = new BatchCall(i, calls.get(i), callRequest, new BatchCallResponse(response, maxResponseSize));
+            try {
+                pending.put(completionService.submit(call), i);
+            } catch (RejectedExecutionException e) {
+                rejected.add(call.failed(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Rejected"));
+            }
+        }
+
+        response.setContentType(StreamFormat.JSON_LINES.getContentType() + ";charset=UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        Writer writer = new OutputStreamWriter(response.getOutputStream(), "UTF-8");
+        long index = 0;
+        for (Map<String, Object> result : rejected) write(writer, result, index++);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        try {
+            while (!pending.isEmpty()) {
+                Future<Map<String, Object>> future = completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (future == null) break;
+
+                int i = pending.remove(future);
+                Map<String, Object> result;
+                try {
+                    result = future.get();
+                } catch (ExecutionException e) {
+                    // exceptions are taken as the result of the call, only errors are left
+                    result = result(i, calls.get(i), HttpServletResponse.SC_INTERNAL_SERVER_ERROR, 0);
+                    result.put("error", e.getCause().toString());
+                }
+                write(writer, result, index++);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Map.Entry<Future<Map<String, Object>>, Integer> entry : pending.entrySet()) {
+                entry.getKey().cancel(true);
+                int i = entry.getValue();
+                write(writer, result(i, calls.get(i), HttpServletResponse.SC_GATEWAY_TIMEOUT, 0), index++);
+            }
+        }
+    }
+
+    /**
+     * @param nanos time taken, not available if not positive
+     */
+    private static Map<String, Object> result(int index, String call, int status, long nanos) {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("index", index);
+        result.put("call", call);
+        result.put("status", status);
+        if (nanos > 0) result.put("time", TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.0);
+        return result;
+    }
+
+    private void write(Writer writer, Map<String, Object> result, long index) throws IOException {
+        StreamFormat.JSON_LINES.write(writer, result, index);
+        writer.flush();
+    }
+
+    private List<String> readCalls(HttpServletRequest request) throws IOException {
+        List<String> calls = new ArrayList<String>();
+        String[] params = request.getParameterValues(CALL_PARAM);
+        if (params != null) {
+            for (String call : params)
+                if (StringUtils.hasText(call)) calls.add(call.trim());
+            return calls;
+        }
+
+        BufferedReader reader = request.getReader();
+        for (String line = reader.readLine(); line != null && calls.size() <= maxCalls; line = reader.readLine())
+            if (StringUtils.hasText(line)) calls.add(line.trim());
+        return calls;
+    }
+
+    /*
+     * same as the adapters of the DispatcherServlet, if they're beans of the context
+     */
+    private HandlerAdapter getHandlerAdapter(Object handler) throws ServletException {
+        if (handlerAdapters == null) {
+            List<HandlerAdapter> adapters = new ArrayList<HandlerAdapter>(BeanFactoryUtils.beansOfTypeIncludingAncestors(
+                    applicationContext, HandlerAdapter.class, true, false).values());
+            OrderComparator.sort(adapters);
+            handlerAdapters = adapters;
+        }
+
+        for (HandlerAdapter adapter : handlerAdapters)
+            if (adapter.supports(handler)) return adapter;
+        throw new ServletException("No adapter for handler [" + handler + "]");
+    }
+
+    /*
+     * the resolvers of the context, or the default ones of the DispatcherServlet which doesn't need a context
+     */
+    private List<HandlerExceptionResolver> getExceptionResolvers() {
+        if (exceptionResolvers == null) {
+            List<HandlerExceptionResolver> resolvers = new ArrayList<HandlerExceptionResolver>(BeanFactoryUtils.beansOfTypeIncludingAncestors(
+                    applicationContext, HandlerExceptionResolver.class, true, false).values());
+            if (resolvers.isEmpty()) {
+                resolvers.add(new ResponseStatusExceptionResolver());
+                resolvers.add(new DefaultHandlerExceptionResolver());
+            }
+            OrderComparator.sort(resolvers);
+            exceptionResolvers = resolvers;
+        }
+        return exceptionResolvers;
+    }
+
+    /*
+     * a call handled the same way as DispatcherServlet#doDispatch, without rendering the view
+     */
+    private class BatchCall implements Callable<Map<String, Object>> {
+
+        private final int index;
+
+        private final String call;
+
+        private final BatchCallRequest request;
+
+        private final BatchCallResponse response;
+
+        private BatchCall(int index, String call, BatchCallRequest request, BatchCallResponse response) {
+            this.index = index;
+            this.call = call;
+            this.request = request;
+            this.response = response;
+        }
+
+        public Map<String, Object> call() throws Exception {
+            long start = System.nanoTime();
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+            LocaleContextHolder.setLocale(RequestContextUtils.getLocale(request));
+            try {
+                ModelAndView mv = dispatch();
+                Map<String, Object> result = result(index, call, response.getStatus(), System.nanoTime() - start);
+                if (response.getContentType() != null) result.put("contentType", response.getContentType());
+                if (response.containsHeader("Location")) result.put("location", response.getHeader("Location"));
+                if (response.getErrorMessage() != null) result.put("error", response.getErrorMessage());
+                if (response.getContent() != null) result.put("body", response.getContent());
+                if (mv != null && !mv.wasCleared()) {
+                    if (mv.getViewName() != null) result.put("view", mv.getViewName());
+                    result.put("model", getModel(mv));
+                }
+                return result;
+            } catch (Exception e) {
+                Map<String, Object> result = result(index, call, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, System.nanoTime() - start);
+                result.put("error", e.toString());
+                return result;
+            } finally {
+                LocaleContextHolder.resetLocaleContext();
+                RequestContextHolder.resetRequestAttributes();
+            }
+        }
+
+        private ModelAndView dispatch() throws Exception {
+            HandlerExecutionChain chain = mapping.getHandler(request);
+            if (chain == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return null;
+            }
+            if (requireAuthorization && !isAuthorized(chain)) {
+                response.sendError(HttpServletResponse.SC_FORBIDDEN, authorizationInterceptor != null ?
+                        "Not authorized by " + authorizationInterceptor.getName() : "No authorizationInterceptor is set");
+                return null;
+            }
+
+            HandlerInterceptor[] interceptors = chain.getInterceptors() != null ? chain.getInterceptors() : new HandlerInterceptor[0];
+            int interceptorIndex = -1;
+            ModelAndView mv = null;
+            try {
+                for (HandlerInterceptor interceptor : interceptors) {
+                    if (!interceptor.preHandle(request, response, chain.getHandler())) {
+                        triggerAfterCompletion(chain, interceptors, interceptorIndex, null);
+                        return null;
+                    }
+                    interceptorIndex++;
+                }
+
+                mv = getHandlerAdapter(chain.getHandler()).handle(request, response, chain.getHandler());
+                for (int i = interceptors.length - 1; i >= 0; i--) interceptors[i].postHandle(request, response, chain.getHandler(), mv);
+            } catch (Exception e) {
+                mv = resolveException(chain.getHandler(), e);
+                triggerAfterCompletion(chain, interceptors, interceptorIndex, e);
+                return mv;
+            }
+
+            triggerAfterCompletion(chain, interceptors, interceptorIndex, null);
+            return mv;
+        }
+
+        private boolean isAuthorized(HandlerExecutionChain chain) {
+            if (authorizationInterceptor != null && chain.getInterceptors() != null) {
+                for (HandlerInterceptor interceptor : chain.getInterceptors())
+                    if (authorizationInterceptor.isInstance(interceptor)) return true;
+            }
+            return false;
+        }
+
+        private ModelAndView resolveException(Object handler, Exception ex) throws Exception {
+            for (HandlerExceptionResolver resolver : getExceptionResolvers()) {
+                ModelAndView mv = resolver.resolveException(request, response, handler, ex);
+                if (mv != null) return mv.isEmpty() ? null : mv;
+            }
+            throw ex;
+        }
+
+        private void triggerAfterCompletion(HandlerExecutionChain chain, HandlerInterceptor[] interceptors, int interceptorIndex,
+                                            Exception ex) {
+            for (int i = interceptorIndex; i >= 0; i--) {
+                try {
+                    interceptors[i].afterCompletion(request, response, chain.getHandler(), ex);
+                } catch (Exception e) {
+                    // same as the DispatcherServlet, the call is completed anyway
+                }
+            }
+        }
+
+        private Map<String, Object> getModel(ModelAndView mv) {
+            Map<String, Object> model = new LinkedHashMap<String, Object>();
+            for (Map.Entry<String, Object> entry : mv.getModel().entrySet())
+                if (!entry.getKey().startsWith(BindingResult.MODEL_KEY_PREFIX)) model.put(entry.getKey(), entry.getValue());
+            return model;
+        }
+
+        private Map<String, Object> failed(int status, String error) {
+            Map<String, Object> result = result(index, call, status, 0);
+            result.put("error", error);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.bulkhead;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of in-flight requests of a module<br/>
+ *
+ * The permits are split into stripes, each an atomic counter bounded by its share of the limit, a thread starts
+ * with its own stripe and moves to the others only if it's exhausted, so concurrent requests rarely contend on
+ * the same counter while the limit is still honored exactly.
+ *
+ * @author ywu
+ */
+public class Bulkhead {
+
+    private final String module;
+
+    private final int limit;
+
+    private final AtomicInteger[] stripes;
+
+    private final int[] shares;
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private final AtomicLong queuedCount = new AtomicLong();
+
+    private final Object monitor = new Object();
+
+    private volatile int waiters;
+
+    public Bulkhead(String module, int limit, int stripeCount) {
+        Assert.isTrue(limit > 0, "Limit must be positive");
+        this.module = module;
+        this.limit = limit;
+
+        int n = Math.max(1, Math.min(stripeCount, limit));
+        stripes = new AtomicInteger[n];
+        shares = new int[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new AtomicInteger();
+            shares[i] = limit / n + (i < limit % n ? 1 : 0);
+        }
+    }
+
+    /**
+     * Acquire a permit, waiting at most the given time if none is available
+     *
+     * @return the stripe of the acquired permit, to be released later, or -1 if rejected
+     */
+    public int acquire(long maxWait, TimeUnit unit) throws InterruptedException {
+        int stripe = tryAcquire();
+        if (stripe >= 0) return stripe;
+
+        if (maxWait > 0) {
+            queuedCount.incrementAndGet();
+            long deadline = System.nanoTime() + unit.toNanos(maxWait);
+            synchronized (monitor) {
+                waiters++;
+                try {
+                    for (long remaining = deadline - System.nanoTime(); remaining > 0; remaining = deadline - System.nanoTime()) {
+                        stripe = tryAcquire();
+                        if (stripe >= 0) return stripe;
+                        TimeUnit.NANOSECONDS.timedWait(monitor, remaining);
+                    }
+                    stripe = tryAcquire();
+                    if (stripe >= 0) return stripe;
+                } finally {
+                    waiters--;
+                }
+            }
+        }
+
+        rejectedCount.incrementAndGet();
+        return -1;
+    }
+
+    public void release(int stripe) {
+        stripes[stripe].decrementAndGet();
+        if (waiters > 0) {
+            synchronized (monitor) {
+                monitor.notify();
+            }
+        }
+    }
+
+    private int tryAcquire() {
+        int n = stripes.length;
+        int home = (int) (Thread.currentThread().getId() % n);
+        for (int k = 0; k < n; k++) {
+            int i = home + k < n ? home + k : home + k - n;
+            AtomicInteger permits = stripes[i];
+            for (int used = permits.get(); used < shares[i]; used = permits.get()) {
+                if (permits.compareAndSet(used, used + 1)) return i;
+            }
+        }
+        return -1;
+    }
+
+    public String getModule() {
+        return module;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        int inFlight = 0;
+        for (AtomicInteger permits : stripes) inFlight += permits.get();
+        return inFlight;
+    }
+
+    /**
+     * Number of requests rejected, as the module is over the limit
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Number of requests waited for a permit, either acquired or rejected at last
+     */
+    public long getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return (module.length() > 0 ? module : "/") + " limit=" + limit + " inFlight=" + getInFlight() +
+                " queued=" + getQueuedCount() + " rejected=" + getRejectedCount();
+    }
+}
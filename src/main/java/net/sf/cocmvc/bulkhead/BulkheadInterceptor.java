@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.bulkhead;
+
+import net.sf.cocmvc.async.AsyncResult;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds a permit of the module bulkhead while a request is handled, responds with 503 Service Unavailable
+ * if the module is over its limit<br/>
+ *
+ * The permit of an asynchronous action is held until the action is completed, so the slow actions of a module
+ * can't fill the executor of the asynchronous actions either.
+ *
+ * @author ywu
+ */
+public class BulkheadInterceptor extends HandlerInterceptorAdapter {
+
+    private static final String PERMIT_ATTRIBUTE = BulkheadInterceptor.class.getName() + ".permit";
+
+    private final ModuleBulkheads bulkheads;
+
+    public BulkheadInterceptor(ModuleBulkheads bulkheads) {
+        this.bulkheads = bulkheads;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!(handler instanceof HandlerMethod)) return true;
+
+        Bulkhead bulkhead = bulkheads.getBulkhead(((HandlerMethod) handler).getBeanType());
+        if (bulkhead == null) return true;
+
+        int stripe = bulkhead.acquire(bulkheads.getMaxWait(), TimeUnit.MILLISECONDS);
+        if (stripe < 0) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return false;
+        }
+
+        request.setAttribute(PERMIT_ATTRIBUTE, new Permit(bulkhead, stripe, (Permit) request.getAttribute(PERMIT_ATTRIBUTE)));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Permit permit = (Permit) request.getAttribute(PERMIT_ATTRIBUTE);
+        if (permit == null) return;
+
+        // restore the permit of the forwarding request, if any
+        request.setAttribute(PERMIT_ATTRIBUTE, permit.previous);
+
+        AsyncContext asyncContext = AsyncResult.getStartedContext(request);
+        if (asyncContext != null) {
+            asyncContext.addListener(permit);
+        } else {
+            permit.release();
+        }
+    }
+
+    /*
+     * released once the async cycle is completed, which follows a timeout or an error too
+     */
+    private static class Permit implements AsyncListener {
+
+        private final Bulkhead bulkhead;
+
+        private final int stripe;
+
+        private final Permit previous;
+
+        private Permit(Bulkhead bulkhead, int stripe, Permit previous) {
+            this.bulkhead = bulkhead;
+            this.stripe = stripe;
+            this.previous = previous;
+        }
+
+        private void release() {
+            bulkhead.release(stripe);
+        }
+
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        public void onError(AsyncEvent event) {
+        }
+
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.bulkhead;
+
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bulkheads of the modules mapped by {@link net.sf.cocmvc.ConventionalHandlerMapping}, so a slow module can not take
+ * up all the container threads<br/>
+ *
+ * A module is the path prefix computed from the package of its controllers relative to the base package, e.g.
+ * {@code reports} or {@code module1/module11}, the top-level controllers belong to the root module {@code ""}.
+ * Each module has its own bulkhead, limited by the most specific limit configured for the module or its
+ * ancestors, or the default one.
+ *
+ * @author ywu
+ */
+public class ModuleBulkheads {
+
+    /**
+     * Bulkheads of the controllers, by handler type
+     */
+    private final ConcurrentMap<Class<?>, Bulkhead> controllers = new ConcurrentHashMap<Class<?>, Bulkhead>();
+
+    private final ConcurrentMap<String, Bulkhead> bulkheads = new ConcurrentHashMap<String, Bulkhead>();
+
+    private Map<String, Integer> limits = new HashMap<String, Integer>();
+
+    private int defaultLimit = 0;
+
+    private long maxWait = 0;
+
+    private int stripeCount = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Max number of in-flight requests by module, e.g. {@code reports=20}
+     */
+    public void setLimits(Map<String, Integer> limits) {
+        this.limits = new HashMap<String, Integer>(limits);
+    }
+
+    /**
+     * Max number of in-flight requests of the modules without a configured limit, default is 0 (unlimited)
+     */
+    public void setDefaultLimit(int defaultLimit) {
+        this.defaultLimit = defaultLimit;
+    }
+
+    /**
+     * Max time to wait for a permit in milliseconds, default is 0 (fail fast)
+     */
+    public void setMaxWait(long maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Number of stripes the permits of a bulkhead are split into, default is the number of processors
+     */
+    public void setStripeCount(int stripeCount) {
+        this.stripeCount = stripeCount;
+    }
+
+    /**
+     * Assign a controller to its module, invoked when registering the mappings
+     */
+    public void registerController(Class<?> handlerType, String module) {
+        if (controllers.containsKey(handlerType)) return;
+
+        Bulkhead bulkhead = bulkheads.get(module);
+        if (bulkhead == null) {
+            int limit = getLimit(module);
+            if (limit <= 0) return;
+
+            bulkheads.putIfAbsent(module, new Bulkhead(module, limit, stripeCount));
+            bulkhead = bulkheads.get(module);
+        }
+        controllers.put(handlerType, bulkhead);
+    }
+
+    /**
+     * Forget a controller, invoked when unregistering the mappings. The bulkhead of its module is kept
+     */
+    public void unregisterController(Class<?> handlerType) {
+        controllers.remove(handlerType);
+    }
+
+    /**
+     * Bulkhead of the given controller, null if unlimited
+     */
+    public Bulkhead getBulkhead(Class<?> handlerType) {
+        return controllers.get(handlerType);
+    }
+
+    /**
+     * Bulkhead of the named module, null if unlimited or not mapped
+     */
+    public Bulkhead getBulkhead(String module) {
+        return bulkheads.get(module);
+    }
+
+    /**
+     * Bulkheads of all the mapped modules, sorted by module
+     */
+    public Map<String, Bulkhead> getAllBulkheads() {
+        return new TreeMap<String, Bulkhead>(bulkheads);
+    }
+
+    /**
+     * Write the counters of all the bulkheads in plain text, one module per line
+     */
+    public void writeSnapshot(PrintWriter writer) {
+        for (Bulkhead bulkhead : getAllBulkheads().values()) writer.println(bulkhead);
+    }
+
+    long getMaxWait() {
+        return maxWait;
+    }
+
+    private int getLimit(String module) {
+        for (String m = module; ; m = m.substring(0, m.lastIndexOf('/'))) {
+            Integer limit = limits.get(m);
+            if (limit != null) return limit;
+            if (m.indexOf('/') == -1) break;
+        }
+        return defaultLimit;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.cache;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * A cached response, the rendered body with its content type, validated by an ETag
+ *
+ * @author ywu
+ */
+class CachedResponse {
+
+    private final byte[] body;
+
+    private final String contentType;
+
+    private final String etag;
+
+    private final long expiresAt;
+
+    CachedResponse(byte[] body, String contentType, String etag, long expiresAt) {
+        this.body = body;
+        this.contentType = contentType;
+        this.etag = etag;
+        this.expiresAt = expiresAt;
+    }
+
+    boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+
+    byte[] getBody() {
+        return body;
+    }
+
+    String getEtag() {
+        return etag;
+    }
+
+    /*
+     * respond with 304 Not Modified if the client has the same response, otherwise the cached body
+     */
+    void writeTo(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader("ETag", etag);
+        if (matches(request.getHeader("If-None-Match"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        if (contentType != null) response.setContentType(contentType);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) return false;
+
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals(etag) || tag.equals("*")) return true;
+        }
+        return false;
+    }
+}
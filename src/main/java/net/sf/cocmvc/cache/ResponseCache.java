@@ -0,0 +1,268 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.cache;
+
+import net.sf.cocmvc.LruCache;
+import net.sf.cocmvc.annotation.CacheResponse;
+import org.springframework.util.Assert;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.support.RequestContextUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import static org.springframework.core.annotation.AnnotationUtils.findAnnotation;
+
+/**
+ * Cache of the rendered responses of the GET actions mapped by {@link net.sf.cocmvc.ConventionalHandlerMapping}<br/>
+ *
+ * An action is cached if it's annotated with {@link CacheResponse} (or its controller is), or by convention,
+ * if its action name {@code <module>/<controller>/<action>} matches the {@code actionPattern}. Responses are keyed
+ * by the lookup path, the locale, the {@code Accept} header and the params declared by the annotation, only the body
+ * and the content type are cached. The store is bounded by the total size of the bodies, {@code maxSize}.
+ *
+ * <p>Requests with a session or an {@code Authorization} header are neither served from the cache nor cached, but
+ * nothing else of the user is in the key: only match actions whose output is the same for every anonymous user,
+ * i.e. it doesn't depend on the cookies, nor on the request attributes set by the filters or the interceptors.<p/>
+ *
+ * <p>Cached responses are served by the {@link ResponseCacheInterceptor} without invoking the controller and the view,
+ * and captured by the {@link ResponseCacheFilter}, both are required.<p/>
+ *
+ * @author ywu
+ */
+public class ResponseCache {
+
+    static final String PENDING_ATTRIBUTE = ResponseCache.class.getName() + ".pending";
+
+    private static final String[] NO_PARAMS = {};
+
+    /**
+     * Caching policies of the handler methods, by handler type and method
+     */
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Method, Policy>> policies = new ConcurrentHashMap<Class<?>, ConcurrentMap<Method, Policy>>();
+
+    private static final LruCache.Weigher<CachedResponse> BODY_SIZE = new LruCache.Weigher<CachedResponse>() {
+        public int weigh(CachedResponse response) {
+            return response.getBody().length;
+        }
+    };
+
+    private LruCache<String, CachedResponse> store;
+
+    private long maxSize = 64 * 1024 * 1024;
+
+    private int defaultTtl = 60;
+
+    private int maxEntrySize = 1024 * 1024;
+
+    private Pattern actionPattern;
+
+    public ResponseCache() {
+        createStore();
+    }
+
+    /**
+     * Max total size of the cached response bodies in bytes, the least recently used are evicted beyond it,
+     * default is 64M
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        createStore();
+    }
+
+    /**
+     * Time to live of the cached responses in seconds, unless specified by the annotation, default is 60
+     */
+    public void setDefaultTtl(int defaultTtl) {
+        this.defaultTtl = defaultTtl;
+    }
+
+    /**
+     * Max size of a cached response body in bytes, larger responses are not cached, default is 1M
+     */
+    public void setMaxEntrySize(int maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+        createStore();
+    }
+
+    /**
+     * Regular expression of the names of the actions cached by convention, e.g. {@code .*&#47;(index|list)},
+     * default is null (only the annotated actions are cached)
+     */
+    public void setActionPattern(String actionPattern) {
+        this.actionPattern = actionPattern != null ? Pattern.compile(actionPattern) : null;
+    }
+
+    /**
+     * The cached responses, to inspect the hit/miss/eviction counters
+     */
+    public LruCache<String, ?> getStore() {
+        return store;
+    }
+
+    /**
+     * Determine the caching policy of a handler method, invoked when registering the mapping
+     */
+    public void registerAction(Class<?> handlerType, Method method, String actionName) {
+        CacheResponse annotation = findAnnotation(method, CacheResponse.class);
+        if (annotation == null) annotation = findAnnotation(handlerType, CacheResponse.class);
+
+        Policy policy = null;
+        if (annotation != null) {
+            if (annotation.ttl() != 0) policy = new Policy(annotation.ttl() > 0 ? annotation.ttl() : -1, annotation.params());
+        } else if (actionPattern != null && actionPattern.matcher(actionName).matches()) {
+            policy = new Policy(-1, NO_PARAMS);
+        }
+        if (policy == null) return;
+
+        ConcurrentMap<Method, Policy> methods = policies.get(handlerType);
+        if (methods == null) {
+            policies.putIfAbsent(handlerType, new ConcurrentHashMap<Method, Policy>());
+            methods = policies.get(handlerType);
+        }
+        methods.put(method, policy);
+    }
+
+    /**
+     * Forget the caching policy of a handler method, invoked when unregistering the mapping
+     */
+    public void unregisterAction(Class<?> handlerType, Method method) {
+        Map<Method, Policy> methods = policies.get(handlerType);
+        if (methods == null || methods.remove(method) == null) return;
+        if (methods.isEmpty()) policies.remove(handlerType, methods);
+    }
+
+    /**
+     * Whether the responses of the given handler method are cached
+     */
+    public boolean isCached(Class<?> handlerType, Method method) {
+        return getPolicy(handlerType, method) != null;
+    }
+
+    /**
+     * Remove all the cached responses
+     */
+    public void clear() {
+        store.clear();
+    }
+
+    /*
+     * as many segments as fit a largest body each
+     */
+    private void createStore() {
+        int concurrencyLevel = (int) Math.min(Integer.MAX_VALUE, Math.max(1, maxSize / Math.max(1, maxEntrySize)));
+        store = new LruCache<String, CachedResponse>(maxSize, concurrencyLevel, BODY_SIZE);
+    }
+
+    /*
+     * responses to the users with a session or credentials may be private to them
+     */
+    boolean isCacheable(HttpServletRequest request) {
+        return request.getSession(false) == null && request.getHeader("Authorization") == null;
+    }
+
+    Policy getPolicy(Class<?> handlerType, Method method) {
+        Map<Method, Policy> methods = policies.get(handlerType);
+        return methods != null ? methods.get(method) : null;
+    }
+
+    /*
+     * the locale, the accepted media types, the lookup path, and the values of the params the response varies by
+     */
+    String buildKey(Policy policy, HttpServletRequest request) {
+        String lookupPath = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        String accept = request.getHeader("Accept");
+        if (accept == null) accept = "";
+
+        // the locale has no spaces, and the length prefix ends the header
+        StringBuilder key = new StringBuilder().append(RequestContextUtils.getLocale(request)).append(' ')
+                .append(accept.length()).append(':').append(accept).append(lookupPath);
+        for (String param : policy.params) {
+            key.append('&').append(param);
+            String[] values = request.getParameterValues(param);
+            if (values == null) continue;
+
+            // length prefixed, so the values are never confused with the separators
+            for (String value : values) key.append('=').append(value.length()).append(':').append(value);
+        }
+        return key.toString();
+    }
+
+    /**
+     * The cached response of the key, null if absent or expired
+     */
+    CachedResponse get(String key) {
+        CachedResponse response = store.get(key);
+        if (response != null && response.isExpired(System.currentTimeMillis())) {
+            store.remove(key);
+            return null;
+        }
+        return response;
+    }
+
+    void put(String key, Policy policy, byte[] body, String contentType) {
+        Assert.notNull(body, "Body is required");
+        if (body.length > maxEntrySize) return;
+
+        int ttl = policy.ttl > 0 ? policy.ttl : defaultTtl;
+        String etag = "\"0" + DigestUtils.md5DigestAsHex(body) + '"';
+        store.put(key, new CachedResponse(body, contentType, etag, System.currentTimeMillis() + ttl * 1000L));
+    }
+
+    int getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /*
+     * caching policy of an action
+     */
+    static class Policy {
+
+        /**
+         * Time to live in seconds, the default of the cache if negative
+         */
+        private final int ttl;
+
+        private final String[] params;
+
+        Policy(int ttl, String[] params) {
+            this.ttl = ttl;
+            this.params = params;
+        }
+    }
+
+    /*
+     * a response to be captured by the filter
+     */
+    static class Pending {
+
+        final String key;
+
+        final Policy policy;
+
+        Pending(String key, Policy policy) {
+            this.key = key;
+            this.policy = policy;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.cache;
+
+import net.sf.cocmvc.async.AsyncResult;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Captures the rendered responses of the cached actions into the {@link ResponseCache}, the body is written through
+ * while being captured, only successful responses no larger than the max entry size are cached<br/>
+ *
+ * To be mapped in front of the {@code DispatcherServlet}, e.g. by a {@code DelegatingFilterProxy}.
+ * Responses of asynchronous actions are not cached.
+ *
+ * @author ywu
+ */
+public class ResponseCacheFilter extends OncePerRequestFilter {
+
+    private final ResponseCache cache;
+
+    public ResponseCacheFilter(ResponseCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!"GET".equals(request.getMethod())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        CapturingResponseWrapper wrapper = new CapturingResponseWrapper(response, cache.getMaxEntrySize());
+        filterChain.doFilter(request, wrapper);
+
+        ResponseCache.Pending pending = (ResponseCache.Pending) request.getAttribute(ResponseCache.PENDING_ATTRIBUTE);
+        if (pending == null || AsyncResult.isStarted(request)) return;
+
+        request.removeAttribute(ResponseCache.PENDING_ATTRIBUTE);
+        byte[] content = wrapper.getContent();
+        // a session started by the action, e.g. a login, makes the response private
+        if (wrapper.getCapturedStatus() == HttpServletResponse.SC_OK && content != null && cache.isCacheable(request))
+            cache.put(pending.key, pending.policy, content, wrapper.getContentType());
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.cache;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the cached responses without invoking the handlers, and marks the missed ones to be captured
+ * by the {@link ResponseCacheFilter}
+ *
+ * @author ywu
+ */
+public class ResponseCacheInterceptor extends HandlerInterceptorAdapter {
+
+    private final ResponseCache cache;
+
+    public ResponseCacheInterceptor(ResponseCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!"GET".equals(request.getMethod()) || !(handler instanceof HandlerMethod)) return true;
+
+        HandlerMethod handlerMethod = (HandlerMethod) handler;
+        ResponseCache.Policy policy = cache.getPolicy(handlerMethod.getBeanType(), handlerMethod.getMethod());
+        if (policy == null || !cache.isCacheable(request)) return true;
+
+        String key = cache.buildKey(policy, request);
+        CachedResponse cached = cache.get(key);
+        if (cached != null) {
+            cached.writeTo(request, response);
+            return false;
+        }
+
+        request.setAttribute(ResponseCache.PENDING_ATTRIBUTE, new ResponseCache.Pending(key, policy));
+        return true;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.invoke;
+
+/**
+ * Invokes an action directly, without reflection, generated once for each eligible action by {@link ActionInvokers}
+ *
+ * @author ywu
+ */
+public interface ActionInvoker {
+
+    /**
+     * Invoke the action on the given controller, exceptions thrown by the action are propagated as is
+     *
+     * @param bean the controller
+     * @param args the resolved arguments, primitives are boxed
+     * @return the value returned by the action, primitives are boxed, null if void
+     */
+    Object invoke(Object bean, Object[] args) throws Exception;
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.invoke;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.bind.annotation.InitBinder;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.SessionAttributes;
+import org.springframework.web.method.HandlerMethodSelector;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.springframework.core.annotation.AnnotationUtils.findAnnotation;
+
+/**
+ * Generated invokers of the mapped actions, built once when {@link net.sf.cocmvc.ConventionalHandlerMapping}
+ * registers the actions, and used by {@link DirectActionHandlerAdapter}<br/>
+ *
+ * An action gets an invoker only if {@code DirectActionHandlerAdapter} handles it exactly the same way as
+ * {@code RequestMappingHandlerAdapter} does: it's a public method of a public class, not annotated with
+ * {@code @ResponseStatus}, and its controller has no {@code @SessionAttributes}, {@code @InitBinder} or
+ * {@code @ModelAttribute} methods. The other actions are invoked reflectively as usual.
+ *
+ * @author ywu
+ */
+public class ActionInvokers {
+
+    private static final Log logger = LogFactory.getLog(ActionInvokers.class);
+
+    private static final ReflectionUtils.MethodFilter MODEL_METHODS = new ReflectionUtils.MethodFilter() {
+        public boolean matches(Method method) {
+            return findAnnotation(method, InitBinder.class) != null || findAnnotation(method, ModelAttribute.class) != null;
+        }
+    };
+
+    /**
+     * Invokers of the actions, by handler type and method, since the eligibility depends on the controller
+     */
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Method, ActionInvoker>> invokers =
+            new ConcurrentHashMap<Class<?>, ConcurrentMap<Method, ActionInvoker>>();
+
+    /**
+     * Loaders of the invoker classes, by the class loader of the controllers. Both are weakly referenced, a loader
+     * of invokers is kept alive by its invokers only, so neither pins the class loader of unregistered controllers
+     */
+    private final Map<ClassLoader, WeakReference<InvokerClassLoader>> classLoaders =
+            new WeakHashMap<ClassLoader, WeakReference<InvokerClassLoader>>();
+
+    /**
+     * Generate the invoker of an action if it's eligible, invoked when registering the mappings
+     */
+    public void registerAction(Class<?> handlerType, Method method) {
+        if (getInvoker(handlerType, method) != null) return;
+
+        String reason = checkEligibility(handlerType, method);
+        if (reason != null) {
+            if (logger.isDebugEnabled()) logger.debug("Action " + method + " of " + handlerType.getName() +
+                    " is invoked reflectively, " + reason);
+            return;
+        }
+
+        try {
+            ActionInvoker invoker = findInvoker(method);
+            if (invoker == null) invoker = createInvoker(method);
+
+            ConcurrentMap<Method, ActionInvoker> methods = invokers.get(handlerType);
+            if (methods == null) {
+                invokers.putIfAbsent(handlerType, new ConcurrentHashMap<Method, ActionInvoker>());
+                methods = invokers.get(handlerType);
+            }
+            methods.putIfAbsent(method, invoker);
+        } catch (Exception e) {
+            logger.warn("Failed to generate the invoker of action " + method + ", invoked reflectively", e);
+        } catch (LinkageError e) {
+            logger.warn("Failed to generate the invoker of action " + method + ", invoked reflectively", e);
+        }
+    }
+
+    /**
+     * Remove the invokers of the actions of a controller, invoked when unregistering the controller
+     */
+    public void unregisterController(Class<?> handlerType) {
+        invokers.remove(handlerType);
+    }
+
+    /**
+     * Invoker of the given action of a controller, null if it's invoked reflectively
+     */
+    public ActionInvoker getInvoker(Class<?> handlerType, Method method) {
+        Map<Method, ActionInvoker> methods = invokers.get(handlerType);
+        return methods != null ? methods.get(method) : null;
+    }
+
+    /**
+     * Number of the actions invoked by the generated invokers
+     */
+    public int size() {
+        int size = 0;
+        for (Map<Method, ActionInvoker> methods : invokers.values()) size += methods.size();
+        return size;
+    }
+
+    /*
+     * invoker generated for another controller inheriting the same action
+     */
+    private ActionInvoker findInvoker(Method method) {
+        for (Map<Method, ActionInvoker> methods : invokers.values()) {
+            ActionInvoker invoker = methods.get(method);
+            if (invoker != null) return invoker;
+        }
+        return null;
+    }
+
+    /*
+     * the reason why the action is not eligible, or null
+     */
+    private String checkEligibility(Class<?> handlerType, Method method) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        if (!Modifier.isPublic(method.getModifiers()) || !Modifier.isPublic(declaringClass.getModifiers()))
+            return "not accessible";
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            // the invoker is in another runtime package, casting the args to a non-public type fails
+            while (parameterType.isArray()) parameterType = parameterType.getComponentType();
+            if (!Modifier.isPublic(parameterType.getModifiers())) return "parameter type " + parameterType.getName() + " not accessible";
+        }
+        if (Modifier.isStatic(method.getModifiers()) || method.isBridge())
+            return "not an instance method";
+        if (declaringClass.getClassLoader() == null || !ClassUtils.isVisible(ActionInvoker.class, declaringClass.getClassLoader()))
+            return "invoker not visible to the class loader of the controller";
+        if (findAnnotation(method, ResponseStatus.class) != null)
+            return "annotated with @ResponseStatus";
+        if (findAnnotation(handlerType, SessionAttributes.class) != null)
+            return "controller has @SessionAttributes";
+        if (!HandlerMethodSelector.selectMethods(handlerType, MODEL_METHODS).isEmpty())
+            return "controller has @InitBinder or @ModelAttribute methods";
+        return null;
+    }
+
+    private ActionInvoker createInvoker(Method method) throws Exception {
+        String invokerName = InvokerGenerator.getInvokerName(method);
+        byte[] bytecode = InvokerGenerator.generate(invokerName, method);
+        return (ActionInvoker) getClassLoader(method.getDeclaringClass().getClassLoader()).define(invokerName, bytecode).newInstance();
+    }
+
+    private synchronized InvokerClassLoader getClassLoader(ClassLoader parent) {
+        WeakReference<InvokerClassLoader> ref = classLoaders.get(parent);
+        InvokerClassLoader classLoader = ref != null ? ref.get() : null;
+        if (classLoader == null) {
+            classLoader = new InvokerClassLoader(parent);
+            classLoaders.put(parent, new WeakReference<InvokerClassLoader>(classLoader));
+        }
+        return classLoader;
+    }
+
+    /*
+     * loads the invokers along with the controllers they call
+     */
+    private static class InvokerClassLoader extends ClassLoader {
+
+        private InvokerClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String name, byte[] bytecode) {
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+    }
+}
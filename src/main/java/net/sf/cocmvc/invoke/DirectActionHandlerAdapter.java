@@ -0,0 +1,204 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.invoke;
+
+import org.springframework.beans.factory.BeanFactoryUtils;
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.core.LocalVariableTableParameterNameDiscoverer;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.ui.ModelMap;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.bind.support.DefaultSessionAttributeStore;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.method.annotation.ModelFactory;
+import org.springframework.web.method.annotation.SessionAttributesHandler;
+import org.springframework.web.method.support.HandlerMethodArgumentResolverComposite;
+import org.springframework.web.method.support.InvocableHandlerMethod;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.mvc.method.AbstractHandlerMethodAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ServletRequestDataBinderFactory;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.servlet.support.RequestContextUtils;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handles the actions having a generated {@link ActionInvoker}, calling them directly instead of through
+ * {@code Method.invoke}<br/>
+ *
+ * The arguments are resolved and the return values handled by the resolvers and handlers of the
+ * {@link RequestMappingHandlerAdapter} of the context, which handles all the other actions. The adapter takes
+ * precedence over it with an order of 0, its own {@code cacheSeconds} and {@code synchronizeOnSession}
+ * settings apply to the actions it handles.
+ *
+ * @author ywu
+ */
+public class DirectActionHandlerAdapter extends AbstractHandlerMethodAdapter {
+
+    private static final List<InvocableHandlerMethod> NO_METHODS = Collections.emptyList();
+
+    private final ActionInvokers actionInvokers;
+
+    private volatile RequestMappingHandlerAdapter handlerAdapter;
+
+    private boolean synchronizeOnSession = false;
+
+    private boolean ignoreDefaultModelOnRedirect = false;
+
+    /**
+     * Eligible actions never have session attributes
+     */
+    private final SessionAttributesHandler sessionAttributesHandler =
+            new SessionAttributesHandler(Object.class, new DefaultSessionAttributeStore());
+
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new LocalVariableTableParameterNameDiscoverer();
+
+    public DirectActionHandlerAdapter(ActionInvokers actionInvokers) {
+        this.actionInvokers = actionInvokers;
+        setOrder(0);
+    }
+
+    /**
+     * The adapter providing the argument resolvers and the return value handlers, default is the only one of the context
+     */
+    public void setHandlerAdapter(RequestMappingHandlerAdapter handlerAdapter) {
+        this.handlerAdapter = handlerAdapter;
+    }
+
+    /**
+     * Same as {@link RequestMappingHandlerAdapter#setSynchronizeOnSession(boolean)}
+     */
+    public void setSynchronizeOnSession(boolean synchronizeOnSession) {
+        this.synchronizeOnSession = synchronizeOnSession;
+    }
+
+    /**
+     * Same as {@link RequestMappingHandlerAdapter#setIgnoreDefaultModelOnRedirect(boolean)}
+     */
+    public void setIgnoreDefaultModelOnRedirect(boolean ignoreDefaultModelOnRedirect) {
+        this.ignoreDefaultModelOnRedirect = ignoreDefaultModelOnRedirect;
+    }
+
+    @Override
+    protected boolean supportsInternal(HandlerMethod handlerMethod) {
+        return getInvoker(handlerMethod) != null;
+    }
+
+    @Override
+    protected long getLastModifiedInternal(HttpServletRequest request, HandlerMethod handlerMethod) {
+        return -1;
+    }
+
+    @Override
+    protected ModelAndView handleInternal(HttpServletRequest request, HttpServletResponse response,
+                                          HandlerMethod handlerMethod) throws Exception {
+        checkAndPrepare(request, response, true);
+
+        if (synchronizeOnSession) {
+            HttpSession session = request.getSession(false);
+            if (session != null) {
+                synchronized (WebUtils.getSessionMutex(session)) {
+                    return invokeAction(request, response, handlerMethod);
+                }
+            }
+        }
+        return invokeAction(request, response, handlerMethod);
+    }
+
+    /*
+     * same steps as RequestMappingHandlerAdapter#invokeHandleMethod, without the @ModelAttribute and @InitBinder
+     * methods, and the action is called by its invoker
+     */
+    private ModelAndView invokeAction(HttpServletRequest request, HttpServletResponse response,
+                                      HandlerMethod handlerMethod) throws Exception {
+        RequestMappingHandlerAdapter adapter = getHandlerAdapter();
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        WebDataBinderFactory binderFactory = new ServletRequestDataBinderFactory(NO_METHODS, adapter.getWebBindingInitializer());
+        ModelFactory modelFactory = new ModelFactory(NO_METHODS, binderFactory, sessionAttributesHandler);
+
+        ModelAndViewContainer mavContainer = new ModelAndViewContainer();
+        mavContainer.addAllAttributes(RequestContextUtils.getInputFlashMap(request));
+        modelFactory.initModel(webRequest, mavContainer, handlerMethod);
+        mavContainer.setIgnoreDefaultModelOnRedirect(ignoreDefaultModelOnRedirect);
+
+        Object[] args = resolveArguments(handlerMethod, adapter.getArgumentResolvers(), webRequest, mavContainer, binderFactory);
+        Object returnValue = getInvoker(handlerMethod).invoke(handlerMethod.getBean(), args);
+
+        if (returnValue == null && (webRequest.isNotModified() || mavContainer.isRequestHandled())) {
+            mavContainer.setRequestHandled(true);
+        } else {
+            mavContainer.setRequestHandled(false);
+            adapter.getReturnValueHandlers().handleReturnValue(returnValue, handlerMethod.getReturnType(), mavContainer, webRequest);
+        }
+        modelFactory.updateModel(webRequest, mavContainer);
+        if (mavContainer.isRequestHandled()) return null;
+
+        ModelMap model = mavContainer.getModel();
+        ModelAndView mav = new ModelAndView(mavContainer.getViewName(), model);
+        if (!mavContainer.isViewReference()) mav.setView((View) mavContainer.getView());
+        if (model instanceof RedirectAttributes) {
+            Map<String, ?> flashAttributes = ((RedirectAttributes) model).getFlashAttributes();
+            RequestContextUtils.getOutputFlashMap(request).putAll(flashAttributes);
+        }
+        return mav;
+    }
+
+    private Object[] resolveArguments(HandlerMethod handlerMethod, HandlerMethodArgumentResolverComposite argumentResolvers,
+                                      ServletWebRequest webRequest, ModelAndViewContainer mavContainer,
+                                      WebDataBinderFactory binderFactory) throws Exception {
+        MethodParameter[] parameters = handlerMethod.getMethodParameters();
+        Object[] args = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            MethodParameter parameter = parameters[i];
+            parameter.initParameterNameDiscovery(parameterNameDiscoverer);
+            GenericTypeResolver.resolveParameterType(parameter, handlerMethod.getBean().getClass());
+
+            if (!argumentResolvers.supportsParameter(parameter)) {
+                throw new IllegalStateException("No suitable resolver for argument [" + i + "] [type=" +
+                        parameter.getParameterType().getName() + "] of " + handlerMethod);
+            }
+            args[i] = argumentResolvers.resolveArgument(parameter, mavContainer, webRequest, binderFactory);
+        }
+        return args;
+    }
+
+    private ActionInvoker getInvoker(HandlerMethod handlerMethod) {
+        return actionInvokers.getInvoker(ClassUtils.getUserClass(handlerMethod.getBeanType()), handlerMethod.getMethod());
+    }
+
+    private RequestMappingHandlerAdapter getHandlerAdapter() {
+        RequestMappingHandlerAdapter adapter = this.handlerAdapter;
+        if (adapter == null) {
+            adapter = BeanFactoryUtils.beanOfTypeIncludingAncestors(getApplicationContext(), RequestMappingHandlerAdapter.class);
+            this.handlerAdapter = adapter;
+        }
+        return adapter;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.invoke;
+
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates the bytecode of {@link ActionInvoker}s, each one calls its action with a plain {@code invokevirtual},
+ * so the call site is monomorphic and can be inlined by the JIT
+ *
+ * @author ywu
+ */
+class InvokerGenerator implements Opcodes {
+
+    private static final String INVOKER_TYPE = Type.getInternalName(ActionInvoker.class);
+
+    private static final String OBJECT_TYPE = Type.getInternalName(Object.class);
+
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * Binary name of the invoker class of the given action
+     */
+    static String getInvokerName(Method method) {
+        return ActionInvoker.class.getName() + "$$" + method.getDeclaringClass().getSimpleName() + '$' +
+                method.getName() + '$' + counter.incrementAndGet();
+    }
+
+    /**
+     * Bytecode of an invoker class named {@code invokerName}, which casts the arguments, calls the action on
+     * the controller and boxes the result
+     */
+    static byte[] generate(String invokerName, Method method) {
+        String className = invokerName.replace('.', '/');
+        ClassWriter cw = new ClassWriter(true);
+        cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, OBJECT_TYPE, new String[]{INVOKER_TYPE});
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, OBJECT_TYPE, "<init>", "()V");
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC, "invoke", "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;",
+                null, new String[]{Type.getInternalName(Exception.class)});
+        mv.visitCode();
+
+        Class<?> owner = method.getDeclaringClass();
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitTypeInsn(CHECKCAST, Type.getInternalName(owner));
+
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            mv.visitVarInsn(ALOAD, 2);
+            pushInt(mv, i);
+            mv.visitInsn(AALOAD);
+            unbox(mv, parameterTypes[i]);
+        }
+        mv.visitMethodInsn(owner.isInterface() ? INVOKEINTERFACE : INVOKEVIRTUAL, Type.getInternalName(owner),
+                method.getName(), Type.getMethodDescriptor(method));
+
+        box(mv, method.getReturnType());
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value <= 5) mv.visitInsn(ICONST_0 + value);
+        else if (value <= Byte.MAX_VALUE) mv.visitIntInsn(BIPUSH, value);
+        else mv.visitIntInsn(SIPUSH, value);
+    }
+
+    private static void unbox(MethodVisitor mv, Class<?> type) {
+        if (!type.isPrimitive()) {
+            if (type != Object.class) mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+            return;
+        }
+
+        String wrapper = Type.getInternalName(getWrapperType(type));
+        mv.visitTypeInsn(CHECKCAST, wrapper);
+        mv.visitMethodInsn(INVOKEVIRTUAL, wrapper, type.getName() + "Value", "()" + Type.getDescriptor(type));
+    }
+
+    private static void box(MethodVisitor mv, Class<?> type) {
+        if (type == void.class) {
+            mv.visitInsn(ACONST_NULL);
+        } else if (type.isPrimitive()) {
+            Class<?> wrapper = getWrapperType(type);
+            mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(wrapper), "valueOf",
+                    "(" + Type.getDescriptor(type) + ")" + Type.getDescriptor(wrapper));
+        }
+    }
+
+    private static Class<?> getWrapperType(Class<?> primitive) {
+        if (primitive == int.class) return Integer.class;
+        if (primitive == long.class) return Long.class;
+        if (primitive == boolean.class) return Boolean.class;
+        if (primitive == double.class) return Double.class;
+        if (primitive == float.class) return Float.class;
+        if (primitive == short.class) return Short.class;
+        if (primitive == byte.class) return Byte.class;
+        return Character.class;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc.metrics;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jmx.support.ObjectNameManager;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the statistics of the actions mapped by {@link net.sf.cocmvc.ConventionalHandlerMapping},
+ * keyed by the conventional action name: {@code <module>/<controller>/<action>}<br/>
+ *
+ * The statistics of an action are created by its first request, and exposed as an MBean named
+ * {@code net.sf.cocmvc:type=ActionStats,name=<action name>}.
+ *
+ * @author ywu
+ */
+public class ActionMetrics implements DisposableBean {
+
+    private static final Log logger = LogFactory.getLog(ActionMetrics.class);
+
+    /**
+     * Action names of the handler methods, by handler type and method
+     */
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Method, String>> actionNames = new ConcurrentHashMap<Class<?>, ConcurrentMap<Method, String>>();
+
+    private final ConcurrentMap<String, ActionStats> stats = new ConcurrentHashMap<String, ActionStats>();
+
+    private MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    private boolean exposeMBeans = true;
+
+    private String domain = "net.sf.cocmvc";
+
+    /**
+     * MBean server to register the statistics, default is the platform MBean server
+     */
+    public void setServer(MBeanServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Whether to expose the statistics as MBeans, default is true
+     */
+    public void setExposeMBeans(boolean exposeMBeans) {
+        this.exposeMBeans = exposeMBeans;
+    }
+
+    /**
+     * Domain of the MBean names, default is 'net.sf.cocmvc'
+     */
+    public void setDomain(String domain) {
+        this.domain = domain;
+    }
+
+    /**
+     * Name a handler method, invoked when registering the mapping
+     */
+    public void registerAction(Class<?> handlerType, Method method, String actionName) {
+        ConcurrentMap<Method, String> methods = actionNames.get(handlerType);
+        if (methods == null) {
+            actionNames.putIfAbsent(handlerType, new ConcurrentHashMap<Method, String>());
+            methods = actionNames.get(handlerType);
+        }
+        methods.put(method, actionName);
+    }
+
+    /**
+     * Forget a handler method, invoked when unregistering the mapping. The statistics of the action are
+     * dropped along with its MBean, unless another handler method is registered under the same name
+     */
+    public void unregisterAction(Class<?> handlerType, Method method) {
+        Map<Method, String> methods = actionNames.get(handlerType);
+        String actionName = methods != null ? methods.remove(method) : null;
+        if (actionName == null) return;
+        if (methods.isEmpty()) actionNames.remove(handlerType, methods);
+
+        for (Map<Method, String> names : actionNames.values())
+            if (names.containsValue(actionName)) return;
+
+        ActionStats actionStats = stats.remove(actionName);
+        if (actionStats != null && exposeMBeans && server != null) unregisterMBean(actionStats);
+    }
+
+    /**
+     * Name of the given handler method, null if not registered
+     */
+    public String getActionName(Class<?> handlerType, Method method) {
+        Map<Method, String> methods = actionNames.get(handlerType);
+        return methods != null ? methods.get(method) : null;
+    }
+
+    /**
+     * Statistics of the given handler method, created if absent, null if the method is not registered
+     */
+    public ActionStats getStats(Class<?> handlerType, Method method) {
+        String actionName = getActionName(handlerType, method);
+        if (actionName == null) return null;
+
+        ActionStats actionStats = stats.get(actionName);
+        if (actionStats == null) {
+            ActionStats created = new ActionStats(actionName);
+            actionStats = stats.putIfAbsent(actionName, created);
+            if (actionStats == null) {
+                actionStats = created;
+                if (exposeMBeans && server != null) registerMBean(created);
+            }
+        }
+        return actionStats;
+    }
+
+    /**
+     * Statistics of the named action, null if not requested yet
+     */
+    public ActionStats getStats(String actionName) {
+        return stats.get(actionName);
+    }
+
+    /**
+     * Statistics of all the requested actions, sorted by name
+     */
+    public Map<String, ActionStats> getAllStats() {
+        return new TreeMap<String, ActionStats>(stats);
+    }
+
+    /**
+     * Write the statistics of all the requested actions in plain text, one action per line
+     */
+    public void writeSnapshot(PrintWriter writer) {
+        for (ActionStats actionStats : getAllStats().values()) writer.println(actionStats);
+    }
+
+    public void destroy() {
+        if (!exposeMBeans || server == null) return;
+
+        for (ActionStats actionStats : stats.values()) unregisterMBean(actionStats);
+    }
+
+    private void registerMBean(ActionStats actionStats) {
+        try {
+            server.registerMBean(actionStats, getObjectName(actionStats));
+        } catch (JMException e) {
+            logger.warn("Failed to register MBean of action " + actionStats.getName(), e);
+        }
+    }
+
+    private void unregisterMBean(ActionStats actionStats) {
+        try {
+            ObjectName objectName = getObjectName(actionStats);
+            if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            logger.warn("Failed to unregister MBean of action " + actionStats.getName(), e);
+        }
+    }
+
+    private ObjectName getObjectName(ActionStats actionStats) throws JMException {
+        return ObjectNameManager.getInstance(domain + ":type=ActionStats,name=" + ObjectName.quote(actionStats.getName()));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc.metrics;
+
+import net.sf.cocmvc.async.AsyncResult;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Records the latency and outcome of each request into the {@link ActionMetrics}, an asynchronous action is recorded
+ * once its result is handled, timed out actions are not recorded
+ *
+ * @author ywu
+ */
+public class ActionMetricsInterceptor extends HandlerInterceptorAdapter {
+
+    private static final String START_TIME_ATTRIBUTE = ActionMetricsInterceptor.class.getName() + ".startTime";
+
+    private static final String ASYNC_HANDLER_ATTRIBUTE = ActionMetricsInterceptor.class.getName() + ".asyncHandler";
+
+    private final ActionMetrics metrics;
+
+    public ActionMetricsInterceptor(ActionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // the result of an asynchronous action, timed since the action was started
+        if (request.getAttribute(ASYNC_HANDLER_ATTRIBUTE) == null) request.setAttribute(START_TIME_ATTRIBUTE, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (AsyncResult.isStarted(request)) {
+            request.setAttribute(ASYNC_HANDLER_ATTRIBUTE, handler);
+            return;
+        }
+
+        Object asyncHandler = request.getAttribute(ASYNC_HANDLER_ATTRIBUTE);
+        if (asyncHandler != null) {
+            request.removeAttribute(ASYNC_HANDLER_ATTRIBUTE);
+            handler = asyncHandler;
+        }
+
+        Long startTime = (Long) request.getAttribute(START_TIME_ATTRIBUTE);
+        if (startTime == null || !(handler instanceof HandlerMethod)) return;
+
+        HandlerMethod handlerMethod = (HandlerMethod) handler;
+        ActionStats stats = metrics.getStats(handlerMethod.getBeanType(), handlerMethod.getMethod());
+        if (stats != null) stats.record(System.nanoTime() - startTime, ex != null || response.getStatus() >= 500);
+    }
+}
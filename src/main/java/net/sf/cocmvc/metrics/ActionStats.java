@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request count, error count and latency histogram of an action
+ *
+ * @author ywu
+ */
+public class ActionStats implements ActionStatsMBean {
+
+    private final String name;
+
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    public ActionStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Record a completed request
+     */
+    public void record(long latencyNanos, boolean error) {
+        latencies.record(latencyNanos / 1000);
+        if (error) errorCount.incrementAndGet();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getRequestCount() {
+        return latencies.getCount();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    public double getMeanMillis() {
+        return latencies.getMean() / 1000;
+    }
+
+    public double getMaxMillis() {
+        return latencies.getMax() / 1000.0;
+    }
+
+    public double getP50Millis() {
+        return latencies.getValueAtPercentile(50) / 1000.0;
+    }
+
+    public double getP99Millis() {
+        return latencies.getValueAtPercentile(99) / 1000.0;
+    }
+
+    public double getP999Millis() {
+        return latencies.getValueAtPercentile(99.9) / 1000.0;
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    public void reset() {
+        latencies.reset();
+        errorCount.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s requests=%d errors=%d mean=%.3fms p50=%.3fms p99=%.3fms p999=%.3fms max=%.3fms",
+                name, getRequestCount(), getErrorCount(), getMeanMillis(), getP50Millis(), getP99Millis(), getP999Millis(), getMaxMillis());
+    }
+}
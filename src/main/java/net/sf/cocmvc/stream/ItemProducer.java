@@ -0,0 +1,32 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.stream;
+
+/**
+ * Produces the items of a streamed response by pushing them to a sink, returned by actions whose items are delivered
+ * by callbacks rather than pulled by an iterator
+ *
+ * @author ywu
+ */
+public interface ItemProducer<T> {
+
+    /**
+     * Write all the items to the sink, each item is written to the response before this method returns
+     */
+    void produce(ItemSink<? super T> sink) throws Exception;
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.stream;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.util.ObjectUtils;
+
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Formats of the streamed items, each item is written as a line<br/>
+ *
+ * Maps are written by their entries, beans by their readable properties, arrays and collections by their elements.
+ *
+ * @author ywu
+ */
+public enum StreamFormat {
+
+    /**
+     * Comma separated values, with a header line of the keys or the property names if the items are maps or beans
+     */
+    CSV("text/csv", "csv") {
+        @Override
+        public void write(Writer writer, Object item, long index) throws IOException {
+            if (item instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) item;
+                if (index == 0) writeRecord(writer, map.keySet());
+                writeRecord(writer, map.values());
+            } else if (item != null && item.getClass().isArray()) {
+                writeRecord(writer, Arrays.asList(ObjectUtils.toObjectArray(item)));
+            } else if (item instanceof Collection) {
+                writeRecord(writer, (Collection<?>) item);
+            } else if (isScalar(item)) {
+                writeRecord(writer, Collections.singleton(item));
+            } else {
+                Map<String, Object> properties = getProperties(item);
+                if (index == 0) writeRecord(writer, properties.keySet());
+                writeRecord(writer, properties.values());
+            }
+        }
+    },
+
+    /**
+     * A JSON value per line, aka. newline delimited JSON
+     */
+    JSON_LINES("application/x-ndjson", "jsonl", "ndjson") {
+        @Override
+        public void write(Writer writer, Object item, long index) throws IOException {
+            writeJson(writer, item);
+            writer.write('\n');
+        }
+    };
+
+    private final String contentType;
+
+    private final String[] extensions;
+
+    StreamFormat(String contentType, String... extensions) {
+        this.contentType = contentType;
+        this.extensions = extensions;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Format of the given path by its extension, e.g. {@code /orders/export.csv}, null if none matches
+     */
+    public static StreamFormat forPath(String path) {
+        int dot = path.lastIndexOf('.');
+        if (dot < 0 || dot < path.lastIndexOf('/')) return null;
+
+        String extension = path.substring(dot + 1);
+        for (StreamFormat format : values()) {
+            for (String e : format.extensions)
+                if (e.equalsIgnoreCase(extension)) return format;
+        }
+        return null;
+    }
+
+    /**
+     * Write an item as a line
+     *
+     * @param index index of the item in the stream
+     */
+    public abstract void write(Writer writer, Object item, long index) throws IOException;
+
+    private static void writeRecord(Writer writer, Collection<?> fields) throws IOException {
+        boolean first = true;
+        for (Object field : fields) {
+            if (!first) writer.write(',');
+            first = false;
+            if (field != null) writeField(writer, String.valueOf(field));
+        }
+        writer.write("\r\n");
+    }
+
+    /*
+     * quoted only if needed, see RFC 4180
+     */
+    private static void writeField(Writer writer, String field) throws IOException {
+        boolean quoted = false;
+        for (int i = 0; i < field.length() && !quoted; i++) {
+            char c = field.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quoted) {
+            writer.write(field);
+            return;
+        }
+
+        writer.write('"');
+        writer.write(field.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static void writeJson(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+        } else if (value instanceof Boolean) {
+            writer.write(value.toString());
+        } else if (value instanceof Number) {
+            double d = ((Number) value).doubleValue();
+            writer.write(Double.isNaN(d) || Double.isInfinite(d) ? "null" : value.toString());
+        } else if (value instanceof Date) {
+            writer.write(String.valueOf(((Date) value).getTime()));
+        } else if (isScalar(value)) {
+            writeString(writer, value.toString());
+        } else if (value instanceof Map) {
+            writeObject(writer, (Map<?, ?>) value);
+        } else if (value.getClass().isArray()) {
+            writeArray(writer, Arrays.asList(ObjectUtils.toObjectArray(value)));
+        } else if (value instanceof Iterable) {
+            writeArray(writer, (Iterable<?>) value);
+        } else {
+            writeObject(writer, getProperties(value));
+        }
+    }
+
+    private static void writeObject(Writer writer, Map<?, ?> map) throws IOException {
+        writer.write('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!first) writer.write(',');
+            first = false;
+            writeString(writer, String.valueOf(entry.getKey()));
+            writer.write(':');
+            writeJson(writer, entry.getValue());
+        }
+        writer.write('}');
+    }
+
+    private static void writeArray(Writer writer, Iterable<?> elements) throws IOException {
+        writer.write('[');
+        boolean first = true;
+        for (Object element : elements) {
+            if (!first) writer.write(',');
+            first = false;
+            writeJson(writer, element);
+        }
+        writer.write(']');
+    }
+
+    private static void writeString(Writer writer, String s) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') writer.write("\\" + c);
+            else if (c < 0x20) writer.write(String.format("\\u%04x", (int) c));
+            else writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static boolean isScalar(Object value) {
+        return value == null || BeanUtils.isSimpleValueType(value.getClass());
+    }
+
+    /*
+     * readable properties, in the order of the introspection (by name)
+     */
+    private static Map<String, Object> getProperties(Object bean) {
+        BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(bean);
+        Map<String, Object> properties = new LinkedHashMap<String, Object>();
+        for (PropertyDescriptor descriptor : wrapper.getPropertyDescriptors()) {
+            String name = descriptor.getName();
+            if (!"class".equals(name) && wrapper.isReadableProperty(name)) properties.put(name, wrapper.getPropertyValue(name));
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.stream;
+
+import net.sf.cocmvc.annotation.StreamResponse;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.MethodParameter;
+import org.springframework.util.Assert;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.*;
+import java.util.Iterator;
+
+/**
+ * Streams the items returned by actions to the response as they are produced, instead of rendering a view of them<br/>
+ *
+ * Handles an {@link Iterator}, an {@link ItemProducer}, or an {@link Iterable} returned by a {@link StreamResponse}
+ * action. The items are written through a buffer of a fixed size, and the response is chunked once the buffer is
+ * flushed, so the memory used doesn't grow with the number of items. The writes block while the client is slow,
+ * so is the iteration. An iterator or iterable implementing {@link Closeable}, e.g. a database cursor, is closed
+ * once the items are written, or the writing failed.
+ *
+ * @author ywu
+ */
+public class StreamingReturnValueHandler implements HandlerMethodReturnValueHandler {
+
+    private static final Log logger = LogFactory.getLog(StreamingReturnValueHandler.class);
+
+    private final int bufferSize;
+
+    private final StreamFormat defaultFormat;
+
+    /**
+     * @param bufferSize size of the buffer in chars, also the buffer size of the response
+     * @param defaultFormat format of the actions not telling one by annotation, or by the extension of the request path
+     */
+    public StreamingReturnValueHandler(int bufferSize, StreamFormat defaultFormat) {
+        Assert.isTrue(bufferSize > 0, "Buffer size must be positive");
+        Assert.notNull(defaultFormat, "Default format is required");
+        this.bufferSize = bufferSize;
+        this.defaultFormat = defaultFormat;
+    }
+
+    public boolean supportsReturnType(MethodParameter returnType) {
+        Class<?> type = returnType.getParameterType();
+        return Iterator.class.isAssignableFrom(type) || ItemProducer.class.isAssignableFrom(type)
+                || (Iterable.class.isAssignableFrom(type) && returnType.getMethodAnnotation(StreamResponse.class) != null);
+    }
+
+    public void handleReturnValue(Object returnValue, MethodParameter returnType, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest) throws Exception {
+        mavContainer.setRequestHandled(true);
+
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        HttpServletResponse response = webRequest.getNativeResponse(HttpServletResponse.class);
+        StreamFormat format = getFormat(returnType, request);
+        response.setContentType(format.getContentType() + ";charset=UTF-8");
+        if (!response.isCommitted()) response.setBufferSize(bufferSize);
+
+        Iterator<?> iterator = null;
+        try {
+            ItemWriter writer = new ItemWriter(response.getOutputStream(), format, bufferSize);
+            if (returnValue instanceof ItemProducer) {
+                ((ItemProducer<?>) returnValue).produce(writer);
+            } else if (returnValue != null) {
+                iterator = returnValue instanceof Iterator ? (Iterator<?>) returnValue : ((Iterable<?>) returnValue).iterator();
+                while (iterator.hasNext()) writer.write(iterator.next());
+            }
+            writer.flush();
+        } finally {
+            close(iterator);
+            if (returnValue != iterator) close(returnValue);
+        }
+    }
+
+    private StreamFormat getFormat(MethodParameter returnType, HttpServletRequest request) {
+        StreamResponse annotation = returnType.getMethodAnnotation(StreamResponse.class);
+        if (annotation != null) return annotation.format();
+
+        StreamFormat format = StreamFormat.forPath(request.getRequestURI());
+        return format != null ? format : defaultFormat;
+    }
+
+    private void close(Object source) {
+        if (!(source instanceof Closeable)) return;
+
+        try {
+            ((Closeable) source).close();
+        } catch (IOException e) {
+            logger.warn("Failed to close the streamed items: " + e);
+        }
+    }
+
+    /*
+     * formats the items one by one, the output stream is only written once the buffer is full,
+     * so no more than the buffer and an item are held in memory
+     */
+    private static class ItemWriter implements ItemSink<Object> {
+
+        private final OutputStream out;
+
+        private final StreamFormat format;
+
+        private final int bufferSize;
+
+        private final StringWriter buffer;
+
+        private long count;
+
+        private ItemWriter(OutputStream out, StreamFormat format, int bufferSize) {
+            this.out = out;
+            this.format = format;
+            this.bufferSize = bufferSize;
+            this.buffer = new StringWriter(bufferSize);
+        }
+
+        public void write(Object item) throws IOException {
+            format.write(buffer, item, count++);
+            if (buffer.getBuffer().length() >= bufferSize) flush();
+        }
+
+        private void flush() throws IOException {
+            out.write(buffer.toString().getBytes("UTF-8"));
+            out.flush();
+            buffer.getBuffer().setLength(0);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.timing;
+
+import javax.servlet.ServletRequest;
+
+/**
+ * Durations of the dispatch stages of a sampled request, measured with {@link System#nanoTime()}<br/>
+ *
+ * A timer is only used by the thread dispatching its request, so it's neither synchronized nor shared,
+ * the stages not reached by the request have no duration.
+ *
+ * @author ywu
+ */
+public class StageTimer {
+
+    static final String TIMER_ATTRIBUTE = StageTimer.class.getName();
+
+    /**
+     * The timed stages, in the order they're reported
+     */
+    public enum Stage {
+        /** finding the handler of the request */
+        LOOKUP("lookup"),
+        /** resolving the arguments of the action */
+        ARGUMENTS("args"),
+        /** running the action itself */
+        ACTION("action"),
+        /** handling the return value, including writing a response body */
+        RESULT("result"),
+        /** rendering the view, and the post processing of the interceptors */
+        VIEW("view"),
+        /** from the lookup to the completion of the request */
+        TOTAL("total");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Name of the stage in the {@code Server-Timing} header and the access log
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final long[] durations = new long[Stage.values().length];
+
+    private final long startTime;
+
+    private Object handler;
+
+    private long handlerStartTime;
+
+    private long handlerEndTime;
+
+    StageTimer(long startTime) {
+        this.startTime = startTime;
+        for (int i = 0; i < durations.length; i++) durations[i] = -1;
+    }
+
+    /**
+     * Timer of the given request, or null if it's not sampled
+     */
+    public static StageTimer getTimer(ServletRequest request) {
+        return (StageTimer) request.getAttribute(TIMER_ATTRIBUTE);
+    }
+
+    /**
+     * Duration of the given stage in nanoseconds, or -1 if not reached
+     */
+    public long getDuration(Stage stage) {
+        return durations[stage.ordinal()];
+    }
+
+    Object getHandler() {
+        return handler;
+    }
+
+    /**
+     * Mark the end of the handler lookup, which is started with the timer
+     */
+    public void lookupEnded(long time) {
+        durations[Stage.LOOKUP.ordinal()] = time - startTime;
+    }
+
+    void handlerStarted(Object handler, long time) {
+        this.handler = handler;
+        this.handlerStartTime = time;
+        durations[Stage.ARGUMENTS.ordinal()] = 0;
+    }
+
+    void argumentResolved(long duration) {
+        if (handler != null) durations[Stage.ARGUMENTS.ordinal()] += duration;
+    }
+
+    void resultStarted(long time) {
+        if (handler == null) return;
+
+        durations[Stage.ACTION.ordinal()] = time - handlerStartTime - durations[Stage.ARGUMENTS.ordinal()];
+    }
+
+    void resultHandled(long duration) {
+        if (handler != null) durations[Stage.RESULT.ordinal()] = Math.max(durations[Stage.RESULT.ordinal()], 0) + duration;
+    }
+
+    void handlerEnded(long time) {
+        // no return value handled, when the action fails or handles the response itself
+        if (durations[Stage.ACTION.ordinal()] < 0)
+            durations[Stage.ACTION.ordinal()] = time - handlerStartTime - durations[Stage.ARGUMENTS.ordinal()];
+        handlerEndTime = time;
+    }
+
+    void completed(long time) {
+        if (handlerEndTime == 0) handlerEnded(time);
+        durations[Stage.VIEW.ordinal()] = time - handlerEndTime;
+        durations[Stage.TOTAL.ordinal()] = time - startTime;
+    }
+
+    /**
+     * Value of the {@code Server-Timing} header, such as {@code lookup;dur=0.012, args;dur=0.034}
+     */
+    String toServerTiming() {
+        StringBuilder value = new StringBuilder(128);
+        for (Stage stage : Stage.values()) {
+            long duration = getDuration(stage);
+            if (duration < 0) continue;
+
+            if (value.length() > 0) value.append(", ");
+            appendMillis(value.append(stage.getLabel()).append(";dur="), duration);
+        }
+        return value.toString();
+    }
+
+    /**
+     * Append the durations as fields of the access log, such as {@code lookup=0.012 args=0.034}
+     */
+    void appendFields(StringBuilder line) {
+        for (Stage stage : Stage.values()) {
+            long duration = getDuration(stage);
+            if (duration >= 0) appendMillis(line.append(' ').append(stage.getLabel()).append('='), duration);
+        }
+    }
+
+    /*
+     * milliseconds with 3 decimals, without the cost of a formatter
+     */
+    private static void appendMillis(StringBuilder buffer, long nanos) {
+        long micros = nanos / 1000;
+        long fraction = micros % 1000;
+        buffer.append(micros / 1000).append('.');
+        if (fraction < 100) buffer.append('0');
+        if (fraction < 10) buffer.append('0');
+        buffer.append(fraction);
+    }
+}
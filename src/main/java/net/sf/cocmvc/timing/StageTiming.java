@@ -0,0 +1,158 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.timing;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times the dispatch stages of a sample of the requests, and reports them in the {@code Server-Timing}
+ * response header and the access log<br/>
+ *
+ * Each thread samples one of every {@code sampleInterval} requests it dispatches, counting with its own counter,
+ * so sampling takes no lock and doesn't contend. A sampled request carries a {@link StageTimer}, the requests
+ * not sampled cost a request attribute lookup per stage.
+ *
+ * <p>The header is set at the last moment the response is not committed: before the return value is handled,
+ * after the action, and after the view is rendered. The access log is written to the {@value #ACCESS_LOG} log
+ * at INFO level, as {@code key=value} fields such as
+ * {@code method=GET uri=/user/show status=200 handler=UserController#show lookup=0.012 ... total=1.234},
+ * the durations are in milliseconds.<p/>
+ *
+ * @author ywu
+ */
+public class StageTiming {
+
+    public static final String ACCESS_LOG = "net.sf.cocmvc.timing.access";
+
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    private final ThreadLocal<int[]> counters = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    /**
+     * Time one of every given number of requests, 1 times all the requests, 0 times none, default is 100
+     */
+    private int sampleInterval = 100;
+
+    /**
+     * Whether to report the durations in the {@code Server-Timing} response header, default is true
+     */
+    private boolean serverTimingHeader = true;
+
+    /**
+     * Log of the timed requests, null if not logged
+     */
+    private Log accessLog = LogFactory.getLog(ACCESS_LOG);
+
+    public void setSampleInterval(int sampleInterval) {
+        this.sampleInterval = sampleInterval;
+    }
+
+    public void setServerTimingHeader(boolean serverTimingHeader) {
+        this.serverTimingHeader = serverTimingHeader;
+    }
+
+    /**
+     * Name of the access log, default is {@value #ACCESS_LOG}, null to disable logging
+     */
+    public void setAccessLogName(String accessLogName) {
+        this.accessLog = accessLogName != null ? LogFactory.getLog(accessLogName) : null;
+    }
+
+    /**
+     * Start timing the request if it's sampled and not timed yet, e.g. by the dispatch forwarding it
+     *
+     * @return timer of the request, or null if not timed
+     */
+    public StageTimer start(HttpServletRequest request) {
+        if (sampleInterval <= 0 || !isSampled() || request.getAttribute(StageTimer.TIMER_ATTRIBUTE) != null) return null;
+
+        StageTimer timer = new StageTimer(System.nanoTime());
+        request.setAttribute(StageTimer.TIMER_ATTRIBUTE, timer);
+        return timer;
+    }
+
+    /**
+     * Time the argument resolution and the return value handling of the given adapter
+     */
+    public void instrument(RequestMappingHandlerAdapter adapter) {
+        if (adapter.getArgumentResolvers() != null) {
+            List<HandlerMethodArgumentResolver> resolvers = new ArrayList<HandlerMethodArgumentResolver>();
+            for (HandlerMethodArgumentResolver resolver : adapter.getArgumentResolvers().getResolvers())
+                resolvers.add(resolver instanceof TimedArgumentResolver ? resolver : new TimedArgumentResolver(resolver));
+            adapter.setArgumentResolvers(resolvers);
+        }
+
+        if (adapter.getReturnValueHandlers() != null) {
+            List<HandlerMethodReturnValueHandler> handlers = new ArrayList<HandlerMethodReturnValueHandler>();
+            for (HandlerMethodReturnValueHandler handler : adapter.getReturnValueHandlers().getHandlers())
+                handlers.add(handler instanceof TimedReturnValueHandler ? handler : new TimedReturnValueHandler(handler, this));
+            adapter.setReturnValueHandlers(handlers);
+        }
+    }
+
+    /**
+     * Report the durations measured so far, if the response is not committed
+     */
+    void writeHeader(StageTimer timer, HttpServletResponse response) {
+        if (serverTimingHeader && !response.isCommitted()) response.setHeader(SERVER_TIMING_HEADER, timer.toServerTiming());
+    }
+
+    /**
+     * Report the durations of a completed request
+     */
+    void complete(StageTimer timer, HttpServletRequest request, HttpServletResponse response, Exception ex) {
+        writeHeader(timer, response);
+        if (accessLog == null || !accessLog.isInfoEnabled()) return;
+
+        StringBuilder line = new StringBuilder(256);
+        line.append("method=").append(request.getMethod()).append(" uri=").append(request.getRequestURI())
+                .append(" status=").append(response.getStatus());
+        Object handler = timer.getHandler();
+        if (handler instanceof HandlerMethod) {
+            HandlerMethod handlerMethod = (HandlerMethod) handler;
+            line.append(" handler=").append(handlerMethod.getBeanType().getSimpleName()).append('#')
+                    .append(handlerMethod.getMethod().getName());
+        }
+        if (ex != null) line.append(" error=").append(ex.getClass().getName());
+        timer.appendFields(line);
+        accessLog.info(line);
+    }
+
+    private boolean isSampled() {
+        int[] counter = counters.get();
+        if (++counter[0] < sampleInterval) return false;
+
+        counter[0] = 0;
+        return true;
+    }
+}
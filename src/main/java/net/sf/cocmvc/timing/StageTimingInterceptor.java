@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.timing;
+
+import net.sf.cocmvc.async.AsyncResult;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Marks the start and the end of the handler, and the completion of the sampled requests. It comes after
+ * the other interceptors of the mapping, so it's the last one preceding the handler, and the first one
+ * following it<br/>
+ *
+ * Forwarded or included requests are timed as part of the request dispatching them, the requests starting
+ * an asynchronous action are not reported.
+ *
+ * @author ywu
+ */
+public class StageTimingInterceptor extends HandlerInterceptorAdapter {
+
+    private final StageTiming stageTiming;
+
+    public StageTimingInterceptor(StageTiming stageTiming) {
+        this.stageTiming = stageTiming;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        StageTimer timer = StageTimer.getTimer(request);
+        if (timer != null && timer.getHandler() == null) timer.handlerStarted(handler, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) {
+        StageTimer timer = StageTimer.getTimer(request);
+        if (timer == null || timer.getHandler() != handler) return;
+
+        timer.handlerEnded(System.nanoTime());
+        stageTiming.writeHeader(timer, response);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        StageTimer timer = StageTimer.getTimer(request);
+        if (timer == null || timer.getHandler() != handler) return;
+
+        request.removeAttribute(StageTimer.TIMER_ATTRIBUTE);
+        if (AsyncResult.isStarted(request)) return;
+
+        timer.completed(System.nanoTime());
+        stageTiming.complete(timer, request, response, ex);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.timing;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import javax.servlet.ServletRequest;
+
+/**
+ * Adds the time spent by the resolver to the {@link StageTimer} of a sampled request
+ *
+ * @author ywu
+ */
+public class TimedArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private final HandlerMethodArgumentResolver resolver;
+
+    TimedArgumentResolver(HandlerMethodArgumentResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    /**
+     * The actual resolver
+     */
+    public HandlerMethodArgumentResolver getResolver() {
+        return resolver;
+    }
+
+    public boolean supportsParameter(MethodParameter parameter) {
+        return resolver.supportsParameter(parameter);
+    }
+
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer, NativeWebRequest webRequest,
+                                  WebDataBinderFactory binderFactory) throws Exception {
+        ServletRequest request = webRequest.getNativeRequest(ServletRequest.class);
+        StageTimer timer = request != null ? StageTimer.getTimer(request) : null;
+        if (timer == null) return resolver.resolveArgument(parameter, mavContainer, webRequest, binderFactory);
+
+        long startTime = System.nanoTime();
+        try {
+            return resolver.resolveArgument(parameter, mavContainer, webRequest, binderFactory);
+        } finally {
+            timer.argumentResolved(System.nanoTime() - startTime);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return resolver.toString();
+    }
+}
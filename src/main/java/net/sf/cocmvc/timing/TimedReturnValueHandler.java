@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.timing;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Ends the action stage of a sampled request when its return value is handled, and times the handling,
+ * the durations are reported beforehand, as the handler may commit the response by writing its body
+ *
+ * @author ywu
+ */
+public class TimedReturnValueHandler implements HandlerMethodReturnValueHandler {
+
+    private final HandlerMethodReturnValueHandler handler;
+
+    private final StageTiming stageTiming;
+
+    TimedReturnValueHandler(HandlerMethodReturnValueHandler handler, StageTiming stageTiming) {
+        this.handler = handler;
+        this.stageTiming = stageTiming;
+    }
+
+    /**
+     * The actual handler
+     */
+    public HandlerMethodReturnValueHandler getHandler() {
+        return handler;
+    }
+
+    public boolean supportsReturnType(MethodParameter returnType) {
+        return handler.supportsReturnType(returnType);
+    }
+
+    public void handleReturnValue(Object returnValue, MethodParameter returnType, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest) throws Exception {
+        ServletRequest request = webRequest.getNativeRequest(ServletRequest.class);
+        StageTimer timer = request != null ? StageTimer.getTimer(request) : null;
+        if (timer == null) {
+            handler.handleReturnValue(returnValue, returnType, mavContainer, webRequest);
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        timer.resultStarted(startTime);
+        HttpServletResponse response = webRequest.getNativeResponse(HttpServletResponse.class);
+        if (response != null) stageTiming.writeHeader(timer, response);
+        try {
+            handler.handleReturnValue(returnValue, returnType, mavContainer, webRequest);
+        } finally {
+            timer.resultHandled(System.nanoTime() - startTime);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return handler.toString();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.upload;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the request body of the upload actions, the ones having an {@link UploadedBody} parameter, before calling them<br/>
+ *
+ * The container thread is released while the body is read with the non-blocking I/O of Servlet 3.1, and the request is
+ * dispatched again once it's complete, so the action is called with the whole body at hand. It comes before the other
+ * interceptors of the mapping, which only see the dispatch calling the action. The body is read in the calling thread
+ * if the request doesn't support async processing, or is empty.
+ *
+ * @author ywu
+ */
+public class UploadInterceptor extends HandlerInterceptorAdapter {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final int memoryThreshold;
+
+    private final long maxSize;
+
+    private final long timeout;
+
+    private final File directory;
+
+    /**
+     * @param memoryThreshold max size of a body kept in memory, larger ones are written to a temporary file
+     * @param maxSize max size of a body, unlimited if negative
+     * @param timeout timeout of reading a body in milliseconds, the container's default if not positive
+     * @param directory directory of the temporary files, the default temporary directory if null
+     */
+    public UploadInterceptor(int memoryThreshold, long maxSize, long timeout, File directory) {
+        this.memoryThreshold = memoryThreshold;
+        this.maxSize = maxSize;
+        this.timeout = timeout;
+        this.directory = directory;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        // dispatched again with the complete body
+        if (!isUploadAction(handler) || UploadedBody.getBody(request) != null) return true;
+
+        long length = request.getContentLengthLong();
+        if (maxSize >= 0 && length > maxSize) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request body larger than " + maxSize + " bytes");
+            return false;
+        }
+
+        UploadedBody body = new UploadedBody(request.getContentType(), memoryThreshold, directory, length);
+        if (length == 0 || !request.isAsyncSupported()) return readBody(request, response, body);
+
+        AsyncContext asyncContext = request.startAsync(request, response);
+        if (timeout > 0) asyncContext.setTimeout(timeout);
+
+        ServletInputStream input = request.getInputStream();
+        UploadReader reader = new UploadReader(asyncContext, input, body, maxSize, CHUNK_SIZE);
+        asyncContext.addListener(reader);
+        input.setReadListener(reader);
+        return false;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        UploadedBody body = isUploadAction(handler) ? UploadedBody.getBody(request) : null;
+        if (body == null) return;
+
+        body.delete();
+        request.removeAttribute(UploadedBody.BODY_ATTRIBUTE);
+    }
+
+    private boolean isUploadAction(Object handler) {
+        if (!(handler instanceof HandlerMethod)) return false;
+
+        // the parameters are introspected once by the handler method, not cached here, so no controller is pinned
+        for (MethodParameter parameter : ((HandlerMethod) handler).getMethodParameters())
+            if (UploadedBody.class.equals(parameter.getParameterType())) return true;
+        return false;
+    }
+
+    /*
+     * blocking read, without async support
+     */
+    private boolean readBody(HttpServletRequest request, HttpServletResponse response, UploadedBody body) throws IOException {
+        InputStream input = request.getInputStream();
+        byte[] chunk = new byte[CHUNK_SIZE];
+        try {
+            for (int length = input.read(chunk); length >= 0; length = input.read(chunk)) {
+                if (maxSize >= 0 && body.getSize() + length > maxSize) {
+                    body.delete();
+                    response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request body larger than " + maxSize + " bytes");
+                    return false;
+                }
+                body.write(chunk, length);
+            }
+        } catch (IOException e) {
+            body.delete();
+            throw e;
+        }
+
+        body.finish();
+        request.setAttribute(UploadedBody.BODY_ATTRIBUTE, body);
+        return true;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.upload;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Reads the body of an upload request as its chunks arrive, on the container threads notifying the data,
+ * and dispatches the request again once the body is complete<br/>
+ *
+ * The container never calls the listener concurrently for the same request. A body over the size limit is
+ * responded with 413 Request Entity Too Large, a read error with 400 Bad Request, and a timeout with 408 Request Timeout.
+ *
+ * @author ywu
+ */
+class UploadReader implements ReadListener, AsyncListener {
+
+    private static final Log logger = LogFactory.getLog(UploadReader.class);
+
+    private final AsyncContext asyncContext;
+
+    private final ServletInputStream input;
+
+    private final UploadedBody body;
+
+    private final long maxSize;
+
+    private final byte[] chunk;
+
+    private boolean done;
+
+    /**
+     * @param maxSize max size of the body, unlimited if negative
+     * @param chunkSize size of the chunks read from the request
+     */
+    UploadReader(AsyncContext asyncContext, ServletInputStream input, UploadedBody body, long maxSize, int chunkSize) {
+        this.asyncContext = asyncContext;
+        this.input = input;
+        this.body = body;
+        this.maxSize = maxSize;
+        this.chunk = new byte[chunkSize];
+    }
+
+    public void onDataAvailable() {
+        try {
+            while (!done && input.isReady()) {
+                int length = input.read(chunk);
+                if (length < 0) return;
+
+                if (maxSize >= 0 && body.getSize() + length > maxSize) {
+                    fail(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request body larger than " + maxSize + " bytes");
+                    return;
+                }
+                body.write(chunk, length);
+            }
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    public void onAllDataRead() {
+        if (done) return;
+
+        done = true;
+        body.finish();
+        asyncContext.getRequest().setAttribute(UploadedBody.BODY_ATTRIBUTE, body);
+        asyncContext.dispatch();
+    }
+
+    public void onError(Throwable t) {
+        if (logger.isDebugEnabled()) logger.debug("Failed to read the request body", t);
+        fail(HttpServletResponse.SC_BAD_REQUEST, "Failed to read the request body");
+    }
+
+    public void onTimeout(AsyncEvent event) {
+        fail(HttpServletResponse.SC_REQUEST_TIMEOUT, "Request body not received in time");
+    }
+
+    public void onError(AsyncEvent event) {
+        onError(event.getThrowable());
+    }
+
+    public void onComplete(AsyncEvent event) {
+        // the body is deleted by the interceptor once dispatched
+        if (!done) body.delete();
+    }
+
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    private void fail(int status, String message) {
+        if (done) return;
+
+        done = true;
+        body.delete();
+        try {
+            HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+            if (!response.isCommitted()) response.sendError(status, message);
+        } catch (IOException e) {
+            logger.debug("Failed to send the error response", e);
+        } finally {
+            asyncContext.complete();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.upload;
+
+import org.springframework.util.FileCopyUtils;
+
+import javax.servlet.ServletRequest;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Request body of an upload action, completely read before the action is called<br/>
+ *
+ * The body is kept in memory up to a threshold, larger ones are written to a temporary file through a
+ * {@link FileChannel}. The file is deleted once the request is completed, unless moved by {@link #transferTo(File)}.
+ *
+ * @author ywu
+ */
+public class UploadedBody {
+
+    static final String BODY_ATTRIBUTE = UploadedBody.class.getName();
+
+    private final String contentType;
+
+    private final int memoryThreshold;
+
+    private final File directory;
+
+    private byte[] buffer = new byte[0];
+
+    private long size;
+
+    private File file;
+
+    private FileChannel channel;
+
+    /**
+     * @param memoryThreshold max size of a body kept in memory
+     * @param directory directory of the temporary files, the default temporary directory if null
+     * @param expectedSize the content length of the request, or -1 if unknown
+     */
+    UploadedBody(String contentType, int memoryThreshold, File directory, long expectedSize) {
+        this.contentType = contentType;
+        this.memoryThreshold = memoryThreshold;
+        this.directory = directory;
+        if (expectedSize > 0 && expectedSize <= memoryThreshold) buffer = new byte[(int) expectedSize];
+    }
+
+    /**
+     * Body of the request being handled, null if none
+     */
+    public static UploadedBody getBody(ServletRequest request) {
+        return (UploadedBody) request.getAttribute(BODY_ATTRIBUTE);
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Size of the body in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public boolean isInMemory() {
+        return file == null;
+    }
+
+    /**
+     * Content of the body, read from the beginning
+     */
+    public InputStream getInputStream() throws IOException {
+        if (file == null) return new ByteArrayInputStream(buffer, 0, (int) size);
+        return new BufferedInputStream(new FileInputStream(file));
+    }
+
+    /**
+     * Move the body to the given file, the temporary file is renamed if possible
+     */
+    public void transferTo(File dest) throws IOException {
+        if (file != null && file.renameTo(dest)) {
+            file = null;
+            buffer = null;
+            return;
+        }
+
+        InputStream in = getInputStream();
+        FileCopyUtils.copy(in, new FileOutputStream(dest));
+        delete();
+    }
+
+    /**
+     * Delete the temporary file, if any
+     */
+    public void delete() {
+        closeChannel();
+        if (file != null && !file.delete() && file.exists()) file.deleteOnExit();
+    }
+
+    /*
+     * append a chunk read from the request, spilling to a file once over the memory threshold
+     */
+    void write(byte[] chunk, int length) throws IOException {
+        if (channel == null && size + length > memoryThreshold) spill();
+
+        if (channel != null) {
+            ByteBuffer source = ByteBuffer.wrap(chunk, 0, length);
+            while (source.hasRemaining()) channel.write(source);
+        } else {
+            if (size + length > buffer.length) {
+                byte[] grown = new byte[(int) Math.min(memoryThreshold, Math.max(buffer.length * 2, size + length))];
+                System.arraycopy(buffer, 0, grown, 0, (int) size);
+                buffer = grown;
+            }
+            System.arraycopy(chunk, 0, buffer, (int) size, length);
+        }
+        size += length;
+    }
+
+    /*
+     * all the chunks written
+     */
+    void finish() {
+        closeChannel();
+    }
+
+    private void spill() throws IOException {
+        file = File.createTempFile("upload", ".tmp", directory);
+        channel = new FileOutputStream(file).getChannel();
+        ByteBuffer source = ByteBuffer.wrap(buffer, 0, (int) size);
+        while (source.hasRemaining()) channel.write(source);
+        buffer = null;
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing to do
+        }
+        channel = null;
+    }
+
+    @Override
+    public String toString() {
+        return "UploadedBody{contentType=" + contentType + ", size=" + size + (file != null ? ", file=" + file : "") + "}";
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.upload;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import javax.servlet.ServletRequest;
+
+/**
+ * Resolves the {@link UploadedBody} parameters of the upload actions, read by the {@link UploadInterceptor}
+ *
+ * @author ywu
+ */
+public class UploadedBodyArgumentResolver implements HandlerMethodArgumentResolver {
+
+    public boolean supportsParameter(MethodParameter parameter) {
+        return UploadedBody.class.equals(parameter.getParameterType());
+    }
+
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer, NativeWebRequest webRequest,
+                                  WebDataBinderFactory binderFactory) {
+        UploadedBody body = UploadedBody.getBody(webRequest.getNativeRequest(ServletRequest.class));
+        if (body == null)
+            throw new IllegalStateException("Request body not read, the mapping of upload actions requires an UploadInterceptor");
+        return body;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.warmup;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+
+/**
+ * Implementation of an interface doing nothing, returning empty or zero values, base of the warm-up requests and
+ * responses, which only override what the mapping and the handler adapters use
+ *
+ * @author ywu
+ */
+final class NullObject implements InvocationHandler {
+
+    private static final NullObject INSTANCE = new NullObject();
+
+    private NullObject() {
+    }
+
+    static <T> T of(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, INSTANCE));
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        if (method.getName().equals("equals")) return proxy == args[0];
+        if (method.getName().equals("hashCode")) return System.identityHashCode(proxy);
+        if (method.getName().equals("toString")) return "NullObject";
+
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) return false;
+        if (type == int.class) return method.getName().startsWith("get") ? -1 : 0;
+        if (type == long.class) return -1L;
+        if (type == Enumeration.class) return Collections.enumeration(Collections.emptyList());
+        if (type == Map.class) return Collections.emptyMap();
+        if (Collection.class.isAssignableFrom(type)) return Collections.emptyList();
+        return null;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.warmup;
+
+import org.springframework.web.HttpRequestHandler;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Readiness check of a load balancer, {@code 503 Service Unavailable} until the {@link RouteWarmUp} is done
+ *
+ * @author ywu
+ */
+public class ReadinessHandler implements HttpRequestHandler {
+
+    private final RouteWarmUp warmUp;
+
+    public ReadinessHandler(RouteWarmUp warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    public void handleRequest(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("text/plain;charset=UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+
+        boolean ready = warmUp.isReady();
+        if (!ready) response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.getWriter().write(ready ? "READY" : "WARMING_UP");
+        response.getWriter().flush();
+    }
+}
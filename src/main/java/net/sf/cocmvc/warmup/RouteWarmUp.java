@@ -0,0 +1,320 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.warmup;
+
+import net.sf.cocmvc.ConventionalHandlerMapping;
+import net.sf.cocmvc.RouteReport;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactoryUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.OrderComparator;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.*;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.view.DefaultRequestToViewNameTranslator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms up an instance before it takes traffic, once the context is refreshed<br/>
+ *
+ * The conventional views of the mapped actions are resolved, so are cached by the view resolvers, the handler of
+ * each registered route is looked up a number of times, so the lookup path gets compiled by the JIT, and a recorded
+ * sample of requests is optionally replayed in-process. The replayed requests are handled by the handler adapters,
+ * without the interceptors of the mapping, so they're never counted by the metrics, nor cached. The instance is
+ * {@link #isReady() ready} once all of these are done, see {@link ReadinessHandler}.
+ *
+ * @author ywu
+ */
+public class RouteWarmUp implements ApplicationContextAware, ApplicationListener<ContextRefreshedEvent>, DisposableBean {
+
+    private static final Log logger = LogFactory.getLog(RouteWarmUp.class);
+
+    private final ConventionalHandlerMapping mapping;
+
+    private final CountDownLatch ready = new CountDownLatch(1);
+
+    private ApplicationContext applicationContext;
+
+    private boolean resolveViews = true;
+
+    private int lookupIterations = 100;
+
+    private Resource sample;
+
+    private int sampleIterations = 1;
+
+    private boolean background = true;
+
+    private Thread thread;
+
+    public RouteWarmUp(ConventionalHandlerMapping mapping) {
+        Assert.notNull(mapping, "Mapping is required");
+        this.mapping = mapping;
+    }
+
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.applicationContext = applicationContext;
+    }
+
+    /**
+     * Whether to resolve the conventional views of the actions, default is true
+     */
+    public void setResolveViews(boolean resolveViews) {
+        this.resolveViews = resolveViews;
+    }
+
+    /**
+     * Number of lookups of each route, default is 100
+     */
+    public void setLookupIterations(int lookupIterations) {
+        this.lookupIterations = lookupIterations;
+    }
+
+    /**
+     * Sample of requests to replay, default is null (none). A request per line, by its path and params, optionally
+     * preceded by its HTTP method, e.g. {@code /user/profile?id=1}, {@code POST /cart/add?item=2}, blank lines and
+     * lines starting with {@code #} are ignored
+     */
+    public void setSample(Resource sample) {
+        this.sample = sample;
+    }
+
+    /**
+     * Number of replays of the sample, default is 1
+     */
+    public void setSampleIterations(int sampleIterations) {
+        this.sampleIterations = sampleIterations;
+    }
+
+    /**
+     * Whether to warm up on a background thread, default is true, so the container starts in the meantime,
+     * and only the readiness is delayed
+     */
+    public void setBackground(boolean background) {
+        this.background = background;
+    }
+
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (event.getApplicationContext() != applicationContext || ready.getCount() == 0) return;
+
+        synchronized (this) {
+            if (thread != null) return;
+
+            if (!background) {
+                warmUp();
+                return;
+            }
+
+            thread = new Thread(new Runnable() {
+                public void run() {
+                    warmUp();
+                }
+            }, "cocmvc-warm-up");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public synchronized void destroy() {
+        if (thread != null) thread.interrupt();
+    }
+
+    /**
+     * Whether the warm-up is done
+     */
+    public boolean isReady() {
+        return ready.getCount() == 0;
+    }
+
+    /**
+     * Wait for the warm-up to be done
+     *
+     * @return whether it's done in time
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        return ready.await(timeout, unit);
+    }
+
+    /**
+     * Warm up on the current thread, the instance is ready afterwards, even if some of the steps failed
+     */
+    public void warmUp() {
+        long start = System.currentTimeMillis();
+        int views = 0, lookups = 0, replays = 0;
+        try {
+            if (resolveViews) views = resolveViews();
+            lookups = lookUpRoutes();
+            if (sample != null) replays = replaySample();
+        } catch (InterruptedException e) {
+            logger.info("Warm-up interrupted");
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("Warm-up failed", e);
+        } finally {
+            ready.countDown();
+        }
+        logger.info("Warmed up in " + (System.currentTimeMillis() - start) + " ms, " + views + " views resolved, " +
+                lookups + " lookups, " + replays + " requests replayed");
+    }
+
+    /*
+     * the view of each action rendering its conventional view, as the DispatcherServlet would resolve it
+     */
+    private int resolveViews() throws Exception {
+        List<ViewResolver> viewResolvers = getBeans(ViewResolver.class);
+        if (viewResolvers.isEmpty()) return 0;
+
+        RequestToViewNameTranslator translator = getViewNameTranslator();
+        Set<String> viewNames = new LinkedHashSet<String>();
+        for (Map.Entry<RequestMappingInfo, HandlerMethod> entry : mapping.getHandlerMethods().entrySet()) {
+            if (entry.getValue().getMethodAnnotation(ResponseBody.class) != null) continue;
+
+            for (String pattern : entry.getKey().getPatternsCondition().getPatterns()) {
+                if (isPattern(pattern)) continue;
+
+                WarmUpRequest request = new WarmUpRequest(getRequestMethod(entry.getKey()), pattern, null);
+                if (lookUp(request)) viewNames.add(translator.getViewName(request));
+            }
+        }
+
+        int count = 0;
+        for (String viewName : viewNames) {
+            checkInterrupted();
+            for (ViewResolver viewResolver : viewResolvers) {
+                try {
+                    if (viewResolver.resolveViewName(viewName, Locale.getDefault()) != null) {
+                        count++;
+                        break;
+                    }
+                } catch (Exception e) {
+                    logger.debug("Failed to resolve view '" + viewName + "': " + e);
+                }
+            }
+        }
+        return count;
+    }
+
+    private int lookUpRoutes() throws InterruptedException {
+        int count = 0;
+        for (RequestMappingInfo mapping : this.mapping.getHandlerMethods().keySet()) {
+            for (String pattern : mapping.getPatternsCondition().getPatterns()) {
+                checkInterrupted();
+                WarmUpRequest request = new WarmUpRequest(getRequestMethod(mapping), RouteReport.getTypicalPath(pattern), null);
+                for (int i = 0; i < lookupIterations; i++) {
+                    lookUp(request);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private int replaySample() throws Exception {
+        List<String> lines = readSample();
+        List<HandlerAdapter> adapters = getBeans(HandlerAdapter.class);
+
+        int count = 0;
+        for (int i = 0; i < sampleIterations; i++) {
+            for (String line : lines) {
+                checkInterrupted();
+                WarmUpRequest request = WarmUpRequest.parse(line);
+                try {
+                    HandlerExecutionChain chain = mapping.getHandler(request);
+                    if (chain == null) continue;
+
+                    for (HandlerAdapter adapter : adapters) {
+                        if (!adapter.supports(chain.getHandler())) continue;
+                        adapter.handle(request, new WarmUpResponse(), chain.getHandler());
+                        break;
+                    }
+                    count++;
+                } catch (Exception e) {
+                    logger.debug("Failed to replay '" + line + "': " + e);
+                }
+            }
+        }
+        return count;
+    }
+
+    private List<String> readSample() throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(sample.getInputStream(), "UTF-8"));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                line = line.trim();
+                if (line.length() > 0 && !line.startsWith("#")) lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    /*
+     * whether the lookup found a handler
+     */
+    private boolean lookUp(WarmUpRequest request) {
+        try {
+            return mapping.getHandler(request) != null;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private RequestToViewNameTranslator getViewNameTranslator() {
+        String name = DispatcherServlet.REQUEST_TO_VIEW_NAME_TRANSLATOR_BEAN_NAME;
+        return applicationContext.containsBean(name) ?
+                applicationContext.getBean(name, RequestToViewNameTranslator.class) : new DefaultRequestToViewNameTranslator();
+    }
+
+    private <T> List<T> getBeans(Class<T> type) {
+        List<T> beans = new ArrayList<T>(BeanFactoryUtils.beansOfTypeIncludingAncestors(applicationContext, type, true, false).values());
+        OrderComparator.sort(beans);
+        return beans;
+    }
+
+    private static String getRequestMethod(RequestMappingInfo mapping) {
+        Set<RequestMethod> methods = mapping.getMethodsCondition().getMethods();
+        return methods.isEmpty() ? "GET" : methods.iterator().next().name();
+    }
+
+    private static boolean isPattern(String pattern) {
+        return pattern.indexOf('*') != -1 || pattern.indexOf('?') != -1 || pattern.indexOf('{') != -1;
+    }
+
+    private static void checkInterrupted() throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.warmup;
+
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.*;
+
+/**
+ * Request of a warm-up lookup or replay, without a body, headers, or a session
+ *
+ * @author ywu
+ */
+class WarmUpRequest extends HttpServletRequestWrapper {
+
+    private final String method;
+
+    private final String path;
+
+    private final String queryString;
+
+    private final Map<String, String[]> parameters = new LinkedHashMap<String, String[]>();
+
+    private final Map<String, Object> attributes = new HashMap<String, Object>();
+
+    WarmUpRequest(String method, String path, String queryString) {
+        super(NullObject.of(HttpServletRequest.class));
+        this.method = method;
+        this.path = path;
+        this.queryString = queryString;
+        if (queryString != null) parseParameters();
+    }
+
+    /**
+     * Request of a line of the sample, e.g. {@code /user/profile?id=1}, {@code POST /cart/add?item=2}
+     */
+    static WarmUpRequest parse(String line) {
+        int space = line.indexOf(' ');
+        String method = space > 0 ? line.substring(0, space).toUpperCase() : "GET";
+
+        String uri = line.substring(space + 1).trim();
+        int query = uri.indexOf('?');
+        String path = query >= 0 ? uri.substring(0, query) : uri;
+        return new WarmUpRequest(method, path.startsWith("/") ? path : "/" + path, query >= 0 ? uri.substring(query + 1) : null);
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getRequestURI() {
+        return path;
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+        return new StringBuffer("http://localhost").append(path);
+    }
+
+    @Override
+    public String getContextPath() {
+        return "";
+    }
+
+    @Override
+    public String getServletPath() {
+        return path;
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public String getScheme() {
+        return "http";
+    }
+
+    @Override
+    public String getServerName() {
+        return "localhost";
+    }
+
+    @Override
+    public int getServerPort() {
+        return 80;
+    }
+
+    @Override
+    public String getRemoteAddr() {
+        return "127.0.0.1";
+    }
+
+    @Override
+    public Locale getLocale() {
+        return Locale.getDefault();
+    }
+
+    @Override
+    public Enumeration<Locale> getLocales() {
+        return Collections.enumeration(Collections.singleton(Locale.getDefault()));
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = parameters.get(name);
+        return values != null ? values[0] : null;
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(parameters.keySet());
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        return parameters.get(name);
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    public void setAttribute(String name, Object o) {
+        if (o != null) attributes.put(name, o);
+        else attributes.remove(name);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    private void parseParameters() {
+        MultiValueMap<String, String> values = new LinkedMultiValueMap<String, String>();
+        for (String pair : StringUtils.tokenizeToStringArray(queryString, "&")) {
+            int eq = pair.indexOf('=');
+            values.add(decode(eq >= 0 ? pair.substring(0, eq) : pair), eq >= 0 ? decode(pair.substring(eq + 1)) : "");
+        }
+        for (Map.Entry<String, List<String>> entry : values.entrySet())
+            parameters.put(entry.getKey(), entry.getValue().toArray(new String[entry.getValue().size()]));
+    }
+
+    private static String decode(String s) {
+        try {
+            return URLDecoder.decode(s, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
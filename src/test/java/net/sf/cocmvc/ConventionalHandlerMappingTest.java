@@ -18,14 +18,44 @@ package net.sf.cocmvc;
 
 import net.sf.cocmvc.controllers.NotAController;
 import net.sf.cocmvc.controllers.TestAnnoController;
+import net.sf.cocmvc.controllers.TestPathVarController;
 import net.sf.cocmvc.controllers.TestPlainController;
 import net.sf.cocmvc.controllers.module1.ModuleOneController;
 import net.sf.cocmvc.controllers.module1.module11.ModuleOneOneController;
+import net.sf.cocmvc.bulkhead.ModuleBulkheads;
+import net.sf.cocmvc.cache.ResponseCache;
+import net.sf.cocmvc.invoke.ActionInvokers;
+import net.sf.cocmvc.metrics.ActionMetrics;
+import net.sf.cocmvc.metrics.ActionStats;
 import org.junit.Before;
 import org.junit.Test;
-
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.web.HttpRequestMethodNotSupportedException;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -34,6 +64,21 @@ import static org.springframework.util.ReflectionUtils.*;
 
 public class ConventionalHandlerMappingTest {
 
+    private static final Class[] CONTROLLERS = {
+            TestPlainController.class, TestAnnoController.class, TestPathVarController.class, NotAController.class,
+            ModuleOneController.class, ModuleOneOneController.class
+    };
+
+    static final String[] LOOKUP_PATHS = {
+            "/", "/testPlain", "/testPlain/", "/testPlain.json", "/testPlain/list", "/testPlain/list.html",
+            "/testPlain//doSomething", "/testPlain/init", "/testPlain/notAnAction", "/notA",
+            "/test/ann/action1", "/test/annotation/action1", "/test/ann//action2", "/test/annotation/conventionalAction",
+            "/testPathVar", "/testPathVar/show/1", "/testPathVar/show/1.json", "/testPathVar/show", "/testPathVar/files/a/b.css",
+            "/testPathVar/search",
+            "/moduleOne/fooBar", "/module1/moduleOne", "/module1/moduleOne/fooBar", "/module1/module11/moduleOneOne/fooBar",
+            "/nothing/here"
+    };
+
     private ConventionalHandlerMapping mapping;
 
     @Before
@@ -248,6 +293,555 @@ public class ConventionalHandlerMappingTest {
         });
     }
 
+    /**
+     * Lookups through the route tree should be the same as the default ones
+     */
+    @Test
+    public void testRouteTreeLookup() throws Exception {
+        ConventionalHandlerMapping treeMapping = new ConventionalHandlerMapping();
+        treeMapping.setUseRouteTree(true);
+
+        initMapping(mapping, CONTROLLERS);
+        initMapping(treeMapping, CONTROLLERS);
+        for (String path : LOOKUP_PATHS) assertSameLookup(mapping, treeMapping, path);
+    }
+
+    @Test
+    public void testRouteTreeLookupWithModularity() throws Exception {
+        ConventionalHandlerMapping treeMapping = new ConventionalHandlerMapping();
+        treeMapping.setUseRouteTree(true);
+        treeMapping.setBasePackage("net.sf.cocmvc.controllers");
+        mapping.setBasePackage("net.sf.cocmvc.controllers");
+
+        initMapping(mapping, CONTROLLERS);
+        initMapping(treeMapping, CONTROLLERS);
+        for (String path : LOOKUP_PATHS) assertSameLookup(mapping, treeMapping, path);
+
+        assertEquals(findMethod(ModuleOneOneController.class, "fooBar"),
+                lookup(treeMapping, "/module1/module11/moduleOneOne/fooBar").getMethod());
+    }
+
+    /**
+     * Cached lookups should be the same as the default ones
+     */
+    @Test
+    public void testLookupCache() throws Exception {
+        ConventionalHandlerMapping cachedMapping = new ConventionalHandlerMapping();
+        cachedMapping.setLookupCacheSize(8);
+
+        initMapping(mapping, CONTROLLERS);
+        initMapping(cachedMapping, CONTROLLERS);
+        for (int i = 0; i < 2; i++)
+            for (String path : LOOKUP_PATHS) assertSameLookup(mapping, cachedMapping, path);
+
+        LruCache<String, ?> cache = cachedMapping.getLookupCache();
+        assertTrue(cache.getHitCount() > 0);
+        assertTrue(cache.getEvictionCount() > 0);
+        assertTrue(cache.size() <= 8);
+    }
+
+    /**
+     * Lookups depending on request params should not be cached
+     */
+    @Test
+    public void testLookupCacheSkipsConditionalMappings() throws Exception {
+        mapping.setLookupCacheSize(8);
+        initMapping(mapping, TestPathVarController.class);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/testPathVar/search");
+        request.addParameter("q", "cocmvc");
+        assertEquals(findMethod(TestPathVarController.class, "search"), lookup(mapping, request).getMethod());
+        assertNull(lookup(mapping, "/testPathVar/search"));
+        assertEquals(0, mapping.getLookupCache().size());
+
+        lookup(mapping, "/testPathVar");
+        assertEquals(findMethod(TestPathVarController.class, "index"), lookup(mapping, "/testPathVar").getMethod());
+        assertEquals(1, mapping.getLookupCache().getHitCount());
+    }
+
+    /**
+     * Literal path lookups should be the same as the default ones
+     */
+    @Test
+    public void testRouteFilter() throws Exception {
+        ConventionalHandlerMapping filteredMapping = new ConventionalHandlerMapping();
+        filteredMapping.setUseRouteFilter(true);
+        filteredMapping.setBasePackage("net.sf.cocmvc.controllers");
+        mapping.setBasePackage("net.sf.cocmvc.controllers");
+
+        initMapping(mapping, CONTROLLERS);
+        initMapping(filteredMapping, TestPlainController.class, TestAnnoController.class, TestPathVarController.class);
+        assertFalse(filteredMapping.getRouteTable().mayMatch("/module1/moduleOne/fooBar"));
+        assertFalse(filteredMapping.getRouteTable().mayMatch("/nothing/here"));
+
+        // rebuilt with the routes registered at runtime
+        StaticApplicationContext context = (StaticApplicationContext) filteredMapping.getApplicationContext();
+        context.registerSingleton("ModuleOneController", ModuleOneController.class);
+        context.registerSingleton("ModuleOneOneController", ModuleOneOneController.class);
+        assertEquals(2, filteredMapping.registerModule("module1"));
+        assertTrue(filteredMapping.getRouteTable().mayMatch("/module1/moduleOne/fooBar"));
+        for (String path : LOOKUP_PATHS) assertSameLookup(mapping, filteredMapping, path);
+    }
+
+    @Test
+    public void testCanonicalizedMappings() throws Exception {
+        ConventionalHandlerMapping canonicalMapping = new ConventionalHandlerMapping();
+        canonicalMapping.setCanonicalizeMappings(true);
+
+        initMapping(mapping, CONTROLLERS);
+        initMapping(canonicalMapping, CONTROLLERS);
+        for (String path : LOOKUP_PATHS) assertSameLookup(mapping, canonicalMapping, path);
+        assertEquals(mapping.getHandlerMethods(), canonicalMapping.getHandlerMethods());
+
+        // still shared with the controllers registered at runtime
+        assertTrue(canonicalMapping.unregisterController("TestPlainController"));
+        canonicalMapping.registerController("TestPlainController");
+        assertEquals(mapping.getHandlerMethods(), canonicalMapping.getHandlerMethods());
+
+        Set<Object> emptyConditions = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        for (RequestMappingInfo info : canonicalMapping.getHandlerMethods().keySet())
+            if (info.getHeadersCondition().getExpressions().isEmpty()) emptyConditions.add(info.getHeadersCondition());
+        assertEquals(1, emptyConditions.size());
+    }
+
+    @Test
+    public void testLiteralPathLookup() throws Exception {
+        ConventionalHandlerMapping literalMapping = new ConventionalHandlerMapping();
+        literalMapping.setUseLiteralPathLookup(true);
+
+        initMapping(mapping, CONTROLLERS);
+        initMapping(literalMapping, CONTROLLERS);
+        for (String path : LOOKUP_PATHS) assertSameLookup(mapping, literalMapping, path);
+
+        String[][] requests = {
+                // context path, servlet path, request URI
+                {"/app", "", "/app/testPlain/list"}, {"/app", "/testPlain/list", "/app/testPlain/list"},
+                {"", "/mvc", "/mvc/testPlain/list"}, {"", "/testPlain", "/testPlain"}, {"/app", "", "/app"},
+                {"/app", "", "/APP/testPlain/list"}, {"", "", "/testPlain/l%69st"}, {"", "", "/testPlain/list;jsessionid=1"}
+        };
+        for (String[] uri : requests) {
+            MockHttpServletRequest expectedRequest = new MockHttpServletRequest("GET", uri[2]);
+            MockHttpServletRequest actualRequest = new MockHttpServletRequest("GET", uri[2]);
+            for (MockHttpServletRequest request : Arrays.asList(expectedRequest, actualRequest)) {
+                request.setContextPath(uri[0]);
+                request.setServletPath(uri[1]);
+            }
+            HandlerMethod expectedHandler = lookup(mapping, expectedRequest);
+            HandlerMethod actualHandler = lookup(literalMapping, actualRequest);
+            assertEquals(uri[2], expectedHandler != null ? expectedHandler.getMethod() : null,
+                    actualHandler != null ? actualHandler.getMethod() : null);
+            assertEquals(uri[2], expectedRequest.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE),
+                    actualRequest.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE));
+            assertEquals(uri[2], expectedRequest.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE),
+                    actualRequest.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE));
+        }
+    }
+
+    /**
+     * Exact literal paths should be resolved without the default lookup
+     */
+    @Test
+    public void testLiteralPathLookupBypassesDefaultLookup() throws Exception {
+        CountingLookupMapping literalMapping = new CountingLookupMapping();
+        literalMapping.setUseLiteralPathLookup(true);
+        initMapping(literalMapping, CONTROLLERS);
+
+        assertEquals(findMethod(TestPlainController.class, "list"), lookup(literalMapping, "/testPlain/list").getMethod());
+        assertEquals(findMethod(ModuleOneController.class, "fooBar"), lookup(literalMapping, "/moduleOne/fooBar").getMethod());
+        assertEquals(0, literalMapping.lookups);
+
+        // suffix pattern, and a path with conditional mappings
+        assertEquals(findMethod(TestPlainController.class, "list"), lookup(literalMapping, "/testPlain/list.html").getMethod());
+        assertNull(lookup(literalMapping, "/testPathVar/search"));
+        assertEquals(2, literalMapping.lookups);
+    }
+
+    /**
+     * Parallel introspection should register the same mappings in the same order
+     */
+    @Test
+    public void testParallelIntrospection() throws Exception {
+        ConventionalHandlerMapping parallelMapping = new ConventionalHandlerMapping();
+        parallelMapping.setIntrospectionParallelism(4);
+        parallelMapping.setBasePackage("net.sf.cocmvc.controllers");
+        mapping.setBasePackage("net.sf.cocmvc.controllers");
+
+        initMapping(mapping, CONTROLLERS);
+        initMapping(parallelMapping, CONTROLLERS);
+        assertEquals(new ArrayList<Object>(mapping.getHandlerMethods().entrySet()),
+                new ArrayList<Object>(parallelMapping.getHandlerMethods().entrySet()));
+    }
+
+    /**
+     * Conflicts should be reported the same way in parallel introspection
+     */
+    @Test
+    public void testParallelIntrospectionConflicts() throws Exception {
+        ConventionalHandlerMapping parallelMapping = new ConventionalHandlerMapping();
+        parallelMapping.setIntrospectionParallelism(4);
+
+        assertEquals(getConflict(mapping), getConflict(parallelMapping));
+    }
+
+    /**
+     * Lazily introspected controllers should be looked up the same as the eager ones
+     */
+    @Test
+    public void testLazyIntrospection() throws Exception {
+        ConventionalHandlerMapping lazyMapping = new ConventionalHandlerMapping();
+        lazyMapping.setLazyIntrospection(true);
+        lazyMapping.setBasePackage("net.sf.cocmvc.controllers");
+        mapping.setBasePackage("net.sf.cocmvc.controllers");
+
+        initMapping(mapping, CONTROLLERS);
+        initMapping(lazyMapping, CONTROLLERS);
+
+        // only the controller with type-level mapping is introspected at startup
+        for (HandlerMethod handlerMethod : lazyMapping.getHandlerMethods().values())
+            assertEquals(TestAnnoController.class, handlerMethod.getBeanType());
+
+        lookup(lazyMapping, "/testPlain.json");
+        assertTrue(getMappedMethods(lazyMapping).contains(findMethod(TestPlainController.class, "list")));
+        assertFalse(getMappedMethods(lazyMapping).contains(findMethod(ModuleOneController.class, "fooBar")));
+
+        for (String path : LOOKUP_PATHS) assertSameLookup(mapping, lazyMapping, path);
+        assertEquals(mapping.getHandlerMethods(), lazyMapping.getHandlerMethods());
+    }
+
+    /**
+     * Concurrent first requests should introspect a controller only once
+     */
+    @Test
+    public void testConcurrentLazyIntrospection() throws Exception {
+        final ConventionalHandlerMapping lazyMapping = new ConventionalHandlerMapping();
+        lazyMapping.setLazyIntrospection(true);
+        lazyMapping.setLookupCacheSize(16);
+        initMapping(lazyMapping, CONTROLLERS);
+        initMapping(mapping, CONTROLLERS);
+
+        final Method expected = findMethod(TestPlainController.class, "list");
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (String path : new String[]{ "/testPlain/list", "/testPathVar/show/1", "/testPlain/list" }) {
+                            HandlerMethod handlerMethod = lookup(lazyMapping, path);
+                            if (path.startsWith("/testPlain/")) assertEquals(expected, handlerMethod.getMethod());
+                            else assertNotNull(handlerMethod);
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(Collections.emptyList(), errors);
+        for (RequestMappingInfo info : lazyMapping.getHandlerMethods().keySet())
+            assertTrue(mapping.getHandlerMethods().containsKey(info));
+    }
+
+    /**
+     * Statistics are keyed by the conventional action names
+     */
+    @Test
+    public void testActionMetrics() throws Exception {
+        ActionMetrics metrics = new ActionMetrics();
+        metrics.setExposeMBeans(false);
+        mapping.setActionMetrics(metrics);
+        mapping.setBasePackage("net.sf.cocmvc.controllers");
+        mapping.setUseSnakeCase(true);
+        initMapping(mapping, CONTROLLERS);
+
+        assertEquals("module1/module11/module-one-one/foo-bar",
+                metrics.getActionName(ModuleOneOneController.class, findMethod(ModuleOneOneController.class, "fooBar")));
+        assertEquals("test-anno/relative-path",
+                metrics.getActionName(TestAnnoController.class, findMethod(TestAnnoController.class, "relativePath")));
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/test-plain/list");
+        HandlerExecutionChain chain = mapping.getHandler(request);
+        for (HandlerInterceptor interceptor : chain.getInterceptors())
+            interceptor.preHandle(request, new MockHttpServletResponse(), chain.getHandler());
+        for (HandlerInterceptor interceptor : chain.getInterceptors())
+            interceptor.afterCompletion(request, new MockHttpServletResponse(), chain.getHandler(), new RuntimeException());
+
+        ActionStats stats = metrics.getStats("test-plain/list");
+        assertEquals(1, stats.getRequestCount());
+        assertEquals(1, stats.getErrorCount());
+    }
+
+    /**
+     * Controllers registered at runtime should be looked up the same as the ones detected at startup
+     */
+    @Test
+    public void testRuntimeRegistration() throws Exception {
+        ConventionalHandlerMapping runtimeMapping = new ConventionalHandlerMapping();
+        runtimeMapping.setBasePackage("net.sf.cocmvc.controllers");
+        mapping.setBasePackage("net.sf.cocmvc.controllers");
+        initMapping(mapping, CONTROLLERS);
+        initMapping(runtimeMapping, TestPlainController.class, TestAnnoController.class, TestPathVarController.class);
+
+        StaticApplicationContext context = (StaticApplicationContext) runtimeMapping.getApplicationContext();
+        context.registerSingleton("ModuleOneController", ModuleOneController.class);
+        context.registerSingleton("ModuleOneOneController", ModuleOneOneController.class);
+        assertNull(lookup(runtimeMapping, "/module1/moduleOne/fooBar"));
+
+        assertEquals(2, runtimeMapping.registerModule("module1"));
+        assertEquals(0, runtimeMapping.registerModule("module1"));
+        for (String path : LOOKUP_PATHS) assertSameLookup(mapping, runtimeMapping, path);
+        assertEquals(mapping.getHandlerMethods(), runtimeMapping.getHandlerMethods());
+
+        assertEquals(1, runtimeMapping.unregisterModule("module1/module11"));
+        assertNull(lookup(runtimeMapping, "/module1/module11/moduleOneOne/fooBar"));
+        assertNotNull(lookup(runtimeMapping, "/module1/moduleOne/fooBar"));
+
+        assertTrue(runtimeMapping.unregisterController("TestPlainController"));
+        assertFalse(runtimeMapping.unregisterController("TestPlainController"));
+        assertNull(lookup(runtimeMapping, "/testPlain/list"));
+
+        runtimeMapping.registerController("TestPlainController");
+        runtimeMapping.registerController("ModuleOneOneController");
+        for (String path : LOOKUP_PATHS) assertSameLookup(mapping, runtimeMapping, path);
+    }
+
+    /**
+     * An ambiguous controller should be rejected as a whole, leaving the mappings untouched
+     */
+    @Test
+    public void testRuntimeRegistrationConflicts() throws Exception {
+        initMapping(mapping, TestPlainController.class, TestAnnoController.class);
+        Map<RequestMappingInfo, HandlerMethod> handlerMethods = mapping.getHandlerMethods();
+        try {
+            mapping.registerController(new TestPlainController());
+            fail("Conflicts not detected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().startsWith("Ambiguous mapping found"));
+        }
+        assertEquals(handlerMethods, mapping.getHandlerMethods());
+    }
+
+    /**
+     * Cached lookups and pending controllers should never resolve to an unregistered controller
+     */
+    @Test
+    public void testRuntimeUnregistration() throws Exception {
+        mapping.setLookupCacheSize(16);
+        initMapping(mapping, CONTROLLERS);
+        assertNotNull(lookup(mapping, "/testPlain/list"));
+        assertTrue(mapping.unregisterController("TestPlainController"));
+        assertNull(lookup(mapping, "/testPlain/list"));
+
+        ConventionalHandlerMapping lazyMapping = new ConventionalHandlerMapping();
+        lazyMapping.setLazyIntrospection(true);
+        initMapping(lazyMapping, CONTROLLERS);
+        assertTrue(lazyMapping.unregisterController("TestPathVarController"));
+        assertNull(lookup(lazyMapping, "/testPathVar/show/1"));
+        assertNotNull(lookup(lazyMapping, "/testPlain/list"));
+    }
+
+    /**
+     * The registries of an unregistered controller should let go of its class, e.g. of a hot-deployed plugin
+     */
+    @Test
+    public void testRuntimeUnregistrationReleasesClass() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        ActionMetrics metrics = new ActionMetrics();
+        metrics.setServer(server);
+        ResponseCache cache = new ResponseCache();
+        cache.setActionPattern(".*");
+        ModuleBulkheads bulkheads = new ModuleBulkheads();
+        bulkheads.setDefaultLimit(10);
+        ActionInvokers invokers = new ActionInvokers();
+        mapping.setActionMetrics(metrics);
+        mapping.setResponseCache(cache);
+        mapping.setModuleBulkheads(bulkheads);
+        mapping.setActionInvokers(invokers);
+        initMapping(mapping, TestAnnoController.class, TestPathVarController.class);
+
+        Class<?> pluginType = new PluginClassLoader(TestPlainController.class).loadClass(TestPlainController.class.getName());
+        assertNotSame(TestPlainController.class, pluginType);
+        Object plugin = pluginType.newInstance();
+        Method pluginList = pluginType.getMethod("list");
+        mapping.registerController(plugin);
+        assertNotNull(metrics.getStats(pluginType, pluginList));
+        assertEquals(1, server.queryNames(new ObjectName("net.sf.cocmvc:type=ActionStats,*"), null).size());
+        assertTrue(cache.isCached(pluginType, pluginList));
+        assertNotNull(bulkheads.getBulkhead(pluginType));
+        assertNotNull(invokers.getInvoker(pluginType, pluginList));
+
+        assertTrue(mapping.unregisterController(plugin));
+        mapping.registerController(new TestPlainController());
+        Method list = TestPlainController.class.getMethod("list");
+        assertNull(metrics.getActionName(pluginType, pluginList));
+        assertNull(metrics.getStats("testPlain/list"));
+        assertTrue(server.queryNames(new ObjectName("net.sf.cocmvc:type=ActionStats,*"), null).isEmpty());
+        assertFalse(cache.isCached(pluginType, pluginList));
+        assertNull(bulkheads.getBulkhead(pluginType));
+        assertNull(invokers.getInvoker(pluginType, pluginList));
+
+        assertEquals("testPlain/list", metrics.getActionName(TestPlainController.class, list));
+        assertTrue(cache.isCached(TestPlainController.class, list));
+        assertNotNull(bulkheads.getBulkhead(TestPlainController.class));
+        assertNotNull(invokers.getInvoker(TestPlainController.class, list));
+        assertNotNull(invokers.getInvoker(TestAnnoController.class, TestAnnoController.class.getMethod("conventionalAction")));
+    }
+
+    /**
+     * HTTP methods of conventional actions should be inferred from their names
+     */
+    @Test
+    public void testRequestMethodInference() throws Exception {
+        mapping.setInferRequestMethods(true);
+        mapping.setUseLiteralPathLookup(true);
+        initMapping(mapping, CONTROLLERS);
+
+        assertEquals(findMethod(TestPlainController.class, "list"),
+                lookup(mapping, new MockHttpServletRequest("HEAD", "/testPlain/list")).getMethod());
+        assertEquals(findMethod(TestPlainController.class, "doSomething"),
+                lookup(mapping, new MockHttpServletRequest("PUT", "/testPlain/doSomething")).getMethod());
+        assertEquals(findMethod(TestPathVarController.class, "show", int.class),
+                lookup(mapping, new MockHttpServletRequest("POST", "/testPathVar/show/1")).getMethod());    // annotated
+        try {
+            lookup(mapping, new MockHttpServletRequest("POST", "/testPlain/list"));
+            fail("HTTP method not restricted");
+        } catch (HttpRequestMethodNotSupportedException e) {
+            assertEquals(asSortedSet("GET", "HEAD"), asSortedSet(e.getSupportedMethods()));
+        }
+
+        ConventionalHandlerMapping customMapping = new ConventionalHandlerMapping();
+        customMapping.setInferRequestMethods(true);
+        customMapping.setRequestMethodRules(Collections.singletonMap("do.*", "post"));
+        initMapping(customMapping, CONTROLLERS);
+        assertNotNull(lookup(customMapping, new MockHttpServletRequest("DELETE", "/testPlain/list")));
+        assertNotNull(lookup(customMapping, new MockHttpServletRequest("POST", "/testPlain/doSomething")));
+        try {
+            lookup(customMapping, new MockHttpServletRequest("GET", "/testPlain/doSomething"));
+            fail("HTTP method not restricted");
+        } catch (HttpRequestMethodNotSupportedException e) {
+            assertEquals("GET", e.getMethod());
+        }
+    }
+
+    /**
+     * A partition should hold exactly the candidates accepting its HTTP method
+     */
+    @Test
+    public void testRequestMethodPartitions() throws Exception {
+        mapping.setInferRequestMethods(true);
+        initMapping(mapping, CONTROLLERS);
+
+        RouteTable partitioned = new RouteTable(mapping.getHandlerMethods(), new AntPathMatcher(), true, false, true);
+        for (String path : LOOKUP_PATHS) {
+            for (String method : new String[]{"GET", "HEAD", "POST", "PUT", "OPTIONS", "PROPFIND"}) {
+                Set<RequestMappingInfo> expected = new HashSet<RequestMappingInfo>();
+                for (RequestMappingInfo info : partitioned.getCandidates(path)) {
+                    Set<RequestMethod> methods = info.getMethodsCondition().getMethods();
+                    if (methods.isEmpty() || methods.toString().contains(method)) expected.add(info);
+                }
+                assertEquals(method + ' ' + path, expected, new HashSet<RequestMappingInfo>(partitioned.getCandidates(path, method)));
+            }
+        }
+    }
+
+    private static class CountingLookupMapping extends ConventionalHandlerMapping {
+
+        private int lookups;
+
+        @Override
+        protected HandlerMethod lookupHandlerMethod(String lookupPath, HttpServletRequest request) throws Exception {
+            lookups++;
+            return super.lookupHandlerMethod(lookupPath, request);
+        }
+    }
+
+    private static Set<Method> getMappedMethods(ConventionalHandlerMapping mapping) {
+        Set<Method> methods = new HashSet<Method>();
+        for (HandlerMethod handlerMethod : mapping.getHandlerMethods().values()) methods.add(handlerMethod.getMethod());
+        return methods;
+    }
+
+    private static String getConflict(ConventionalHandlerMapping mapping) {
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.registerSingleton("plain", TestPlainController.class);
+        context.registerSingleton("anno", TestAnnoController.class);
+        context.registerSingleton("duplicated", TestPlainController.class);
+        context.refresh();
+
+        mapping.setApplicationContext(context);
+        try {
+            mapping.afterPropertiesSet();
+        } catch (IllegalStateException e) {
+            return e.getMessage();
+        }
+        fail("Conflicts not detected");
+        return null;
+    }
+
+    private void assertSameLookup(ConventionalHandlerMapping expected, ConventionalHandlerMapping actual, String path) throws Exception {
+        MockHttpServletRequest expectedRequest = new MockHttpServletRequest("GET", path);
+        MockHttpServletRequest actualRequest = new MockHttpServletRequest("GET", path);
+        HandlerMethod expectedHandler = lookup(expected, expectedRequest);
+        HandlerMethod actualHandler = lookup(actual, actualRequest);
+
+        assertEquals(path, expectedHandler != null ? expectedHandler.getMethod() : null,
+                actualHandler != null ? actualHandler.getMethod() : null);
+        assertEquals(path, expectedRequest.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE),
+                actualRequest.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE));
+        assertEquals(path, expectedRequest.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE),
+                actualRequest.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE));
+    }
+
+    private static HandlerMethod lookup(ConventionalHandlerMapping mapping, String path) throws Exception {
+        return lookup(mapping, new MockHttpServletRequest("GET", path));
+    }
+
+    private static HandlerMethod lookup(ConventionalHandlerMapping mapping, MockHttpServletRequest request) throws Exception {
+        HandlerExecutionChain chain = mapping.getHandler(request);
+        return chain != null ? (HandlerMethod) chain.getHandler() : null;
+    }
+
+    /*
+     * loads its own copy of a class, like the class loader of a plugin
+     */
+    private static class PluginClassLoader extends ClassLoader {
+
+        private final Class<?> type;
+
+        private PluginClassLoader(Class<?> type) {
+            super(type.getClassLoader());
+            this.type = type;
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(type.getName())) return super.loadClass(name, resolve);
+
+            Class<?> loaded = findLoadedClass(name);
+            if (loaded != null) return loaded;
+            try {
+                byte[] bytecode = FileCopyUtils.copyToByteArray(getParent().getResourceAsStream(
+                        ClassUtils.convertClassNameToResourcePath(name) + ClassUtils.CLASS_FILE_SUFFIX));
+                return defineClass(name, bytecode, 0, bytecode.length);
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+
+    static <T extends ConventionalHandlerMapping> T initMapping(T mapping, Class... controllers) {
+        StaticApplicationContext context = new StaticApplicationContext();
+        for (Class controller : controllers) context.registerSingleton(controller.getSimpleName(), controller);
+        context.refresh();
+
+        mapping.setApplicationContext(context);
+        mapping.afterPropertiesSet();
+        return mapping;
+    }
+
     private void assertMappingPatterns(Class handlerType, Method actionMethod, String... expectedPatterns) {
         Set<String> patterns = getSortedMappingPatterns(actionMethod, handlerType);
         Set<String> expected = asSortedSet(expectedPatterns);
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc;
+
+import net.sf.cocmvc.controllers.NotAController;
+import net.sf.cocmvc.controllers.TestAnnoController;
+import net.sf.cocmvc.controllers.TestPathVarController;
+import net.sf.cocmvc.controllers.TestPlainController;
+import net.sf.cocmvc.controllers.module1.ModuleOneController;
+import net.sf.cocmvc.controllers.module1.module11.ModuleOneOneController;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.view.DefaultRequestToViewNameTranslator;
+
+import static org.junit.Assert.*;
+
+public class ConventionalViewNameTranslatorTest {
+
+    private static final Class[] CONTROLLERS = {
+            TestPlainController.class, TestAnnoController.class, TestPathVarController.class, NotAController.class,
+            ModuleOneController.class, ModuleOneOneController.class
+    };
+
+    @Test
+    public void testSameViewNames() throws Exception {
+        assertSameViewNames(new ConventionalHandlerMapping());
+
+        ConventionalHandlerMapping mapping = new ConventionalHandlerMapping();
+        mapping.setBasePackage("net.sf.cocmvc.controllers");
+        mapping.setUseRouteTree(true);
+        mapping.setLookupCacheSize(16);
+        assertSameViewNames(mapping);
+    }
+
+    @Test
+    public void testPrecomputedViewNames() throws Exception {
+        ConventionalHandlerMapping mapping = new ConventionalHandlerMapping();
+        mapping.setPrecomputeViewNames(true);
+        ConventionalHandlerMappingTest.initMapping(mapping, CONTROLLERS);
+
+        assertEquals("testPlain", getPrecomputedViewName(mapping, "/testPlain/"));
+        assertEquals("testPlain/list", getPrecomputedViewName(mapping, "/testPlain/list.html"));
+        assertEquals("moduleOne/fooBar", getPrecomputedViewName(mapping, "/moduleOne/fooBar"));
+
+        // not mapped to the conventional URL, or not requested by it
+        assertNull(getPrecomputedViewName(mapping, "/test/ann/action1"));
+        assertNull(getPrecomputedViewName(mapping, "/testPathVar/show/1"));
+        assertNull(getPrecomputedViewName(mapping, "/testPlain//doSomething"));
+
+        // a forwarded request never sees the view name of the previous handler
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/testPlain/list");
+        mapping.getHandler(request);
+        request.setRequestURI("/nothing/here");
+        mapping.getHandler(request);
+        assertNull(request.getAttribute(ConventionalHandlerMapping.VIEW_NAME_ATTRIBUTE));
+    }
+
+    @Test
+    public void testCustomizedTranslator() throws Exception {
+        ConventionalHandlerMapping mapping = new ConventionalHandlerMapping();
+        mapping.setPrecomputeViewNames(true);
+        ConventionalHandlerMappingTest.initMapping(mapping, CONTROLLERS);
+
+        ConventionalViewNameTranslator translator = new ConventionalViewNameTranslator();
+        translator.setPrefix("views/");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/testPlain/list");
+        mapping.getHandler(request);
+        assertEquals("views/testPlain/list", translator.getViewName(request));
+    }
+
+    private void assertSameViewNames(ConventionalHandlerMapping mapping) throws Exception {
+        mapping.setPrecomputeViewNames(true);
+        ConventionalHandlerMappingTest.initMapping(mapping, CONTROLLERS);
+
+        DefaultRequestToViewNameTranslator expected = new DefaultRequestToViewNameTranslator();
+        ConventionalViewNameTranslator actual = new ConventionalViewNameTranslator();
+        for (String path : ConventionalHandlerMappingTest.LOOKUP_PATHS) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+            try {
+                mapping.getHandler(request);
+            } catch (Exception e) {
+                // unsatisfied conditions, no view name is precomputed
+            }
+            assertEquals(path, expected.getViewName(request), actual.getViewName(request));
+        }
+    }
+
+    private static String getPrecomputedViewName(ConventionalHandlerMapping mapping, String path) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        mapping.getHandler(request);
+        return (String) request.getAttribute(ConventionalHandlerMapping.VIEW_NAME_ATTRIBUTE);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LiteralRoutesTest {
+
+    @Test
+    public void testLookupByRegion() {
+        LiteralRoutes<String> routes = new LiteralRoutes<String>(2);
+        routes.put("/foo/bar", "bar");
+        routes.put("/foo", "foo");
+
+        int index = routes.indexOf("/app/foo/bar", 4);
+        assertEquals("/foo/bar", routes.getPath(index));
+        assertEquals("bar", routes.getValue(index));
+        assertEquals("foo", routes.getValue(routes.indexOf("/foo", 0)));
+
+        assertEquals(-1, routes.indexOf("/app/foo/ba", 4));
+        assertEquals(-1, routes.indexOf("/app/foo/bar/", 4));
+        assertEquals(-1, routes.indexOf("/app", 4));
+    }
+
+    @Test
+    public void testCollisions() {
+        // "Aa" and "BB" share the same hash code
+        LiteralRoutes<Integer> routes = new LiteralRoutes<Integer>(3);
+        routes.put("/Aa", 1);
+        routes.put("/BB", 2);
+        routes.put("/Aa", 3);
+
+        assertEquals(2, routes.size());
+        assertEquals(Integer.valueOf(3), routes.getValue(routes.indexOf("/Aa", 0)));
+        assertEquals(Integer.valueOf(2), routes.getValue(routes.indexOf("x/BB", 1)));
+    }
+}
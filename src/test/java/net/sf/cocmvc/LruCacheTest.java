@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LruCacheTest {
+
+    @Test
+    public void testCounters() {
+        LruCache<String, String> cache = new LruCache<String, String>(4);
+        cache.put("a", "1");
+
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        LruCache<Integer, String> cache = new LruCache<Integer, String>(1);
+        cache.put(1, "1");
+        cache.put(2, "2");
+
+        assertEquals(1, cache.size());
+        assertNull(cache.get(1));
+        assertEquals("2", cache.get(2));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testBounded() {
+        LruCache<Integer, Integer> cache = new LruCache<Integer, Integer>(100);
+        for (int i = 0; i < 1000; i++) cache.put(i, i);
+
+        assertTrue(cache.size() <= 100);
+        assertEquals(1000 - cache.size(), cache.getEvictionCount());
+    }
+
+    @Test
+    public void testBoundedByWeight() {
+        LruCache<Integer, String> cache = new LruCache<Integer, String>(100, 1, new LruCache.Weigher<String>() {
+            public int weigh(String value) {
+                return value.length();
+            }
+        });
+        for (int i = 0; i < 100; i++) cache.put(i, "0123456789");
+
+        assertEquals(10, cache.size());
+        assertEquals(100, cache.getWeight());
+        assertEquals(90, cache.getEvictionCount());
+
+        cache.put(99, "0");
+        cache.remove(98);
+        assertEquals(81, cache.getWeight());
+        cache.put(0, "0123456789012345678901234567890123456789");
+        assertEquals(3, cache.getEvictionCount() - 90);
+        assertEquals(91, cache.getWeight());
+        assertNull(cache.get(92));
+        assertEquals("0123456789", cache.get(93));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc;
+
+import org.junit.Test;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.servlet.mvc.condition.PatternsRequestCondition;
+import org.springframework.web.servlet.mvc.condition.RequestMethodsRequestCondition;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class MappingCanonicalizerTest {
+
+    private final MappingCanonicalizer canonicalizer = new MappingCanonicalizer(new UrlPathHelper(), new AntPathMatcher(), true, true);
+
+    @Test
+    public void testSharedConditions() {
+        RequestMappingInfo list = canonicalizer.canonicalize(mapping(RequestMethod.GET, "/user/list"));
+        RequestMappingInfo show = canonicalizer.canonicalize(mapping(RequestMethod.GET, "/user/show"));
+        RequestMappingInfo save = canonicalizer.canonicalize(mapping(RequestMethod.POST, "/user/show"));
+
+        assertEquals(mapping(RequestMethod.GET, "/user/list"), list);
+        assertSame(list.getMethodsCondition(), show.getMethodsCondition());
+        assertNotSame(list.getMethodsCondition(), save.getMethodsCondition());
+        assertSame(show.getPatternsCondition(), save.getPatternsCondition());
+        assertSame(list.getParamsCondition(), save.getParamsCondition());
+        assertSame(list.getHeadersCondition(), save.getHeadersCondition());
+        assertSame(list.getConsumesCondition(), save.getConsumesCondition());
+        assertSame(list.getProducesCondition(), save.getProducesCondition());
+
+        assertEquals(3, canonicalizer.getMappingCount());
+        assertEquals(10, canonicalizer.getSharedCount());
+        assertTrue(canonicalizer.getSavedBytes() > 0);
+    }
+
+    @Test
+    public void testInternedPatterns() {
+        RequestMappingInfo show = canonicalizer.canonicalize(mapping(null, "/user/show"));
+        RequestMappingInfo both = canonicalizer.canonicalize(mapping(null, new String("/user/show"), "/user/view"));
+
+        assertEquals(1, canonicalizer.getInternedCount());
+        assertSame(show.getPatternsCondition().getPatterns().iterator().next(),
+                both.getPatternsCondition().getPatterns().iterator().next());
+        assertEquals(mapping(null, "/user/show", "/user/view"), both);
+    }
+
+    @Test
+    public void testRestore() {
+        RequestMappingInfo show = canonicalizer.canonicalize(mapping(RequestMethod.GET, "/user/show"));
+        canonicalizer.release();
+        assertTrue(canonicalizer.isReleased());
+
+        canonicalizer.restore(Collections.singleton(show));
+        assertFalse(canonicalizer.isReleased());
+        RequestMappingInfo view = canonicalizer.canonicalize(mapping(RequestMethod.GET, new String("/user/show"), "/user/view"));
+        assertSame(show.getMethodsCondition(), view.getMethodsCondition());
+        assertSame(show.getPatternsCondition().getPatterns().iterator().next(),
+                view.getPatternsCondition().getPatterns().iterator().next());
+    }
+
+    private static RequestMappingInfo mapping(RequestMethod method, String... patterns) {
+        return new RequestMappingInfo(new PatternsRequestCondition(patterns),
+                method != null ? new RequestMethodsRequestCondition(method) : null, null, null, null, null, null);
+    }
+}
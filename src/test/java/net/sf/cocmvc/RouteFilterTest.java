@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class RouteFilterTest {
+
+    private final RouteFilter filter = RouteFilter.create(Arrays.asList(
+            "/hello/list", "/hello/show/{id}", "/news/sports/index", "/static/**", "/user/{id}", "/user/{id}/edit", "/about"));
+
+    @Test
+    public void testRoutes() {
+        for (String path : new String[]{"/hello/list", "/hello/show/1", "/news/sports/index", "/static", "/static/a/b.css",
+                "/user/1", "/user/1/edit", "/about"}) assertTrue(path, filter.mayMatch(path));
+    }
+
+    @Test
+    public void testRejected() {
+        for (String path : new String[]{"/", "/wp-admin/install.php", "/hello", "/hello/edit", "/news", "/news/world/index",
+                "/users/1", "/.env", "/abouts"}) assertFalse(path, filter.mayMatch(path));
+    }
+
+    @Test
+    public void testSegmentsAsTokenized() {
+        assertTrue(filter.mayMatch("/hello//list"));
+        assertTrue(filter.mayMatch("/hello/list/"));
+        assertTrue(filter.mayMatch("//about"));
+        assertTrue(filter.mayMatch("/ hello/list"));
+        assertTrue(filter.mayMatch("relative"));
+    }
+
+    @Test
+    public void testSuffixPattern() {
+        assertTrue(filter.mayMatch("/about.html"));
+        assertTrue(filter.mayMatch("/hello/list.json"));
+        assertTrue(filter.mayMatch("/hello/list.tar.gz"));
+        assertTrue(filter.mayMatch("/hello/list.json/"));
+        assertFalse(filter.mayMatch("/hello.json/list"));
+        assertFalse(filter.mayMatch("/.about"));
+    }
+
+    @Test
+    public void testRoot() {
+        assertTrue(RouteFilter.create(Arrays.asList("/", "/hello")).mayMatch("/"));
+        assertTrue(RouteFilter.create(Arrays.asList("", "/hello")).mayMatch(""));
+        assertFalse(RouteFilter.create(Arrays.asList("/", "/hello")).mayMatch("/world"));
+    }
+
+    @Test
+    public void testNothingToFilter() {
+        assertNull(RouteFilter.create(Arrays.asList("/hello", "/{module}/index")));
+        assertNull(RouteFilter.create(Arrays.asList("/hello", "/**")));
+        assertNull(RouteFilter.create(Arrays.asList("/hello", "*.do")));
+    }
+
+    @Test
+    public void testNoFalseNegatives() {
+        String[] patterns = new String[2000];
+        for (int i = 0; i < patterns.length; i++) patterns[i] = "/module" + i % 40 + "/controller" + i + "/{action}";
+        RouteFilter manyRoutes = RouteFilter.create(Arrays.asList(patterns));
+
+        int falsePositives = 0;
+        for (int i = 0; i < patterns.length; i++) {
+            assertTrue(manyRoutes.mayMatch("/module" + i % 40 + "/controller" + i + "/show"));
+            if (manyRoutes.mayMatch("/module" + i % 40 + "/controller" + (i + patterns.length) + "/show")) falsePositives++;
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < patterns.length / 50);
+    }
+}
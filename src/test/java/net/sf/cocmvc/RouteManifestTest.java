@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc;
+
+import net.sf.cocmvc.controllers.NotAController;
+import net.sf.cocmvc.controllers.TestAnnoController;
+import net.sf.cocmvc.controllers.TestPlainController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.springframework.util.ReflectionUtils.findMethod;
+
+public class RouteManifestTest {
+
+    private static final String MANIFEST =
+            "@controllerNameSuffix=Controller\n" +
+            "net.sf.cocmvc.controllers.TestPlainController=C;index();list();doSomething();init()!;destroy()!;notAnAction()!\n" +
+            "net.sf.cocmvc.controllers.TestAnnoController=A;relativePath()@;absolutePath()@;conventionalAction()\n" +
+            "net.sf.cocmvc.controllers.NotAController=!\n";
+
+    private File manifestRoot;
+
+    @Before
+    public void setUp() throws Exception {
+        manifestRoot = File.createTempFile("cocmvc", "");
+        manifestRoot.delete();
+        writeManifest(MANIFEST);
+    }
+
+    @After
+    public void tearDown() {
+        FileSystemUtils.deleteRecursively(manifestRoot);
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        RouteManifest manifest = RouteManifest.load(createClassLoader(), "Controller");
+
+        assertEquals(3, manifest.size());
+        assertEquals(RouteManifest.HandlerKind.CONVENTIONAL, manifest.getHandlerKind(TestPlainController.class));
+        assertEquals(RouteManifest.HandlerKind.ANNOTATED, manifest.getHandlerKind(TestAnnoController.class));
+        assertEquals(RouteManifest.HandlerKind.NONE, manifest.getHandlerKind(NotAController.class));
+        assertNull(manifest.getHandlerKind(String.class));
+
+        assertEquals(RouteManifest.ActionKind.CONVENTIONAL,
+                manifest.getActionKind(findMethod(TestPlainController.class, "list"), TestPlainController.class));
+        assertEquals(RouteManifest.ActionKind.NONE,
+                manifest.getActionKind(findMethod(TestPlainController.class, "init"), TestPlainController.class));
+        assertEquals(RouteManifest.ActionKind.ANNOTATED,
+                manifest.getActionKind(findMethod(TestAnnoController.class, "relativePath"), TestAnnoController.class));
+        assertNull(manifest.getActionKind(findMethod(TestPlainController.class, "hashCode"), TestPlainController.class));
+    }
+
+    @Test
+    public void testIgnoreOtherNamingConvention() throws Exception {
+        assertEquals(0, RouteManifest.load(createClassLoader(), "Action").size());
+    }
+
+    /**
+     * Mappings built with the manifest should be the same as the introspected ones
+     */
+    @Test
+    public void testSameMappings() throws Exception {
+        ConventionalHandlerMapping manifestMapping = new ConventionalHandlerMapping();
+        manifestMapping.setUseRouteManifest(true);
+        initMapping(manifestMapping, TestPlainController.class, TestAnnoController.class, NotAController.class);
+        ConventionalHandlerMapping mapping = new ConventionalHandlerMapping();
+        initMapping(mapping, TestPlainController.class, TestAnnoController.class, NotAController.class);
+
+        assertEquals(getMappedMethods(mapping), getMappedMethods(manifestMapping));
+    }
+
+    /**
+     * The manifest is trusted, classes missing from it are introspected
+     */
+    @Test
+    public void testFallbackToIntrospection() throws Exception {
+        writeManifest("@controllerNameSuffix=Controller\n" +
+                "net.sf.cocmvc.controllers.TestPlainController=C;index();list()!\n");
+        ConventionalHandlerMapping mapping = new ConventionalHandlerMapping();
+        mapping.setUseRouteManifest(true);
+        initMapping(mapping, TestPlainController.class, TestAnnoController.class);
+
+        Map<String, String> mapped = getMappedMethods(mapping);
+        assertTrue(mapped.containsKey("index"));
+        assertFalse(mapped.containsKey("list"));            // excluded by the manifest
+        assertTrue(mapped.containsKey("doSomething"));      // missing from the manifest
+        assertFalse(mapped.containsKey("init"));
+        assertTrue(mapped.containsKey("relativePath"));     // class missing from the manifest
+    }
+
+    private void writeManifest(String content) throws Exception {
+        File file = new File(manifestRoot, RouteManifest.MANIFEST_LOCATION);
+        file.getParentFile().mkdirs();
+        FileCopyUtils.copy(content.getBytes("ISO-8859-1"), file);
+    }
+
+    private ClassLoader createClassLoader() throws Exception {
+        return new URLClassLoader(new URL[]{ manifestRoot.toURI().toURL() }, getClass().getClassLoader());
+    }
+
+    private void initMapping(ConventionalHandlerMapping mapping, Class... controllers) throws Exception {
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.setClassLoader(createClassLoader());
+        for (Class controller : controllers) context.registerSingleton(controller.getSimpleName(), controller);
+        context.refresh();
+
+        mapping.setApplicationContext(context);
+        mapping.afterPropertiesSet();
+    }
+
+    /*
+     * method name -> mapped patterns
+     */
+    private static Map<String, String> getMappedMethods(ConventionalHandlerMapping mapping) {
+        Map<String, String> mapped = new HashMap<String, String>();
+        for (Map.Entry<RequestMappingInfo, HandlerMethod> entry : mapping.getHandlerMethods().entrySet())
+            mapped.put(entry.getValue().getMethod().getName(), entry.getKey().toString());
+        return mapped;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc;
+
+import net.sf.cocmvc.controllers.TestPathVarController;
+import net.sf.cocmvc.controllers.TestPlainController;
+import org.junit.Test;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static net.sf.cocmvc.ConventionalHandlerMappingTest.initMapping;
+import static org.junit.Assert.*;
+
+public class RouteReportTest {
+
+    @Test
+    public void testTypicalPath() {
+        assertEquals("/testPathVar/show/0", RouteReport.getTypicalPath("/testPathVar/show/{id}"));
+        assertEquals("/a/0/0.0", RouteReport.getTypicalPath("/a/{id:\\d+}/**.*"));
+    }
+
+    @Test
+    public void testAnalyze() throws Exception {
+        ConventionalHandlerMapping mapping = initMapping(new ConventionalHandlerMapping(),
+                TestPlainController.class, TestPathVarController.class, FilesController.class, FooBarController.class,
+                LegacyController.class);
+        RouteReport report = mapping.analyzeRoutes();
+        assertEquals(mapping.getHandlerMethods().size(), report.getRoutes().size());
+
+        Map<String, RouteReport.Route> routes = new HashMap<String, RouteReport.Route>();
+        for (RouteReport.Route route : report.getRoutes()) routes.put(route.getHandler(), route);
+
+        RouteReport.Route list = routes.get(TestPlainController.class.getName() + "#list");
+        assertEquals(0, list.getPatternScans());
+        assertEquals(1, list.getExamined());
+        assertTrue(list.getCompeting().isEmpty());
+        assertTrue(list.getEstimatedBytes() > 0);
+
+        RouteReport.Route show = routes.get(TestPathVarController.class.getName() + "#show");
+        assertEquals(1, show.getPatternScans());
+
+        RouteReport.Route one = routes.get(FilesController.class.getName() + "#one");
+        RouteReport.Route any = routes.get(FilesController.class.getName() + "#any");
+        assertEquals(Collections.singleton(any.getHandler()), one.getCompeting());
+        assertTrue(one.getShadowedBy().isEmpty());
+        assertEquals(Collections.singleton(one.getHandler()), any.getShadowedBy());
+        assertEquals(1, report.getShadowedCount());
+
+        assertEquals(Collections.singletonList(Arrays.asList("/foo-bar", "/fooBar")), report.getCollisions());
+    }
+
+    @Test
+    public void testReportFile() throws Exception {
+        File file = File.createTempFile("routes", ".json");
+        try {
+            ConventionalHandlerMapping mapping = new ConventionalHandlerMapping();
+            mapping.setRouteReportFile(file);
+            initMapping(mapping, FilesController.class, FooBarController.class, LegacyController.class);
+
+            String json = new String(FileCopyUtils.copyToByteArray(file), "UTF-8");
+            StringWriter expected = new StringWriter();
+            mapping.analyzeRoutes().writeJson(expected);
+            assertEquals(expected.toString(), json);
+            assertTrue(json.startsWith("{\n  \"summary\": {\"routes\": 4, \"patternScans\": 2, \"overlapping\": 2, \"shadowed\": 1, \"collisions\": 1,"));
+            assertTrue(json.contains("\"collisions\": [[\"/foo-bar\", \"/fooBar\"]]"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @RequestMapping("/files")
+    public static class FilesController {
+
+        @RequestMapping("*")
+        public void one() {}
+
+        @RequestMapping("**")
+        public void any() {}
+    }
+
+    public static class FooBarController {
+
+        public void index() {}
+    }
+
+    @RequestMapping("/foo-bar")
+    public static class LegacyController {
+
+        public void index() {}
+    }
+}
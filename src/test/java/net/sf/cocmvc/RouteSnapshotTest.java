@@ -0,0 +1,175 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc;
+
+import net.sf.cocmvc.controllers.NotAController;
+import net.sf.cocmvc.controllers.TestAnnoController;
+import net.sf.cocmvc.controllers.TestPathVarController;
+import net.sf.cocmvc.controllers.TestPlainController;
+import net.sf.cocmvc.controllers.module1.ModuleOneController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import static net.sf.cocmvc.ConventionalHandlerMappingTest.initMapping;
+import static org.junit.Assert.*;
+
+public class RouteSnapshotTest {
+
+    private static final Class[] CONTROLLERS = {
+            TestPlainController.class, TestAnnoController.class, TestPathVarController.class, NotAController.class,
+            ModuleOneController.class
+    };
+
+    private File snapshotFile;
+
+    @Before
+    public void setUp() throws Exception {
+        snapshotFile = File.createTempFile("routes", ".snapshot");
+        snapshotFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        snapshotFile.delete();
+    }
+
+    /**
+     * Mappings restored from the snapshot should be the same as the introspected ones
+     */
+    @Test
+    public void testRestore() throws Exception {
+        CountingHandlerMapping mapping = initMapping(new CountingHandlerMapping(snapshotFile), CONTROLLERS);
+        assertTrue(mapping.introspected > 0);
+        assertTrue(snapshotFile.isFile());
+
+        CountingHandlerMapping restored = initMapping(new CountingHandlerMapping(snapshotFile), CONTROLLERS);
+        assertEquals(0, restored.introspected);
+        assertEquals(new ArrayList<Object>(mapping.getHandlerMethods().entrySet()),
+                new ArrayList<Object>(restored.getHandlerMethods().entrySet()));
+    }
+
+    @Test
+    public void testInvalidatedBySettings() throws Exception {
+        initMapping(new CountingHandlerMapping(snapshotFile), CONTROLLERS);
+
+        CountingHandlerMapping snakeCase = new CountingHandlerMapping(snapshotFile);
+        snakeCase.setUseSnakeCase(true);
+        initMapping(snakeCase, CONTROLLERS);
+        assertTrue(snakeCase.introspected > 0);
+
+        boolean found = false;
+        for (RequestMappingInfo info : snakeCase.getHandlerMethods().keySet())
+            found |= info.getPatternsCondition().getPatterns().contains("/test-plain/do-something");
+        assertTrue(found);
+    }
+
+    @Test
+    public void testInvalidatedByBeans() throws Exception {
+        initMapping(new CountingHandlerMapping(snapshotFile), CONTROLLERS);
+
+        CountingHandlerMapping mapping = initMapping(new CountingHandlerMapping(snapshotFile), TestPlainController.class);
+        assertTrue(mapping.introspected > 0);
+        assertEquals(3, mapping.getHandlerMethods().size());
+    }
+
+    /**
+     * Proxies of other beans have no class files, but shouldn't disable the snapshot
+     */
+    @Test
+    public void testProxiedNonController() throws Exception {
+        CountingHandlerMapping mapping = initProxiedMapping(new CountingHandlerMapping(snapshotFile));
+        assertTrue(mapping.introspected > 0);
+        assertTrue(snapshotFile.isFile());
+
+        assertEquals(0, initProxiedMapping(new CountingHandlerMapping(snapshotFile)).introspected);
+    }
+
+    @Test
+    public void testCorruptedSnapshot() throws Exception {
+        FileCopyUtils.copy(new byte[]{ 0x43, 0x4f, 0x43, 0x4d, 0, 0, 0, 1, 0, 0, 0, 20 }, snapshotFile);
+
+        CountingHandlerMapping mapping = initMapping(new CountingHandlerMapping(snapshotFile), CONTROLLERS);
+        assertTrue(mapping.introspected > 0);
+        assertEquals(0, initMapping(new CountingHandlerMapping(snapshotFile), CONTROLLERS).introspected);
+    }
+
+    /**
+     * A corrupted length must not be used as an array size, e.g. to allocate 2G
+     */
+    @Test
+    public void testCorruptedLengths() throws Exception {
+        initMapping(new CountingHandlerMapping(snapshotFile), CONTROLLERS);
+        byte[] snapshot = FileCopyUtils.copyToByteArray(snapshotFile);
+        ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+        int routeOffset = 16 + buffer.getInt(8);
+        int parameterTypesOffset = routeOffset;
+        for (int i = 0; i < 3; i++) parameterTypesOffset += 4 + buffer.getInt(parameterTypesOffset);
+        assertNotNull(RouteSnapshot.read(snapshotFile));
+
+        // the fingerprint, the route count, the bean name of the first route, and its parameter types
+        for (int offset : new int[]{ 8, routeOffset - 4, routeOffset, parameterTypesOffset }) {
+            for (int length : new int[]{ Integer.MAX_VALUE, -1, snapshot.length }) {
+                byte[] corrupted = snapshot.clone();
+                ByteBuffer.wrap(corrupted).putInt(offset, length);
+                FileCopyUtils.copy(corrupted, snapshotFile);
+                assertNull(RouteSnapshot.read(snapshotFile));
+            }
+        }
+    }
+
+    private static CountingHandlerMapping initProxiedMapping(CountingHandlerMapping mapping) {
+        StaticApplicationContext context = new StaticApplicationContext();
+        for (Class controller : CONTROLLERS) context.registerSingleton(controller.getSimpleName(), controller);
+        context.getBeanFactory().registerSingleton("service", Proxy.newProxyInstance(RouteSnapshotTest.class.getClassLoader(),
+                new Class<?>[]{ Runnable.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return null;
+                    }
+                }));
+        context.refresh();
+
+        mapping.setApplicationContext(context);
+        mapping.afterPropertiesSet();
+        return mapping;
+    }
+
+    private static class CountingHandlerMapping extends ConventionalHandlerMapping {
+
+        private int introspected;
+
+        private CountingHandlerMapping(File snapshotFile) {
+            setRouteSnapshotFile(snapshotFile);
+        }
+
+        @Override
+        protected RequestMappingInfo getMappingForMethod(Method method, Class<?> handlerType) {
+            introspected++;
+            return super.getMappingForMethod(method, handlerType);
+        }
+    }
+}
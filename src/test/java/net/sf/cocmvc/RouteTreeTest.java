@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class RouteTreeTest {
+
+    private RouteTree<String> tree;
+
+    @Before
+    public void setUp() {
+        tree = new RouteTree<String>();
+        tree.add("root", Arrays.asList("/"));
+        tree.add("list", Arrays.asList("/hello/list"));
+        tree.add("index", Arrays.asList("/hello"));
+        tree.add("show", Arrays.asList("/hello/show/{id}"));
+        tree.add("module", Arrays.asList("/news/sports/index", "/news/sports/football"));
+        tree.add("files", Arrays.asList("/static/**"));
+        tree.add("any", Collections.<String>emptyList());
+    }
+
+    @Test
+    public void testLiteralRoutes() {
+        assertCandidates("/hello/list", "list", "any");
+        assertCandidates("/hello", "index", "any");
+        assertCandidates("/news/sports/football", "module", "any");
+        assertCandidates("/", "root", "any");
+    }
+
+    @Test
+    public void testEmptySegmentsAndTrailingSlash() {
+        assertCandidates("/hello/list/", "list", "any");
+        assertCandidates("/hello//list", "list", "any");
+    }
+
+    @Test
+    public void testSuffixPattern() {
+        assertCandidates("/hello/list.json", "list", "any");
+        assertCandidates("/hello.html", "index", "any");
+    }
+
+    @Test
+    public void testWildcards() {
+        assertCandidates("/hello/show/1", "show", "any");
+        assertCandidates("/static", "files", "any");
+        assertCandidates("/static/css/main.css", "files", "any");
+    }
+
+    @Test
+    public void testNoCandidates() {
+        assertCandidates("/nothing/here", "any");
+        assertCandidates("/hello/show", "any");
+        assertCandidates("/hello/list/more", "any");
+    }
+
+    private void assertCandidates(String lookupPath, String... expected) {
+        Set<String> candidates = new TreeSet<String>(tree.getCandidates(lookupPath));
+        assertEquals(new TreeSet<String>(Arrays.asList(expected)), candidates);
+    }
+}
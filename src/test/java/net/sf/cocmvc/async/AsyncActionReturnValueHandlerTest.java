@@ -0,0 +1,374 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.async;
+
+import net.sf.cocmvc.ConventionalHandlerMapping;
+import net.sf.cocmvc.bulkhead.Bulkhead;
+import net.sf.cocmvc.bulkhead.ModuleBulkheads;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.core.MethodParameter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class AsyncActionReturnValueHandlerTest {
+
+    private static final CountDownLatch RELEASE = new CountDownLatch(1);
+
+    private ConventionalHandlerMapping mapping;
+
+    private RequestMappingHandlerAdapter adapter;
+
+    @Before
+    public void setUp() {
+        mapping = new ConventionalHandlerMapping();
+    }
+
+    @After
+    public void tearDown() {
+        mapping.destroy();
+    }
+
+    @Test
+    public void testViewName() throws Exception {
+        init();
+        AsyncRequest request = new AsyncRequest("/async/report");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertNull(handle(request, response));
+        assertTrue(AsyncResult.isStarted(request.proxy));
+        assertTrue(request.awaitDispatch());
+
+        ModelAndView mv = handle(request, response);
+        assertEquals("async/done", mv.getViewName());
+        assertEquals("sports", mv.getModel().get("topic"));
+        assertFalse(AsyncResult.isStarted(request.proxy));
+    }
+
+    @Test
+    public void testResponseBody() throws Exception {
+        init();
+        AsyncRequest request = new AsyncRequest("/async/data");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertNull(handle(request, response));
+        assertTrue(request.awaitDispatch());
+        assertNull(handle(request, response));
+        assertEquals("data", response.getContentAsString());
+    }
+
+    @Test
+    public void testFutureNotSupported() throws Exception {
+        AsyncActionReturnValueHandler handler = mapping.getAsyncReturnValueHandler();
+        assertTrue(handler.supportsReturnType(new MethodParameter(AsyncController.class.getMethod("data"), -1)));
+        assertFalse(handler.supportsReturnType(new MethodParameter(FutureController.class.getMethod("data"), -1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testException() throws Exception {
+        init();
+        AsyncRequest request = new AsyncRequest("/async/fail");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        handle(request, response);
+        assertTrue(request.awaitDispatch());
+        handle(request, response);
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        init();
+        AsyncRequest request = new AsyncRequest("/async/slow");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        handle(request, response);
+        assertEquals(30000, request.context.timeout);
+        for (AsyncListener listener : request.context.listeners) listener.onTimeout(new AsyncEvent(request.context));
+
+        assertEquals(503, response.getStatus());
+        assertTrue(request.context.completed);
+        assertFalse(request.awaitDispatch());
+    }
+
+    @Test
+    public void testRejection() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        mapping.setAsyncExecutor(executor);
+        init();
+
+        AsyncRequest request = new AsyncRequest("/async/report");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        handle(request, response);
+        assertEquals(503, response.getStatus());
+        assertTrue(request.context.completed);
+    }
+
+    @Test
+    public void testCallerRuns() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        mapping.setAsyncExecutor(executor);
+        mapping.setAsyncRejectionPolicy(AsyncRejectionPolicy.CALLER_RUNS);
+        init();
+
+        AsyncRequest request = new AsyncRequest("/async/report");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        handle(request, response);
+        assertEquals(0, request.context.dispatched.getCount());
+        assertEquals("async/done", handle(request, response).getViewName());
+    }
+
+    /**
+     * The permit of the module should be held until the asynchronous action is completed
+     */
+    @Test
+    public void testBulkheadPermit() throws Exception {
+        ModuleBulkheads bulkheads = new ModuleBulkheads();
+        bulkheads.setDefaultLimit(1);
+        bulkheads.setMaxWait(0);
+        mapping.setModuleBulkheads(bulkheads);
+        init();
+        Bulkhead bulkhead = bulkheads.getBulkhead(AsyncController.class);
+
+        AsyncRequest slow = new AsyncRequest("/async/slow");
+        assertTrue(dispatch(slow, new MockHttpServletResponse()));
+        assertEquals(1, bulkhead.getInFlight());
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertFalse(dispatch(new AsyncRequest("/async/report"), response));
+        assertEquals(503, response.getStatus());
+
+        for (AsyncListener listener : slow.context.listeners) listener.onTimeout(new AsyncEvent(slow.context));
+        assertEquals(1, bulkhead.getInFlight());
+        for (AsyncListener listener : slow.context.listeners) listener.onComplete(new AsyncEvent(slow.context));
+        assertEquals(0, bulkhead.getInFlight());
+
+        AsyncRequest report = new AsyncRequest("/async/report");
+        assertTrue(dispatch(report, new MockHttpServletResponse()));
+        assertTrue(report.awaitDispatch());
+        assertTrue(dispatch(report, new MockHttpServletResponse()));
+        assertEquals(1, bulkhead.getInFlight());
+        for (AsyncListener listener : report.context.listeners) listener.onComplete(new AsyncEvent(report.context));
+        assertEquals(0, bulkhead.getInFlight());
+    }
+
+    private void init() throws Exception {
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.registerSingleton("async", AsyncController.class);
+        context.registerSingleton("adapter", RequestMappingHandlerAdapter.class);
+        context.refresh();
+
+        mapping.setUseAsyncActions(true);
+        mapping.setApplicationContext(context);
+        mapping.afterPropertiesSet();
+        mapping.onApplicationEvent(new ContextRefreshedEvent(context));
+        adapter = context.getBean(RequestMappingHandlerAdapter.class);
+    }
+
+    /*
+     * same as the DispatcherServlet, the interceptors included
+     */
+    private boolean dispatch(AsyncRequest request, MockHttpServletResponse response) throws Exception {
+        HandlerExecutionChain chain = mapping.getHandler(request.proxy);
+        HandlerInterceptor[] interceptors = chain.getInterceptors();
+        for (HandlerInterceptor interceptor : interceptors)
+            if (!interceptor.preHandle(request.proxy, response, chain.getHandler())) return false;
+        adapter.handle(request.proxy, response, chain.getHandler());
+        for (int i = interceptors.length - 1; i >= 0; i--)
+            interceptors[i].afterCompletion(request.proxy, response, chain.getHandler(), null);
+        return true;
+    }
+
+    private ModelAndView handle(AsyncRequest request, MockHttpServletResponse response) throws Exception {
+        HandlerMethod handler = (HandlerMethod) mapping.getHandler(request.proxy).getHandler();
+        return adapter.handle(request.proxy, response, handler);
+    }
+
+    public static class AsyncController {
+
+        public Callable<String> report(Model model) {
+            model.addAttribute("topic", "sports");
+            return new Callable<String>() {
+                public String call() {
+                    return "async/done";
+                }
+            };
+        }
+
+        @ResponseBody
+        public Callable<String> data() {
+            return new Callable<String>() {
+                public String call() {
+                    return "data";
+                }
+            };
+        }
+
+        public Callable<String> fail() {
+            return new Callable<String>() {
+                public String call() {
+                    throw new IllegalArgumentException();
+                }
+            };
+        }
+
+        public Callable<String> slow() {
+            return new Callable<String>() {
+                public String call() throws Exception {
+                    RELEASE.await();
+                    return "never";
+                }
+            };
+        }
+    }
+
+    public static class FutureController {
+
+        public Future<String> data() {
+            return null;
+        }
+    }
+
+    /*
+     * servlet 3 request backed by a mock request, which only implements the servlet 2.5 api
+     */
+    private static class AsyncRequest implements InvocationHandler {
+
+        private final MockHttpServletRequest request;
+
+        private final HttpServletRequest proxy;
+
+        private TestAsyncContext context;
+
+        private AsyncRequest(String uri) {
+            request = new MockHttpServletRequest("GET", uri);
+            proxy = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{HttpServletRequest.class}, this);
+        }
+
+        private boolean awaitDispatch() throws InterruptedException {
+            return context.dispatched.await(1, TimeUnit.SECONDS);
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("startAsync")) {
+                context = new TestAsyncContext(this.proxy, (ServletResponse) args[1]);
+                return context;
+            }
+            try {
+                return method.invoke(request, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static class TestAsyncContext implements AsyncContext {
+
+        private final ServletRequest request;
+
+        private final ServletResponse response;
+
+        private final List<AsyncListener> listeners = new ArrayList<AsyncListener>();
+
+        private final CountDownLatch dispatched = new CountDownLatch(1);
+
+        private volatile boolean completed;
+
+        private long timeout;
+
+        private TestAsyncContext(ServletRequest request, ServletResponse response) {
+            this.request = request;
+            this.response = response;
+        }
+
+        public ServletRequest getRequest() {
+            return request;
+        }
+
+        public ServletResponse getResponse() {
+            return response;
+        }
+
+        public boolean hasOriginalRequestAndResponse() {
+            return true;
+        }
+
+        public void dispatch() {
+            dispatched.countDown();
+        }
+
+        public void dispatch(String path) {
+            dispatched.countDown();
+        }
+
+        public void dispatch(ServletContext context, String path) {
+            dispatched.countDown();
+        }
+
+        public void complete() {
+            completed = true;
+        }
+
+        public void start(Runnable run) {
+            run.run();
+        }
+
+        public void addListener(AsyncListener listener) {
+            listeners.add(listener);
+        }
+
+        public void addListener(AsyncListener listener, ServletRequest servletRequest, ServletResponse servletResponse) {
+            listeners.add(listener);
+        }
+
+        public <T extends AsyncListener> T createListener(Class<T> clazz) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+    }
+}
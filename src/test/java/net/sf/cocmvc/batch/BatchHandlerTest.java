@@ -0,0 +1,307 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.batch;
+
+import net.sf.cocmvc.ConventionalHandlerMapping;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class BatchHandlerTest {
+
+    private static final Pattern INDEX = Pattern.compile("\"index\":(\\d+)");
+
+    private static final CyclicBarrier BARRIER = new CyclicBarrier(2);
+
+    private BatchHandler handler;
+
+    @Before
+    public void setUp() throws Exception {
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.registerSingleton("user", UserController.class);
+        context.registerSingleton("feed", FeedController.class);
+        context.registerSingleton("adapter", RequestMappingHandlerAdapter.class);
+        context.refresh();
+
+        ConventionalHandlerMapping mapping = new ConventionalHandlerMapping();
+        mapping.setInterceptors(new Object[]{ new AuthorizingInterceptor() });
+        mapping.setApplicationContext(context);
+        mapping.afterPropertiesSet();
+
+        handler = new BatchHandler(mapping);
+        handler.setApplicationContext(context);
+        handler.setAuthorizationInterceptor(AuthorizingInterceptor.class);
+        handler.setMaxCalls(4);
+        handler.setTimeout(500);
+    }
+
+    @After
+    public void tearDown() {
+        handler.destroy();
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        handler.afterPropertiesSet();
+        MockHttpServletResponse response = post("/user/profile?id=1\n\nuser/show?id=2&tag=a&tag=b\n/user/missing\n/nowhere");
+        assertEquals("application/x-ndjson;charset=UTF-8", response.getContentType());
+
+        Map<Integer, String> results = parse(response);
+        assertEquals(4, results.size());
+        assertTrue(results.get(0), results.get(0).matches("\\{\"index\":0,\"call\":\"/user/profile\\?id=1\",\"status\":200,\"time\":[0-9.]+," +
+                "\"contentType\":\"text/plain;charset=ISO-8859-1\",\"body\":\"user 1\"}"));
+        assertTrue(results.get(1), results.get(1).endsWith("\"status\":200,\"time\":" + time(results.get(1)) +
+                ",\"view\":\"user/show\",\"model\":{\"id\":2,\"tags\":[\"a\",\"b\"]}}"));
+        assertTrue(results.get(2), results.get(2).contains("\"status\":404"));
+        assertTrue(results.get(3), results.get(3).contains("\"status\":404"));
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        handler.afterPropertiesSet();
+        Map<Integer, String> results = parse(post("/feed/rendezvous\n/feed/rendezvous\nPOST /feed/method"));
+        assertTrue(results.get(0), results.get(0).contains("\"body\":\"met\""));
+        assertTrue(results.get(1), results.get(1).contains("\"body\":\"met\""));
+        assertTrue(results.get(2), results.get(2).contains("\"body\":\"POST\""));
+    }
+
+    /**
+     * A GET batch, e.g. a link or an image, should never run the actions changing the state
+     */
+    @Test
+    public void testMethods() throws Exception {
+        handler.afterPropertiesSet();
+        MockHttpServletResponse response = get("/feed/method", "POST /feed/method");
+        assertEquals(405, response.getStatus());
+        assertEquals("", response.getContentAsString());
+
+        Map<Integer, String> results = parse(get("/feed/method", "HEAD /feed/method"));
+        assertTrue(results.get(0), results.get(0).contains("\"body\":\"GET\""));
+        assertTrue(results.get(1), results.get(1).contains("\"status\":200"));
+
+        response = new MockHttpServletResponse();
+        handler.handleRequest(new MockHttpServletRequest("PUT", "/batch"), response);
+        assertEquals(405, response.getStatus());
+    }
+
+    @Test
+    public void testAuthorization() throws Exception {
+        handler.setAuthorizationInterceptor(null);
+        handler.afterPropertiesSet();
+        Map<Integer, String> results = parse(post("/user/profile?id=1\nPOST /feed/method"));
+        assertTrue(results.get(0), results.get(0).contains("\"status\":403"));
+        assertTrue(results.get(1), results.get(1).contains("\"status\":403"));
+
+        handler.setRequireAuthorization(false);
+        results = parse(post("/user/profile?id=1"));
+        assertTrue(results.get(0), results.get(0).contains("\"status\":200"));
+
+        handler.setRequireAuthorization(true);
+        handler.setAuthorizationInterceptor(AuthorizingInterceptor.class);
+        results = parse(post("/user/profile?id=1\n/user/profile?id=1&deny=true"));
+        assertTrue(results.get(0), results.get(0).contains("\"status\":200"));
+        assertTrue(results.get(1), results.get(1).contains("\"status\":403"));
+
+        handler.setAuthorizationInterceptor(MissingInterceptor.class);
+        results = parse(post("/user/profile?id=1"));
+        assertTrue(results.get(0), results.get(0).contains("\"status\":403") && results.get(0).contains("\"error\":\"Not authorized by "));
+    }
+
+    /**
+     * A call should never read the batch request once created, the container may recycle it
+     */
+    @Test
+    public void testCallRequestCopied() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/batch");
+        request.addHeader("Accept", "text/plain");
+        request.addHeader("If-Modified-Since", "Sun, 06 Nov 1994 08:49:37 GMT");
+        request.setCookies(new Cookie("token", "1"));
+        request.addPreferredLocale(Locale.FRENCH);
+        request.addUserRole("admin");
+        BatchCallRequest call = new BatchCallRequest(request, "/user/profile?id=1", null);
+
+        request.addHeader("Accept", "application/json");
+        request.setCookies(new Cookie("token", "2"));
+        request.addPreferredLocale(Locale.GERMAN);
+        assertEquals(Collections.singletonList("text/plain"), Collections.list(call.getHeaders("accept")));
+        assertEquals(784111777000L, call.getDateHeader("If-Modified-Since"));
+        assertEquals("1", call.getCookies()[0].getValue());
+        assertEquals(Locale.FRENCH, call.getLocale());
+        assertEquals("1", call.getParameter("id"));
+        assertEquals("/user/profile", call.getRequestURI());
+
+        assertNull(call.getSession(false));
+        try {
+            call.getSession();
+            fail("Session created by a call");
+        } catch (IllegalStateException e) {
+            assertNull(request.getSession(false));
+        }
+
+        assertTrue(call.isUserInRole("admin"));
+        call.complete();
+        try {
+            call.isUserInRole("admin");
+            fail("Batch request read after completion");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFailures() throws Exception {
+        handler.afterPropertiesSet();
+        Map<Integer, String> results = parse(post("/user/fail\n/feed/slow"));
+        assertTrue(results.get(0), results.get(0).contains("\"status\":500,\"time\":" + time(results.get(0)) +
+                ",\"error\":\"java.lang.IllegalArgumentException: fail\"}"));
+        assertTrue(results.get(1), results.get(1).endsWith("\"call\":\"/feed/slow\",\"status\":504}"));
+    }
+
+    @Test
+    public void testLimits() throws Exception {
+        handler.afterPropertiesSet();
+        assertEquals(400, post("/user/profile?id=1\n/user/profile?id=1\n/user/profile?id=1\n/user/profile?id=1\n/user/profile?id=1").getStatus());
+        assertEquals(400, post("\n").getStatus());
+    }
+
+    @Test
+    public void testRejection() throws Exception {
+        handler.setPoolSize(1);
+        handler.setQueueCapacity(0);
+        handler.afterPropertiesSet();
+
+        Map<Integer, String> results = parse(post("/feed/slow\n/user/profile?id=1"));
+        assertTrue(results.get(0), results.get(0).contains("\"status\":504"));
+        assertEquals("{\"index\":1,\"call\":\"/user/profile?id=1\",\"status\":503,\"error\":\"Rejected\"}", results.get(1));
+    }
+
+    private MockHttpServletResponse get(String... calls) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/batch");
+        request.addParameter(BatchHandler.CALL_PARAM, calls);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        handler.handleRequest(request, response);
+        return response;
+    }
+
+    private MockHttpServletResponse post(String calls) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/batch");
+        request.setContentType("text/plain");
+        request.setContent(calls.getBytes("UTF-8"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        handler.handleRequest(request, response);
+        return response;
+    }
+
+    private static Map<Integer, String> parse(MockHttpServletResponse response) throws Exception {
+        Map<Integer, String> results = new HashMap<Integer, String>();
+        for (String line : response.getContentAsString().split("\n")) {
+            Matcher matcher = INDEX.matcher(line);
+            assertTrue(line, matcher.find());
+            results.put(Integer.valueOf(matcher.group(1)), line);
+        }
+        return results;
+    }
+
+    private static String time(String result) {
+        Matcher matcher = Pattern.compile("\"time\":([0-9.]+)").matcher(result);
+        assertTrue(result, matcher.find());
+        return matcher.group(1);
+    }
+
+    public static class UserController {
+
+        @ResponseBody
+        public String profile(@RequestParam("id") int id) {
+            return "user " + id;
+        }
+
+        public String show(@RequestParam("id") int id, @RequestParam("tag") String[] tags, Model model) {
+            model.addAttribute("id", id);
+            model.addAttribute("tags", tags);
+            return "user/show";
+        }
+
+        public void missing() {
+            throw new NotFoundException();
+        }
+
+        public void fail() {
+            throw new IllegalArgumentException("fail");
+        }
+    }
+
+    public static class FeedController {
+
+        @ResponseBody
+        public String rendezvous() throws Exception {
+            BARRIER.await(1, TimeUnit.SECONDS);
+            return "met";
+        }
+
+        @ResponseBody
+        public String method(HttpServletRequest request) {
+            return request.getMethod();
+        }
+
+        public void slow() throws InterruptedException {
+            Thread.sleep(5000);
+        }
+    }
+
+    public static class AuthorizingInterceptor extends HandlerInterceptorAdapter {
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+            if (request.getParameter("deny") == null) return true;
+
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return false;
+        }
+    }
+
+    public static class MissingInterceptor extends HandlerInterceptorAdapter {
+    }
+
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public static class NotFoundException extends RuntimeException {
+    }
+}
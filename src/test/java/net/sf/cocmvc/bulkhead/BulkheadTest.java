@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.bulkhead;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BulkheadTest {
+
+    @Test
+    public void testLimit() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("reports", 3, 2);
+        int[] stripes = new int[3];
+        for (int i = 0; i < 3; i++) stripes[i] = bulkhead.acquire(0, TimeUnit.MILLISECONDS);
+
+        assertEquals(3, bulkhead.getInFlight());
+        assertEquals(-1, bulkhead.acquire(0, TimeUnit.MILLISECONDS));
+        assertEquals(1, bulkhead.getRejectedCount());
+        assertEquals(0, bulkhead.getQueuedCount());
+
+        bulkhead.release(stripes[1]);
+        assertTrue(bulkhead.acquire(0, TimeUnit.MILLISECONDS) >= 0);
+    }
+
+    @Test
+    public void testQueued() throws Exception {
+        final Bulkhead bulkhead = new Bulkhead("reports", 1, 4);
+        final int stripe = bulkhead.acquire(0, TimeUnit.MILLISECONDS);
+
+        assertEquals(-1, bulkhead.acquire(10, TimeUnit.MILLISECONDS));
+        assertEquals(1, bulkhead.getQueuedCount());
+        assertEquals(1, bulkhead.getRejectedCount());
+
+        new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                bulkhead.release(stripe);
+            }
+        }.start();
+        assertTrue(bulkhead.acquire(5, TimeUnit.SECONDS) >= 0);
+        assertEquals(2, bulkhead.getQueuedCount());
+        assertEquals(1, bulkhead.getRejectedCount());
+    }
+
+    @Test
+    public void testConcurrentLimit() throws Exception {
+        final Bulkhead bulkhead = new Bulkhead("reports", 5, 4);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        for (int j = 0; j < 1000; j++) {
+                            int stripe = bulkhead.acquire(0, TimeUnit.MILLISECONDS);
+                            if (stripe < 0) continue;
+
+                            int current = inFlight.incrementAndGet();
+                            for (int max = maxInFlight.get(); current > max && !maxInFlight.compareAndSet(max, current); max = maxInFlight.get()) ;
+                            inFlight.decrementAndGet();
+                            bulkhead.release(stripe);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(maxInFlight.get() <= 5);
+        assertEquals(0, bulkhead.getInFlight());
+    }
+}
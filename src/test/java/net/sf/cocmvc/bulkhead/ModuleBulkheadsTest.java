@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.bulkhead;
+
+import net.sf.cocmvc.ConventionalHandlerMapping;
+import net.sf.cocmvc.controllers.TestPlainController;
+import net.sf.cocmvc.controllers.module1.ModuleOneController;
+import net.sf.cocmvc.controllers.module1.module11.ModuleOneOneController;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ModuleBulkheadsTest {
+
+    private ModuleBulkheads bulkheads;
+
+    private ConventionalHandlerMapping mapping;
+
+    @Before
+    public void setUp() {
+        bulkheads = new ModuleBulkheads();
+        bulkheads.setLimits(Collections.singletonMap("module1", 1));
+
+        mapping = new ConventionalHandlerMapping();
+        mapping.setBasePackage("net.sf.cocmvc.controllers");
+        mapping.setModuleBulkheads(bulkheads);
+    }
+
+    @Test
+    public void testModules() {
+        init();
+        assertNull(bulkheads.getBulkhead(TestPlainController.class));
+        assertEquals("module1", bulkheads.getBulkhead(ModuleOneController.class).getModule());
+        assertEquals("module1/module11", bulkheads.getBulkhead(ModuleOneOneController.class).getModule());
+        assertEquals(1, bulkheads.getBulkhead("module1/module11").getLimit());   // inherited limit
+        assertEquals(2, bulkheads.getAllBulkheads().size());
+    }
+
+    @Test
+    public void testDefaultLimit() {
+        bulkheads.setDefaultLimit(8);
+        init();
+        assertEquals(8, bulkheads.getBulkhead("").getLimit());
+        assertEquals(1, bulkheads.getBulkhead("module1").getLimit());
+    }
+
+    @Test
+    public void testLoadShedding() throws Exception {
+        init();
+        MockHttpServletRequest first = new MockHttpServletRequest("GET", "/module1/moduleOne/fooBar");
+        HandlerExecutionChain firstChain = mapping.getHandler(first);
+        assertTrue(preHandle(firstChain, first, new MockHttpServletResponse()));
+
+        // the module is over its limit, while the other modules are not affected
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        MockHttpServletRequest second = new MockHttpServletRequest("GET", "/module1/moduleOne/fooBar");
+        assertFalse(preHandle(mapping.getHandler(second), second, rejected));
+        assertEquals(503, rejected.getStatus());
+
+        MockHttpServletRequest other = new MockHttpServletRequest("GET", "/module1/module11/moduleOneOne/fooBar");
+        assertTrue(preHandle(mapping.getHandler(other), other, new MockHttpServletResponse()));
+
+        for (HandlerInterceptor interceptor : firstChain.getInterceptors())
+            interceptor.afterCompletion(first, new MockHttpServletResponse(), firstChain.getHandler(), null);
+        assertEquals(0, bulkheads.getBulkhead("module1").getInFlight());
+        assertEquals(1, bulkheads.getBulkhead("module1").getRejectedCount());
+
+        second = new MockHttpServletRequest("GET", "/module1/moduleOne/fooBar");
+        assertTrue(preHandle(mapping.getHandler(second), second, new MockHttpServletResponse()));
+    }
+
+    private void init() {
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.registerSingleton("plain", TestPlainController.class);
+        context.registerSingleton("moduleOne", ModuleOneController.class);
+        context.registerSingleton("moduleOneOne", ModuleOneOneController.class);
+        context.refresh();
+
+        mapping.setApplicationContext(context);
+        mapping.afterPropertiesSet();
+    }
+
+    private static boolean preHandle(HandlerExecutionChain chain, MockHttpServletRequest request, MockHttpServletResponse response) throws Exception {
+        for (HandlerInterceptor interceptor : chain.getInterceptors())
+            if (!interceptor.preHandle(request, response, chain.getHandler())) return false;
+        return true;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.cache;
+
+import net.sf.cocmvc.ConventionalHandlerMapping;
+import net.sf.cocmvc.annotation.CacheResponse;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class ResponseCacheTest {
+
+    private ConventionalHandlerMapping mapping;
+
+    private ResponseCache cache;
+
+    private ResponseCacheFilter filter;
+
+    private int invocations;
+
+    @Before
+    public void setUp() {
+        cache = new ResponseCache();
+        cache.setActionPattern(".*/index");
+        filter = new ResponseCacheFilter(cache);
+
+        mapping = new ConventionalHandlerMapping();
+        mapping.setResponseCache(cache);
+
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.registerSingleton("catalog", CatalogController.class);
+        context.registerSingleton("news", NewsController.class);
+        context.refresh();
+        mapping.setApplicationContext(context);
+        mapping.afterPropertiesSet();
+    }
+
+    @Test
+    public void testCachedActions() throws Exception {
+        assertTrue(isCached(CatalogController.class, "list"));
+        assertTrue(isCached(CatalogController.class, "index"));     // by convention
+        assertFalse(isCached(CatalogController.class, "update"));
+        assertTrue(isCached(NewsController.class, "sports"));       // annotated controller
+        assertFalse(isCached(NewsController.class, "live"));        // ttl 0
+    }
+
+    @Test
+    public void testServeCachedResponse() throws Exception {
+        MockHttpServletResponse response = request("GET", "/catalog/list", null);
+        assertEquals("catalog/list#1", response.getContentAsString());
+        assertNull(response.getHeader("ETag"));
+
+        response = request("GET", "/catalog/list", null);
+        assertEquals("catalog/list#1", response.getContentAsString());
+        assertEquals("text/plain", response.getContentType());
+        assertEquals(1, invocations);
+
+        String etag = (String) response.getHeader("ETag");
+        assertNotNull(etag);
+        response = request("GET", "/catalog/list", etag);
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(1, invocations);
+    }
+
+    @Test
+    public void testSelectedParams() throws Exception {
+        assertEquals("catalog/list#1", request("GET", "/catalog/list?page=1&sid=a", null).getContentAsString());
+        assertEquals("catalog/list#1", request("GET", "/catalog/list?page=1&sid=b", null).getContentAsString());
+        assertEquals("catalog/list#2", request("GET", "/catalog/list?page=2", null).getContentAsString());
+        assertEquals(2, invocations);
+    }
+
+    @Test
+    public void testNotCached() throws Exception {
+        request("POST", "/catalog/list", null);
+        request("POST", "/catalog/list", null);
+        assertEquals(2, invocations);
+
+        request("GET", "/catalog/update", null);
+        request("GET", "/catalog/update", null);
+        assertEquals(4, invocations);
+
+        cache.setMaxEntrySize(4);
+        request("GET", "/news/sports", null);
+        request("GET", "/news/sports", null);
+        assertEquals(6, invocations);
+    }
+
+    @Test
+    public void testPrivateRequests() throws Exception {
+        MockHttpServletRequest request = createRequest("GET", "/catalog/list");
+        request.getSession();
+        request(request, null);
+        request(request, null);
+        assertEquals(2, invocations);
+
+        request = createRequest("GET", "/catalog/list");
+        request.addHeader("Authorization", "Basic dXNlcjpwYXNz");
+        request(request, null);
+        request(request, null);
+        assertEquals(4, invocations);
+        assertEquals(0, cache.getStore().size());
+    }
+
+    @Test
+    public void testVaryByLocaleAndAccept() throws Exception {
+        MockHttpServletRequest request = createRequest("GET", "/catalog/list");
+        request.addPreferredLocale(Locale.FRENCH);
+        assertEquals("catalog/list#1", request(request, null).getContentAsString());
+        assertEquals("catalog/list#2", request("GET", "/catalog/list", null).getContentAsString());
+
+        request = createRequest("GET", "/catalog/list");
+        request.addHeader("Accept", "application/json");
+        assertEquals("catalog/list#3", request(request, null).getContentAsString());
+        assertEquals("catalog/list#2", request("GET", "/catalog/list", null).getContentAsString());
+        assertEquals(3, invocations);
+    }
+
+    @Test
+    public void testBoundedBySize() throws Exception {
+        cache.setMaxEntrySize(16);
+        cache.setMaxSize(32);
+        for (int page = 0; page < 10; page++) request("GET", "/catalog/list?page=" + page, null);
+
+        assertTrue(cache.getStore().getWeight() <= 32);
+        assertTrue(cache.getStore().size() >= 2);
+        assertEquals(10 - cache.getStore().size(), cache.getStore().getEvictionCount());
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+        cache.setDefaultTtl(0);
+        request("GET", "/catalog", null);
+        request("GET", "/catalog", null);
+        assertEquals(2, invocations);
+    }
+
+    private boolean isCached(Class<?> handlerType, String methodName) throws NoSuchMethodException {
+        return cache.isCached(handlerType, handlerType.getMethod(methodName));
+    }
+
+    /*
+     * run the request through the filter, the interceptors, and a handler rendering its lookup path
+     */
+    private MockHttpServletResponse request(String method, String uri, String ifNoneMatch) throws Exception {
+        return request(createRequest(method, uri), ifNoneMatch);
+    }
+
+    private MockHttpServletResponse request(final MockHttpServletRequest request, String ifNoneMatch) throws Exception {
+        if (ifNoneMatch != null) request.addHeader("If-None-Match", ifNoneMatch);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new FilterChain() {
+            public void doFilter(ServletRequest req, ServletResponse res) throws IOException {
+                try {
+                    HandlerExecutionChain chain = mapping.getHandler(request);
+                    for (HandlerInterceptor interceptor : chain.getInterceptors())
+                        if (!interceptor.preHandle((HttpServletRequest) req, (HttpServletResponse) res, chain.getHandler())) return;
+
+                    invocations++;
+                    res.setContentType("text/plain");
+                    res.getWriter().write(request.getRequestURI().substring(1) + '#' + invocations);
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        return response;
+    }
+
+    private MockHttpServletRequest createRequest(String method, String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri.replaceFirst("\\?.*", ""));
+        if (uri.contains("?")) {
+            for (String param : uri.substring(uri.indexOf('?') + 1).split("&"))
+                request.addParameter(param.split("=")[0], param.split("=")[1]);
+        }
+        return request;
+    }
+
+    public static class CatalogController {
+
+        public void index() {}
+
+        @CacheResponse(ttl = 300, params = "page")
+        public void list() {}
+
+        public void update() {}
+    }
+
+    @CacheResponse
+    public static class NewsController {
+
+        public void sports() {}
+
+        @CacheResponse(ttl = 0)
+        public void live() {}
+    }
+}
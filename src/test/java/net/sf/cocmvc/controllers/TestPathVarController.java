@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc.controllers;
+
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+public class TestPathVarController {
+
+    public void index() {}
+
+    @RequestMapping("show/{id}")
+    public void show(@PathVariable("id") int id) {}
+
+    @RequestMapping("files/**")
+    public void files() {}
+
+    @RequestMapping(value = "search", params = "q")
+    public void search() {}
+
+    @RequestMapping(value = "upload", method = RequestMethod.POST, params = "!draft", headers = "X-Requested-With=XMLHttpRequest",
+            consumes = "text/plain", produces = "!application/xml")
+    public void upload(String[] tags, long size) {}
+}
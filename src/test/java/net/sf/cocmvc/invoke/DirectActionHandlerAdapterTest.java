@@ -0,0 +1,222 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.invoke;
+
+import net.sf.cocmvc.ConventionalHandlerMapping;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.WebDataBinder;
+import org.springframework.web.bind.annotation.InitBinder;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerAdapter;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.*;
+import static org.springframework.util.ReflectionUtils.findMethod;
+
+public class DirectActionHandlerAdapterTest {
+
+    private ActionInvokers invokers;
+
+    private ConventionalHandlerMapping mapping;
+
+    private RequestMappingHandlerAdapter handlerAdapter;
+
+    private DirectActionHandlerAdapter directAdapter;
+
+    @Before
+    public void setUp() {
+        invokers = new ActionInvokers();
+
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.registerSingleton("itemController", ItemController.class);
+        context.registerSingleton("binderController", BinderController.class);
+        context.registerSingleton("plainChildController", PlainChildController.class);
+        context.registerSingleton("binderChildController", BinderChildController.class);
+        context.refresh();
+
+        mapping = new ConventionalHandlerMapping();
+        mapping.setActionInvokers(invokers);
+        mapping.setApplicationContext(context);
+        mapping.afterPropertiesSet();
+
+        handlerAdapter = new RequestMappingHandlerAdapter();
+        handlerAdapter.afterPropertiesSet();
+        directAdapter = new DirectActionHandlerAdapter(invokers);
+        directAdapter.setHandlerAdapter(handlerAdapter);
+    }
+
+    @Test
+    public void testInvoker() throws Exception {
+        Method total = findMethod(ItemController.class, "total", int.class, long.class, double.class, boolean.class);
+        assertEquals(-8.5, invokers.getInvoker(ItemController.class, total).invoke(new ItemController(), new Object[]{1, 2L, 5.5, true}));
+
+        Method fail = findMethod(ItemController.class, "fail");
+        assertNull(invokers.getInvoker(ItemController.class, findMethod(ItemController.class, "index")).invoke(new ItemController(), new Object[0]));
+        try {
+            invokers.getInvoker(ItemController.class, fail).invoke(new ItemController(), new Object[0]);
+            fail("Exception not propagated");
+        } catch (IOException e) {
+            assertEquals("boom", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testEligibility() {
+        assertNotNull(invokers.getInvoker(ItemController.class, findMethod(ItemController.class, "show", int.class, Model.class)));
+        assertNull(invokers.getInvoker(ItemController.class, findMethod(ItemController.class, "create")));    // @ResponseStatus
+        assertNull(invokers.getInvoker(BinderController.class, findMethod(BinderController.class, "index")));   // @InitBinder
+
+        invokers.registerAction(HiddenController.class, findMethod(HiddenController.class, "index"));
+        assertNull(invokers.getInvoker(HiddenController.class, findMethod(HiddenController.class, "index")));  // not public
+
+        Method hidden = findMethod(ParamController.class, "index", HiddenParam[].class);
+        invokers.registerAction(ParamController.class, hidden);
+        assertNull(invokers.getInvoker(ParamController.class, hidden));  // parameter type not public
+    }
+
+    /**
+     * An inherited action is eligible or not depending on the controller inheriting it
+     */
+    @Test
+    public void testInheritedEligibility() {
+        Method list = findMethod(BaseController.class, "list");
+        assertNotNull(invokers.getInvoker(PlainChildController.class, list));
+        assertNull(invokers.getInvoker(BinderChildController.class, list));
+        assertTrue(directAdapter.supports(new HandlerMethod(new PlainChildController(), list)));
+        assertFalse(directAdapter.supports(new HandlerMethod(new BinderChildController(), list)));
+    }
+
+    @Test
+    public void testUnregisterController() throws Exception {
+        Method total = findMethod(ItemController.class, "total", int.class, long.class, double.class, boolean.class);
+        invokers.unregisterController(ItemController.class);
+        assertNull(invokers.getInvoker(ItemController.class, total));
+        assertNull(invokers.getInvoker(ItemController.class, findMethod(ItemController.class, "index")));
+
+        invokers.registerAction(ItemController.class, total);
+        assertEquals(8.5, invokers.getInvoker(ItemController.class, total).invoke(new ItemController(), new Object[]{1, 2L, 5.5, false}));
+    }
+
+    /**
+     * Actions should be handled the same as by the RequestMappingHandlerAdapter
+     */
+    @Test
+    public void testHandle() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/item/show");
+        request.addParameter("id", "42");
+        ModelAndView direct = handle(directAdapter, request, new MockHttpServletResponse());
+        ModelAndView reflective = handle(handlerAdapter, request, new MockHttpServletResponse());
+        assertEquals("items/show", direct.getViewName());
+        assertEquals(42, direct.getModel().get("id"));
+        assertEquals(reflective.getViewName(), direct.getViewName());
+        assertEquals(reflective.getModel().keySet(), direct.getModel().keySet());
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertNull(handle(directAdapter, new MockHttpServletRequest("GET", "/item/body"), response));
+        assertEquals("body", response.getContentAsString());
+
+        assertFalse(directAdapter.supports(mapping.getHandler(new MockHttpServletRequest("GET", "/item/create")).getHandler()));
+        assertFalse(directAdapter.supports(mapping.getHandler(new MockHttpServletRequest("GET", "/binder")).getHandler()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testHandleException() throws Exception {
+        handle(directAdapter, new MockHttpServletRequest("GET", "/item/fail"), new MockHttpServletResponse());
+    }
+
+    private ModelAndView handle(HandlerAdapter adapter, MockHttpServletRequest request,
+                                MockHttpServletResponse response) throws Exception {
+        HandlerMethod handler = (HandlerMethod) mapping.getHandler(request).getHandler();
+        assertTrue(adapter.supports(handler));
+        return adapter.handle(request, response, handler);
+    }
+
+    public static class ItemController {
+
+        public void index() {}
+
+        public String show(@RequestParam("id") int id, Model model) {
+            model.addAttribute("id", id);
+            return "items/show";
+        }
+
+        public double total(int a, long b, double c, boolean negate) {
+            return negate ? -(a + b + c) : a + b + c;
+        }
+
+        @ResponseBody
+        public String body() {
+            return "body";
+        }
+
+        @ResponseStatus(HttpStatus.CREATED)
+        public void create() {}
+
+        public void fail() throws IOException {
+            throw new IOException("boom");
+        }
+    }
+
+    public static class BinderController {
+
+        @InitBinder
+        public void initBinder(WebDataBinder binder) {}
+
+        public void index() {}
+    }
+
+    public static class BaseController {
+
+        public void list() {}
+    }
+
+    public static class PlainChildController extends BaseController {
+    }
+
+    public static class BinderChildController extends BaseController {
+
+        @InitBinder
+        public void initBinder(WebDataBinder binder) {}
+    }
+
+    public static class ParamController {
+
+        public void index(HiddenParam[] params) {}
+    }
+
+    static class HiddenParam {
+    }
+
+    static class HiddenController {
+
+        public void index() {}
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sf.cocmvc.metrics;
+
+import net.sf.cocmvc.controllers.TestPlainController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.*;
+import static org.springframework.util.ReflectionUtils.findMethod;
+
+public class ActionMetricsTest {
+
+    private MBeanServer server;
+
+    private ActionMetrics metrics;
+
+    private Method list;
+
+    @Before
+    public void setUp() {
+        server = MBeanServerFactory.newMBeanServer();
+        metrics = new ActionMetrics();
+        metrics.setServer(server);
+
+        list = findMethod(TestPlainController.class, "list");
+        metrics.registerAction(TestPlainController.class, list, "testPlain/list");
+    }
+
+    @After
+    public void tearDown() {
+        metrics.destroy();
+    }
+
+    @Test
+    public void testStats() throws Exception {
+        assertNull(metrics.getStats("testPlain/list"));
+        assertNull(metrics.getStats(TestPlainController.class, findMethod(TestPlainController.class, "index")));
+
+        ActionStats stats = metrics.getStats(TestPlainController.class, list);
+        stats.record(2000000, false);
+        stats.record(4000000, true);
+        assertSame(stats, metrics.getStats("testPlain/list"));
+        assertEquals(2, stats.getRequestCount());
+        assertEquals(1, stats.getErrorCount());
+        assertEquals(3, stats.getMeanMillis(), 0.001);
+        assertEquals(4, stats.getMaxMillis(), 0.001);
+    }
+
+    @Test
+    public void testMBeans() throws Exception {
+        metrics.getStats(TestPlainController.class, list).record(1000, false);
+
+        ObjectName name = new ObjectName("net.sf.cocmvc:type=ActionStats,name=" + ObjectName.quote("testPlain/list"));
+        assertEquals(1L, server.getAttribute(name, "RequestCount"));
+
+        metrics.destroy();
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void testInterceptorAndSnapshot() throws Exception {
+        ActionMetricsInterceptor interceptor = new ActionMetricsInterceptor(metrics);
+        Object handler = new HandlerMethod(new TestPlainController(), list);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/testPlain/list");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, handler);
+        response.setStatus(500);
+        interceptor.afterCompletion(request, response, handler, null);
+
+        ActionStats stats = metrics.getStats("testPlain/list");
+        assertEquals(1, stats.getRequestCount());
+        assertEquals(1, stats.getErrorCount());
+
+        MockHttpServletResponse snapshot = new MockHttpServletResponse();
+        new ActionMetricsHandler(metrics).handleRequest(new MockHttpServletRequest(), snapshot);
+        assertTrue(snapshot.getContentAsString(), snapshot.getContentAsString().startsWith("testPlain/list requests=1 errors=1 "));
+    }
+}
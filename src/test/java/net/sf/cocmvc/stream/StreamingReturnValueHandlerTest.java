@@ -0,0 +1,238 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.stream;
+
+import net.sf.cocmvc.ConventionalHandlerMapping;
+import net.sf.cocmvc.annotation.StreamResponse;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class StreamingReturnValueHandlerTest {
+
+    private ConventionalHandlerMapping mapping;
+
+    private RequestMappingHandlerAdapter adapter;
+
+    @Before
+    public void setUp() throws Exception {
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.registerSingleton("export", ExportController.class);
+        context.registerSingleton("adapter", RequestMappingHandlerAdapter.class);
+        context.refresh();
+
+        mapping = new ConventionalHandlerMapping();
+        mapping.setUseStreamingActions(true);
+        mapping.setStreamBufferSize(64);
+        mapping.setApplicationContext(context);
+        mapping.afterPropertiesSet();
+        mapping.onApplicationEvent(new ContextRefreshedEvent(context));
+        adapter = context.getBean(RequestMappingHandlerAdapter.class);
+    }
+
+    @Test
+    public void testJsonLines() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertNull(handle("/export/orders", response));
+        assertEquals("application/x-ndjson;charset=UTF-8", response.getContentType());
+        assertEquals("{\"id\":1,\"name\":\"apple, \\\"red\\\"\",\"tags\":[\"fruit\"]}\n" +
+                "{\"id\":2,\"name\":\"pear\",\"tags\":[]}\n", response.getContentAsString());
+    }
+
+    @Test
+    public void testCsv() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertNull(handle("/export/orders.csv", response));
+        assertEquals("text/csv;charset=UTF-8", response.getContentType());
+        assertEquals("id,name,tags\r\n1,\"apple, \"\"red\"\"\",[fruit]\r\n2,pear,[]\r\n", response.getContentAsString());
+    }
+
+    @Test
+    public void testProducer() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertNull(handle("/export/totals", response));
+        assertEquals("{\"day\":\"mon\",\"total\":10}\n{\"day\":\"tue\",\"total\":null}\n", response.getContentAsString());
+    }
+
+    @Test
+    public void testIterable() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertNull(handle("/export/rows", response));
+        assertEquals("a,1\r\nb,\r\n", response.getContentAsString());
+
+        // not streamed without the annotation
+        ModelAndView mv = handle("/export/list", new MockHttpServletResponse());
+        assertNotNull(mv);
+        assertEquals(Arrays.asList("a", "b"), mv.getModel().get("stringList"));
+    }
+
+    @Test
+    public void testIncremental() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertNull(handle("/export/cursor", response));
+
+        String content = response.getContentAsString();
+        assertEquals(Cursor.SIZE, content.split("\n").length);
+        assertTrue(content.endsWith(Cursor.SIZE - 1 + "\n"));
+
+        // most of the items were written before the cursor is exhausted
+        assertTrue(ExportController.cursor.writtenBeforeLast > content.length() - 64);
+        assertTrue(ExportController.cursor.closed);
+    }
+
+    @Test
+    public void testCloseOnError() throws Exception {
+        try {
+            handle("/export/broken", new MockHttpServletResponse());
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(ExportController.cursor.closed);
+        }
+    }
+
+    private ModelAndView handle(String uri, MockHttpServletResponse response) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        HandlerMethod handler = (HandlerMethod) mapping.getHandler(request).getHandler();
+        return adapter.handle(request, response, handler);
+    }
+
+    public static class ExportController {
+
+        private static Cursor cursor;
+
+        public Iterator<Order> orders() {
+            return Arrays.asList(new Order(1, "apple, \"red\"", "fruit"), new Order(2, "pear")).iterator();
+        }
+
+        public ItemProducer<Map<String, Object>> totals() {
+            return new ItemProducer<Map<String, Object>>() {
+                public void produce(ItemSink<? super Map<String, Object>> sink) throws IOException {
+                    sink.write(total("mon", 10));
+                    sink.write(total("tue", null));
+                }
+            };
+        }
+
+        @StreamResponse(format = StreamFormat.CSV)
+        public List<Object[]> rows() {
+            return Arrays.asList(new Object[]{"a", 1}, new Object[]{"b", null});
+        }
+
+        public List<String> list() {
+            return Arrays.asList("a", "b");
+        }
+
+        public Iterator<Integer> cursor(HttpServletResponse response) {
+            cursor = new Cursor((MockHttpServletResponse) response, false);
+            return cursor;
+        }
+
+        public Iterator<Integer> broken(HttpServletResponse response) {
+            cursor = new Cursor((MockHttpServletResponse) response, true);
+            return cursor;
+        }
+
+        private static Map<String, Object> total(String day, Integer total) {
+            Map<String, Object> map = new LinkedHashMap<String, Object>();
+            map.put("day", day);
+            map.put("total", total);
+            return map;
+        }
+    }
+
+    public static class Order {
+
+        private final int id;
+
+        private final String name;
+
+        private final List<String> tags;
+
+        public Order(int id, String name, String... tags) {
+            this.id = id;
+            this.name = name;
+            this.tags = Arrays.asList(tags);
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+    }
+
+    /*
+     * a closeable cursor, recording how much has been written to the response before its last item
+     */
+    private static class Cursor implements Iterator<Integer>, Closeable {
+
+        private static final int SIZE = 10000;
+
+        private final MockHttpServletResponse response;
+
+        private final boolean broken;
+
+        private int next;
+
+        private int writtenBeforeLast;
+
+        private boolean closed;
+
+        private Cursor(MockHttpServletResponse response, boolean broken) {
+            this.response = response;
+            this.broken = broken;
+        }
+
+        public boolean hasNext() {
+            return next < SIZE;
+        }
+
+        public Integer next() {
+            if (broken && next == 10) throw new IllegalStateException();
+            if (next == SIZE - 1) writtenBeforeLast = response.getContentAsByteArray().length;
+            return next++;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public void close() {
+            closed = true;
+        }
+    }
+}
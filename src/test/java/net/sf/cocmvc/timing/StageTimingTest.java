@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.timing;
+
+import net.sf.cocmvc.ConventionalHandlerMapping;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import static org.junit.Assert.*;
+
+public class StageTimingTest {
+
+    private StageTiming stageTiming;
+
+    private ConventionalHandlerMapping mapping;
+
+    private RequestMappingHandlerAdapter adapter;
+
+    @Before
+    public void setUp() throws Exception {
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.registerSingleton("user", UserController.class);
+        context.registerSingleton("adapter", RequestMappingHandlerAdapter.class);
+        context.refresh();
+
+        stageTiming = new StageTiming();
+        stageTiming.setSampleInterval(1);
+        mapping = new ConventionalHandlerMapping();
+        mapping.setStageTiming(stageTiming);
+        mapping.setApplicationContext(context);
+        mapping.afterPropertiesSet();
+        mapping.onApplicationEvent(new ContextRefreshedEvent(context));
+        adapter = context.getBean(RequestMappingHandlerAdapter.class);
+    }
+
+    @Test
+    public void testResponseBody() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        StageTimer timer = dispatch(new MockHttpServletRequest("GET", "/user/profile"), response, true);
+
+        assertEquals("user 1", response.getContentAsString());
+        for (StageTimer.Stage stage : StageTimer.Stage.values()) assertTrue(stage.name(), timer.getDuration(stage) >= 0);
+        assertTrue(timer.getDuration(StageTimer.Stage.ACTION) >= 10000000);
+
+        // reported before the body committed the response
+        String header = response.getHeader(StageTiming.SERVER_TIMING_HEADER);
+        assertTrue(header, header.matches("lookup;dur=\\d+\\.\\d{3}, args;dur=\\d+\\.\\d{3}, action;dur=\\d+\\.\\d{3}"));
+    }
+
+    @Test
+    public void testView() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        StageTimer timer = dispatch(new MockHttpServletRequest("GET", "/user/show"), response, false);
+
+        assertTrue(timer.getDuration(StageTimer.Stage.VIEW) >= 0);
+        String header = response.getHeader(StageTiming.SERVER_TIMING_HEADER);
+        assertTrue(header, header.matches("lookup;dur=\\S+, args;dur=\\S+, action;dur=\\S+, result;dur=\\S+, view;dur=\\S+, total;dur=\\S+"));
+    }
+
+    @Test
+    public void testSampling() throws Exception {
+        stageTiming.setSampleInterval(2);
+        int timed = 0;
+        for (int i = 0; i < 4; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user/show");
+            if (mapping.getHandler(request) != null && StageTimer.getTimer(request) != null) timed++;
+        }
+        assertEquals(2, timed);
+
+        stageTiming.setSampleInterval(0);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user/show");
+        mapping.getHandler(request);
+        assertNull(StageTimer.getTimer(request));
+    }
+
+    /*
+     * same steps as the DispatcherServlet, the response is committed by the body or the view
+     */
+    private StageTimer dispatch(MockHttpServletRequest request, MockHttpServletResponse response, boolean body) throws Exception {
+        HandlerExecutionChain chain = mapping.getHandler(request);
+        StageTimer timer = StageTimer.getTimer(request);
+        assertNotNull(timer);
+
+        HandlerInterceptor[] interceptors = chain.getInterceptors();
+        for (HandlerInterceptor interceptor : interceptors) assertTrue(interceptor.preHandle(request, response, chain.getHandler()));
+        ModelAndView mav = adapter.handle(request, response, chain.getHandler());
+        assertEquals(body, response.isCommitted());
+        for (int i = interceptors.length - 1; i >= 0; i--) interceptors[i].postHandle(request, response, chain.getHandler(), mav);
+        for (int i = interceptors.length - 1; i >= 0; i--) interceptors[i].afterCompletion(request, response, chain.getHandler(), null);
+
+        assertNull(StageTimer.getTimer(request));
+        return timer;
+    }
+
+    public static class UserController {
+
+        @ResponseBody
+        public String profile(@RequestParam(value = "id", defaultValue = "1") int id) throws InterruptedException {
+            Thread.sleep(10);
+            return "user " + id;
+        }
+
+        public void show() {
+        }
+    }
+}
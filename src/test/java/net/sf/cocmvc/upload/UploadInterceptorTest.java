@@ -0,0 +1,305 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.upload;
+
+import net.sf.cocmvc.ConventionalHandlerMapping;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.LinkedList;
+
+import static org.junit.Assert.*;
+
+public class UploadInterceptorTest {
+
+    private ConventionalHandlerMapping mapping;
+
+    private RequestMappingHandlerAdapter adapter;
+
+    private CountingInterceptor countingInterceptor;
+
+    @Before
+    public void setUp() throws Exception {
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.registerSingleton("upload", UploadController.class);
+        context.registerSingleton("adapter", RequestMappingHandlerAdapter.class);
+        context.refresh();
+
+        countingInterceptor = new CountingInterceptor();
+        mapping = new ConventionalHandlerMapping();
+        mapping.setInterceptors(new Object[]{ countingInterceptor });
+        mapping.setUseUploadActions(true);
+        mapping.setUploadMemoryThreshold(16);
+        mapping.setUploadMaxSize(64);
+        mapping.setApplicationContext(context);
+        mapping.afterPropertiesSet();
+        mapping.onApplicationEvent(new ContextRefreshedEvent(context));
+        adapter = context.getBean(RequestMappingHandlerAdapter.class);
+    }
+
+    @Test
+    public void testNonBlockingRead() throws Exception {
+        UploadRequest request = new UploadRequest(true, "0123456789", "abcdefghij", "ABCDEFGHIJ");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertFalse(preHandle(request, response));
+        assertNotNull(request.context);
+        assertEquals(0, countingInterceptor.count);
+
+        // each chunk arrives later, on another notification
+        while (!request.input.chunks.isEmpty()) request.input.listener.onDataAvailable();
+        request.input.listener.onAllDataRead();
+        assertTrue(request.context.dispatched);
+
+        UploadedBody body = UploadedBody.getBody(request.proxy);
+        assertEquals(30, body.getSize());
+        assertFalse(body.isInMemory());
+        assertEquals("file 0123456789abcdefghijABCDEFGHIJ", dispatch(request, response));
+        assertNull(UploadedBody.getBody(request.proxy));
+        assertEquals(1, countingInterceptor.count);
+    }
+
+    @Test
+    public void testTooLarge() throws Exception {
+        UploadRequest request = new UploadRequest(true, "0123456789012345678901234567890123456789", "0123456789012345678901234567890123456789");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertFalse(preHandle(request, response));
+
+        while (!request.context.completed) request.input.listener.onDataAvailable();
+        assertEquals(413, response.getStatus());
+        assertFalse(request.context.dispatched);
+        assertNull(UploadedBody.getBody(request.proxy));
+    }
+
+    @Test
+    public void testBlockingRead() throws Exception {
+        UploadRequest request = new UploadRequest(false, "0123", "4567");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertEquals("memory 01234567", dispatch(request, response));
+        assertNull(request.context);
+    }
+
+    private boolean preHandle(UploadRequest request, MockHttpServletResponse response) throws Exception {
+        HandlerExecutionChain chain = mapping.getHandler(request.proxy);
+        for (HandlerInterceptor interceptor : chain.getInterceptors())
+            if (!interceptor.preHandle(request.proxy, response, chain.getHandler())) return false;
+        return true;
+    }
+
+    private String dispatch(UploadRequest request, MockHttpServletResponse response) throws Exception {
+        HandlerExecutionChain chain = mapping.getHandler(request.proxy);
+        assertTrue(preHandle(request, response));
+        adapter.handle(request.proxy, response, chain.getHandler());
+        for (HandlerInterceptor interceptor : chain.getInterceptors())
+            interceptor.afterCompletion(request.proxy, response, chain.getHandler(), null);
+        return response.getContentAsString();
+    }
+
+    private static class CountingInterceptor extends HandlerInterceptorAdapter {
+
+        private int count;
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            count++;
+            return true;
+        }
+    }
+
+    public static class UploadController {
+
+        @ResponseBody
+        public String save(UploadedBody body) throws IOException {
+            return (body.isInMemory() ? "memory " : "file ") + new String(FileCopyUtils.copyToByteArray(body.getInputStream()), "UTF-8");
+        }
+    }
+
+    /*
+     * servlet 3.1 request backed by a mock request, which only implements the servlet 2.5 api
+     */
+    private static class UploadRequest implements InvocationHandler {
+
+        private final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/upload/save");
+
+        private final HttpServletRequest proxy;
+
+        private final boolean asyncSupported;
+
+        private final ChunkedInputStream input;
+
+        private TestAsyncContext context;
+
+        private UploadRequest(boolean asyncSupported, String... chunks) {
+            this.asyncSupported = asyncSupported;
+            this.input = new ChunkedInputStream(chunks);
+            request.setContentType("application/octet-stream");
+            proxy = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{HttpServletRequest.class}, this);
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getInputStream")) return input;
+            if (name.equals("getContentLengthLong")) return -1L;
+            if (name.equals("isAsyncSupported")) return asyncSupported;
+            if (name.equals("startAsync")) {
+                context = new TestAsyncContext(this.proxy, (ServletResponse) args[1]);
+                return context;
+            }
+            try {
+                return method.invoke(request, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /*
+     * delivers one chunk per notification, not ready once a chunk is consumed
+     */
+    private static class ChunkedInputStream extends ServletInputStream {
+
+        private final LinkedList<byte[]> chunks = new LinkedList<byte[]>();
+
+        private ReadListener listener;
+
+        private int position;
+
+        private boolean ready = true;
+
+        private ChunkedInputStream(String... chunks) {
+            for (String chunk : chunks) this.chunks.add(chunk.getBytes());
+        }
+
+        public boolean isFinished() {
+            return chunks.isEmpty();
+        }
+
+        public boolean isReady() {
+            boolean ready = this.ready;
+            this.ready = true;
+            return ready;
+        }
+
+        public void setReadListener(ReadListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public int read() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (chunks.isEmpty()) return -1;
+
+            byte[] chunk = chunks.getFirst();
+            int length = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, length);
+            position += length;
+            if (position == chunk.length) {
+                chunks.removeFirst();
+                position = 0;
+                ready = listener == null;
+            }
+            return length;
+        }
+    }
+
+    private static class TestAsyncContext implements AsyncContext {
+
+        private final ServletRequest request;
+
+        private final ServletResponse response;
+
+        private boolean dispatched;
+
+        private boolean completed;
+
+        private TestAsyncContext(ServletRequest request, ServletResponse response) {
+            this.request = request;
+            this.response = response;
+        }
+
+        public ServletRequest getRequest() {
+            return request;
+        }
+
+        public ServletResponse getResponse() {
+            return response;
+        }
+
+        public boolean hasOriginalRequestAndResponse() {
+            return true;
+        }
+
+        public void dispatch() {
+            dispatched = true;
+        }
+
+        public void dispatch(String path) {
+            dispatched = true;
+        }
+
+        public void dispatch(ServletContext context, String path) {
+            dispatched = true;
+        }
+
+        public void complete() {
+            completed = true;
+        }
+
+        public void start(Runnable run) {
+            run.run();
+        }
+
+        public void addListener(AsyncListener listener) {
+        }
+
+        public void addListener(AsyncListener listener, ServletRequest servletRequest, ServletResponse servletResponse) {
+        }
+
+        public <T extends AsyncListener> T createListener(Class<T> clazz) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void setTimeout(long timeout) {
+        }
+
+        public long getTimeout() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2012 yingxinwu.g@gmail.com.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.sf.cocmvc.warmup;
+
+import net.sf.cocmvc.ConventionalHandlerMapping;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.ViewResolver;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.view.InternalResourceView;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RouteWarmUpTest {
+
+    private StaticApplicationContext context;
+
+    private ConventionalHandlerMapping mapping;
+
+    private RouteWarmUp warmUp;
+
+    private CountingInterceptor interceptor = new CountingInterceptor();
+
+    @Before
+    public void setUp() {
+        context = new StaticApplicationContext();
+        context.registerSingleton("shop", ShopController.class);
+        context.registerSingleton("viewResolver", RecordingViewResolver.class);
+        context.registerSingleton("adapter", RequestMappingHandlerAdapter.class);
+        context.refresh();
+
+        mapping = new ConventionalHandlerMapping();
+        mapping.setInterceptors(new Object[]{interceptor});
+        mapping.setApplicationContext(context);
+        mapping.afterPropertiesSet();
+
+        warmUp = new RouteWarmUp(mapping);
+        warmUp.setApplicationContext(context);
+        warmUp.setLookupIterations(10);
+        ShopController.listed.set(0);
+    }
+
+    @After
+    public void tearDown() {
+        warmUp.destroy();
+    }
+
+    @Test
+    public void testWarmUp() throws Exception {
+        warmUp.setBackground(false);
+        warmUp.setSample(new ByteArrayResource("# products\n/shop/list\n\nPOST shop/show?id=3\n/nowhere\n".getBytes("UTF-8")));
+        warmUp.setSampleIterations(2);
+
+        ReadinessHandler readiness = new ReadinessHandler(warmUp);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        readiness.handleRequest(new MockHttpServletRequest("GET", "/ready"), response);
+        assertEquals(503, response.getStatus());
+        assertEquals("WARMING_UP", response.getContentAsString());
+
+        warmUp.onApplicationEvent(new ContextRefreshedEvent(context));
+        assertTrue(warmUp.isReady());
+
+        // conventional views only, the @ResponseBody action has none
+        RecordingViewResolver viewResolver = context.getBean(RecordingViewResolver.class);
+        assertEquals(new HashSet<String>(Arrays.asList("shop", "shop/list", "shop/show")), viewResolver.viewNames);
+
+        // replayed without the interceptors
+        assertEquals(2, ShopController.listed.get());
+        assertEquals(3, ShopController.shown.get());
+        assertEquals(0, interceptor.count.get());
+
+        response = new MockHttpServletResponse();
+        readiness.handleRequest(new MockHttpServletRequest("GET", "/ready"), response);
+        assertEquals(200, response.getStatus());
+        assertEquals("READY", response.getContentAsString());
+    }
+
+    @Test
+    public void testBackground() throws Exception {
+        warmUp.onApplicationEvent(new ContextRefreshedEvent(context));
+        assertTrue(warmUp.awaitReady(5, TimeUnit.SECONDS));
+        assertEquals(0, ShopController.listed.get());
+    }
+
+    public static class ShopController {
+
+        private static final AtomicInteger listed = new AtomicInteger();
+
+        private static final AtomicInteger shown = new AtomicInteger();
+
+        public void index() {
+        }
+
+        public void list() {
+            listed.incrementAndGet();
+        }
+
+        public void show(@RequestParam("id") int id) {
+            shown.set(id);
+        }
+
+        @ResponseBody
+        public String data() {
+            return "data";
+        }
+    }
+
+    public static class RecordingViewResolver implements ViewResolver {
+
+        private final Set<String> viewNames = Collections.synchronizedSet(new HashSet<String>());
+
+        public View resolveViewName(String viewName, Locale locale) {
+            viewNames.add(viewName);
+            return new InternalResourceView("/WEB-INF/" + viewName + ".jsp");
+        }
+    }
+
+    private static class CountingInterceptor extends HandlerInterceptorAdapter {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            count.incrementAndGet();
+            return true;
+        }
+    }
+}